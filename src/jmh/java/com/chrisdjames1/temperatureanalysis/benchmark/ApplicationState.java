@@ -0,0 +1,75 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import com.chrisdjames1.temperatureanalysis.NcFileAnalysisWebApplication;
+import com.chrisdjames1.temperatureanalysis.service.AverageVariableToExcelService;
+import com.chrisdjames1.temperatureanalysis.service.FunctionProcessorService;
+import com.chrisdjames1.temperatureanalysis.service.NetcdFileService;
+import com.chrisdjames1.temperatureanalysis.service.NetcdReaderService;
+import com.chrisdjames1.temperatureanalysis.service.ReadVariableToExcelService;
+import lombok.Getter;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ucar.ma2.InvalidRangeException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The application, without a web server, wired against a freshly written {@link BenchmarkDataset}. The section and
+ * chunk caches, pyramids and shared scans are switched off so that every invocation goes through the full read path
+ * rather than measuring cache hits or batching delays.
+ */
+@Getter
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private NetcdFileService netcdFileService;
+    private NetcdReaderService netcdReaderService;
+    private FunctionProcessorService functionProcessorService;
+    private ReadVariableToExcelService readVariableToExcelService;
+    private AverageVariableToExcelService averageVariableToExcelService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InvalidRangeException {
+        directory = Files.createTempDirectory("ncfa-benchmark");
+        Path dataset = directory.resolve("benchmark.nc");
+        BenchmarkDataset.write(dataset);
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // Command line arguments, so that they take precedence over application.properties
+        context = new SpringApplicationBuilder(NcFileAnalysisWebApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--cdm.dataset.path=" + dataset,
+                        "--cdm.dataset.pool-size=1",
+                        "--cdm.cache.section-max-bytes=0",
+                        "--cdm.cache.chunk-max-bytes=0",
+                        "--cdm.reduce.shared-scan-window-millis=0",
+                        "--cdm.pyramid.enabled=false",
+                        "--cdm.artifact.directory=" + directory.resolve("artifacts"),
+                        "--logging.level.root=WARN");
+        netcdFileService = context.getBean(NetcdFileService.class);
+        netcdReaderService = context.getBean(NetcdReaderService.class);
+        functionProcessorService = context.getBean(FunctionProcessorService.class);
+        readVariableToExcelService = context.getBean(ReadVariableToExcelService.class);
+        averageVariableToExcelService = context.getBean(AverageVariableToExcelService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        FileSystemUtils.deleteRecursively(directory);
+    }
+}
@@ -0,0 +1,53 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
+import com.chrisdjames1.temperatureanalysis.model.value.FnAvgVariableArg;
+import com.chrisdjames1.temperatureanalysis.service.PooledNetcdfFile;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Averaging a section through the avg-variable function, and tabulating averages per time step as a workbook.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AverageBenchmark {
+
+    @Param({"0:0,0:179,0:359", "0:11,0:179,0:359", "0:119,0:179,0:359"})
+    public String sectionSpec;
+
+    @Benchmark
+    public String averageVariable(ApplicationState app) {
+        try (PooledNetcdfFile handle = app.getNetcdFileService().borrow()) {
+            return app.getFunctionProcessorService().processFunctionToString(handle.getNcFile(),
+                    AppFunction.AVG_VARIABLE, Map.of(FnAvgVariableArg.VARIABLE.getArg(), BenchmarkDataset.VARIABLE,
+                            FnAvgVariableArg.SECTION_SPEC.getArg(), sectionSpec));
+        }
+    }
+
+    @Benchmark
+    public void averageVariableToExcel(ApplicationState app) {
+        try (PooledNetcdfFile handle = app.getNetcdFileService().borrow()) {
+            app.getAverageVariableToExcelService().averageVariableToExcel(handle.getNcFile(),
+                    BenchmarkDataset.VARIABLE, sectionSpec, 0, OutputStream.nullOutputStream(),
+                    ProgressListener.NONE);
+        }
+    }
+}
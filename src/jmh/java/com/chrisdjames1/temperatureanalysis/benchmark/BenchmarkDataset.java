@@ -0,0 +1,76 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a netCDF-3 fixture laid out like the Berkeley Earth gridded files: a float temperature anomaly over
+ * time x latitude x longitude, with coordinate variables and a block of missing (NaN) cells standing in for land.
+ */
+public final class BenchmarkDataset {
+
+    public static final String VARIABLE = "temperature";
+
+    public static final int TIMES = 120;
+    public static final int LATITUDES = 180;
+    public static final int LONGITUDES = 360;
+
+    private BenchmarkDataset() {
+    }
+
+    public static void write(Path file) throws IOException, InvalidRangeException {
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(file.toString());
+        builder.addDimension("time", TIMES);
+        builder.addDimension("latitude", LATITUDES);
+        builder.addDimension("longitude", LONGITUDES);
+        builder.addVariable("time", DataType.DOUBLE, "time")
+                .addAttribute(new Attribute("units", "year A.D."));
+        builder.addVariable("latitude", DataType.FLOAT, "latitude")
+                .addAttribute(new Attribute("units", "degrees_north"));
+        builder.addVariable("longitude", DataType.FLOAT, "longitude")
+                .addAttribute(new Attribute("units", "degrees_east"));
+        builder.addVariable(VARIABLE, DataType.FLOAT, "time latitude longitude")
+                .addAttribute(new Attribute("units", "degree C"))
+                .addAttribute(new Attribute("long_name", "Air Surface Temperature Anomaly"));
+
+        try (NetcdfFormatWriter writer = builder.build()) {
+            double[] times = new double[TIMES];
+            for (int t = 0; t < TIMES; t++) {
+                times[t] = 1850 + (t + 0.5) / 12;
+            }
+            writer.write("time", Array.factory(DataType.DOUBLE, new int[]{TIMES}, times));
+            float[] latitudes = new float[LATITUDES];
+            for (int lat = 0; lat < LATITUDES; lat++) {
+                latitudes[lat] = -89.5f + lat;
+            }
+            writer.write("latitude", Array.factory(DataType.FLOAT, new int[]{LATITUDES}, latitudes));
+            float[] longitudes = new float[LONGITUDES];
+            for (int lon = 0; lon < LONGITUDES; lon++) {
+                longitudes[lon] = -179.5f + lon;
+            }
+            writer.write("longitude", Array.factory(DataType.FLOAT, new int[]{LONGITUDES}, longitudes));
+
+            // One time step at a time, so the fixture never has to fit in memory at once
+            float[] values = new float[LATITUDES * LONGITUDES];
+            int[] origin = new int[3];
+            int[] shape = {1, LATITUDES, LONGITUDES};
+            for (int t = 0; t < TIMES; t++) {
+                for (int lat = 0; lat < LATITUDES; lat++) {
+                    for (int lon = 0; lon < LONGITUDES; lon++) {
+                        boolean missing = lat >= 60 && lat < 90 && lon >= 100 && lon < 160;
+                        values[lat * LONGITUDES + lon] = missing ? Float.NaN :
+                                (float) (Math.sin(t * 0.5 + lat * 0.1) + Math.cos(lon * 0.05));
+                    }
+                }
+                origin[0] = t;
+                writer.write(VARIABLE, origin, Array.factory(DataType.FLOAT, shape, values));
+            }
+        }
+    }
+}
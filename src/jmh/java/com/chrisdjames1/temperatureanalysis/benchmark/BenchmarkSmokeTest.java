@@ -0,0 +1,70 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Param;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs each benchmark once for every value of its {@link Param}, so a broken fixture, section spec or application
+ * context fails the build rather than a benchmark run.
+ */
+public class BenchmarkSmokeTest {
+
+    private static ApplicationState app;
+
+    @BeforeClass
+    public static void setUp() throws IOException, InvalidRangeException {
+        app = new ApplicationState();
+        app.setUp();
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        app.tearDown();
+    }
+
+    @Test
+    public void testReadBenchmark() throws NoSuchFieldException {
+        ReadBenchmark benchmark = new ReadBenchmark();
+        for (String sectionSpec : sectionSpecsOf(ReadBenchmark.class)) {
+            benchmark.sectionSpec = sectionSpec;
+            Array data = benchmark.readVariableToArray(app);
+            int times = Integer.parseInt(sectionSpec.substring(sectionSpec.indexOf(':') + 1,
+                    sectionSpec.indexOf(','))) + 1;
+            assertArrayEquals(sectionSpec, new int[]{times, BenchmarkDataset.LATITUDES, BenchmarkDataset.LONGITUDES},
+                    data.getShape());
+            assertTrue(sectionSpec, benchmark.readVariableToJsonString(app).startsWith("["));
+        }
+    }
+
+    @Test
+    public void testAverageBenchmark() throws NoSuchFieldException {
+        AverageBenchmark benchmark = new AverageBenchmark();
+        for (String sectionSpec : sectionSpecsOf(AverageBenchmark.class)) {
+            benchmark.sectionSpec = sectionSpec;
+            assertTrue(sectionSpec, !benchmark.averageVariable(app).isEmpty());
+            benchmark.averageVariableToExcel(app);
+        }
+    }
+
+    @Test
+    public void testReadExcelBenchmark() throws NoSuchFieldException {
+        ReadExcelBenchmark benchmark = new ReadExcelBenchmark();
+        for (String sectionSpec : sectionSpecsOf(ReadExcelBenchmark.class)) {
+            benchmark.sectionSpec = sectionSpec;
+            benchmark.readVariable2dToExcel(app);
+        }
+    }
+
+    private static String[] sectionSpecsOf(Class<?> benchmarkClass) throws NoSuchFieldException {
+        return benchmarkClass.getField("sectionSpec").getAnnotation(Param.class).value();
+    }
+}
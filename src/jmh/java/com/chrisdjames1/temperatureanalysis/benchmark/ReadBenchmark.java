@@ -0,0 +1,52 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
+import com.chrisdjames1.temperatureanalysis.model.value.FnReadVariableArg;
+import com.chrisdjames1.temperatureanalysis.service.PooledNetcdfFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.Array;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a section into an {@link Array}, and the JSON string path of the read-variable function, from one map up
+ * to the whole fixture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadBenchmark {
+
+    @Param({"0:0,0:179,0:359", "0:11,0:179,0:359", "0:119,0:179,0:359"})
+    public String sectionSpec;
+
+    @Benchmark
+    public Array readVariableToArray(ApplicationState app) {
+        try (PooledNetcdfFile handle = app.getNetcdFileService().borrow()) {
+            return app.getNetcdReaderService().readVariableToArray(handle.getNcFile(), BenchmarkDataset.VARIABLE,
+                    sectionSpec);
+        }
+    }
+
+    @Benchmark
+    public String readVariableToJsonString(ApplicationState app) {
+        try (PooledNetcdfFile handle = app.getNetcdFileService().borrow()) {
+            return app.getFunctionProcessorService().processFunctionToString(handle.getNcFile(),
+                    AppFunction.READ_VARIABLE, Map.of(FnReadVariableArg.VARIABLE.getArg(), BenchmarkDataset.VARIABLE,
+                            FnReadVariableArg.SECTION_SPEC.getArg(), sectionSpec));
+        }
+    }
+}
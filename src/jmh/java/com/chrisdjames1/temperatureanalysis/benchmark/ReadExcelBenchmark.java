@@ -0,0 +1,42 @@
+package com.chrisdjames1.temperatureanalysis.benchmark;
+
+import com.chrisdjames1.temperatureanalysis.service.PooledNetcdfFile;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing 1D and 2D sections out as a workbook, from a single row of cells up to a whole map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadExcelBenchmark {
+
+    @Param({"0:119,90:90,180:180", "0:119,90:90,0:359", "0:0,0:179,0:359"})
+    public String sectionSpec;
+
+    @Benchmark
+    public void readVariable2dToExcel(ApplicationState app) {
+        // A single time series has no column dimension of its own, so label it with the latitude
+        Integer columnIndexFor1d = sectionSpec.endsWith("180:180") ? 1 : null;
+        try (PooledNetcdfFile handle = app.getNetcdFileService().borrow()) {
+            app.getReadVariableToExcelService().readVariable2dToExcel(handle.getNcFile(), BenchmarkDataset.VARIABLE,
+                    sectionSpec, columnIndexFor1d, OutputStream.nullOutputStream(), ProgressListener.NONE);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.chrisdjames1.temperatureanalysis.loadtest;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command line arguments of the form {@code --name=value}, as taken by the console application.
+ */
+class Arguments {
+
+    private static final Pattern ARGS_PATTERN = Pattern.compile("^--([\\w-]*)=(.*)$");
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Arguments(String[] args, Set<String> names) {
+        for (String arg : args) {
+            Matcher matcher = ARGS_PATTERN.matcher(arg);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Malformed argument: " + arg);
+            }
+            if (!names.contains(matcher.group(1))) {
+                throw new IllegalArgumentException("Unrecognised argument: '" + matcher.group(1) + "'");
+            }
+            values.put(matcher.group(1), matcher.group(2));
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    String require(String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new IllegalStateException("Missing argument: " + name);
+        }
+        return value;
+    }
+
+    int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    /**
+     * Parses a value such as {@code time:12,latitude:180} into lengths by dimension name.
+     */
+    Map<String, Integer> getLengths(String name) {
+        Map<String, Integer> lengths = new LinkedHashMap<>();
+        String value = values.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return lengths;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(String.format("Expected <dimension>:<length> in '%s' but got '%s'",
+                        name, entry));
+            }
+            lengths.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,175 @@
+package com.chrisdjames1.temperatureanalysis.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The dimensions, variables and attributes of a dataset, without its data. Taken either from a template dataset or,
+ * when there is none to hand, from the layout of the Berkeley Earth gridded files the application is built around.
+ */
+@Getter
+class DatasetLayout {
+
+    private final Map<String, DimensionSpec> dimensions = new LinkedHashMap<>();
+    private final List<VariableSpec> variables = new ArrayList<>();
+    private final List<Attribute> globalAttributes = new ArrayList<>();
+
+    /**
+     * Approximates the layout of the Berkeley Earth "Land_and_Ocean_LatLong1.nc" file.
+     */
+    static DatasetLayout berkeleyEarth() {
+        DatasetLayout layout = new DatasetLayout();
+        layout.dimensions.put("longitude", new DimensionSpec("longitude", 360, false));
+        layout.dimensions.put("latitude", new DimensionSpec("latitude", 180, false));
+        layout.dimensions.put("time", new DimensionSpec("time", 2073, true));
+        layout.dimensions.put("month_number", new DimensionSpec("month_number", 12, false));
+
+        layout.variables.add(new VariableSpec("longitude", DataType.FLOAT, List.of("longitude"),
+                List.of(new Attribute("units", "degrees_east"), new Attribute("standard_name", "longitude"),
+                        new Attribute("long_name", "Longitude")), -179.5, 179.5));
+        layout.variables.add(new VariableSpec("latitude", DataType.FLOAT, List.of("latitude"),
+                List.of(new Attribute("units", "degrees_north"), new Attribute("standard_name", "latitude"),
+                        new Attribute("long_name", "Latitude")), -89.5, 89.5));
+        layout.variables.add(new VariableSpec("time", DataType.DOUBLE, List.of("time"),
+                List.of(new Attribute("units", "year A.D."), new Attribute("standard_name", "time"),
+                        new Attribute("long_name", "Time")), 1850 + 1.0 / 24, 1850 + 1.0 / 24 + 2072.0 / 12));
+        layout.variables.add(new VariableSpec("land_mask", DataType.DOUBLE, List.of("latitude", "longitude"),
+                List.of(new Attribute("units", ""), new Attribute("long_name", "Land Mask")), null, null));
+        layout.variables.add(new VariableSpec("temperature", DataType.FLOAT,
+                List.of("time", "latitude", "longitude"),
+                List.of(new Attribute("units", "degree C"),
+                        new Attribute("long_name", "Air Surface Temperature Anomaly"),
+                        new Attribute("valid_min", -20.0f), new Attribute("valid_max", 20.0f)), null, null));
+        layout.variables.add(new VariableSpec("climatology", DataType.FLOAT,
+                List.of("month_number", "latitude", "longitude"),
+                List.of(new Attribute("units", "degree C"),
+                        new Attribute("long_name", "Air Surface Temperature Climatology")), null, null));
+        layout.variables.add(new VariableSpec("month_number", DataType.INT, List.of("month_number"),
+                List.of(new Attribute("long_name", "Month of the Year")), 1.0, 12.0));
+
+        layout.globalAttributes.add(new Attribute("Conventions", "Berkeley Earth Internal"));
+        layout.globalAttributes.add(new Attribute("title",
+                "Native Format Berkeley Earth Surface Temperature Anomaly Field"));
+        return layout;
+    }
+
+    /**
+     * Copies the layout of the template. Only the first and last values of each coordinate variable are read.
+     */
+    static DatasetLayout of(NetcdfFile template) throws IOException, InvalidRangeException {
+        DatasetLayout layout = new DatasetLayout();
+        for (Dimension dimension : template.getRootGroup().getDimensions()) {
+            layout.dimensions.put(dimension.getShortName(), new DimensionSpec(dimension.getShortName(),
+                    dimension.getLength(), dimension.isUnlimited()));
+        }
+        for (Variable v : template.getVariables()) {
+            List<String> dimensionNames = v.getDimensions().stream().map(Dimension::getShortName)
+                    .collect(Collectors.toList());
+            List<Attribute> attributes = new ArrayList<>();
+            for (Attribute attribute : v.attributes()) {
+                // Attributes starting with an underscore describe the storage of the template, not the data
+                if (!attribute.getShortName().startsWith("_")) {
+                    attributes.add(attribute);
+                }
+            }
+            Double first = null;
+            Double last = null;
+            if (v.isCoordinateVariable() && v.getRank() == 1 && v.getDataType().isNumeric() && v.getSize() > 0) {
+                first = v.read(new int[]{0}, new int[]{1}).getDouble(0);
+                last = v.read(new int[]{(int) v.getSize() - 1}, new int[]{1}).getDouble(0);
+            }
+            layout.variables.add(new VariableSpec(v.getShortName(), v.getDataType(), dimensionNames, attributes,
+                    first, last));
+        }
+        for (Attribute attribute : template.getRootGroup().attributes()) {
+            if (!attribute.getShortName().startsWith("_")) {
+                layout.globalAttributes.add(attribute);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Changes the length of a dimension.
+     */
+    void resize(String dimensionName, int length) {
+        DimensionSpec dimension = dimensions.get(dimensionName);
+        if (dimension == null) {
+            throw new IllegalArgumentException("No dimension named " + dimensionName + " in " +
+                    dimensions.keySet());
+        }
+        dimensions.put(dimensionName, new DimensionSpec(dimensionName, length, dimension.isUnlimited(),
+                dimension.getTemplateLength()));
+    }
+
+    int[] shapeOf(VariableSpec variable) {
+        return variable.getDimensionNames().stream().mapToInt(name -> dimensions.get(name).getLength()).toArray();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class DimensionSpec {
+
+        private final String name;
+
+        private final int length;
+
+        private final boolean unlimited;
+
+        /**
+         * Length of the dimension in the template, before any resizing.
+         */
+        private final int templateLength;
+
+        DimensionSpec(String name, int length, boolean unlimited) {
+            this(name, length, unlimited, length);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class VariableSpec {
+
+        private final String name;
+
+        private final DataType dataType;
+
+        private final List<String> dimensionNames;
+
+        private final List<Attribute> attributes;
+
+        /**
+         * First and last values of a coordinate variable in the template, or null for other variables.
+         */
+        private final Double first;
+
+        private final Double last;
+
+        boolean isCoordinate() {
+            return first != null;
+        }
+
+        /**
+         * The value of a coordinate variable at an index. An unlimited dimension, such as time, keeps the spacing of
+         * the template and is extended or cut short. Any other dimension keeps the span of the template, so a longer
+         * latitude or longitude gives a finer grid over the same area.
+         */
+        double coordinate(DimensionSpec dimension, int index) {
+            int steps = (dimension.isUnlimited() ? dimension.getTemplateLength() : dimension.getLength()) - 1;
+            return steps <= 0 ? first : first + index * (last - first) / steps;
+        }
+    }
+}
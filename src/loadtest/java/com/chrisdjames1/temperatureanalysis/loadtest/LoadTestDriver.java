@@ -0,0 +1,364 @@
+package com.chrisdjames1.temperatureanalysis.loadtest;
+
+import com.chrisdjames1.temperatureanalysis.NcFileAnalysisWebApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Hits the {@code AnalysisController} endpoints from a number of concurrent clients for a fixed time, and reports the
+ * throughput, the p50 and p99 latencies and the bytes received per scenario. Without {@code --base-url} the
+ * application is started in this JVM against the dataset, which also gives the high-water mark of the heap over the
+ * run.
+ * <br>
+ * Options:
+ * <ul>
+ *     <li>{@code --dataset} (Required) - The dataset to query, e.g. one written by
+ *     {@link SyntheticDatasetGenerator}. Its shape decides the sections requested.</li>
+ *     <li>{@code --variable} - A variable of at least 3 dimensions, time first and the grid last. Defaults to
+ *     temperature.</li>
+ *     <li>{@code --base-url} - A server that is already running against the same dataset.</li>
+ *     <li>{@code --concurrency} - Number of clients. Defaults to 8.</li>
+ *     <li>{@code --warmup-seconds} - Time before measuring starts. Defaults to 10.</li>
+ *     <li>{@code --duration-seconds} - Time measured. Defaults to 60.</li>
+ *     <li>{@code --scenarios} - Names of the {@link Scenario}s to run, e.g. {@code map-json,box-group-by}. Defaults
+ *     to all of them.</li>
+ *     <li>{@code --seed} - Seed of the sections requested. Defaults to 1.</li>
+ * </ul>
+ */
+@Slf4j
+public class LoadTestDriver {
+
+    private static final Set<String> ARGS = Set.of("dataset", "variable", "base-url", "concurrency", "warmup-seconds",
+            "duration-seconds", "scenarios", "seed");
+
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args, ARGS);
+        String dataset = arguments.require("dataset");
+        String variable = arguments.get("variable", "temperature");
+        int concurrency = arguments.getInt("concurrency", 8);
+        long warmupNanos = TimeUnit.SECONDS.toNanos(arguments.getInt("warmup-seconds", 10));
+        long durationNanos = TimeUnit.SECONDS.toNanos(arguments.getInt("duration-seconds", 60));
+        long seed = arguments.getInt("seed", 1);
+        List<Scenario> scenarios = arguments.get("scenarios", null) == null ? Arrays.asList(Scenario.values()) :
+                Arrays.stream(arguments.require("scenarios").split(",")).map(Scenario::fromName)
+                        .collect(Collectors.toList());
+
+        int[] shape;
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset)) {
+            Variable v = ncFile.findVariable(variable);
+            if (v == null) {
+                throw new IllegalArgumentException("Unable fo find variable " + variable);
+            }
+            shape = v.getShape();
+        }
+        if (shape.length < 3) {
+            throw new IllegalArgumentException("Variable " + variable + " needs at least 3 dimensions");
+        }
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = arguments.get("base-url", null);
+        if (baseUrl == null) {
+            log.info("Starting the application against {}", dataset);
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            context = new SpringApplicationBuilder(NcFileAnalysisWebApplication.class).run("--server.port=0",
+                    "--cdm.dataset.path=" + dataset);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            List<ScenarioStats> stats = scenarios.stream().map(ScenarioStats::new).collect(Collectors.toList());
+            HeapSampler heapSampler = context != null ? new HeapSampler() : null;
+            long measureFrom = System.nanoTime() + warmupNanos;
+            long end = measureFrom + durationNanos;
+            log.info("Running {} for {} s after a {} s warm-up with {} clients", scenarios, durationNanos / 1e9,
+                    warmupNanos / 1e9, concurrency);
+
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            for (int c = 0; c < concurrency; c++) {
+                Random random = new Random(seed + c);
+                String url = baseUrl;
+                clients.submit(() -> runClient(client, url, variable, shape, stats, random, measureFrom, end,
+                        heapSampler));
+            }
+            clients.shutdown();
+            clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (heapSampler != null) {
+                heapSampler.stop();
+            }
+            report(stats, durationNanos, heapSampler);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void runClient(HttpClient client, String baseUrl, String variable, int[] shape,
+            List<ScenarioStats> stats, Random random, long measureFrom, long end, HeapSampler heapSampler) {
+
+        while (System.nanoTime() < end) {
+            ScenarioStats scenarioStats = stats.get(random.nextInt(stats.size()));
+            URI uri = URI.create(baseUrl + "/" + scenarioStats.scenario.request(variable, shape, random));
+            HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+            long start = System.nanoTime();
+            if (heapSampler != null && start >= measureFrom) {
+                heapSampler.start();
+            }
+            boolean ok;
+            long bytes = 0;
+            try {
+                HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    bytes = drain(body);
+                }
+                ok = response.statusCode() < 400;
+                if (!ok) {
+                    log.debug("{} returned {}", uri, response.statusCode());
+                }
+            } catch (IOException e) {
+                log.debug("{} failed", uri, e);
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (start >= measureFrom) {
+                scenarioStats.record(System.nanoTime() - start, bytes, ok);
+            }
+        }
+    }
+
+    private static long drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            bytes += n;
+        }
+        return bytes;
+    }
+
+    private static void report(List<ScenarioStats> stats, long durationNanos, HeapSampler heapSampler) {
+        double seconds = durationNanos / 1e9;
+        String format = "%-22s %9s %7s %9s %9s %9s %9s %12s%n";
+        System.out.printf(format, "scenario", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms",
+                "MB received");
+        ScenarioStats total = new ScenarioStats(null);
+        for (ScenarioStats scenarioStats : stats) {
+            System.out.print(scenarioStats.line(format, scenarioStats.scenario.getValue(), seconds));
+            total.addAll(scenarioStats);
+        }
+        System.out.print(total.line(format, "all", seconds));
+        System.out.println(heapSampler != null ?
+                String.format("Heap high-water mark: %.1f MB", heapSampler.getMaxUsedBytes() / 1e6) :
+                "Heap high-water mark: n/a (remote server)");
+    }
+
+    /**
+     * The kinds of request made, each over a random part of the variable.
+     */
+    enum Scenario {
+        MAP_JSON("map-json") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "read/variable/string?" + query(variable, spec(shape, index(random, shape[0]), ":", ":"));
+            }
+        },
+        YEAR_BINARY("year-binary") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "read/variable/binary?" + query(variable, spec(shape, span(random, shape[0], 12), ":", ":"));
+            }
+        },
+        TIME_SERIES_JSON("time-series-json") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "read/variable/string?" + query(variable, spec(shape, ":",
+                        index(random, shape[shape.length - 2]), index(random, shape[shape.length - 1])));
+            }
+        },
+        BOX_GROUP_BY("box-group-by") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "average/variable/group-by/json?" + query(variable, spec(shape, ":",
+                        span(random, shape[shape.length - 2], 10), span(random, shape[shape.length - 1], 10))) +
+                        "&keep-dimensions=0";
+            }
+        },
+        ZONAL_MEANS("zonal-means") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "average/variable/group-by/json?" + query(variable, spec(shape, span(random, shape[0], 12),
+                        ":", ":")) + "&keep-dimensions=" + (shape.length - 2);
+            }
+        },
+        MAP_XLSX("map-xlsx") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "read/variable/xlsx/stream?" + query(variable, spec(shape, index(random, shape[0]), ":", ":"));
+            }
+        },
+        AVERAGE_XLSX("average-xlsx") {
+            @Override
+            String request(String variable, int[] shape, Random random) {
+                return "average/variable/xlsx/stream?" + query(variable, spec(shape, span(random, shape[0], 12),
+                        ":", ":")) + "&average-on-index=" + (shape.length - 2);
+            }
+        };
+
+        private final String value;
+
+        Scenario(String value) {
+            this.value = value;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        abstract String request(String variable, int[] shape, Random random);
+
+        static Scenario fromName(String name) {
+            return Arrays.stream(values()).filter(scenario -> scenario.value.equals(name.trim())).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unrecognised scenario: " + name));
+        }
+
+        private static String query(String variable, String sectionSpec) {
+            return "variable=" + URLEncoder.encode(variable, StandardCharsets.UTF_8) + "&section-spec=" +
+                    URLEncoder.encode(sectionSpec, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * A section-spec over the first dimension and the grid, taking the first index of any dimensions between. A
+         * range of ":" is written out in full, as the Excel exports need the start of every range.
+         */
+        private static String spec(int[] shape, String first, String row, String column) {
+            List<String> ranges = new ArrayList<>();
+            ranges.add(first);
+            for (int d = 1; d < shape.length - 2; d++) {
+                ranges.add("0");
+            }
+            ranges.add(row);
+            ranges.add(column);
+            for (int d = 0; d < ranges.size(); d++) {
+                if (ranges.get(d).equals(":")) {
+                    ranges.set(d, "0:" + (shape[d] - 1));
+                }
+            }
+            return String.join(",", ranges);
+        }
+
+        private static String index(Random random, int length) {
+            return String.valueOf(random.nextInt(length));
+        }
+
+        private static String span(Random random, int length, int count) {
+            int n = Math.min(count, length);
+            int start = random.nextInt(length - n + 1);
+            return start + ":" + (start + n - 1);
+        }
+    }
+
+    private static class ScenarioStats {
+
+        private final Scenario scenario;
+        private final List<Long> latencies = new ArrayList<>();
+        private long errors;
+        private long bytes;
+
+        ScenarioStats(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        synchronized void record(long latencyNanos, long bytesReceived, boolean ok) {
+            latencies.add(latencyNanos);
+            bytes += bytesReceived;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(ScenarioStats other) {
+            latencies.addAll(other.latencies);
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+
+        synchronized String line(String format, String name, double seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            return String.format(format, name, sorted.length, errors, String.format("%.2f", sorted.length / seconds),
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                    millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]), String.format("%.1f", bytes / 1e6));
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.1f", nanos / 1e6);
+        }
+    }
+
+    /**
+     * Samples the heap in use, once the measured part of the run has started.
+     */
+    private static class HeapSampler {
+
+        private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong maxUsedBytes = new AtomicLong();
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private boolean started;
+
+        synchronized void start() {
+            if (!started) {
+                started = true;
+                executor.scheduleAtFixedRate(() -> maxUsedBytes.accumulateAndGet(
+                        memoryMXBean.getHeapMemoryUsage().getUsed(), Math::max), 0, HEAP_SAMPLE_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void stop() {
+            executor.shutdownNow();
+        }
+
+        long getMaxUsedBytes() {
+            return maxUsedBytes.get();
+        }
+    }
+}
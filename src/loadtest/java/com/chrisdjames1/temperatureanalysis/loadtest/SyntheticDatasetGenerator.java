@@ -0,0 +1,220 @@
+package com.chrisdjames1.temperatureanalysis.loadtest;
+
+import com.chrisdjames1.temperatureanalysis.loadtest.DatasetLayout.DimensionSpec;
+import com.chrisdjames1.temperatureanalysis.loadtest.DatasetLayout.VariableSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingStrategy;
+import ucar.nc2.write.NetcdfFileFormat;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Writes a synthetic dataset with the dimensions, variables and attributes of a template dataset, so that the
+ * application can be exercised at scale without the real data. The template is {@code --template}, or else the
+ * dataset {@code cdm.dataset.path} points at, or else, if neither is to hand, the Berkeley Earth layout.
+ * <br>
+ * Options:
+ * <ul>
+ *     <li>{@code --output} (Required) - The file to write.</li>
+ *     <li>{@code --format} - {@code netcdf3} (the default, with 64-bit offsets so variables can exceed 2GB) or
+ *     {@code netcdf4}, which needs the netCDF-C library to be installed.</li>
+ *     <li>{@code --size} - New lengths of any of the dimensions, e.g. {@code time:4000,latitude:720}.</li>
+ *     <li>{@code --nan-ratio} - Fraction of the cells of each floating point data variable that are missing (NaN),
+ *     the same cells at every time step. Defaults to 0.1.</li>
+ *     <li>{@code --chunk} - netCDF-4 chunk lengths of the data variables, e.g. {@code time:12,latitude:90}. Other
+ *     dimensions are chunked whole, apart from an unlimited dimension which is chunked a step at a time.</li>
+ *     <li>{@code --deflate} - netCDF-4 deflate level, 0 to 9. Defaults to 0.</li>
+ *     <li>{@code --seed} - Seed of the values and missing cells. Defaults to 1.</li>
+ * </ul>
+ */
+@Slf4j
+public class SyntheticDatasetGenerator {
+
+    private static final Set<String> ARGS = Set.of("output", "format", "template", "size", "nan-ratio", "chunk",
+            "deflate", "seed");
+
+    // Upper bound on the data generated per write
+    private static final long SLAB_BYTES = 64L * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException, InvalidRangeException {
+        Arguments arguments = new Arguments(args, ARGS);
+        Path output = Paths.get(arguments.require("output"));
+        String format = arguments.get("format", "netcdf3");
+        if (!format.equals("netcdf3") && !format.equals("netcdf4")) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        DatasetLayout layout = loadLayout(arguments.get("template", null));
+        arguments.getLengths("size").forEach(layout::resize);
+
+        long start = System.currentTimeMillis();
+        generate(layout, output, format.equals("netcdf4"), arguments.getDouble("nan-ratio", 0.1),
+                arguments.getLengths("chunk"), arguments.getInt("deflate", 0), arguments.getInt("seed", 1));
+        log.info("Wrote {} ({} bytes) in {} ms", output, Files.size(output), System.currentTimeMillis() - start);
+    }
+
+    static void generate(DatasetLayout layout, Path output, boolean netcdf4, double nanRatio,
+            Map<String, Integer> chunkLengths, int deflateLevel, long seed) throws IOException, InvalidRangeException {
+
+        NetcdfFormatWriter.Builder<?> builder = netcdf4 ?
+                NetcdfFormatWriter.createNewNetcdf4(NetcdfFileFormat.NETCDF4, output.toString(),
+                        Nc4ChunkingStrategy.factory(Nc4Chunking.Strategy.standard, deflateLevel, deflateLevel > 0)) :
+                NetcdfFormatWriter.createNewNetcdf3(output.toString()).setFormat(
+                        NetcdfFileFormat.NETCDF3_64BIT_OFFSET);
+        builder.setFill(false);
+        for (DimensionSpec dimension : layout.getDimensions().values()) {
+            if (dimension.isUnlimited()) {
+                builder.addUnlimitedDimension(dimension.getName());
+            } else {
+                builder.addDimension(dimension.getName(), dimension.getLength());
+            }
+        }
+        for (VariableSpec variable : layout.getVariables()) {
+            Variable.Builder<?> variableBuilder = builder.addVariable(variable.getName(), variable.getDataType(),
+                    String.join(" ", variable.getDimensionNames()));
+            variable.getAttributes().forEach(variableBuilder::addAttribute);
+            if (netcdf4 && !variable.isCoordinate() && !variable.getDimensionNames().isEmpty()) {
+                int[] chunkShape = chunkShapeOf(layout, variable, chunkLengths);
+                variableBuilder.addAttribute(new Attribute(CDM.CHUNK_SIZES,
+                        Array.factory(DataType.INT, new int[]{chunkShape.length}, chunkShape)));
+            }
+        }
+        layout.getGlobalAttributes().forEach(builder::addAttribute);
+        builder.addAttribute(new Attribute("history", "Synthetic data written by " +
+                SyntheticDatasetGenerator.class.getSimpleName()));
+
+        try (NetcdfFormatWriter writer = builder.build()) {
+            for (VariableSpec variable : layout.getVariables()) {
+                if (!variable.getDataType().isNumeric()) {
+                    log.warn("Leaving the non-numeric variable '{}' unwritten", variable.getName());
+                    continue;
+                }
+                log.info("Writing variable '{}'", variable.getName());
+                writeVariable(writer, layout, variable, nanRatio, seed);
+            }
+        }
+    }
+
+    private static void writeVariable(NetcdfFormatWriter writer, DatasetLayout layout, VariableSpec variable,
+            double nanRatio, long seed) throws IOException, InvalidRangeException {
+
+        int[] shape = layout.shapeOf(variable);
+        DataType dataType = variable.getDataType();
+        if (shape.length == 0) {
+            writer.write(variable.getName(), Array.factory(dataType, shape));
+            return;
+        }
+        long elementsPerIndex = 1;
+        for (int d = 1; d < shape.length; d++) {
+            elementsPerIndex *= shape[d];
+        }
+        // The last two dimensions make up a grid cell, usually latitude and longitude
+        int columns = shape.length >= 2 ? shape[shape.length - 1] : 1;
+        int rows = shape.length >= 2 ? shape[shape.length - 2] : 1;
+        long cellsPerStep = shape.length >= 2 ? (long) rows * columns : shape[0];
+        boolean missingCells = dataType.isFloatingPoint() && shape.length >= 2 && nanRatio > 0;
+        long variableSeed = seed * 31 + variable.getName().hashCode();
+        DimensionSpec firstDimension = layout.getDimensions().get(variable.getDimensionNames().get(0));
+
+        int indexesPerSlab = (int) Math.max(1L, Math.min(shape[0],
+                SLAB_BYTES / Math.max(1L, elementsPerIndex * dataType.getSize())));
+        int[] origin = new int[shape.length];
+        int[] slabShape = shape.clone();
+        for (int index = 0; index < shape[0]; index += indexesPerSlab) {
+            origin[0] = index;
+            slabShape[0] = Math.min(indexesPerSlab, shape[0] - index);
+            Array slab = Array.factory(dataType, slabShape);
+            for (int i = 0; i < slab.getSize(); i++) {
+                long element = (long) index * elementsPerIndex + i;
+                if (variable.isCoordinate()) {
+                    slab.setDouble(i, variable.coordinate(firstDimension, (int) element));
+                    continue;
+                }
+                long cell = element % cellsPerStep;
+                if (missingCells && unitHash(variableSeed, cell) < nanRatio) {
+                    slab.setDouble(i, Double.NaN);
+                    continue;
+                }
+                int step = (int) (element / cellsPerStep);
+                int row = (int) (cell / columns) % rows;
+                int column = (int) (cell % columns);
+                double value = 10 * Math.cos(Math.PI * (row + 0.5) / rows - Math.PI / 2) +
+                        2 * Math.sin(2 * Math.PI * column / columns) + Math.sin(2 * Math.PI * step / 12) +
+                        unitHash(variableSeed + 1, element) - 0.5;
+                slab.setDouble(i, dataType.isIntegral() ? Math.round(value) : value);
+            }
+            writer.write(variable.getName(), origin, slab);
+        }
+    }
+
+    private static int[] chunkShapeOf(DatasetLayout layout, VariableSpec variable,
+            Map<String, Integer> chunkLengths) {
+        int[] chunkShape = new int[variable.getDimensionNames().size()];
+        for (int d = 0; d < chunkShape.length; d++) {
+            DimensionSpec dimension = layout.getDimensions().get(variable.getDimensionNames().get(d));
+            int length = chunkLengths.getOrDefault(dimension.getName(),
+                    dimension.isUnlimited() ? 1 : dimension.getLength());
+            chunkShape[d] = Math.max(1, Math.min(length, dimension.getLength()));
+        }
+        return chunkShape;
+    }
+
+    private static DatasetLayout loadLayout(@Nullable String template) throws IOException, InvalidRangeException {
+        String path = template != null ? template : configuredDatasetPath();
+        if (path != null && Files.isRegularFile(Paths.get(path))) {
+            log.info("Copying the layout of {}", path);
+            try (NetcdfFile ncFile = NetcdfFiles.open(path)) {
+                return DatasetLayout.of(ncFile);
+            }
+        }
+        if (template != null) {
+            throw new IllegalArgumentException("Template dataset not found: " + template);
+        }
+        log.info("No template dataset found. Using the Berkeley Earth layout.");
+        return DatasetLayout.berkeleyEarth();
+    }
+
+    /**
+     * The dataset the application is configured with, read from application.properties.
+     */
+    @Nullable
+    private static String configuredDatasetPath() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = SyntheticDatasetGenerator.class.getResourceAsStream(
+                "/application.properties")) {
+            if (inputStream == null) {
+                return null;
+            }
+            properties.load(inputStream);
+        }
+        return properties.getProperty("cdm.dataset.path");
+    }
+
+    /**
+     * A well-mixed value in [0, 1) for each input, so that values and missing cells are reproducible for a seed.
+     */
+    private static double unitHash(long seed, long value) {
+        long z = seed + value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,116 @@
+package com.chrisdjames1.temperatureanalysis.loadtest;
+
+import com.chrisdjames1.temperatureanalysis.loadtest.DatasetLayout.VariableSpec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticDatasetGeneratorTest {
+
+    private static final int TIMES = 24;
+    private static final int LATITUDES = 18;
+    private static final int LONGITUDES = 36;
+    private static final double NAN_RATIO = 0.3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testResizedLayoutKeepsTheCoordinateSpansAndTheMissingCellsOfEveryStep() throws IOException,
+            InvalidRangeException {
+        Path output = generate("dataset.nc", 42L);
+
+        try (NetcdfFile ncFile = NetcdfFiles.open(output.toString())) {
+            DatasetLayout layout = resizedLayout();
+            for (VariableSpec variable : layout.getVariables()) {
+                Variable v = ncFile.findVariable(variable.getName());
+                assertNotNull(variable.getName(), v);
+                assertArrayEquals(variable.getName(), layout.shapeOf(variable), v.getShape());
+            }
+
+            // A resized latitude or longitude spans the template, a resized time keeps its monthly steps
+            Array latitude = ncFile.findVariable("latitude").read();
+            assertEquals(-89.5, latitude.getDouble(0), 1e-4);
+            assertEquals(89.5, latitude.getDouble(LATITUDES - 1), 1e-4);
+            Array longitude = ncFile.findVariable("longitude").read();
+            assertEquals(-179.5, longitude.getDouble(0), 1e-4);
+            assertEquals(179.5, longitude.getDouble(LONGITUDES - 1), 1e-4);
+            Array time = ncFile.findVariable("time").read();
+            assertEquals(1850 + 1.0 / 24, time.getDouble(0), 1e-9);
+            assertEquals(1.0 / 12, time.getDouble(1) - time.getDouble(0), 1e-9);
+            assertEquals((TIMES - 1) / 12.0, time.getDouble(TIMES - 1) - time.getDouble(0), 1e-9);
+
+            // The same cells are missing at every time step, like land or sea in a real anomaly field
+            Array temperature = ncFile.findVariable("temperature").read();
+            int cellsPerStep = LATITUDES * LONGITUDES;
+            int missing = 0;
+            for (int cell = 0; cell < cellsPerStep; cell++) {
+                boolean missingCell = Double.isNaN(temperature.getDouble(cell));
+                if (missingCell) {
+                    missing++;
+                }
+                for (int step = 1; step < TIMES; step++) {
+                    double value = temperature.getDouble(step * cellsPerStep + cell);
+                    assertEquals("cell " + cell + " at step " + step, missingCell, Double.isNaN(value));
+                    if (!missingCell) {
+                        assertTrue("cell " + cell + " at step " + step, value > -20 && value < 20);
+                    }
+                }
+            }
+            assertEquals(NAN_RATIO, (double) missing / cellsPerStep, 0.05);
+
+            // Integer variables have no missing cells
+            Array monthNumber = ncFile.findVariable("month_number").read();
+            assertEquals(1, monthNumber.getInt(0));
+            assertEquals(12, monthNumber.getInt(11));
+        }
+    }
+
+    @Test
+    public void testSameSeedWritesTheSameData() throws IOException, InvalidRangeException {
+        Path first = generate("first.nc", 7L);
+        Path second = generate("second.nc", 7L);
+        Path other = generate("other.nc", 8L);
+
+        try (NetcdfFile firstFile = NetcdfFiles.open(first.toString());
+                NetcdfFile secondFile = NetcdfFiles.open(second.toString());
+                NetcdfFile otherFile = NetcdfFiles.open(other.toString())) {
+            float[] expected = (float[]) firstFile.findVariable("temperature").read().get1DJavaArray(DataType.FLOAT);
+            assertArrayEquals(expected,
+                    (float[]) secondFile.findVariable("temperature").read().get1DJavaArray(DataType.FLOAT), 0f);
+            assertFalse(Arrays.equals(expected,
+                    (float[]) otherFile.findVariable("temperature").read().get1DJavaArray(DataType.FLOAT)));
+        }
+    }
+
+    private Path generate(String fileName, long seed) throws IOException, InvalidRangeException {
+        Path output = temporaryFolder.getRoot().toPath().resolve(fileName);
+        SyntheticDatasetGenerator.generate(resizedLayout(), output, false, NAN_RATIO, Map.of(), 0, seed);
+        return output;
+    }
+
+    private static DatasetLayout resizedLayout() {
+        DatasetLayout layout = DatasetLayout.berkeleyEarth();
+        layout.resize("time", TIMES);
+        layout.resize("latitude", LATITUDES);
+        layout.resize("longitude", LONGITUDES);
+        return layout;
+    }
+}
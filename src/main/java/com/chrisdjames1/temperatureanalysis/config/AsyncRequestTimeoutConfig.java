@@ -0,0 +1,28 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Times out asynchronous requests, which is how every {@code StreamingResponseBody} endpoint runs, a grace period
+ * after the {@link CdmCancellationProperties#getRequestTimeoutMillis() request deadline} rather than after the 30 s
+ * default of the container. A slow request is then cancelled by its own deadline first, and a long one that is within
+ * its deadline is not cut off. {@code spring.mvc.async.request-timeout} is left unset so as not to compete with this.
+ */
+@Configuration
+public class AsyncRequestTimeoutConfig implements WebMvcConfigurer {
+
+    private final CdmCancellationProperties cancellationProperties;
+
+    public AsyncRequestTimeoutConfig(CdmCancellationProperties cancellationProperties) {
+        this.cancellationProperties = cancellationProperties;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        long deadline = cancellationProperties.getRequestTimeoutMillis();
+        // Without a deadline, let asynchronous requests run for as long as they take too
+        configurer.setDefaultTimeout(deadline > 0 ? deadline + cancellationProperties.getAsyncTimeoutGraceMillis() : 0);
+    }
+}
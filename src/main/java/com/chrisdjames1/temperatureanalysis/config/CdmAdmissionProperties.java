@@ -0,0 +1,52 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.admission")
+public class CdmAdmissionProperties {
+
+    /**
+     * Whether section reads and exports are checked against the budgets below before they start.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Estimated heap that all admitted requests may hold at once. Requests beyond it wait for earlier ones to
+     * finish.
+     */
+    private long memoryBudgetBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Largest estimated heap a single request may hold. Larger requests are refused with 413.
+     */
+    private long maxRequestMemoryBytes = 512L * 1024 * 1024;
+
+    /**
+     * Largest estimated response a single request may produce. Larger requests are refused with 413. 0 means no
+     * limit.
+     */
+    private long maxResponseBytes = 4L * 1024 * 1024 * 1024;
+
+    /**
+     * How long a request waits for room in the memory budget before it is refused with 429. The request holds its
+     * servlet thread while it waits, so keep this short.
+     */
+    private long queueTimeoutMillis = 1_000L;
+
+    /**
+     * Decoding throughput assumed when estimating the time a request takes.
+     */
+    private long readBytesPerSecond = 200L * 1024 * 1024;
+
+    /**
+     * Output throughput assumed when estimating the time a request takes.
+     */
+    private long outputBytesPerSecond = 100L * 1024 * 1024;
+
+}
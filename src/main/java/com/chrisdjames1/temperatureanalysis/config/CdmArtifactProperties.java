@@ -0,0 +1,36 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.artifact")
+public class CdmArtifactProperties {
+
+    /**
+     * Directory the generated files are stored in. Relative paths are resolved against the working directory.
+     */
+    private String directory = "artifacts";
+
+    /**
+     * Upper bound, in bytes, on the stored files. The least recently used are deleted beyond this.
+     */
+    private long maxBytes = 1024L * 1024 * 1024;
+
+    /**
+     * How long a stored file is kept for after it was last requested.
+     */
+    private long ttlMinutes = 24L * 60;
+
+    /**
+     * How long a stored file is kept for after it was last requested whatever the TTL and budget, so that a file
+     * that has just been handed out is not deleted before it is downloaded. The store can exceed its budget while
+     * this many seconds have not passed.
+     */
+    private long pinSeconds = 5L * 60;
+
+}
@@ -0,0 +1,25 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.cache")
+public class CdmCacheProperties {
+
+    /**
+     * Upper bound, in bytes, on the decoded section data held by the section cache. 0 disables the cache.
+     */
+    private long sectionMaxBytes = 256L * 1024 * 1024;
+
+    /**
+     * Upper bound, in bytes, on the decompressed chunks of chunked (netCDF-4/HDF5) variables held by the chunk cache.
+     * 0 disables the cache, though sections of chunked variables are still read a whole chunk at a time.
+     */
+    private long chunkMaxBytes = 256L * 1024 * 1024;
+
+}
@@ -0,0 +1,26 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.cancellation")
+public class CdmCancellationProperties {
+
+    /**
+     * How long a request may run, in milliseconds, before its read, reduce and export loops give up on it. Export
+     * jobs have no deadline. 0 disables the deadline.
+     */
+    private long requestTimeoutMillis = 300000;
+
+    /**
+     * How long past the request deadline, in milliseconds, the container waits before timing out a streamed
+     * response, so that the request has time to notice its deadline and give up on its own.
+     */
+    private long asyncTimeoutGraceMillis = 60000;
+
+}
@@ -13,4 +13,14 @@ public class CdmDatasetProperties {
 
     private String path;
 
+    /**
+     * Number of handles on the dataset, each with its own file pointer, that requests can read data through at once.
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How long a request waits for a free handle before giving up.
+     */
+    private long borrowTimeoutMillis = 30_000L;
+
 }
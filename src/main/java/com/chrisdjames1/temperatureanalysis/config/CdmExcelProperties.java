@@ -0,0 +1,24 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.excel")
+public class CdmExcelProperties {
+
+    /**
+     * Number of rows the streaming workbook keeps in memory before flushing older rows to a temporary file.
+     */
+    private int rowAccessWindowSize = 100;
+
+    /**
+     * Whether to gzip the temporary files that hold flushed rows.
+     */
+    private boolean compressTempFiles = true;
+
+}
@@ -0,0 +1,29 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.job")
+public class CdmJobProperties {
+
+    /**
+     * Number of export jobs that run at once.
+     */
+    private int workers = 2;
+
+    /**
+     * Number of export jobs that can wait for a worker. Submissions beyond this are rejected.
+     */
+    private int queueCapacity = 20;
+
+    /**
+     * How long a finished job is kept for. Its result is kept by the artifact store.
+     */
+    private long retentionMinutes = 60L;
+
+}
@@ -0,0 +1,25 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.metrics")
+public class CdmMetricsProperties {
+
+    /**
+     * Requests that take longer than this, in milliseconds, are logged with their section-spec, phase timings and
+     * allocation to the "ncfa.slow-query" logger. 0 or less disables the log.
+     */
+    private long slowQueryThresholdMillis = 1000;
+
+    /**
+     * Whether responses carry a Server-Timing header breaking down the time spent in each phase of the request.
+     */
+    private boolean serverTiming = true;
+
+}
@@ -0,0 +1,40 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.pyramid")
+public class CdmPyramidProperties {
+
+    /**
+     * Whether to build pyramids in the background. Building reads every listed variable in full and writes its
+     * levels to disk, which is heavy on a large dataset, so it is off unless enabled. Without pyramids, coarse levels
+     * are block-averaged from the data on each read.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Variables to build pyramids for. Empty builds them for every numeric variable with at least two dimensions.
+     */
+    private List<String> variables = new ArrayList<>();
+
+    /**
+     * The coarse levels, each given as the number of grid cells along each side of a block, e.g. 5 for 5° blocks of
+     * a 1° grid. Level 1 is always the data itself.
+     */
+    private List<Integer> levels = new ArrayList<>(List.of(2, 5, 10));
+
+    /**
+     * Directory to keep the pyramid sidecar files in. Defaults to the directory of the dataset.
+     */
+    private String directory;
+
+}
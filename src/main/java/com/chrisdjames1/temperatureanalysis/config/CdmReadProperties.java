@@ -0,0 +1,19 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.read")
+public class CdmReadProperties {
+
+    /**
+     * Upper bound, in bytes, on each sub-section read when a section is streamed in chunks.
+     */
+    private long chunkSizeBytes = 16L * 1024 * 1024;
+
+}
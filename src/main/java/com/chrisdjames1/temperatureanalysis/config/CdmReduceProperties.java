@@ -0,0 +1,32 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.reduce")
+public class CdmReduceProperties {
+
+    /**
+     * Number of threads used to reduce the chunks of a section. 1 reduces them sequentially on the request thread.
+     */
+    private int parallelism = 1;
+
+    /**
+     * How floating point totals are accumulated.
+     */
+    private Summation summation = Summation.NAIVE;
+
+    /**
+     * How long the first of a batch of reductions of a variable waits for others to share its scan of the data, in
+     * milliseconds. Every reduction that opens a batch waits this long, even when no other arrives, so shared scans
+     * are only worth enabling under concurrent load. 0 disables shared scans.
+     */
+    private long sharedScanWindowMillis = 0;
+
+}
@@ -0,0 +1,34 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import com.chrisdjames1.temperatureanalysis.model.value.ResidentMode;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.resident")
+public class CdmResidentProperties {
+
+    /**
+     * Float or double variables to decode once at startup and keep resident outside the heap. Every read of a
+     * resident variable is then served from memory. Empty disables resident variables.
+     */
+    private List<String> variables = new ArrayList<>();
+
+    /**
+     * Where resident variables are kept.
+     */
+    private ResidentMode mode = ResidentMode.DIRECT;
+
+    /**
+     * Directory for the scratch files of {@link ResidentMode#MAPPED} variables. Defaults to the temporary directory.
+     */
+    private String directory;
+
+}
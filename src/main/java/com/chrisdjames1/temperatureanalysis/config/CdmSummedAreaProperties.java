@@ -0,0 +1,27 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.summed-area")
+public class CdmSummedAreaProperties {
+
+    /**
+     * Variables to build summed-area tables for, over their last two dimensions. Empty disables the tables.
+     */
+    private List<String> variables = new ArrayList<>();
+
+    /**
+     * Directory to keep the summed-area table sidecar files in. Defaults to the directory of the dataset.
+     */
+    private String directory;
+
+}
@@ -0,0 +1,34 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "cdm.transposed")
+public class CdmTransposedProperties {
+
+    /**
+     * Float or double variables to keep a time-major transposed copy of, for time-series reads of single cells or
+     * small boxes. Empty disables the transposed stores.
+     */
+    private List<String> variables = new ArrayList<>();
+
+    /**
+     * Largest number of cells over the last two dimensions that a read may cover to be served from a transposed
+     * store.
+     */
+    private int maxCells = 64;
+
+    /**
+     * Directory to keep the transposed sidecar files in. Defaults to the directory of the dataset.
+     */
+    private String directory;
+
+}
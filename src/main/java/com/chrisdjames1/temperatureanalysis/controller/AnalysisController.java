@@ -1,19 +1,47 @@
 package com.chrisdjames1.temperatureanalysis.controller;
 
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import com.chrisdjames1.temperatureanalysis.model.CancellationStats;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import com.chrisdjames1.temperatureanalysis.model.CostEstimate;
+import com.chrisdjames1.temperatureanalysis.model.GroupByResult;
+import com.chrisdjames1.temperatureanalysis.model.PoolStats;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmGroup;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
+import com.chrisdjames1.temperatureanalysis.model.value.OutputFormat;
 import com.chrisdjames1.temperatureanalysis.service.AnalysisService;
+import com.chrisdjames1.temperatureanalysis.service.admission.AdmissionPermit;
+import com.chrisdjames1.temperatureanalysis.service.binary.BinaryArrayWriter;
 import lombok.AllArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.util.List;
 
 @AllArgsConstructor
 @RestController
 public class AnalysisController {
 
+    private static final MediaType XLSX =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
     private AnalysisService analysisService;
+    private ServerTimingAdvice serverTimingAdvice;
 
     @GetMapping(path = "read/root/raw")
     public ResponseEntity<String> readRootGroupRaw() {
@@ -25,31 +53,246 @@ public class AnalysisController {
         return new ResponseEntity<>(analysisService.readRootGroupSchema(), HttpStatus.OK);
     }
 
+    @GetMapping(path = "cache/section/stats")
+    public ResponseEntity<CacheStats> readSectionCacheStats() {
+        return new ResponseEntity<>(analysisService.readSectionCacheStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "cache/chunk/stats")
+    public ResponseEntity<CacheStats> readChunkCacheStats() {
+        return new ResponseEntity<>(analysisService.readChunkCacheStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "cache/artifact/stats")
+    public ResponseEntity<CacheStats> readArtifactStoreStats() {
+        return new ResponseEntity<>(analysisService.readArtifactStoreStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "coalescing/stats")
+    public ResponseEntity<List<CoalescingStats>> readCoalescingStats() {
+        return new ResponseEntity<>(analysisService.readCoalescingStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "pool/stats")
+    public ResponseEntity<PoolStats> readPoolStats() {
+        return new ResponseEntity<>(analysisService.readPoolStats(), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "cancellation/stats")
+    public ResponseEntity<CancellationStats> readCancellationStats() {
+        return new ResponseEntity<>(analysisService.readCancellationStats(), HttpStatus.OK);
+    }
+
+    /**
+     * Predicts the bytes read and returned, the peak memory and the time of returning the section in {@code format}
+     * (json, binary or xlsx), and whether it would be admitted now, queued or refused, without reading any data.
+     */
+    @GetMapping(path = "estimate")
+    public ResponseEntity<CostEstimate> estimate(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "format", defaultValue = "json") String format,
+            @RequestParam(name = "level", required = false) Integer level,
+            @RequestParam(name = "dtype", required = false) String dtype) {
+
+        OutputFormat outputFormat = OutputFormat.fromValue(format);
+        BinaryDtype binaryDtype = outputFormat != OutputFormat.BINARY ? null : dtype != null ?
+                BinaryDtype.fromValue(dtype) : level != null && level != 1 ? BinaryDtype.FLOAT32 :
+                analysisService.readNativeBinaryDtype(variable);
+        return new ResponseEntity<>(analysisService.estimate(variable, sectionSpec, outputFormat, level, binaryDtype),
+                HttpStatus.OK);
+    }
+
+    /**
+     * Streams the section as nested JSON arrays, with NaN written as null. With a {@code level} above 1, the last two
+     * ranges of the section-spec select blocks of that many grid cells a side, and each value is the mean of a block.
+     */
     @GetMapping(path = "read/variable/string")
-    public ResponseEntity<String> readVariableToString(@RequestParam(name = "variable") String variable,
-            @RequestParam(name = "section-spec") String sectionSpec) {
+    public ResponseEntity<StreamingResponseBody> readVariableToString(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "precision", required = false) Integer precision,
+            @RequestParam(name = "level", required = false) Integer level) {
 
-        return new ResponseEntity<>(analysisService.readVariableToString(variable, sectionSpec), HttpStatus.OK);
+        // Validate before the response is committed so that a bad request still gets an error status
+        analysisService.validateVariableToJson(variable, sectionSpec, precision, level);
+        AdmissionPermit permit = analysisService.admit(variable, sectionSpec, OutputFormat.JSON, level, null);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(serverTimingAdvice.stream(
+                outputStream -> {
+                    try (permit) {
+                        analysisService.writeVariableToJson(variable, sectionSpec, precision, level, outputStream);
+                    }
+                }));
     }
 
+    /**
+     * Streams the section as little-endian floats in row-major order, either as a NumPy .npy file or raw. The shape
+     * and dtype are given in the X-Array-Shape and X-Array-Dtype headers for both formats. The dtype defaults to
+     * float64 for variables whose values do not all fit in a float32, and to float32 for coarse levels, which are
+     * stored as floats. Levels are selected as for {@code read/variable/string}.
+     */
+    @GetMapping(path = "read/variable/binary")
+    public ResponseEntity<StreamingResponseBody> readVariableToBinary(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "level", required = false) Integer level,
+            @RequestParam(name = "format", defaultValue = "npy") String format,
+            @RequestParam(name = "dtype", required = false) String dtype) {
+
+        BinaryFormat binaryFormat = BinaryFormat.fromValue(format);
+        BinaryDtype binaryDtype = dtype != null ? BinaryDtype.fromValue(dtype) :
+                level != null && level != 1 ? BinaryDtype.FLOAT32 : analysisService.readNativeBinaryDtype(variable);
+        int[] shape = analysisService.readSectionShape(variable, sectionSpec, level);
+        AdmissionPermit permit = analysisService.admit(variable, sectionSpec, OutputFormat.BINARY, level,
+                binaryDtype);
+        return binaryResponse(shape, binaryFormat, binaryDtype, variable).body(serverTimingAdvice.stream(
+                outputStream -> {
+                    try (permit) {
+                        analysisService.writeVariableToBinary(variable, sectionSpec, level, binaryFormat,
+                                binaryDtype, outputStream);
+                    }
+                }, true));
+    }
+
+    /**
+     * Generates the workbook into the artifact store, unless it is already there, and returns the stored artifact.
+     * The workbook is then downloaded from {@code artifacts/{key}}. Only a workbook that has to be generated is
+     * admitted against the memory budget.
+     */
     @GetMapping(path = "read/variable/xlsx")
-    public ResponseEntity<String> readVariable2dToXlsx(@RequestParam(name = "variable") String variable,
+    public ResponseEntity<Artifact> readVariable2dToXlsx(@RequestParam(name = "variable") String variable,
             @RequestParam(name = "section-spec") String sectionSpec,
-            @RequestParam(name = "column-index-for-1d", required = false) Integer columnIndexFor1D,
-            @RequestParam(name = "file-name", required = false) String fileName) {
+            @RequestParam(name = "column-index-for-1d", required = false) Integer columnIndexFor1D) {
 
-        return new ResponseEntity<>(analysisService.readVariable2dToExcel(variable, sectionSpec, columnIndexFor1D,
-                fileName), HttpStatus.OK);
+        return new ResponseEntity<>(analysisService.readVariable2dToExcel(variable, sectionSpec, columnIndexFor1D),
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the same workbook as {@code read/variable/xlsx} in the response without storing it. The workbook is only
+     * written to the response once it is complete, so this saves a copy in the artifact store rather than any time to
+     * the first byte.
+     */
+    @GetMapping(path = "read/variable/xlsx/stream")
+    public ResponseEntity<StreamingResponseBody> streamVariable2dToXlsx(
+            @RequestParam(name = "variable") String variable, @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "column-index-for-1d", required = false) Integer columnIndexFor1D) {
+
+        AdmissionPermit permit = analysisService.admit(variable, sectionSpec, OutputFormat.XLSX, null, null);
+        return xlsxResponse(variable).body(serverTimingAdvice.stream(outputStream -> {
+            try (permit) {
+                analysisService.writeVariable2dToExcel(variable, sectionSpec, columnIndexFor1D, outputStream);
+            }
+        }));
     }
 
     @GetMapping(path = "average/variable/xlsx")
-    public ResponseEntity<String> averageVariableToXlsx(@RequestParam(name = "variable") String variable,
+    public ResponseEntity<Artifact> averageVariableToXlsx(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "average-on-index", required = false) Integer averageOnIndex) {
+
+        return new ResponseEntity<>(analysisService.averageVariableToExcel(variable, sectionSpec, averageOnIndex),
+                HttpStatus.OK);
+    }
+
+    @GetMapping(path = "average/variable/xlsx/stream")
+    public ResponseEntity<StreamingResponseBody> streamAverageVariableToXlsx(
+            @RequestParam(name = "variable") String variable, @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "average-on-index", required = false) Integer averageOnIndex) {
+
+        AdmissionPermit permit = analysisService.admitAverage(variable, sectionSpec, averageOnIndex);
+        return xlsxResponse(variable + "_avg").body(serverTimingAdvice.stream(outputStream -> {
+            try (permit) {
+                analysisService.writeAverageVariableToExcel(variable, sectionSpec, averageOnIndex, outputStream);
+            }
+        }));
+    }
+
+    @GetMapping(path = "average/variable/group-by/json")
+    public ResponseEntity<GroupByResult> averageVariableGroupByToJson(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "keep-dimensions", required = false) List<Integer> keepDimensions) {
+
+        return new ResponseEntity<>(analysisService.averageVariableGroupBy(variable, sectionSpec,
+                keepDimensions != null ? keepDimensions : List.of(), OutputFormat.JSON, null), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "average/variable/group-by/xlsx")
+    public ResponseEntity<Artifact> averageVariableGroupByToXlsx(@RequestParam(name = "variable") String variable,
             @RequestParam(name = "section-spec") String sectionSpec,
-            @RequestParam(name = "average-on-index", required = false) Integer averageOnIndex,
-            @RequestParam(name = "file-name", required = false) String fileName) {
+            @RequestParam(name = "keep-dimensions", required = false) List<Integer> keepDimensions) {
+
+        return new ResponseEntity<>(analysisService.averageVariableGroupByToExcel(variable, sectionSpec,
+                keepDimensions != null ? keepDimensions : List.of()), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "average/variable/group-by/xlsx/stream")
+    public ResponseEntity<StreamingResponseBody> streamAverageVariableGroupByToXlsx(
+            @RequestParam(name = "variable") String variable, @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "keep-dimensions", required = false) List<Integer> keepDimensions) {
+
+        List<Integer> keep = keepDimensions != null ? keepDimensions : List.of();
+        AdmissionPermit permit = analysisService.admitGroupBy(variable, sectionSpec, keep, OutputFormat.XLSX, null);
+        return xlsxResponse(variable + "_avg").body(serverTimingAdvice.stream(outputStream -> {
+            try (permit) {
+                analysisService.writeAverageVariableGroupByToExcel(variable, sectionSpec, keep, outputStream);
+            }
+        }));
+    }
+
+    /**
+     * Downloads a stored artifact. Its content never changes, so the key serves as a strong ETag. Spring answers a
+     * matching If-None-Match with 304 and a Range request with 206 for a {@link Resource} body.
+     */
+    @GetMapping(path = "artifacts/{key}")
+    public ResponseEntity<Resource> downloadArtifact(@PathVariable(name = "key") String key) {
+        Artifact artifact = analysisService.readArtifact(key);
+        return ResponseEntity.ok()
+                .contentType(MediaTypeFactory.getMediaType(artifact.getFileName())
+                        .orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .eTag("\"" + artifact.getKey() + "\"")
+                .lastModified(artifact.getCreatedAt())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(artifact.getFileName()).build().toString())
+                .body(new FileSystemResource(artifact.getPath()));
+    }
+
+    /**
+     * Returns the grouped averages as little-endian floats in row-major order, in the same formats as
+     * {@code read/variable/binary}. NaN means no valid values were found for that group.
+     */
+    @GetMapping(path = "average/variable/group-by/binary")
+    public ResponseEntity<StreamingResponseBody> averageVariableGroupByToBinary(
+            @RequestParam(name = "variable") String variable, @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "keep-dimensions", required = false) List<Integer> keepDimensions,
+            @RequestParam(name = "format", defaultValue = "npy") String format,
+            @RequestParam(name = "dtype", defaultValue = "float64") String dtype) {
+
+        BinaryFormat binaryFormat = BinaryFormat.fromValue(format);
+        BinaryDtype binaryDtype = BinaryDtype.fromValue(dtype);
+        GroupByResult result = analysisService.averageVariableGroupBy(variable, sectionSpec,
+                keepDimensions != null ? keepDimensions : List.of(), OutputFormat.BINARY, binaryDtype);
+        int[] shape = result.getShape();
+        Array averages = Array.factory(DataType.DOUBLE, shape, result.toAverageArray());
+        return binaryResponse(shape, binaryFormat, binaryDtype, variable + "_avg").body(serverTimingAdvice.stream(
+                outputStream -> {
+                    BinaryArrayWriter binaryArrayWriter = BinaryArrayWriter.builder().outputStream(outputStream)
+                            .shape(shape).dtype(binaryDtype).format(binaryFormat).build();
+                    binaryArrayWriter.write(averages);
+                    binaryArrayWriter.finish();
+                }, true));
+    }
+
+    private static ResponseEntity.BodyBuilder xlsxResponse(String fileBaseName) {
+        return ResponseEntity.ok().contentType(XLSX).header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileBaseName + ".xlsx").build().toString());
+    }
 
-        return new ResponseEntity<>(
-                analysisService.averageVariableToExcel(variable, sectionSpec, averageOnIndex, fileName), HttpStatus.OK);
+    private static ResponseEntity.BodyBuilder binaryResponse(int[] shape, BinaryFormat format, BinaryDtype dtype,
+            String fileBaseName) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(BinaryArrayWriter.contentLength(shape, dtype, format))
+                .header("X-Array-Shape", BinaryArrayWriter.formatShape(shape))
+                .header("X-Array-Dtype", dtype.getValue())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileBaseName + "." + format.getFileExtension()).build().toString());
     }
 
 }
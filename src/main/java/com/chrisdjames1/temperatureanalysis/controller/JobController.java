@@ -0,0 +1,89 @@
+package com.chrisdjames1.temperatureanalysis.controller;
+
+import com.chrisdjames1.temperatureanalysis.model.ExportJob;
+import com.chrisdjames1.temperatureanalysis.model.value.JobStatus;
+import com.chrisdjames1.temperatureanalysis.service.AnalysisService;
+import com.chrisdjames1.temperatureanalysis.service.job.ExportJobService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * Runs the XLSX exports as background jobs. Submitting an export returns the job straight away, which can then be
+ * polled or subscribed to for progress, and its result downloaded from the artifact store once it has succeeded.
+ */
+@AllArgsConstructor
+@RestController
+public class JobController {
+
+    private AnalysisService analysisService;
+    private ExportJobService exportJobService;
+
+    @PostMapping(path = "jobs/read/variable/xlsx")
+    public ResponseEntity<ExportJob> submitReadVariable2dToXlsx(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "column-index-for-1d", required = false) Integer columnIndexFor1D) {
+
+        analysisService.readSectionShape(variable, sectionSpec);
+        return new ResponseEntity<>(exportJobService.submit("read/variable/xlsx", listener ->
+                analysisService.readVariable2dToExcel(variable, sectionSpec, columnIndexFor1D, listener)),
+                HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping(path = "jobs/average/variable/xlsx")
+    public ResponseEntity<ExportJob> submitAverageVariableToXlsx(@RequestParam(name = "variable") String variable,
+            @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "average-on-index", required = false) Integer averageOnIndex) {
+
+        analysisService.readSectionShape(variable, sectionSpec);
+        return new ResponseEntity<>(exportJobService.submit("average/variable/xlsx", listener ->
+                analysisService.averageVariableToExcel(variable, sectionSpec, averageOnIndex, listener)),
+                HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping(path = "jobs/average/variable/group-by/xlsx")
+    public ResponseEntity<ExportJob> submitAverageVariableGroupByToXlsx(
+            @RequestParam(name = "variable") String variable, @RequestParam(name = "section-spec") String sectionSpec,
+            @RequestParam(name = "keep-dimensions", required = false) List<Integer> keepDimensions) {
+
+        analysisService.readSectionShape(variable, sectionSpec);
+        List<Integer> keep = keepDimensions != null ? keepDimensions : List.of();
+        return new ResponseEntity<>(exportJobService.submit("average/variable/group-by/xlsx", listener ->
+                analysisService.averageVariableGroupByToExcel(variable, sectionSpec, keep, listener)),
+                HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping(path = "jobs/{id}")
+    public ResponseEntity<ExportJob> getJob(@PathVariable(name = "id") String id) {
+        return new ResponseEntity<>(exportJobService.getJob(id), HttpStatus.OK);
+    }
+
+    @GetMapping(path = "jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToJob(@PathVariable(name = "id") String id) {
+        return exportJobService.subscribe(id);
+    }
+
+    /**
+     * Redirects to the download of the stored result, or answers 409 if the job has not succeeded.
+     */
+    @GetMapping(path = "jobs/{id}/download")
+    public ResponseEntity<Void> downloadJobResult(@PathVariable(name = "id") String id) {
+        ExportJob job = exportJobService.getJob(id);
+        if (job.getStatus() != JobStatus.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.status(HttpStatus.SEE_OTHER).location(ServletUriComponentsBuilder
+                .fromCurrentContextPath().path("/artifacts/{key}").buildAndExpand(job.getArtifactKey()).toUri())
+                .build();
+    }
+}
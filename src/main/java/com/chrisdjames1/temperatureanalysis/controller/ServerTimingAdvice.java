@@ -0,0 +1,116 @@
+package com.chrisdjames1.temperatureanalysis.controller;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmMetricsProperties;
+import com.chrisdjames1.temperatureanalysis.service.metrics.RequestScope;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Adds a Server-Timing header with the phase timings of the request's {@link RequestScope} to the responses of the
+ * {@link AnalysisController}. A streamed response is committed before the work it streams is done, so its timings
+ * are sent as a trailer instead, which only a chunked response can carry. A streamed response whose work was all done
+ * beforehand, such as the binary group-by, still gets the header.
+ */
+@ControllerAdvice(assignableTypes = AnalysisController.class)
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private final CdmMetricsProperties metricsProperties;
+
+    public ServerTimingAdvice(CdmMetricsProperties metricsProperties) {
+        this.metricsProperties = metricsProperties;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return metricsProperties.isServerTiming();
+    }
+
+    @Override
+    public Object beforeBodyWrite(@Nullable Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+            ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest) {
+            RequestScope scope = completedScope(((ServletServerHttpRequest) request).getServletRequest());
+            if (scope != null) {
+                response.getHeaders().set(SERVER_TIMING, scope.toServerTiming());
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Wraps the body of a streamed response so that the timings of the work it does reach the client. Must be called
+     * on the request thread.
+     */
+    public StreamingResponseBody stream(StreamingResponseBody body) {
+        return stream(body, false);
+    }
+
+    /**
+     * As {@link #stream(StreamingResponseBody)}, for a response that may have a Content-Length. A response of fixed
+     * length is not chunked and so cannot carry a trailer, so its timings are only sent if the work was all done
+     * beforehand, and are otherwise left to the slow-query log.
+     */
+    public StreamingResponseBody stream(StreamingResponseBody body, boolean fixedLength) {
+        if (!metricsProperties.isServerTiming()) {
+            return body;
+        }
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder
+                .currentRequestAttributes();
+        HttpServletRequest request = attributes.getRequest();
+        HttpServletResponse response = attributes.getResponse();
+        if (response == null) {
+            return body;
+        }
+        RequestScope completed = completedScope(request);
+        if (completed != null) {
+            response.setHeader(SERVER_TIMING, completed.toServerTiming());
+            return body;
+        }
+        if (fixedLength) {
+            return body;
+        }
+        try {
+            response.setTrailerFields(() -> {
+                RequestScope scope = completedScope(request);
+                return scope != null ? Map.of(SERVER_TIMING, scope.toServerTiming()) : Map.of();
+            });
+            response.setHeader("Trailer", SERVER_TIMING);
+        } catch (IllegalStateException e) {
+            // The protocol has no trailers, e.g. HTTP/1.0
+            return body;
+        }
+        return outputStream -> {
+            // The body runs on another thread, after the request attributes of the request thread are spent, so the
+            // scope is handed back through fresh ones
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        };
+    }
+
+    @Nullable
+    private static RequestScope completedScope(HttpServletRequest request) {
+        Object scope = request.getAttribute(RequestScope.REQUEST_ATTRIBUTE);
+        return scope instanceof RequestScope ? (RequestScope) scope : null;
+    }
+}
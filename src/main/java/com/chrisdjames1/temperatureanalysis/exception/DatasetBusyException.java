@@ -0,0 +1,26 @@
+package com.chrisdjames1.temperatureanalysis.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when a request has waited too long for a free handle on the dataset. The response tells the client when to
+ * try again through a Retry-After header.
+ */
+public class DatasetBusyException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public DatasetBusyException(String message, long retryAfterSeconds) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -0,0 +1,12 @@
+package com.chrisdjames1.temperatureanalysis.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class JobNotFoundException extends RuntimeException {
+
+    public JobNotFoundException(String jobId) {
+        super("No export job with id " + jobId);
+    }
+}
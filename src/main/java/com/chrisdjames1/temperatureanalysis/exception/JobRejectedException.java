@@ -0,0 +1,15 @@
+package com.chrisdjames1.temperatureanalysis.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the export job queue is full.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class JobRejectedException extends RuntimeException {
+
+    public JobRejectedException(String message) {
+        super(message);
+    }
+}
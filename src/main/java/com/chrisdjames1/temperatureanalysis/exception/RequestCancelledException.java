@@ -0,0 +1,16 @@
+package com.chrisdjames1.temperatureanalysis.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown from the read, reduce and export loops of a request that has been cancelled, because it ran past its
+ * deadline or because its thread was interrupted when the client went away.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class RequestCancelledException extends RuntimeException {
+
+    public RequestCancelledException(String message) {
+        super(message);
+    }
+}
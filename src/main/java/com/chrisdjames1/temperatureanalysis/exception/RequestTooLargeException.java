@@ -0,0 +1,16 @@
+package com.chrisdjames1.temperatureanalysis.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a request is estimated to need more memory, or to produce a larger response, than a single request is
+ * allowed.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class RequestTooLargeException extends RuntimeException {
+
+    public RequestTooLargeException(String message) {
+        super(message);
+    }
+}
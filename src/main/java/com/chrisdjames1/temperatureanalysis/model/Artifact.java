@@ -0,0 +1,41 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A generated file held by the artifact store. The key is a hash of everything the content depends on, so an
+ * artifact never changes once it has been stored.
+ */
+@Getter
+public class Artifact {
+
+    private final String key;
+
+    private final String fileName;
+
+    private final long sizeBytes;
+
+    private final Instant createdAt;
+
+    private volatile Instant lastAccessedAt;
+
+    @JsonIgnore
+    private final Path path;
+
+    public Artifact(String key, Path path, long sizeBytes, Instant createdAt, Instant lastAccessedAt) {
+        this.key = key;
+        this.fileName = path.getFileName().toString();
+        this.path = path;
+        this.sizeBytes = sizeBytes;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    public void touch() {
+        lastAccessedAt = Instant.now();
+    }
+}
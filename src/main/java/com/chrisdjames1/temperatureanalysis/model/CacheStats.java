@@ -0,0 +1,28 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A snapshot of the counters of a weighted cache.
+ */
+@Getter
+@AllArgsConstructor
+public class CacheStats {
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final int entries;
+
+    /**
+     * Total weight of the entries currently held, in bytes.
+     */
+    private final long weightBytes;
+
+    private final long maxWeightBytes;
+
+}
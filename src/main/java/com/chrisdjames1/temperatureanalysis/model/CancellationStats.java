@@ -0,0 +1,17 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Counts of the requests cancelled since startup, by reason.
+ */
+@Getter
+@AllArgsConstructor
+public class CancellationStats {
+
+    private final long deadline;
+
+    private final long interrupted;
+
+}
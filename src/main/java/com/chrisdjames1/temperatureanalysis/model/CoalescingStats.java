@@ -0,0 +1,27 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A snapshot of the counters of a group of coalesced calls.
+ */
+@Getter
+@AllArgsConstructor
+public class CoalescingStats {
+
+    private final String name;
+
+    /**
+     * Calls that did the work themselves.
+     */
+    private final long led;
+
+    /**
+     * Calls that arrived while an identical call was in flight and shared its result.
+     */
+    private final long joined;
+
+    private final int inFlight;
+
+}
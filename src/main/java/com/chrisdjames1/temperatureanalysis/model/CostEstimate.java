@@ -0,0 +1,69 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import com.chrisdjames1.temperatureanalysis.model.value.AdmissionDecision;
+import com.chrisdjames1.temperatureanalysis.model.value.OutputFormat;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The predicted cost of returning a section, worked out from the variable shape and the section-spec without reading
+ * any data.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class CostEstimate {
+
+    private final String variable;
+
+    private final String sectionSpec;
+
+    private final OutputFormat format;
+
+    /**
+     * Block size of the coarse level read, or 1 for the data itself.
+     */
+    private final int level;
+
+    /**
+     * Shape of the returned section.
+     */
+    private final int[] shape;
+
+    /**
+     * Number of values returned.
+     */
+    private final long elementCount;
+
+    /**
+     * Size in bytes of one value of the variable.
+     */
+    private final int elementSize;
+
+    /**
+     * Decoded bytes read from the dataset.
+     */
+    private final long readBytes;
+
+    /**
+     * Bytes written to the response.
+     */
+    private final long outputBytes;
+
+    /**
+     * Peak heap held for the request at any one time.
+     */
+    private final long memoryBytes;
+
+    private final long estimatedMillis;
+
+    /**
+     * Whether the section is read in bounded chunks rather than all at once.
+     */
+    private final boolean streamed;
+
+    /**
+     * What admission control would do with the request at the time of the estimate.
+     */
+    private final AdmissionDecision decision;
+
+}
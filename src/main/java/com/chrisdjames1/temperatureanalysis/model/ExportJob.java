@@ -0,0 +1,68 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import com.chrisdjames1.temperatureanalysis.model.value.JobStatus;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * The state of an asynchronous export. Updated by the worker running it and read by any request thread.
+ */
+@Getter
+public class ExportJob {
+
+    private final String id;
+
+    /**
+     * What is being exported, e.g. "read/variable/xlsx".
+     */
+    private final String type;
+
+    private final Instant submittedAt;
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+
+    /**
+     * How much of the export is done, from 0 to 1.
+     */
+    private volatile double progress;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile String error;
+
+    /**
+     * Key of the stored result, once the job has succeeded.
+     */
+    private volatile String artifactKey;
+
+    public ExportJob(String id, String type) {
+        this.id = id;
+        this.type = type;
+        this.submittedAt = Instant.now();
+    }
+
+    public void markRunning() {
+        startedAt = Instant.now();
+        status = JobStatus.RUNNING;
+    }
+
+    public synchronized void updateProgress(double progress) {
+        this.progress = Math.min(1.0, Math.max(this.progress, progress));
+    }
+
+    public void markSucceeded(String artifactKey) {
+        this.artifactKey = artifactKey;
+        this.progress = 1.0;
+        finishedAt = Instant.now();
+        status = JobStatus.SUCCEEDED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = JobStatus.FAILED;
+    }
+}
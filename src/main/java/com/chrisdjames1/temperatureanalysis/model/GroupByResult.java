@@ -0,0 +1,61 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Averages of a section grouped by a subset of its dimensions. The averages are held in row-major order of
+ * {@link #shape}, with one entry in {@link #dimensions}, {@link #coordinates} and {@link #shape} per kept dimension.
+ */
+@Getter
+@Builder
+public class GroupByResult {
+
+    private final String variable;
+
+    private final String sectionSpec;
+
+    /**
+     * Names of the kept dimensions.
+     */
+    private final List<String> dimensions;
+
+    /**
+     * Variable indexes of each kept dimension that the averages are grouped by.
+     */
+    private final List<List<Integer>> coordinates;
+
+    private final int[] shape;
+
+    @Getter(AccessLevel.NONE)
+    private final double[] averages;
+
+    /**
+     * Number of valid (non-NaN) values behind each average.
+     */
+    private final long[] counts;
+
+    /**
+     * The averages in row-major order of {@link #shape}. NaN means no valid values were found.
+     */
+    public double[] toAverageArray() {
+        return averages;
+    }
+
+    /**
+     * The averages with NaN, meaning no valid values were found, written as null.
+     */
+    @JsonProperty("averages")
+    public List<Double> getJsonAverages() {
+        List<Double> jsonAverages = new ArrayList<>(averages.length);
+        for (double average : averages) {
+            jsonAverages.add(Double.isNaN(average) ? null : average);
+        }
+        return jsonAverages;
+    }
+}
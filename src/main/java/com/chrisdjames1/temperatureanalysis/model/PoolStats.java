@@ -0,0 +1,28 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A snapshot of the counters of the dataset handle pool.
+ */
+@Getter
+@AllArgsConstructor
+public class PoolStats {
+
+    private final int size;
+
+    private final int available;
+
+    private final long borrows;
+
+    /**
+     * Borrows that gave up after waiting for the borrow timeout.
+     */
+    private final long timeouts;
+
+    private final double averageWaitMillis;
+
+    private final double maxWaitMillis;
+
+}
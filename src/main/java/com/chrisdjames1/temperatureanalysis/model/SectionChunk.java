@@ -0,0 +1,20 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ucar.ma2.Array;
+
+/**
+ * The data read for one {@link SubSection} of a section-spec, along with where it sits in the full section.
+ */
+@Getter
+@AllArgsConstructor
+public class SectionChunk {
+
+    private final Array data;
+
+    private final int[] offset;
+
+    private final int[] sectionShape;
+
+}
@@ -0,0 +1,19 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ucar.ma2.Section;
+
+/**
+ * A bounded piece of a larger section. {@link #section} holds the variable indexes to read and {@link #offset} holds
+ * the position of the piece within the parent section, in units of the parent section's elements.
+ */
+@Getter
+@AllArgsConstructor
+public class SubSection {
+
+    private final Section section;
+
+    private final int[] offset;
+
+}
@@ -1,5 +1,6 @@
 package com.chrisdjames1.temperatureanalysis.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -7,20 +8,24 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
+@AllArgsConstructor
 public class TotalCounter {
     private double total;
     private long count;
-    public void add(Double value) {
+    public void add(double value) {
         if (!Double.isNaN(value)) {
             total += value;
             count++;
         }
     }
-    public void add(Float value) {
-        if (!Float.isNaN(value)) {
-            total += value;
-            count++;
-        }
+
+    public void add(double total, long count) {
+        this.total += total;
+        this.count += count;
+    }
+
+    public void add(TotalCounter other) {
+        add(other.total, other.count);
     }
 
     public double average() {
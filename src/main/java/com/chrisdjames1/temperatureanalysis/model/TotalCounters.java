@@ -0,0 +1,69 @@
+package com.chrisdjames1.temperatureanalysis.model;
+
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import lombok.Getter;
+
+/**
+ * A flat array of {@link TotalCounter}s, one per bucket. Partial results from independent chunks of a reduction can be
+ * combined with {@link #merge(TotalCounters)}.
+ */
+@Getter
+public class TotalCounters {
+
+    private final Summation summation;
+    private final double[] totals;
+    private final long[] counts;
+    // Running compensation for the low-order bits lost from totals. Only allocated for Kahan summation.
+    private final double[] compensations;
+
+    public TotalCounters(int size, Summation summation) {
+        this.summation = summation;
+        this.totals = new double[size];
+        this.counts = new long[size];
+        this.compensations = summation == Summation.KAHAN ? new double[size] : null;
+    }
+
+    public int size() {
+        return totals.length;
+    }
+
+    public void add(int bucket, double total, long count) {
+        add(bucket, total, 0.0, count);
+    }
+
+    public void add(int bucket, double total, double compensation, long count) {
+        if (compensations == null) {
+            totals[bucket] += total + compensation;
+        } else {
+            double sum = totals[bucket];
+            double t = sum + total;
+            if (Math.abs(sum) >= Math.abs(total)) {
+                compensations[bucket] += (sum - t) + total;
+            } else {
+                compensations[bucket] += (total - t) + sum;
+            }
+            compensations[bucket] += compensation;
+            totals[bucket] = t;
+        }
+        counts[bucket] += count;
+    }
+
+    public void merge(TotalCounters other) {
+        if (other.size() != size()) {
+            throw new IllegalArgumentException("Cannot merge " + other.size() + " counters into " + size());
+        }
+        for (int bucket = 0; bucket < totals.length; bucket++) {
+            add(bucket, other.totals[bucket], other.compensations == null ? 0.0 : other.compensations[bucket],
+                    other.counts[bucket]);
+        }
+    }
+
+    public double total(int bucket) {
+        return compensations == null ? totals[bucket] : totals[bucket] + compensations[bucket];
+    }
+
+    public double average(int bucket) {
+        // 0.0 / 0 == NaN - this will convert to Excel #NUM! error.
+        return total(bucket) / counts[bucket];
+    }
+}
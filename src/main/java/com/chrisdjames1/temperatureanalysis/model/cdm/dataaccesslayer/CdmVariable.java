@@ -21,4 +21,9 @@ public class CdmVariable {
     @Builder.Default
     private List<CdmAttribute> attributes = new ArrayList<>();
 
+    /**
+     * Whether the variable is decoded and held in memory, so reads of it never touch the file.
+     */
+    private boolean resident;
+
 }
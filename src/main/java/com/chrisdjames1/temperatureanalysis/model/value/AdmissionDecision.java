@@ -0,0 +1,25 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+/**
+ * What admission control does with a request, given its estimated cost.
+ */
+public enum AdmissionDecision {
+
+    /**
+     * Run now. There is room for it in the memory budget.
+     */
+    ADMIT,
+
+    /**
+     * Wait for running requests to release enough of the memory budget, up to the queue timeout, after which it is
+     * refused with 429 Too Many Requests.
+     */
+    QUEUE,
+
+    /**
+     * Refuse with 413 Payload Too Large. The request would need more memory or produce a larger response than a
+     * single request is allowed.
+     */
+    REJECT
+
+}
@@ -0,0 +1,36 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Little-endian IEEE 754 element types for binary exports.
+ */
+@AllArgsConstructor
+@Getter
+public enum BinaryDtype {
+
+    FLOAT32("float32", "<f4", Float.BYTES),
+    FLOAT64("float64", "<f8", Double.BYTES);
+
+    private static final Map<String, BinaryDtype> LOOKUP;
+
+    private final String value;
+    private final String npyDescr;
+    private final int byteSize;
+
+    static {
+        LOOKUP = Arrays.stream(BinaryDtype.values()).collect(Collectors.toMap(
+                BinaryDtype::getValue, Function.identity()));
+    }
+
+    public static BinaryDtype fromValue(String value) {
+        return Objects.requireNonNull(LOOKUP.get(value), "Unrecognised binary dtype: " + value);
+    }
+}
@@ -0,0 +1,39 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@AllArgsConstructor
+@Getter
+public enum BinaryFormat {
+
+    /**
+     * NumPy .npy file: a header holding the dtype and shape followed by the values in row-major order.
+     */
+    NPY("npy", "npy"),
+
+    /**
+     * The values in row-major order with no header. The shape and dtype are only given in the response headers.
+     */
+    RAW("raw", "bin");
+
+    private static final Map<String, BinaryFormat> LOOKUP;
+
+    private final String value;
+    private final String fileExtension;
+
+    static {
+        LOOKUP = Arrays.stream(BinaryFormat.values()).collect(Collectors.toMap(
+                BinaryFormat::getValue, Function.identity()));
+    }
+
+    public static BinaryFormat fromValue(String value) {
+        return Objects.requireNonNull(LOOKUP.get(value), "Unrecognised binary format: " + value);
+    }
+}
@@ -0,0 +1,25 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Why a request was cancelled, as tagged on the cancellation counter.
+ */
+@AllArgsConstructor
+@Getter
+public enum CancellationReason {
+
+    /**
+     * The request ran for longer than its deadline.
+     */
+    DEADLINE("deadline"),
+
+    /**
+     * The thread serving the request was interrupted, which the container does to a streamed response when the
+     * client disconnects or the async request times out.
+     */
+    INTERRUPTED("interrupted");
+
+    private final String value;
+}
@@ -0,0 +1,13 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+public enum JobStatus {
+
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,47 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The ways a section can be returned, with the typical number of bytes written per byte of decoded data.
+ */
+@AllArgsConstructor
+@Getter
+public enum OutputFormat {
+
+    /**
+     * Nested JSON arrays. A float written as text takes about three times the space of its binary value.
+     */
+    JSON("json", 3.0),
+
+    /**
+     * NumPy .npy or raw little-endian values. The size is exact, given the dtype, so the multiplier is not used.
+     */
+    BINARY("binary", 1.0),
+
+    /**
+     * A deflated xlsx workbook, with one cell per value.
+     */
+    XLSX("xlsx", 2.0);
+
+    private static final Map<String, OutputFormat> LOOKUP;
+
+    private final String value;
+    private final double outputMultiplier;
+
+    static {
+        LOOKUP = Arrays.stream(OutputFormat.values()).collect(Collectors.toMap(
+                OutputFormat::getValue, Function.identity()));
+    }
+
+    public static OutputFormat fromValue(String value) {
+        return Objects.requireNonNull(LOOKUP.get(value), "Unrecognised output format: " + value);
+    }
+}
@@ -0,0 +1,34 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The stages a request spends its time in, as tagged on the phase timers.
+ */
+@AllArgsConstructor
+@Getter
+public enum Phase {
+
+    /**
+     * Waiting for a dataset handle to read through.
+     */
+    OPEN("open"),
+
+    /**
+     * Reading data from the dataset, or from a store or cache that holds it decoded.
+     */
+    READ("read"),
+
+    /**
+     * Reducing data that has been read, e.g. into grouped totals.
+     */
+    REDUCE("reduce"),
+
+    /**
+     * Encoding values into the response, whether JSON, binary or workbook cells.
+     */
+    SERIALIZE("serialize");
+
+    private final String value;
+}
@@ -0,0 +1,19 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+/**
+ * Where the decoded data of a resident variable is kept outside the Java heap.
+ */
+public enum ResidentMode {
+
+    /**
+     * Direct byte buffers. Counts against {@code -XX:MaxDirectMemorySize} rather than the heap.
+     */
+    DIRECT,
+
+    /**
+     * A memory-mapped scratch file. The operating system pages the data in and out, so variables larger than the
+     * available memory can still be resident.
+     */
+    MAPPED
+
+}
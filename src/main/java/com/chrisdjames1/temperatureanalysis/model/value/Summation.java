@@ -0,0 +1,23 @@
+package com.chrisdjames1.temperatureanalysis.model.value;
+
+/**
+ * How floating point totals are accumulated during a reduction.
+ */
+public enum Summation {
+
+    /**
+     * Plain running totals. Fastest, but the rounding error grows with the number of elements.
+     */
+    NAIVE,
+
+    /**
+     * Kahan-Babuska (Neumaier) compensated summation. The rounding error is independent of the number of elements.
+     */
+    KAHAN,
+
+    /**
+     * Pairwise summation of each run of elements. The rounding error grows with the log of the number of elements.
+     */
+    PAIRWISE
+
+}
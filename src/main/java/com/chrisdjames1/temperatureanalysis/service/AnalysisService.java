@@ -1,5 +1,14 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
+import com.chrisdjames1.temperatureanalysis.config.CdmCancellationProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import com.chrisdjames1.temperatureanalysis.model.CancellationStats;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import com.chrisdjames1.temperatureanalysis.model.CostEstimate;
+import com.chrisdjames1.temperatureanalysis.model.GroupByResult;
+import com.chrisdjames1.temperatureanalysis.model.PoolStats;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmAttribute;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmDataset;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmDimension;
@@ -8,54 +17,420 @@ import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmGroup;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmVariable;
 import com.chrisdjames1.temperatureanalysis.model.cdm.tx.CdmDataAccessLayerTranslator;
 import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
 import com.chrisdjames1.temperatureanalysis.model.value.FnReadVariableArg;
+import com.chrisdjames1.temperatureanalysis.model.value.OutputFormat;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import com.chrisdjames1.temperatureanalysis.service.admission.AdmissionPermit;
+import com.chrisdjames1.temperatureanalysis.service.admission.AdmissionService;
+import com.chrisdjames1.temperatureanalysis.service.admission.CostEstimatorService;
+import com.chrisdjames1.temperatureanalysis.service.artifact.ArtifactStoreService;
+import com.chrisdjames1.temperatureanalysis.service.binary.BinaryArrayWriter;
+import com.chrisdjames1.temperatureanalysis.service.cache.ChunkCacheService;
+import com.chrisdjames1.temperatureanalysis.service.cache.SectionCacheService;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.json.JsonArrayWriter;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.metrics.RequestScope;
+import com.chrisdjames1.temperatureanalysis.service.pyramid.PyramidService;
+import com.chrisdjames1.temperatureanalysis.service.reduce.GroupByService;
+import com.chrisdjames1.temperatureanalysis.service.reduce.SharedScanService;
+import com.chrisdjames1.temperatureanalysis.service.resident.ResidentVariableService;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import com.chrisdjames1.temperatureanalysis.util.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
 import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class AnalysisService {
 
+    private static final String XLSX = "xlsx";
+
     private final NetcdFileService netcdFileService;
+    private final NetcdReaderService netcdReaderService;
     private final ReadVariableToExcelService readVariableToExcelService;
     private final AverageVariableToExcelService averageVariableToExcelService;
     private final FunctionProcessorService functionProcessorService;
+    private final GroupByService groupByService;
+    private final SectionCacheService sectionCacheService;
+    private final ArtifactStoreService artifactStoreService;
+    private final PyramidService pyramidService;
+    private final ResidentVariableService residentVariableService;
+    private final ChunkCacheService chunkCacheService;
+    private final CostEstimatorService costEstimatorService;
+    private final AdmissionService admissionService;
+    private final SharedScanService sharedScanService;
+    private final AnalysisMetrics analysisMetrics;
+    private final CdmCancellationProperties cancellationProperties;
+    private final SingleFlight<String, Artifact> exports;
+    private final SingleFlight<String, GroupByResult> groupBys;
 
-    public AnalysisService(NetcdFileService netcdFileService, ReadVariableToExcelService readVariableToExcelService,
+    public AnalysisService(NetcdFileService netcdFileService, NetcdReaderService netcdReaderService,
+            ReadVariableToExcelService readVariableToExcelService,
             AverageVariableToExcelService averageVariableToExcelService,
-            FunctionProcessorService functionProcessorService) {
+            FunctionProcessorService functionProcessorService, GroupByService groupByService,
+            SectionCacheService sectionCacheService, ArtifactStoreService artifactStoreService,
+            PyramidService pyramidService, ResidentVariableService residentVariableService,
+            ChunkCacheService chunkCacheService, CostEstimatorService costEstimatorService,
+            AdmissionService admissionService, SharedScanService sharedScanService,
+            AnalysisMetrics analysisMetrics, CdmCancellationProperties cancellationProperties) {
         this.netcdFileService = netcdFileService;
+        this.netcdReaderService = netcdReaderService;
         this.readVariableToExcelService = readVariableToExcelService;
         this.averageVariableToExcelService = averageVariableToExcelService;
         this.functionProcessorService = functionProcessorService;
+        this.groupByService = groupByService;
+        this.sectionCacheService = sectionCacheService;
+        this.artifactStoreService = artifactStoreService;
+        this.pyramidService = pyramidService;
+        this.residentVariableService = residentVariableService;
+        this.chunkCacheService = chunkCacheService;
+        this.costEstimatorService = costEstimatorService;
+        this.admissionService = admissionService;
+        this.sharedScanService = sharedScanService;
+        this.analysisMetrics = analysisMetrics;
+        this.cancellationProperties = cancellationProperties;
+        this.exports = new SingleFlight<>("exports", analysisMetrics::checkCancelled);
+        this.groupBys = new SingleFlight<>("group-by", analysisMetrics::checkCancelled);
+        analysisMetrics.registerCoalescing(exports, SingleFlight::stats);
+        analysisMetrics.registerCoalescing(groupBys, SingleFlight::stats);
+    }
+
+    /**
+     * Checks the arguments of {@link #writeVariableToJson} without reading any data, so that a bad request can fail
+     * before a streamed response is committed.
+     */
+    public void validateVariableToJson(String variableName, String sectionSpec, @Nullable Integer precision,
+            @Nullable Integer level) {
+        readSectionShape(variableName, sectionSpec, level);
+        if (precision != null && (precision < 0 || precision > JsonArrayWriter.MAX_PRECISION)) {
+            throw new IllegalArgumentException(String.format("Illegal precision. Must be between 0 and %d",
+                    JsonArrayWriter.MAX_PRECISION));
+        }
+    }
+
+    /**
+     * Streams the section to {@code outputStream} as UTF-8 nested JSON arrays.
+     *
+     * @param level (optional) Block size of a coarse level to read from, as for {@link PyramidService}. Null or 1
+     *              reads the data itself.
+     */
+    public void writeVariableToJson(String variableName, String sectionSpec, @Nullable Integer precision,
+            @Nullable Integer level, OutputStream outputStream) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try (RequestScope scope = openScope("read/variable/string", variableName, sectionSpec, level);
+                PooledNetcdfFile handle = borrow(variableName)) {
+            if (isNativeLevel(level)) {
+                netcdReaderService.writeVariableToJson(handle.getNcFile(), variableName, sectionSpec, precision,
+                        writer);
+            } else {
+                Array data = pyramidService.read(handle.getNcFile(), variableName, sectionSpec, level);
+                long start = System.nanoTime();
+                JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(data.getShape())
+                        .precision(precision).build();
+                jsonArrayWriter.write(data);
+                jsonArrayWriter.finish();
+                analysisMetrics.recordPhase(Phase.SERIALIZE, variableName, System.nanoTime() - start);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the shape of the section without reading any data.
+     */
+    public int[] readSectionShape(String variableName, String sectionSpec) {
+        return readSectionShape(variableName, sectionSpec, null);
+    }
+
+    /**
+     * Returns the shape of the section of a level without reading any data.
+     */
+    public int[] readSectionShape(String variableName, String sectionSpec, @Nullable Integer level) {
+        if (isNativeLevel(level)) {
+            return netcdReaderService.readSectionShape(netcdFileService.getNcFile(), variableName, sectionSpec);
+        }
+        return pyramidService.readLevelShape(netcdFileService.getNcFile(), variableName, sectionSpec, level);
+    }
+
+    /**
+     * Predicts the cost of returning the section, and what admission control would do with the request right now,
+     * without reading any data.
+     *
+     * @param level (optional) Block size of a coarse level to read from, as for {@link PyramidService}.
+     * @param dtype (optional) Element type of binary output.
+     */
+    public CostEstimate estimate(String variableName, String sectionSpec, OutputFormat format,
+            @Nullable Integer level, @Nullable BinaryDtype dtype) {
+        CostEstimate estimate = costEstimatorService.estimate(netcdFileService.getNcFile(), variableName, sectionSpec,
+                format, level, dtype);
+        return estimate.toBuilder().decision(admissionService.decide(estimate)).build();
+    }
+
+    /**
+     * Admits a request to return the section, waiting for room in the memory budget if need be. The permit must be
+     * closed once the response is complete.
+     *
+     * @see AdmissionService#admit
+     */
+    public AdmissionPermit admit(String variableName, String sectionSpec, OutputFormat format,
+            @Nullable Integer level, @Nullable BinaryDtype dtype) {
+        return admissionService.admit(costEstimatorService.estimate(netcdFileService.getNcFile(), variableName,
+                sectionSpec, format, level, dtype));
     }
 
-    public String readVariableToString(String variableName, String sectionSpec) {
-        return functionProcessorService.processFunctionToString(netcdFileService.getNcFile(), AppFunction.READ_VARIABLE,
-                createReadVariableArgs(variableName, sectionSpec));
+    /**
+     * As {@link #admit}, for the average of the section grouped by {@code keepDimensions}, whose memory grows with
+     * the number of groups.
+     *
+     * @see CostEstimatorService#estimateGroupBy
+     */
+    public AdmissionPermit admitGroupBy(String variableName, String sectionSpec, Collection<Integer> keepDimensions,
+            OutputFormat format, @Nullable BinaryDtype dtype) {
+        return admissionService.admit(estimateGroupBy(variableName, sectionSpec, keepDimensions, format, dtype));
     }
 
-    public String readVariable2dToExcel(String variableName, String sectionSpec, @Nullable Integer columnIndexFor1D,
-            @Nullable String fileName) {
+    /**
+     * As {@link #admitGroupBy}, for the averages of {@code average/variable/xlsx}, one per index of the dimension
+     * at {@code averageOnIndex}.
+     */
+    public AdmissionPermit admitAverage(String variableName, String sectionSpec, @Nullable Integer averageOnIndex) {
+        return admitGroupBy(variableName, sectionSpec, averagedDimensions(averageOnIndex), OutputFormat.XLSX, null);
+    }
+
+    public BinaryDtype readNativeBinaryDtype(String variableName) {
+        return netcdReaderService.readNativeBinaryDtype(netcdFileService.getNcFile(), variableName);
+    }
+
+    /**
+     * Streams the section to {@code outputStream} as little-endian floats of {@code dtype}.
+     *
+     * @param level (optional) Block size of a coarse level to read from, as for {@link PyramidService}. Null or 1
+     *              reads the data itself.
+     */
+    public void writeVariableToBinary(String variableName, String sectionSpec, @Nullable Integer level,
+            BinaryFormat format, BinaryDtype dtype, OutputStream outputStream) throws IOException {
+
+        try (RequestScope scope = openScope("read/variable/binary", variableName, sectionSpec, level);
+                PooledNetcdfFile handle = borrow(variableName)) {
+            if (isNativeLevel(level)) {
+                netcdReaderService.writeVariableToBinary(handle.getNcFile(), variableName, sectionSpec, format,
+                        dtype, outputStream);
+            } else {
+                Array data = pyramidService.read(handle.getNcFile(), variableName, sectionSpec, level);
+                long start = System.nanoTime();
+                BinaryArrayWriter binaryArrayWriter = BinaryArrayWriter.builder().outputStream(outputStream)
+                        .shape(data.getShape()).dtype(dtype).format(format).build();
+                binaryArrayWriter.write(data);
+                binaryArrayWriter.finish();
+                analysisMetrics.recordPhase(Phase.SERIALIZE, variableName, System.nanoTime() - start);
+            }
+        }
+        outputStream.flush();
+    }
+
+    public Artifact readVariable2dToExcel(String variableName, String sectionSpec,
+            @Nullable Integer columnIndexFor1D) {
+        return readVariable2dToExcel(variableName, sectionSpec, columnIndexFor1D, ProgressListener.NONE, false);
+    }
 
-        validateXlsxFileName(fileName);
-        return readVariableToExcelService.readVariable2dToExcel(netcdFileService.getNcFile(), variableName, sectionSpec,
-                columnIndexFor1D, fileName);
+    /**
+     * Exports the workbook as a job, which runs without a deadline.
+     */
+    public Artifact readVariable2dToExcel(String variableName, String sectionSpec, @Nullable Integer columnIndexFor1D,
+            ProgressListener listener) {
+        return readVariable2dToExcel(variableName, sectionSpec, columnIndexFor1D, listener, true);
     }
 
-    public String averageVariableToExcel(String variableName, String sectionSpec, @Nullable Integer averageOnIndex,
-            @Nullable String fileName) {
+    /**
+     * The workbook is only admitted against the memory budget if it has to be generated, so a workbook served from
+     * the artifact store is never queued or refused.
+     */
+    private Artifact readVariable2dToExcel(String variableName, String sectionSpec, @Nullable Integer columnIndexFor1D,
+            ProgressListener listener, boolean job) {
 
-        validateXlsxFileName(fileName);
-        return averageVariableToExcelService.averageVariableToExcel(netcdFileService.getNcFile(), variableName,
-                sectionSpec, averageOnIndex, fileName);
+        // The canonical section-spec, so that equivalent specs share an artifact as well as a call
+        String normalizedSectionSpec = normalizeSectionSpec(variableName, sectionSpec);
+        Map<String, String> args = new HashMap<>(createReadVariableArgs(variableName, normalizedSectionSpec));
+        args.put("columnIndexFor1D", Objects.toString(columnIndexFor1D, null));
+        String key = coalescingKey("read/variable/xlsx", variableName, normalizedSectionSpec, columnIndexFor1D);
+        try (RequestScope scope = openScope("read/variable/xlsx", variableName, sectionSpec, null,
+                timeoutMillis(job))) {
+            return coalesce(exports, key, () -> artifactStoreService.getOrCreate(netcdFileService.getNcFile(),
+                    "read/variable/xlsx", args, XLSX, file -> {
+                        try (AdmissionPermit permit = admitExport(costEstimatorService.estimate(
+                                netcdFileService.getNcFile(), variableName, sectionSpec, OutputFormat.XLSX, null,
+                                null), job);
+                                PooledNetcdfFile handle = borrow(variableName)) {
+                            readVariableToExcelService.readVariable2dToExcel(handle.getNcFile(), variableName,
+                                    sectionSpec, columnIndexFor1D, file, listener);
+                        }
+                    }));
+        }
+    }
+
+    public Artifact averageVariableToExcel(String variableName, String sectionSpec, @Nullable Integer averageOnIndex) {
+        return averageVariableToExcel(variableName, sectionSpec, averageOnIndex, ProgressListener.NONE, false);
+    }
+
+    /**
+     * Exports the workbook as a job, which runs without a deadline.
+     */
+    public Artifact averageVariableToExcel(String variableName, String sectionSpec, @Nullable Integer averageOnIndex,
+            ProgressListener listener) {
+        return averageVariableToExcel(variableName, sectionSpec, averageOnIndex, listener, true);
+    }
+
+    private Artifact averageVariableToExcel(String variableName, String sectionSpec, @Nullable Integer averageOnIndex,
+            ProgressListener listener, boolean job) {
+
+        // The canonical section-spec, so that equivalent specs share an artifact as well as a call
+        String normalizedSectionSpec = normalizeSectionSpec(variableName, sectionSpec);
+        Map<String, String> args = new HashMap<>(createReadVariableArgs(variableName, normalizedSectionSpec));
+        args.put("averageOnIndex", Objects.toString(averageOnIndex, null));
+        String key = coalescingKey("average/variable/xlsx", variableName, normalizedSectionSpec, averageOnIndex);
+        try (RequestScope scope = openScope("average/variable/xlsx", variableName, sectionSpec, null,
+                timeoutMillis(job))) {
+            return coalesce(exports, key, () -> artifactStoreService.getOrCreate(netcdFileService.getNcFile(),
+                    "average/variable/xlsx", args, XLSX, file -> {
+                        try (AdmissionPermit permit = admitExport(estimateGroupBy(variableName, sectionSpec,
+                                averagedDimensions(averageOnIndex), OutputFormat.XLSX, null), job);
+                                PooledNetcdfFile handle = borrow(variableName)) {
+                            averageVariableToExcelService.averageVariableToExcel(handle.getNcFile(), variableName,
+                                    sectionSpec, averageOnIndex, file, listener);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Writes the workbook of {@link #readVariable2dToExcel(String, String, Integer)} to {@code outputStream} once it is
+     * complete, without going through the artifact store.
+     */
+    public void writeVariable2dToExcel(String variableName, String sectionSpec, @Nullable Integer columnIndexFor1D,
+            OutputStream outputStream) throws IOException {
+
+        try (RequestScope scope = openScope("read/variable/xlsx/stream", variableName, sectionSpec, null);
+                PooledNetcdfFile handle = borrow(variableName)) {
+            readVariableToExcelService.readVariable2dToExcel(handle.getNcFile(), variableName, sectionSpec,
+                    columnIndexFor1D, outputStream, ProgressListener.NONE);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the workbook of {@link #averageVariableToExcel(String, String, Integer)} to {@code outputStream} once it
+     * is complete, without going through the artifact store.
+     */
+    public void writeAverageVariableToExcel(String variableName, String sectionSpec, @Nullable Integer averageOnIndex,
+            OutputStream outputStream) throws IOException {
+
+        try (RequestScope scope = openScope("average/variable/xlsx/stream", variableName, sectionSpec, null);
+                PooledNetcdfFile handle = borrow(variableName)) {
+            averageVariableToExcelService.averageVariableToExcel(handle.getNcFile(), variableName, sectionSpec,
+                    averageOnIndex, outputStream, ProgressListener.NONE);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the workbook of {@link #averageVariableGroupByToExcel(String, String, Collection)} to
+     * {@code outputStream} once it is complete, without going through the artifact store.
+     */
+    public void writeAverageVariableGroupByToExcel(String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, OutputStream outputStream) throws IOException {
+
+        try (RequestScope scope = openScope("average/variable/group-by/xlsx/stream", variableName, sectionSpec,
+                    null);
+                PooledNetcdfFile handle = borrow(variableName)) {
+            averageVariableToExcelService.groupedAverageToExcel(handle.getNcFile(), variableName, sectionSpec,
+                    keepDimensions, outputStream, ProgressListener.NONE);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Averages the section grouped by {@code keepDimensions}. Only the call that does the work is admitted against
+     * the memory budget, as for {@code format}, so calls that share its result are never queued or refused.
+     *
+     * @param dtype (optional) Element type of binary output.
+     */
+    public GroupByResult averageVariableGroupBy(String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, OutputFormat format, @Nullable BinaryDtype dtype) {
+        String key = coalescingKey("average/variable/group-by", variableName,
+                normalizeSectionSpec(variableName, sectionSpec), keepDimensions);
+        try (RequestScope scope = openScope("average/variable/group-by", variableName, sectionSpec, null)) {
+            return coalesce(groupBys, key, () -> {
+                try (AdmissionPermit permit = admitGroupBy(variableName, sectionSpec, keepDimensions, format, dtype);
+                        PooledNetcdfFile handle = borrow(variableName)) {
+                    return groupByService.groupBy(handle.getNcFile(), variableName, sectionSpec, keepDimensions);
+                }
+            });
+        }
+    }
+
+    public Artifact averageVariableGroupByToExcel(String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions) {
+        return averageVariableGroupByToExcel(variableName, sectionSpec, keepDimensions, ProgressListener.NONE, false);
+    }
+
+    /**
+     * Exports the workbook as a job, which runs without a deadline.
+     */
+    public Artifact averageVariableGroupByToExcel(String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, ProgressListener listener) {
+        return averageVariableGroupByToExcel(variableName, sectionSpec, keepDimensions, listener, true);
+    }
+
+    private Artifact averageVariableGroupByToExcel(String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, ProgressListener listener, boolean job) {
+
+        // The canonical section-spec, so that equivalent specs share an artifact as well as a call
+        String normalizedSectionSpec = normalizeSectionSpec(variableName, sectionSpec);
+        Map<String, String> args = new HashMap<>(createReadVariableArgs(variableName, normalizedSectionSpec));
+        args.put("keepDimensions", keepDimensions.toString());
+        String key = coalescingKey("average/variable/group-by/xlsx", variableName, normalizedSectionSpec,
+                keepDimensions);
+        try (RequestScope scope = openScope("average/variable/group-by/xlsx", variableName, sectionSpec, null,
+                timeoutMillis(job))) {
+            return coalesce(exports, key, () -> artifactStoreService.getOrCreate(netcdFileService.getNcFile(),
+                    "average/variable/group-by/xlsx", args, XLSX, file -> {
+                        try (AdmissionPermit permit = admitExport(estimateGroupBy(variableName, sectionSpec,
+                                keepDimensions, OutputFormat.XLSX, null), job);
+                                PooledNetcdfFile handle = borrow(variableName)) {
+                            averageVariableToExcelService.groupedAverageToExcel(handle.getNcFile(), variableName,
+                                    sectionSpec, keepDimensions, file, listener);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * @throws com.chrisdjames1.temperatureanalysis.exception.ArtifactNotFoundException If there is no such artifact.
+     */
+    public Artifact readArtifact(String key) {
+        return artifactStoreService.get(key);
     }
 
     public CdmGroup readRootGroupSchema() {
@@ -68,6 +443,8 @@ public class AnalysisService {
         List<CdmEnumTypedef> cdmEnumTypedefs = CdmDataAccessLayerTranslator.translateEnumTypedefs(
                 rootGroup.getEnumTypedefs());
         List<CdmVariable> cdmVariables = CdmDataAccessLayerTranslator.translateVariables(rootGroup.getVariables());
+        cdmVariables.forEach(cdmVariable -> cdmVariable.setResident(
+                residentVariableService.isResident(cdmVariable.getName())));
         List<CdmAttribute> cdmAttributes = CdmDataAccessLayerTranslator.translateAttributes(rootGroup.attributes());
 
         return CdmGroup.builder().name(rootGroup.getFullName()).dataset(cdmDataset).dimensions(
@@ -79,13 +456,132 @@ public class AnalysisService {
                 AppFunction.READ_ROOT_GROUP, Map.of());
     }
 
+    public CacheStats readSectionCacheStats() {
+        return sectionCacheService.stats();
+    }
+
+    public CacheStats readChunkCacheStats() {
+        return chunkCacheService.stats();
+    }
+
+    /**
+     * Led and joined counts of the coalesced exports, group-by averages and section reads, and of the reductions
+     * that shared a scan.
+     */
+    public List<CoalescingStats> readCoalescingStats() {
+        return List.of(exports.stats(), groupBys.stats(), netcdReaderService.readCoalescingStats(),
+                sharedScanService.stats());
+    }
+
+    public PoolStats readPoolStats() {
+        return netcdFileService.stats();
+    }
+
+    public CacheStats readArtifactStoreStats() {
+        return artifactStoreService.stats();
+    }
+
+    public CancellationStats readCancellationStats() {
+        return analysisMetrics.cancellationStats();
+    }
+
+    /**
+     * Opens the metrics scope of a request for the section, as {@link AnalysisMetrics#open}, with the request deadline.
+     */
+    private RequestScope openScope(String endpoint, String variableName, String sectionSpec,
+            @Nullable Integer level) {
+        return openScope(endpoint, variableName, sectionSpec, level, cancellationProperties.getRequestTimeoutMillis());
+    }
+
+    private RequestScope openScope(String endpoint, String variableName, String sectionSpec,
+            @Nullable Integer level, long timeoutMillis) {
+        long elementCount = 1;
+        for (int length : readSectionShape(variableName, sectionSpec, level)) {
+            elementCount *= length;
+        }
+        return analysisMetrics.open(endpoint, variableName, sectionSpec, elementCount, timeoutMillis);
+    }
+
+    /**
+     * Coalesces the call, as {@link SingleFlight#execute}. A caller that joined a call whose leader was cancelled runs
+     * the call again rather than failing with it, since only the caller's own cancellation should fail its request.
+     */
+    private <V> V coalesce(SingleFlight<String, V> flight, String key, Supplier<V> supplier) {
+        while (true) {
+            try {
+                return flight.execute(key, supplier);
+            } catch (RequestCancelledException e) {
+                if (analysisMetrics.isCancelled()) {
+                    throw e;
+                }
+                log.debug("Retrying '{}' after the request leading it was cancelled", key);
+            }
+        }
+    }
+
+    private CostEstimate estimateGroupBy(String variableName, String sectionSpec, Collection<Integer> keepDimensions,
+            OutputFormat format, @Nullable BinaryDtype dtype) {
+        return costEstimatorService.estimateGroupBy(netcdFileService.getNcFile(), variableName, sectionSpec,
+                keepDimensions, format, dtype);
+    }
+
+    /**
+     * Admits a workbook that has to be generated. A job waits for room in the budget for as long as it takes, since
+     * it has already waited its turn for a worker, while a request waits no longer than the queue timeout.
+     */
+    private AdmissionPermit admitExport(CostEstimate estimate, boolean job) {
+        return job ? admissionService.admit(estimate, 0) : admissionService.admit(estimate);
+    }
+
+    /**
+     * The deadline of an export. Jobs have none.
+     */
+    private long timeoutMillis(boolean job) {
+        return job ? 0 : cancellationProperties.getRequestTimeoutMillis();
+    }
+
+    /**
+     * The dimension {@link AverageVariableToExcelService#averageVariableToExcel} keeps, averaging the others.
+     */
+    private static List<Integer> averagedDimensions(@Nullable Integer averageOnIndex) {
+        return List.of(averageOnIndex != null ? averageOnIndex : 0);
+    }
+
+    /**
+     * Borrows a handle to read the variable through, recording the wait as the open phase of the request.
+     */
+    private PooledNetcdfFile borrow(String variableName) {
+        long start = System.nanoTime();
+        PooledNetcdfFile handle = netcdFileService.borrow();
+        analysisMetrics.recordPhase(Phase.OPEN, variableName, System.nanoTime() - start);
+        return handle;
+    }
+
+    private static boolean isNativeLevel(@Nullable Integer level) {
+        return level == null || level == 1;
+    }
+
+    /**
+     * Identifies a call by its function and arguments.
+     *
+     * @param normalizedSectionSpec The section-spec in canonical form, as {@link #normalizeSectionSpec}, so that
+     *                              equivalent specs coalesce.
+     */
+    private static String coalescingKey(String function, String variableName, String normalizedSectionSpec,
+            Object... args) {
+        return function + "|" + variableName + "|" + normalizedSectionSpec + "|" + Arrays.toString(args);
+    }
+
+    /**
+     * Writes the section-spec in canonical form, as {@link SectionSpecUtils#format}.
+     */
+    private String normalizeSectionSpec(String variableName, String sectionSpec) {
+        return SectionSpecUtils.format(netcdReaderService.readSectionRanges(netcdFileService.getNcFile(),
+                variableName, sectionSpec));
+    }
+
     private static Map<String, String> createReadVariableArgs(String variableName, String sectionSpec) {
         return Map.of(FnReadVariableArg.VARIABLE.getArg(), variableName, FnReadVariableArg.SECTION_SPEC.getArg(),
                 sectionSpec);
     }
-
-    private static void validateXlsxFileName(String fileName) {
-        if (StringUtils.isEmpty(fileName) || fileName.matches("^\\w+\\.xlsx$")) return;
-        throw new IllegalArgumentException("Illegal filename. Must be a word followed by .xlsx");
-    }
 }
@@ -1,55 +1,94 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
-import com.chrisdjames1.temperatureanalysis.model.TotalCounter;
+import com.chrisdjames1.temperatureanalysis.config.CdmExcelProperties;
+import com.chrisdjames1.temperatureanalysis.model.GroupByResult;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmAttribute;
 import com.chrisdjames1.temperatureanalysis.model.cdm.tx.CdmDataAccessLayerTranslator;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
 import com.chrisdjames1.temperatureanalysis.service.excel.AttributesExcelWriter;
 import com.chrisdjames1.temperatureanalysis.service.excel.DataHeaderExcelWriter;
-import org.apache.commons.lang3.StringUtils;
+import com.chrisdjames1.temperatureanalysis.service.excel.DataRowsExcelWriter;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.reduce.GroupByService;
+import com.chrisdjames1.temperatureanalysis.util.CountingOutputStream;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import ucar.ma2.Array;
-import ucar.ma2.DataType;
-import ucar.ma2.IndexIterator;
 import ucar.nc2.Dimension;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 @Service
 public class AverageVariableToExcelService {
+
+    // Share of the progress of an export given to the reduction, with the rest given to writing the rows
+    private static final double REDUCTION_PROGRESS = 0.9;
+    // Rows written between checks that the request has not been cancelled
+    private static final int CANCELLATION_CHECK_ROWS = 4096;
+
     private final NetcdReaderService netcdReaderService;
+    private final GroupByService groupByService;
+    private final CdmExcelProperties excelProperties;
+    private final AnalysisMetrics analysisMetrics;
 
-    public AverageVariableToExcelService(NetcdReaderService netcdReaderService) {
+    public AverageVariableToExcelService(NetcdReaderService netcdReaderService, GroupByService groupByService,
+            CdmExcelProperties excelProperties, AnalysisMetrics analysisMetrics) {
         this.netcdReaderService = netcdReaderService;
+        this.groupByService = groupByService;
+        this.excelProperties = excelProperties;
+        this.analysisMetrics = analysisMetrics;
+    }
+
+    /**
+     * Calculates the means across n-1 dimensions. The dimension at {@code averageOnIndex} becomes the rows with the
+     * other dimensions being averaged. For example, for a sectionSpec "0:2073,140:143,0:0" and an averageOnIndex of
+     * 0, time (0:2073) would be the rows and the averages are taken from the rest of the data for each time unit.
+     * For a sectionSpec "0:2073,0:180,0:360", setting averageOnIndex=1 would tabulate rows as latitude vs. average
+     * temperature at that entire latitude (because longitude is full range 0:360) across the time units 0:2073.
+     */
+    public void averageVariableToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer averageOnIndex, Path outputFile) {
+        averageVariableToExcel(ncFile, variableName, sectionSpec, averageOnIndex, outputFile,
+                ProgressListener.NONE);
     }
 
-    // TODO: Add support for calculating the means across n-1 dimensions. A designated dimension becomes the rows
-    //  with the other dimensions being averaged. For example - changing 2D to 1D average - for a sectionSpec
-    //  "0:2073,140:143,0:0", support a new parameter averageOnIndex. With it having a value of 0, time (0:2073)
-    //  would be the rows and the averages are taken from the rest of the data for each time unit.
-    //  Another example, for a sectionSpec "0:2073,0:180,0:360", setting averageOnIndex=1 would tabulate rows as
-    //  latitude vs. average temperature at that entire latitude (because longitude is full range 0:360) across the
-    //  time units 0:2073.
+    /**
+     * As {@link #averageVariableToExcel(NetcdfFile, String, String, Integer, Path)}, reporting progress through the
+     * reduction and then the rows written.
+     */
+    public void averageVariableToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer averageOnIndex, Path outputFile, ProgressListener listener) {
+        try (OutputStream outputStream = Files.newOutputStream(outputFile)) {
+            averageVariableToExcel(ncFile, variableName, sectionSpec, averageOnIndex, outputStream, listener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-    public String averageVariableToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
-            @Nullable Integer averageOnIndex, @Nullable String fileName) {
+    /**
+     * As {@link #averageVariableToExcel(NetcdfFile, String, String, Integer, Path, ProgressListener)}, writing the
+     * workbook to {@code outputStream}. Rows beyond the row access window are flushed to temporary files as the sheet
+     * is generated, which bounds memory, but nothing reaches {@code outputStream} until the whole workbook is written
+     * out at the end. The stream is left open.
+     */
+    public void averageVariableToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer averageOnIndex, OutputStream outputStream, ProgressListener listener) {
 
-        Array data = netcdReaderService.readVariableToArray(ncFile, variableName, sectionSpec);
-        int[] shape = data.getShape();
+        int[] shape = netcdReaderService.readSectionShape(ncFile, variableName, sectionSpec);
         if (shape.length <= 1) {
             throw new UnsupportedOperationException("Currently only shapes of length 2 or greater are supported.");
         }
@@ -88,7 +127,9 @@ public class AverageVariableToExcelService {
 
         String columnCategory = String.format("Avg %s", v.getNameAndDimensions());
 
-        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excelProperties.getRowAccessWindowSize());
+        workbook.setCompressTempFiles(excelProperties.isCompressTempFiles());
+        try (workbook) {
             Sheet sheet = workbook.createSheet(variableName);
 
             // Print the attributes at the top of the sheet
@@ -110,59 +151,156 @@ public class AverageVariableToExcelService {
             columnHeaderCell.setCellValue(String.join(",", sectionSpecWithRowsLabelList));
             columnHeaderCell.setCellStyle(headerStyle);
 
-            Map<Integer, Row> dataRows = new HashMap<>();
-            Map<Integer, TotalCounter> totalCounterMap = new HashMap<>();
-
-            // Print the row category labels and initialise totalCounterMap
-            for (int i = 0; i < shape[rowCategoryIndex]; i++) {
-                totalCounterMap.put(i, new TotalCounter());
-                Row dataRow = dataRows.computeIfAbsent(i + rowCount, sheet::createRow);
-                Cell rowCategoryCell = dataRow.createCell(0);
-                rowCategoryCell.setCellValue(sectionStarts.get(rowCategoryIndex) + i);
-                rowCategoryCell.setCellStyle(headerStyle);
-            }
+            // One average per row
+            GroupByResult result = groupByService.groupBy(ncFile, variableName, sectionSpec,
+                    List.of(rowCategoryIndex), listener.scaled(0.0, REDUCTION_PROGRESS));
+            double[] averages = result.toAverageArray();
 
-            IndexIterator ixIter = data.getIndexIterator();
-            DataType dataType = data.getDataType();
-            int[] counter;
-            int rowOffset;
-            while (ixIter.hasNext()) {
-                Object next = ixIter.next();
-                counter = ixIter.getCurrentCounter();
-                rowOffset = counter[rowCategoryIndex];
-                switch (dataType) {
-                    case DOUBLE:
-                        totalCounterMap.get(rowOffset).add((Double) next);
-                        break;
-                    case FLOAT:
-                        totalCounterMap.get(rowOffset).add((Float) next);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unsupported data type: " + dataType);
+            // Print the row category labels and the data, in row order
+            long start = System.nanoTime();
+            DataRowsExcelWriter dataRowsExcelWriter = DataRowsExcelWriter.builder().rowCount(rowCount)
+                    .excelWriter(attributesExcelWriter).rowLabelStart(sectionStarts.get(rowCategoryIndex)).build();
+            ProgressListener rowProgress = listener.scaled(REDUCTION_PROGRESS, 1.0);
+            for (int rowOffset = 0; rowOffset < averages.length; rowOffset++) {
+                if ((rowOffset + 1) % CANCELLATION_CHECK_ROWS == 0) {
+                    analysisMetrics.checkCancelled();
                 }
+                Cell dataCell = dataRowsExcelWriter.getRow(rowOffset).createCell(1);
+                // NaN converts to the Excel error value #NUM!
+                dataCell.setCellValue(averages[rowOffset]);
+                rowProgress.onProgress((double) (rowOffset + 1) / averages.length);
             }
 
-            // Print the data
-            final int size = totalCounterMap.size();
-            for (rowOffset = 0; rowOffset < size; rowOffset++) {
-                Row dataRow = dataRows.get(rowOffset + rowCount);
-                Cell dataCell = dataRow.createCell(1);
-                dataCell.setCellValue(totalCounterMap.get(rowOffset).average());
-            }
+            writeWorkbook(workbook, variableName, averages.length, start, outputStream);
 
-            // Write the content to a temporary file
-            File currDir = new File(".");
-            String path = currDir.getAbsolutePath();
-            String fileLocation = path.substring(0, path.length() - 1) +
-                    (StringUtils.isNotEmpty(fileName) ? fileName : "temp.xlsx");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            // Delete the temporary files holding the flushed rows
+            workbook.dispose();
+        }
+    }
 
-            FileOutputStream outputStream = new FileOutputStream(fileLocation);
-            workbook.write(outputStream);
+    /**
+     * Averages the section grouped by the dimensions in {@code keepDimensions}, reducing all of the others, and
+     * tabulates one row per group. Each row holds the index of every kept dimension followed by the average.
+     *
+     * @param ncFile         A {@link NetcdfFile} instance.
+     * @param variableName   Name of the target variable in the {@link NetcdfFile}.
+     * @param sectionSpec    CSV ranges for the target variable e.g "0:2073,0:179,0:359".
+     * @param keepDimensions Indexes of the dimensions to group by, e.g. 0 and 1 for time x latitude zonal means.
+     * @param outputFile     The XLSX file to write, replacing any existing file.
+     */
+    public void groupedAverageToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, Path outputFile) {
+        groupedAverageToExcel(ncFile, variableName, sectionSpec, keepDimensions, outputFile,
+                ProgressListener.NONE);
+    }
 
-            return fileLocation;
+    /**
+     * As {@link #groupedAverageToExcel(NetcdfFile, String, String, Collection, Path)}, reporting progress through
+     * the reduction and then the rows written.
+     */
+    public void groupedAverageToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, Path outputFile, ProgressListener listener) {
+        try (OutputStream outputStream = Files.newOutputStream(outputFile)) {
+            groupedAverageToExcel(ncFile, variableName, sectionSpec, keepDimensions, outputStream, listener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * As {@link #groupedAverageToExcel(NetcdfFile, String, String, Collection, Path, ProgressListener)}, writing the
+     * workbook to {@code outputStream}. Rows beyond the row access window are flushed to temporary files as the sheet
+     * is generated, which bounds memory, but nothing reaches {@code outputStream} until the whole workbook is written
+     * out at the end. The stream is left open.
+     */
+    public void groupedAverageToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            Collection<Integer> keepDimensions, OutputStream outputStream, ProgressListener listener) {
+
+        Variable v = Objects.requireNonNull(ncFile.findVariable(variableName));
+        List<CdmAttribute> attributes = CdmDataAccessLayerTranslator.translateAttributes(v.attributes());
+        GroupByResult result = groupByService.groupBy(ncFile, variableName, sectionSpec, keepDimensions,
+                listener.scaled(0.0, REDUCTION_PROGRESS));
+        ProgressListener rowProgress = listener.scaled(REDUCTION_PROGRESS, 1.0);
+        List<List<Integer>> coordinates = result.getCoordinates();
+        int[] shape = result.getShape();
+        double[] averages = result.toAverageArray();
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excelProperties.getRowAccessWindowSize());
+        workbook.setCompressTempFiles(excelProperties.isCompressTempFiles());
+        try (workbook) {
+            Sheet sheet = workbook.createSheet(variableName);
+
+            // Print the attributes at the top of the sheet
+            AttributesExcelWriter attributesExcelWriter = AttributesExcelWriter.builder().workbook(workbook)
+                    .sheet(sheet).attributes(attributes).rowCount(0).build();
+            int rowCount = attributesExcelWriter.write();
+            CellStyle headerStyle = attributesExcelWriter.getHeaderStyle();
+
+            // blank row
+            rowCount++;
+
+            // Print the data headers:
+            //                            | Avg [Variable]
+            // [Dimension] | [Dimension]  | [Section Spec]
+            Row columnCategoryHeader = sheet.createRow(rowCount++);
+            Cell columnCategoryCell = columnCategoryHeader.createCell(shape.length);
+            columnCategoryCell.setCellValue(String.format("Avg %s", v.getNameAndDimensions()));
+            columnCategoryCell.setCellStyle(headerStyle);
+            Row header = sheet.createRow(rowCount++);
+            for (int k = 0; k < shape.length; k++) {
+                Cell headerCell = header.createCell(k);
+                headerCell.setCellValue(result.getDimensions().get(k));
+                headerCell.setCellStyle(headerStyle);
+            }
+            Cell sectionSpecCell = header.createCell(shape.length);
+            sectionSpecCell.setCellValue(sectionSpec);
+            sectionSpecCell.setCellStyle(headerStyle);
+
+            // Print one row per group, walking the kept dimensions in row-major order
+            long start = System.nanoTime();
+            int[] counter = new int[shape.length];
+            int rowsWritten = 0;
+            for (double average : averages) {
+                if ((rowsWritten + 1) % CANCELLATION_CHECK_ROWS == 0) {
+                    analysisMetrics.checkCancelled();
+                }
+                Row dataRow = sheet.createRow(rowCount++);
+                for (int k = 0; k < shape.length; k++) {
+                    Cell keyCell = dataRow.createCell(k);
+                    keyCell.setCellValue(coordinates.get(k).get(counter[k]));
+                    keyCell.setCellStyle(headerStyle);
+                }
+                // NaN converts to the Excel error value #NUM!
+                dataRow.createCell(shape.length).setCellValue(average);
+                for (int k = shape.length - 1; k >= 0 && ++counter[k] == shape[k]; k--) {
+                    counter[k] = 0;
+                }
+                rowProgress.onProgress((double) ++rowsWritten / averages.length);
+            }
+
+            writeWorkbook(workbook, variableName, averages.length, start, outputStream);
 
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            // Delete the temporary files holding the flushed rows
+            workbook.dispose();
         }
     }
+
+    /**
+     * Writes the workbook and records the time spent on the rows since {@code startNanos} and the write as the
+     * serialize phase.
+     */
+    private void writeWorkbook(SXSSFWorkbook workbook, String variableName, long cells, long startNanos,
+            OutputStream outputStream) throws IOException {
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        workbook.write(countingOutputStream);
+        analysisMetrics.recordPhase(Phase.SERIALIZE, variableName, System.nanoTime() - startNanos);
+        analysisMetrics.recordCellsWritten(variableName, cells);
+        analysisMetrics.recordWorkbook(variableName, countingOutputStream.getCount());
+    }
 }
@@ -1,17 +1,15 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
+import com.chrisdjames1.temperatureanalysis.model.GroupByResult;
 import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
 import com.chrisdjames1.temperatureanalysis.model.value.FnAvgVariableArg;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.reduce.GroupByService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ucar.ma2.Array;
-import ucar.ma2.DataType;
-import ucar.ma2.IndexIterator;
-import ucar.ma2.InvalidRangeException;
 import ucar.nc2.NetcdfFile;
-import ucar.nc2.Variable;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -20,12 +18,26 @@ import java.util.Objects;
 public class FunctionProcessorService {
 
     private final NetcdReaderService netcdReaderService;
+    private final GroupByService groupByService;
+    private final AnalysisMetrics analysisMetrics;
 
-    public FunctionProcessorService(NetcdReaderService netcdReaderService) {
+    public FunctionProcessorService(NetcdReaderService netcdReaderService, GroupByService groupByService,
+            AnalysisMetrics analysisMetrics) {
         this.netcdReaderService = netcdReaderService;
+        this.groupByService = groupByService;
+        this.analysisMetrics = analysisMetrics;
     }
 
     public String processFunctionToString(NetcdfFile ncFile, AppFunction function, Map<String, String> fnArgs) {
+        try {
+            return processFunction(ncFile, function, fnArgs);
+        } catch (RuntimeException e) {
+            analysisMetrics.recordFunctionError(function, e);
+            throw e;
+        }
+    }
+
+    private String processFunction(NetcdfFile ncFile, AppFunction function, Map<String, String> fnArgs) {
 
         switch(function) {
             case READ_ROOT_GROUP:
@@ -51,66 +63,10 @@ public class FunctionProcessorService {
                         AppFunction.READ_VARIABLE.getFunctionArgValue()));
 
         log.debug("Attempting to average variable '{}' with section-spec '{}'", varName, sectionSpec);
-        Variable v = ncFile.findVariable(varName);
-        if (v == null) {
-            throw new RuntimeException("Unable fo find variable " + varName);
-        }
-        try {
-            Array data = v.read(sectionSpec);
-            DataType dataType = data.getDataType();
-
-            IndexIterator ixIter = data.getIndexIterator();
-            double avg;
-
-            if (dataType.isIntegral()) {
-                avg = averageIntegrals(ixIter);
-            } else if (dataType.isFloatingPoint()) {
-                avg = averageFloatingPoints(ixIter, dataType);
-            } else {
-                throw new IllegalStateException("Cannot average data type: " + dataType);
-            }
-            log.debug("Average: " + avg);
-            return String.valueOf(avg);
-        } catch (IOException | InvalidRangeException e) {
-            throw new RuntimeException("Error averaging variable " + varName, e);
-        }
-    }
-
-    private double averageIntegrals(IndexIterator ixIter) {
-        long total = 0L;
-        long count = 0L;
-        while (ixIter.hasNext()) {
-            total += (long) ixIter.next();
-            count++;
-        }
-        return total / (double) count;
-    }
-
-    private double averageFloatingPoints(IndexIterator ixIter, DataType dataType) {
-        double total = 0;
-        long count = 0L;
-        switch (dataType) {
-            case DOUBLE:
-                while (ixIter.hasNext()) {
-                    double dbl = (double) ixIter.next();
-                    if (!Double.isNaN(dbl)) {
-                        total += dbl;
-                        count++;
-                    }
-                }
-                break;
-            case FLOAT:
-                while (ixIter.hasNext()) {
-                    float flt = (float) ixIter.next();
-                    if (!Float.isNaN(flt)) {
-                        total += flt;
-                        count ++;
-                    }
-                }
-                break;
-            default:
-                throw new RuntimeException("Illegal data type: " + dataType);
-        }
-        return total / count;
+        // Grouping by no dimensions averages the whole section
+        GroupByResult result = groupByService.groupBy(ncFile, varName, sectionSpec, List.of());
+        double avg = result.toAverageArray()[0];
+        log.debug("Average: " + avg);
+        return String.valueOf(avg);
     }
 }
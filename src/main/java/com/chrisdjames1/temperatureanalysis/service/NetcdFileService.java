@@ -1,7 +1,11 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
 import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.exception.DatasetBusyException;
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.PoolStats;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFiles;
@@ -9,14 +13,36 @@ import ucar.nc2.NetcdfFiles;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Opens the dataset once for metadata and {@link CdmDatasetProperties#getPoolSize()} more times for reading data.
+ * {@link NetcdfFile} reads are not thread-safe, so each request borrows a handle of its own, with its own file
+ * pointer, for as long as it reads data and returns it afterwards.
+ */
 @Slf4j
 @Service
 public class NetcdFileService {
 
+    // A handle is held for the reads of one request, so one soon comes free
+    private static final long RETRY_AFTER_SECONDS = 1L;
+
     private final CdmDatasetProperties properties;
 
     private NetcdfFile ncFile;
+    private final List<NetcdfFile> pooledFiles = new ArrayList<>();
+    private BlockingQueue<NetcdfFile> idleFiles;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
 
     protected NetcdFileService(CdmDatasetProperties properties) {
         this.properties = properties;
@@ -24,23 +50,100 @@ public class NetcdFileService {
 
     @PostConstruct
     public void postConstruct() {
-        try {
-            ncFile = NetcdfFiles.open(properties.getPath());
-        } catch (IOException e) {
-            throw new RuntimeException("Could not open " + properties.getPath(), e);
+        int poolSize = Math.max(1, properties.getPoolSize());
+        idleFiles = new ArrayBlockingQueue<>(poolSize);
+        ncFile = open();
+        for (int i = 0; i < poolSize; i++) {
+            NetcdfFile pooledFile = open();
+            pooledFiles.add(pooledFile);
+            idleFiles.add(pooledFile);
         }
+        log.info("Opened {} with a pool of {} handles", properties.getPath(), poolSize);
     }
 
+    /**
+     * Returns the shared handle, which is only safe for reading metadata such as groups, dimensions, variables and
+     * attributes. Data must be read through a handle from {@link #borrow()}.
+     */
     public NetcdfFile getNcFile() {
         return ncFile;
     }
 
+    /**
+     * Borrows a handle for reading data, waiting up to {@link CdmDatasetProperties#getBorrowTimeoutMillis()} for one
+     * to become free. Close the returned handle to give it back.
+     *
+     * @throws DatasetBusyException If no handle comes free in time.
+     */
+    public PooledNetcdfFile borrow() {
+        long start = System.nanoTime();
+        NetcdfFile pooledFile;
+        try {
+            pooledFile = idleFiles.poll(properties.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestCancelledException("Interrupted while waiting for a dataset handle");
+        }
+        if (pooledFile == null) {
+            timeouts.increment();
+            throw new DatasetBusyException(String.format("Timed out after %d ms waiting for a dataset handle. Try " +
+                    "again later.", properties.getBorrowTimeoutMillis()), RETRY_AFTER_SECONDS);
+        }
+        recordWait(System.nanoTime() - start);
+        return new PooledNetcdfFile(pooledFile, this::release);
+    }
+
+    /**
+     * Borrows a handle only if one is free right away.
+     *
+     * @return The handle, or null if they are all in use.
+     */
+    @Nullable
+    public PooledNetcdfFile tryBorrow() {
+        NetcdfFile pooledFile = idleFiles.poll();
+        if (pooledFile == null) {
+            return null;
+        }
+        recordWait(0L);
+        return new PooledNetcdfFile(pooledFile, this::release);
+    }
+
+    public PoolStats stats() {
+        long borrowCount = borrows.sum();
+        double averageWaitMillis = borrowCount == 0 ? 0.0 : waitNanos.sum() / 1e6 / borrowCount;
+        return new PoolStats(pooledFiles.size(), idleFiles.size(), borrowCount, timeouts.sum(), averageWaitMillis,
+                maxWaitNanos.get() / 1e6);
+    }
+
     @PreDestroy
     public void preDestroy() {
+        close(ncFile);
+        pooledFiles.forEach(NetcdFileService::close);
+    }
+
+    private void release(NetcdfFile pooledFile) {
+        idleFiles.add(pooledFile);
+    }
+
+    private void recordWait(long nanos) {
+        borrows.increment();
+        waitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private NetcdfFile open() {
+        try {
+            return NetcdfFiles.open(properties.getPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open " + properties.getPath(), e);
+        }
+    }
+
+    private static void close(NetcdfFile file) {
         try {
-            ncFile.close();
+            file.close();
         } catch (IOException e) {
-            throw new RuntimeException("Could not close " + properties.getPath(), e);
+            throw new RuntimeException("Could not close " + file.getLocation(), e);
         }
     }
 }
@@ -1,32 +1,160 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import com.chrisdjames1.temperatureanalysis.model.SectionChunk;
+import com.chrisdjames1.temperatureanalysis.model.SubSection;
 import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
 import com.chrisdjames1.temperatureanalysis.model.value.FnReadVariableArg;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import com.chrisdjames1.temperatureanalysis.service.binary.BinaryArrayWriter;
+import com.chrisdjames1.temperatureanalysis.service.cache.ChunkCacheService;
+import com.chrisdjames1.temperatureanalysis.service.cache.SectionCacheService;
+import com.chrisdjames1.temperatureanalysis.service.json.JsonArrayWriter;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.resident.ResidentVariableService;
+import com.chrisdjames1.temperatureanalysis.service.transpose.TransposedStoreService;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import com.chrisdjames1.temperatureanalysis.util.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import ucar.ma2.Array;
+import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
-import ucar.nc2.write.Ncdump;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class NetcdReaderService {
 
+    private final CdmReadProperties readProperties;
+    private final SectionCacheService sectionCacheService;
+    private final TransposedStoreService transposedStoreService;
+    private final ResidentVariableService residentVariableService;
+    private final ChunkCacheService chunkCacheService;
+    private final AnalysisMetrics analysisMetrics;
+    private final SingleFlight<String, Array> sectionReads;
+
+    public NetcdReaderService(CdmReadProperties readProperties, SectionCacheService sectionCacheService,
+            TransposedStoreService transposedStoreService, ResidentVariableService residentVariableService,
+            ChunkCacheService chunkCacheService, AnalysisMetrics analysisMetrics) {
+        this.readProperties = readProperties;
+        this.sectionCacheService = sectionCacheService;
+        this.transposedStoreService = transposedStoreService;
+        this.residentVariableService = residentVariableService;
+        this.chunkCacheService = chunkCacheService;
+        this.analysisMetrics = analysisMetrics;
+        this.sectionReads = new SingleFlight<>("section-reads", analysisMetrics::checkCancelled);
+        analysisMetrics.registerCoalescing(sectionReads, SingleFlight::stats);
+    }
+
     public String readVariableToJsonArrayString(NetcdfFile ncFile, Map<String, String> fnArgs) {
+        String varName = Objects.requireNonNull(fnArgs.get(FnReadVariableArg.VARIABLE.getArg()),
+                String.format("Missing argument '%s' for function '%s'", FnReadVariableArg.VARIABLE.getArg(),
+                        AppFunction.READ_VARIABLE.getFunctionArgValue()));
+        String sectionSpec = Objects.requireNonNull(fnArgs.get(FnReadVariableArg.SECTION_SPEC.getArg()),
+                String.format("Missing argument '%s' for function '%s'", FnReadVariableArg.SECTION_SPEC.getArg(),
+                        AppFunction.READ_VARIABLE.getFunctionArgValue()));
 
-        Array data = readVariableToArray(ncFile, fnArgs);
-        String arrayStr = Ncdump.printArray(data, null, null).replaceAll("\\{", "[").replaceAll("}", "]");
+        StringWriter writer = new StringWriter();
+        writeVariableToJson(ncFile, varName, sectionSpec, null, writer);
+        String arrayStr = writer.toString();
         log.debug(arrayStr);
 
         return arrayStr;
     }
 
+    /**
+     * Writes the section to {@code writer} as nested JSON arrays, one chunk at a time, so the memory used does not
+     * grow with the size of the section. NaN values are written as null.
+     *
+     * @param precision (optional) Maximum number of decimal places for floating point values.
+     */
+    public void writeVariableToJson(NetcdfFile ncFile, String varName, String sectionSpec,
+            @Nullable Integer precision, Writer writer) {
+
+        int[] sectionShape = readSectionShape(ncFile, varName, sectionSpec);
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(sectionShape)
+                .precision(precision).build();
+        long[] serializeNanos = new long[1];
+        try {
+            readVariableInChunks(ncFile, varName, sectionSpec, chunk -> {
+                long start = System.nanoTime();
+                try {
+                    jsonArrayWriter.write(chunk.getData());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                serializeNanos[0] += System.nanoTime() - start;
+            });
+            long start = System.nanoTime();
+            jsonArrayWriter.finish();
+            serializeNanos[0] += System.nanoTime() - start;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        analysisMetrics.recordPhase(Phase.SERIALIZE, varName, serializeNanos[0]);
+    }
+
+    /**
+     * Writes the section to {@code outputStream} as little-endian floats, one chunk at a time, copying each chunk
+     * from its backing storage without any intermediate text.
+     */
+    public void writeVariableToBinary(NetcdfFile ncFile, String varName, String sectionSpec, BinaryFormat format,
+            BinaryDtype dtype, OutputStream outputStream) {
+
+        int[] sectionShape = readSectionShape(ncFile, varName, sectionSpec);
+        BinaryArrayWriter binaryArrayWriter = BinaryArrayWriter.builder().outputStream(outputStream)
+                .shape(sectionShape).dtype(dtype).format(format).build();
+        long[] serializeNanos = new long[1];
+        try {
+            readVariableInChunks(ncFile, varName, sectionSpec, chunk -> {
+                long start = System.nanoTime();
+                try {
+                    binaryArrayWriter.write(chunk.getData());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                serializeNanos[0] += System.nanoTime() - start;
+            });
+            long start = System.nanoTime();
+            binaryArrayWriter.finish();
+            serializeNanos[0] += System.nanoTime() - start;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        analysisMetrics.recordPhase(Phase.SERIALIZE, varName, serializeNanos[0]);
+    }
+
+    /**
+     * Returns the binary dtype that holds every value of the variable without losing precision, as far as the
+     * supported dtypes allow.
+     */
+    public BinaryDtype readNativeBinaryDtype(NetcdfFile ncFile, String varName) {
+        DataType dataType = findVariable(ncFile, varName).getDataType();
+        if (!dataType.isNumeric()) {
+            throw new UnsupportedOperationException("Data type not yet implemented: " + dataType);
+        }
+        return dataType == DataType.FLOAT || dataType.getSize() <= 2 ? BinaryDtype.FLOAT32 : BinaryDtype.FLOAT64;
+    }
+
     public Array readVariableToArray(NetcdfFile ncFile, Map<String, String> fnArgs) {
         String varName = Objects.requireNonNull(fnArgs.get(FnReadVariableArg.VARIABLE.getArg()),
                 String.format("Missing argument '%s' for function '%s'", FnReadVariableArg.VARIABLE.getArg(),
@@ -38,18 +166,148 @@ public class NetcdReaderService {
         return readVariableToArray(ncFile, varName, sectionSpec);
     }
 
+    /**
+     * Reads the whole section into memory. Sections are served from the {@link SectionCacheService} when possible,
+     * so the returned {@link Array} must not be modified. Time series of a few cells are read from the
+     * {@link TransposedStoreService} when the variable has a transposed store. Resident variables are always read
+     * from the {@link ResidentVariableService} and never cached, so their data is not held on the heap twice.
+     * Chunked variables are assembled from the decompressed chunks of the {@link ChunkCacheService} and not cached
+     * as sections as well, so their data is not counted twice against the memory budget.
+     */
     public Array readVariableToArray(NetcdfFile ncFile, String varName, String sectionSpec) {
         log.debug("Attempting to read variable '{}' with section-spec '{}'", varName, sectionSpec);
 
-        Variable v = ncFile.findVariable(varName);
-        if (v == null) {
-            throw new RuntimeException("Unable fo find variable " + varName);
+        Variable v = findVariable(ncFile, varName);
+        // sectionSpec is string specifying a potentially multidimensional array range of data, eg ":,1:2,0:3"
+        List<Range> ranges = readSectionRanges(ncFile, varName, sectionSpec);
+        long start = System.nanoTime();
+        Array resident = residentVariableService.read(ncFile, varName, ranges);
+        if (resident != null) {
+            return recordRead(v, "resident", resident, start);
         }
+        if (chunkCacheService.canServe(v)) {
+            return readRanges(ncFile, v, ranges);
+        }
+        return sectionCacheService.get(ncFile, varName, SectionSpecUtils.format(ranges), () ->
+                readRanges(ncFile, v, ranges));
+    }
+
+    /**
+     * Returns the shape of the data selected by {@code sectionSpec} without reading any of it.
+     */
+    public int[] readSectionShape(NetcdfFile ncFile, String varName, String sectionSpec) {
+        return SectionSpecUtils.shapeOf(readSectionRanges(ncFile, varName, sectionSpec));
+    }
+
+    /**
+     * Returns the index ranges selected by {@code sectionSpec}, one per dimension, without reading any data.
+     */
+    public List<Range> readSectionRanges(NetcdfFile ncFile, String varName, String sectionSpec) {
+        Variable v = findVariable(ncFile, varName);
         try {
-            // sectionSpec is string specifying a potentially multidimensional array range of data, eg ":,1:2,0:3"
-            return v.read(sectionSpec);
+            return SectionSpecUtils.parse(sectionSpec, v.getShape());
+        } catch (InvalidRangeException e) {
+            throw new RuntimeException("Invalid section-spec for variable " + varName, e);
+        }
+    }
+
+    /**
+     * Reads the section in bounded sub-sections of at most {@link CdmReadProperties#getChunkSizeBytes()} each,
+     * passing each one to {@code consumer} before reading the next. The chunks arrive in the row-major order of the
+     * full section, so only one chunk is held in memory at a time. A cancelled request stops before reading the next
+     * chunk, as {@link AnalysisMetrics#checkCancelled()}.
+     */
+    public void readVariableInChunks(NetcdfFile ncFile, String varName, String sectionSpec,
+            Consumer<SectionChunk> consumer) {
+        log.debug("Attempting to read variable '{}' in chunks with section-spec '{}'", varName, sectionSpec);
+
+        int[] sectionShape = readSectionShape(ncFile, varName, sectionSpec);
+        List<SubSection> subSections = planSubSections(ncFile, varName, sectionSpec);
+        if (subSections.size() == 1) {
+            // Small enough to read in one go, so it can come from the cache
+            analysisMetrics.checkCancelled();
+            consumer.accept(new SectionChunk(readVariableToArray(ncFile, varName, sectionSpec),
+                    new int[sectionShape.length], sectionShape));
+            return;
+        }
+        for (SubSection subSection : subSections) {
+            analysisMetrics.checkCancelled();
+            consumer.accept(new SectionChunk(readSubSection(ncFile, varName, subSection), subSection.getOffset(),
+                    sectionShape));
+        }
+    }
+
+    /**
+     * Splits the section into the bounded sub-sections that {@link #readVariableInChunks} reads, without reading any
+     * data. The sub-sections are independent so they can be read in any order, or concurrently from separate files.
+     * For chunked variables the sub-sections are aligned to chunk boundaries where possible.
+     */
+    public List<SubSection> planSubSections(NetcdfFile ncFile, String varName, String sectionSpec) {
+        Variable v = findVariable(ncFile, varName);
+        try {
+            List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+            return SectionSpecUtils.split(ranges, v.getElementSize(), readProperties.getChunkSizeBytes(),
+                    ChunkCacheService.chunkShapeOf(v));
+        } catch (InvalidRangeException e) {
+            throw new RuntimeException("Invalid section-spec for variable " + varName, e);
+        }
+    }
+
+    /**
+     * Reads one of the sub-sections planned by {@link #planSubSections}. The returned {@link Array} may be shared with
+     * a concurrent identical read, so it must not be modified.
+     */
+    public Array readSubSection(NetcdfFile ncFile, String varName, SubSection subSection) {
+        return readRanges(ncFile, findVariable(ncFile, varName), subSection.getSection().getRanges());
+    }
+
+    public CoalescingStats readCoalescingStats() {
+        return sectionReads.stats();
+    }
+
+    /**
+     * Reads the section, sharing the read with any identical read of the dataset already in flight on another
+     * handle, so the returned {@link Array} must not be modified. The key includes the last modified time and length
+     * of the file, so a read never joins one of an earlier version of the dataset.
+     */
+    private Array readRanges(NetcdfFile ncFile, Variable v, List<Range> ranges) {
+        File datasetFile = new File(ncFile.getLocation());
+        String key = ncFile.getLocation() + "|" + datasetFile.lastModified() + "|" + datasetFile.length() + "|" +
+                v.getFullName() + "|" + SectionSpecUtils.format(ranges);
+        return sectionReads.execute(key, () -> readRangesUncoalesced(ncFile, v, ranges));
+    }
+
+    private Array readRangesUncoalesced(NetcdfFile ncFile, Variable v, List<Range> ranges) {
+        long start = System.nanoTime();
+        Array data = residentVariableService.read(ncFile, v.getFullName(), ranges);
+        if (data != null) {
+            return recordRead(v, "resident", data, start);
+        }
+        data = transposedStoreService.read(ncFile, v.getFullName(), ranges);
+        if (data != null) {
+            return recordRead(v, "transposed", data, start);
+        }
+        try {
+            if (chunkCacheService.canServe(v)) {
+                return recordRead(v, "chunk-cache", chunkCacheService.read(ncFile, v, ranges), start);
+            }
+            return recordRead(v, "file", v.read(new Section(ranges)), start);
         } catch (IOException | InvalidRangeException e) {
-            throw new RuntimeException("Error reading variable " + varName, e);
+            throw new RuntimeException("Error reading variable " + v.getFullName(), e);
+        }
+    }
+
+    private Array recordRead(Variable v, String source, Array data, long startNanos) {
+        analysisMetrics.recordRead(v.getFullName(), source, data.getSize(), data.getSizeBytes(),
+                System.nanoTime() - startNanos);
+        return data;
+    }
+
+    private static Variable findVariable(NetcdfFile ncFile, String varName) {
+        Variable v = ncFile.findVariable(varName);
+        if (v == null) {
+            throw new RuntimeException("Unable fo find variable " + varName);
         }
+        return v;
     }
 }
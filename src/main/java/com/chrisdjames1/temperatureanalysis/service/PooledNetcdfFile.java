@@ -0,0 +1,36 @@
+package com.chrisdjames1.temperatureanalysis.service;
+
+import ucar.nc2.NetcdfFile;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link NetcdfFile} borrowed from the {@link NetcdFileService} pool. Only the borrowing thread may read through
+ * it, and closing it returns it to the pool rather than closing the file.
+ */
+public class PooledNetcdfFile implements AutoCloseable {
+
+    private final NetcdfFile ncFile;
+    private final Consumer<NetcdfFile> release;
+    private boolean released;
+
+    PooledNetcdfFile(NetcdfFile ncFile, Consumer<NetcdfFile> release) {
+        this.ncFile = ncFile;
+        this.release = release;
+    }
+
+    public NetcdfFile getNcFile() {
+        if (released) {
+            throw new IllegalStateException("Handle has already been returned to the pool");
+        }
+        return ncFile;
+    }
+
+    @Override
+    public void close() {
+        if (!released) {
+            released = true;
+            release.accept(ncFile);
+        }
+    }
+}
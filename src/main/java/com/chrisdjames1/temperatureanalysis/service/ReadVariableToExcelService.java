@@ -1,16 +1,21 @@
 package com.chrisdjames1.temperatureanalysis.service;
 
+import com.chrisdjames1.temperatureanalysis.config.CdmExcelProperties;
 import com.chrisdjames1.temperatureanalysis.model.cdm.dataaccesslayer.CdmAttribute;
 import com.chrisdjames1.temperatureanalysis.model.cdm.tx.CdmDataAccessLayerTranslator;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
 import com.chrisdjames1.temperatureanalysis.service.excel.AttributesExcelWriter;
 import com.chrisdjames1.temperatureanalysis.service.excel.DataHeaderExcelWriter;
+import com.chrisdjames1.temperatureanalysis.service.excel.DataRowsExcelWriter;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.util.CountingOutputStream;
 import com.chrisdjames1.temperatureanalysis.util.ShapeUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import ucar.ma2.Array;
@@ -20,22 +25,30 @@ import ucar.nc2.Dimension;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 @Service
 public class ReadVariableToExcelService {
 
+    // Cells written between checks that the request has not been cancelled
+    private static final int CANCELLATION_CHECK_CELLS = 4096;
+
     private final NetcdReaderService netcdReaderService;
+    private final CdmExcelProperties excelProperties;
+    private final AnalysisMetrics analysisMetrics;
 
-    public ReadVariableToExcelService(NetcdReaderService netcdReaderService) {
+    public ReadVariableToExcelService(NetcdReaderService netcdReaderService, CdmExcelProperties excelProperties,
+            AnalysisMetrics analysisMetrics) {
         this.netcdReaderService = netcdReaderService;
+        this.excelProperties = excelProperties;
+        this.analysisMetrics = analysisMetrics;
     }
 
     /**
@@ -52,14 +65,37 @@ public class ReadVariableToExcelService {
      *                         {@code columnIndexFor1d} is 1 then the columns will be titled with the name of the second
      *                         dimension (e.g. latitude) and the column header will be the value of that dimension, i.e
      *                         "141".
-     * @param fileName         (optional) Name to give the generated XLSX file.
-     * @return The path to the generated XLSX file.
+     * @param outputFile       The XLSX file to write, replacing any existing file.
+     */
+    public void readVariable2dToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer columnIndexFor1d, Path outputFile) {
+        readVariable2dToExcel(ncFile, variableName, sectionSpec, columnIndexFor1d, outputFile,
+                ProgressListener.NONE);
+    }
+
+    /**
+     * As {@link #readVariable2dToExcel(NetcdfFile, String, String, Integer, Path)}, reporting the fraction of the
+     * data written after each chunk.
      */
-    public String readVariable2dToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
-            @Nullable Integer columnIndexFor1d, @Nullable String fileName) {
+    public void readVariable2dToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer columnIndexFor1d, Path outputFile, ProgressListener listener) {
+        try (OutputStream outputStream = Files.newOutputStream(outputFile)) {
+            readVariable2dToExcel(ncFile, variableName, sectionSpec, columnIndexFor1d, outputStream, listener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        Array data = netcdReaderService.readVariableToArray(ncFile, variableName, sectionSpec);
-        int[] shape = data.getShape();
+    /**
+     * As {@link #readVariable2dToExcel(NetcdfFile, String, String, Integer, Path, ProgressListener)}, writing the
+     * workbook to {@code outputStream}. Rows beyond the row access window are flushed to temporary files as the sheet
+     * is generated, which bounds memory, but nothing reaches {@code outputStream} until the whole workbook is written
+     * out at the end. The stream is left open.
+     */
+    public void readVariable2dToExcel(NetcdfFile ncFile, String variableName, String sectionSpec,
+            @Nullable Integer columnIndexFor1d, OutputStream outputStream, ProgressListener listener) {
+
+        int[] shape = netcdReaderService.readSectionShape(ncFile, variableName, sectionSpec);
         int shapeDimensionCount = ShapeUtils.countShapeDimensions(shape);
 
         if (shapeDimensionCount < 1 || shapeDimensionCount > 2) {
@@ -118,7 +154,9 @@ public class ReadVariableToExcelService {
         String rowCategory = dimensions.get(rowCategoryIndex).getName();
         String columnCategory = dimensions.get(columnCategoryIndex).getName();
 
-        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excelProperties.getRowAccessWindowSize());
+        workbook.setCompressTempFiles(excelProperties.isCompressTempFiles());
+        try (workbook) {
             Sheet sheet = workbook.createSheet(variableName);
 
             // Print the attributes at the top of the sheet
@@ -175,59 +213,69 @@ public class ReadVariableToExcelService {
                 columnHeaderCell.setCellStyle(headerStyle);
             }
 
-            Map<Integer, Row> dataRows = new HashMap<>();
-
-            // Print the row category labels
-            for (int row = 0; row < shape[rowCategoryIndex]; row++) {
-                Row dataRow = dataRows.computeIfAbsent(row + rowCount, sheet::createRow);
-                Cell rowCategoryCell = dataRow.createCell(0);
-                rowCategoryCell.setCellValue(sectionStarts.get(rowCategoryIndex) + row);
-                rowCategoryCell.setCellStyle(headerStyle);
-            }
+            // Print the row category labels and the data. The chunks arrive in row-major order and the row
+            // category is the outermost ranged dimension, so each row is complete before the next one starts.
+            DataRowsExcelWriter dataRowsExcelWriter = DataRowsExcelWriter.builder().rowCount(rowCount)
+                    .excelWriter(attributesExcelWriter).rowLabelStart(sectionStarts.get(rowCategoryIndex)).build();
+            long sectionSize = Arrays.stream(shape).asLongStream().reduce(1L, (a, b) -> a * b);
+            long[] elementsWritten = new long[1];
+            long[] serializeNanos = new long[1];
+            netcdReaderService.readVariableInChunks(ncFile, variableName, sectionSpec, chunk -> {
+                long start = System.nanoTime();
+                Array data = chunk.getData();
+                int[] chunkOffset = chunk.getOffset();
+                IndexIterator ixIter = data.getIndexIterator();
+                DataType dataType = data.getDataType();
+                int[] counter;
+                int rowOffset;
+                int colOffset;
+                long cells = 0;
+                while (ixIter.hasNext()) {
+                    if (++cells % CANCELLATION_CHECK_CELLS == 0) {
+                        analysisMetrics.checkCancelled();
+                    }
+                    Object next = ixIter.next();
+                    counter = ixIter.getCurrentCounter();
+                    rowOffset = chunkOffset[rowCategoryIndex] + counter[rowCategoryIndex];
+                    colOffset = counter.length >= columnCategoryIndex + 1 ?
+                            chunkOffset[columnCategoryIndex] + counter[columnCategoryIndex] : 0;
+                    Row dataRow = dataRowsExcelWriter.getRow(rowOffset);
+                    Cell dataCell = dataRow.createCell(colOffset + 1);
 
-            // Print the data
-            IndexIterator ixIter = data.getIndexIterator();
-            DataType dataType = data.getDataType();
-            int[] counter;
-            int rowOffset;
-            int colOffset;
-            while (ixIter.hasNext()) {
-                Object next = ixIter.next();
-                counter = ixIter.getCurrentCounter();
-                rowOffset = counter[rowCategoryIndex];
-                colOffset = counter.length >= columnCategoryIndex + 1 ? counter[columnCategoryIndex] : 0;
-                Row dataRow = dataRows.get(rowOffset + rowCount);
-                Cell dataCell = dataRow.createCell(colOffset + 1);
-
-                // NaN converts to the Excel error value #NUM!
-                switch (dataType) {
-                    case DOUBLE:
-                        dataCell.setCellValue((Double) next);
-                        break;
-                    case FLOAT:
-                        dataCell.setCellValue(((Float) next).doubleValue());
-                        break;
-                    case STRING:
-                        dataCell.setCellValue((String) next);
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Data type not yet implemented: " + dataType);
+                    // NaN converts to the Excel error value #NUM!
+                    switch (dataType) {
+                        case DOUBLE:
+                            dataCell.setCellValue((Double) next);
+                            break;
+                        case FLOAT:
+                            dataCell.setCellValue(((Float) next).doubleValue());
+                            break;
+                        case STRING:
+                            dataCell.setCellValue((String) next);
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("Data type not yet implemented: " + dataType);
+                    }
                 }
-            }
-
-            // Write the content to a temporary file
-            File currDir = new File(".");
-            String path = currDir.getAbsolutePath();
-            String fileLocation = path.substring(0, path.length() - 1) +
-                    (StringUtils.isNotEmpty(fileName) ? fileName : "temp.xlsx");
-
-            FileOutputStream outputStream = new FileOutputStream(fileLocation);
-            workbook.write(outputStream);
+                elementsWritten[0] += data.getSize();
+                serializeNanos[0] += System.nanoTime() - start;
+                listener.onProgress((double) elementsWritten[0] / sectionSize);
+            });
+            long start = System.nanoTime();
+            dataRowsExcelWriter.write(shape[rowCategoryIndex]);
 
-            return fileLocation;
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            workbook.write(countingOutputStream);
+            analysisMetrics.recordPhase(Phase.SERIALIZE, variableName,
+                    serializeNanos[0] + System.nanoTime() - start);
+            analysisMetrics.recordCellsWritten(variableName, elementsWritten[0]);
+            analysisMetrics.recordWorkbook(variableName, countingOutputStream.getCount());
 
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            // Delete the temporary files holding the flushed rows
+            workbook.dispose();
         }
     }
 }
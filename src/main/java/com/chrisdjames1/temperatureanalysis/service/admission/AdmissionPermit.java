@@ -0,0 +1,26 @@
+package com.chrisdjames1.temperatureanalysis.service.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A share of the memory budget held by an admitted request. Closing it, which may be done more than once, gives the
+ * share back.
+ */
+public class AdmissionPermit implements AutoCloseable {
+
+    private final AdmissionService admissionService;
+    private final long bytes;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    AdmissionPermit(AdmissionService admissionService, long bytes) {
+        this.admissionService = admissionService;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            admissionService.release(bytes);
+        }
+    }
+}
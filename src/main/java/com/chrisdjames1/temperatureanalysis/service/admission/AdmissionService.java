@@ -0,0 +1,118 @@
+package com.chrisdjames1.temperatureanalysis.service.admission;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmAdmissionProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestTooLargeException;
+import com.chrisdjames1.temperatureanalysis.exception.TooManyRequestsException;
+import com.chrisdjames1.temperatureanalysis.model.CostEstimate;
+import com.chrisdjames1.temperatureanalysis.model.value.AdmissionDecision;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admits requests against a shared budget of estimated memory. A request that would take more than a single request
+ * is allowed is refused straight away. Otherwise it reserves its estimated memory for as long as it runs, waiting up
+ * to {@link CdmAdmissionProperties#getQueueTimeoutMillis()} for earlier requests to release enough of the budget.
+ */
+@Slf4j
+@Service
+public class AdmissionService {
+
+    private final CdmAdmissionProperties admissionProperties;
+    private long reservedBytes;
+
+    public AdmissionService(CdmAdmissionProperties admissionProperties) {
+        this.admissionProperties = admissionProperties;
+    }
+
+    /**
+     * What {@link #admit} would do with the request right now, without reserving anything.
+     */
+    public AdmissionDecision decide(CostEstimate estimate) {
+        if (!admissionProperties.isEnabled()) {
+            return AdmissionDecision.ADMIT;
+        }
+        if (rejection(estimate) != null) {
+            return AdmissionDecision.REJECT;
+        }
+        synchronized (this) {
+            return fits(reservation(estimate)) ? AdmissionDecision.ADMIT : AdmissionDecision.QUEUE;
+        }
+    }
+
+    /**
+     * Reserves the estimated memory of the request, waiting for room in the budget if need be. The returned permit
+     * must be closed once the request has finished.
+     *
+     * @throws RequestTooLargeException If the request is too large to ever be admitted.
+     * @throws TooManyRequestsException If there is still no room in the budget after the queue timeout.
+     */
+    public AdmissionPermit admit(CostEstimate estimate) {
+        return admit(estimate, admissionProperties.getQueueTimeoutMillis());
+    }
+
+    /**
+     * As {@link #admit(CostEstimate)}, waiting up to {@code queueTimeoutMillis} for room in the budget. 0 waits for as
+     * long as it takes, which suits an export job that has already waited its turn and has no client waiting on it.
+     */
+    public AdmissionPermit admit(CostEstimate estimate, long queueTimeoutMillis) {
+        if (!admissionProperties.isEnabled()) {
+            return new AdmissionPermit(this, 0L);
+        }
+        String rejection = rejection(estimate);
+        if (rejection != null) {
+            throw new RequestTooLargeException(rejection);
+        }
+        long bytes = reservation(estimate);
+        long deadline = System.currentTimeMillis() + queueTimeoutMillis;
+        synchronized (this) {
+            while (!fits(bytes)) {
+                long remaining = queueTimeoutMillis > 0 ? deadline - System.currentTimeMillis() : 0;
+                if (queueTimeoutMillis > 0 && remaining <= 0) {
+                    log.info("Refusing a read of '{}' after waiting {} ms for {} bytes of the memory budget",
+                            estimate.getVariable(), queueTimeoutMillis, bytes);
+                    throw new TooManyRequestsException("Too many large requests are running. Try again later.");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TooManyRequestsException("Interrupted while waiting for room in the memory budget");
+                }
+            }
+            reservedBytes += bytes;
+        }
+        return new AdmissionPermit(this, bytes);
+    }
+
+    synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+        notifyAll();
+    }
+
+    @Nullable
+    private String rejection(CostEstimate estimate) {
+        if (estimate.getMemoryBytes() > admissionProperties.getMaxRequestMemoryBytes()) {
+            return String.format("The request would hold about %d bytes in memory, more than the limit of %d. " +
+                    "Request a smaller section.", estimate.getMemoryBytes(),
+                    admissionProperties.getMaxRequestMemoryBytes());
+        }
+        long maxResponseBytes = admissionProperties.getMaxResponseBytes();
+        if (maxResponseBytes > 0 && estimate.getOutputBytes() > maxResponseBytes) {
+            return String.format("The response would be about %d bytes, more than the limit of %d. " +
+                    "Request a smaller section.", estimate.getOutputBytes(), maxResponseBytes);
+        }
+        return null;
+    }
+
+    /**
+     * A request larger than the whole budget reserves all of it, so it can still run on its own.
+     */
+    private long reservation(CostEstimate estimate) {
+        return Math.min(estimate.getMemoryBytes(), admissionProperties.getMemoryBudgetBytes());
+    }
+
+    private boolean fits(long bytes) {
+        return reservedBytes == 0 || reservedBytes + bytes <= admissionProperties.getMemoryBudgetBytes();
+    }
+}
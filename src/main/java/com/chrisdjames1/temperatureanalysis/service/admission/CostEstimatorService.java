@@ -0,0 +1,180 @@
+package com.chrisdjames1.temperatureanalysis.service.admission;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmAdmissionProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReduceProperties;
+import com.chrisdjames1.temperatureanalysis.model.CostEstimate;
+import com.chrisdjames1.temperatureanalysis.model.value.AdmissionDecision;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
+import com.chrisdjames1.temperatureanalysis.model.value.OutputFormat;
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import com.chrisdjames1.temperatureanalysis.service.NetcdReaderService;
+import com.chrisdjames1.temperatureanalysis.service.binary.BinaryArrayWriter;
+import com.chrisdjames1.temperatureanalysis.service.pyramid.Pyramid;
+import com.chrisdjames1.temperatureanalysis.service.pyramid.PyramidService;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Predicts the cost of returning a section from the variable shape and the parsed section-spec alone, before any data
+ * is read. Output size is the element count times the element size times the multiplier of the
+ * {@link OutputFormat}, except for binary output whose size is exact. Memory is the largest amount of decoded data
+ * held at once, which for the chunked read paths is bounded by {@link CdmReadProperties#getChunkSizeBytes()}. Grouped
+ * averages are estimated by {@link #estimateGroupBy} instead, from the number of groups.
+ */
+@Service
+public class CostEstimatorService {
+
+    // The average and count of each group in the result, and the averages copied out of it for the response
+    private static final int GROUP_RESULT_BYTES = 2 * Double.BYTES + Long.BYTES;
+
+    private final NetcdReaderService netcdReaderService;
+    private final PyramidService pyramidService;
+    private final CdmReadProperties readProperties;
+    private final CdmReduceProperties reduceProperties;
+    private final CdmAdmissionProperties admissionProperties;
+
+    public CostEstimatorService(NetcdReaderService netcdReaderService, PyramidService pyramidService,
+            CdmReadProperties readProperties, CdmReduceProperties reduceProperties,
+            CdmAdmissionProperties admissionProperties) {
+        this.netcdReaderService = netcdReaderService;
+        this.pyramidService = pyramidService;
+        this.readProperties = readProperties;
+        this.reduceProperties = reduceProperties;
+        this.admissionProperties = admissionProperties;
+    }
+
+    /**
+     * Estimates the cost of returning the section, leaving the {@link CostEstimate#getDecision()} as
+     * {@link AdmissionDecision#ADMIT}.
+     *
+     * @param level (optional) Block size of a coarse level to read from. Null or 1 reads the data itself.
+     * @param dtype (optional) Element type of binary output. Defaults to float64.
+     */
+    public CostEstimate estimate(NetcdfFile ncFile, String varName, String sectionSpec, OutputFormat format,
+            @Nullable Integer level, @Nullable BinaryDtype dtype) {
+
+        Variable v = findVariable(ncFile, varName);
+        boolean nativeLevel = level == null || level == 1;
+        int[] shape = nativeLevel ? netcdReaderService.readSectionShape(ncFile, varName, sectionSpec) :
+                pyramidService.readLevelShape(ncFile, varName, sectionSpec, level);
+        long elementCount = Arrays.stream(shape).asLongStream().reduce(1L, (a, b) -> a * b);
+        int elementSize = v.getElementSize();
+
+        long readBytes;
+        long memoryBytes;
+        boolean streamed;
+        if (nativeLevel) {
+            readBytes = elementCount * elementSize;
+            streamed = readBytes > readProperties.getChunkSizeBytes();
+            memoryBytes = Math.min(readBytes, readProperties.getChunkSizeBytes());
+        } else {
+            // Levels are block-averaged one plane of the last two dimensions at a time into a float result
+            long planeElements = levelPlaneElements(v, sectionSpec, level);
+            long planes = shape.length > 2 ? elementCount / ((long) shape[shape.length - 2] * shape[shape.length - 1])
+                    : 1L;
+            readBytes = planes * planeElements * elementSize;
+            streamed = false;
+            memoryBytes = elementCount * Float.BYTES + planeElements * (elementSize + Double.BYTES);
+            elementSize = Float.BYTES;
+        }
+
+        long outputBytes = format == OutputFormat.BINARY ?
+                BinaryArrayWriter.contentLength(shape, dtype != null ? dtype : BinaryDtype.FLOAT64, BinaryFormat.NPY) :
+                (long) (elementCount * elementSize * format.getOutputMultiplier());
+
+        return CostEstimate.builder().variable(varName).sectionSpec(sectionSpec).format(format)
+                .level(nativeLevel ? 1 : level).shape(shape).elementCount(elementCount).elementSize(elementSize)
+                .readBytes(readBytes).outputBytes(outputBytes).memoryBytes(memoryBytes)
+                .estimatedMillis(estimateMillis(readBytes, outputBytes)).streamed(streamed)
+                .decision(AdmissionDecision.ADMIT).build();
+    }
+
+    /**
+     * Estimates the cost of averaging the section grouped by {@code keepDimensions}, as the group-by endpoints do.
+     * The section is read in chunks, but each of the {@link CdmReduceProperties#getParallelism()} accumulators of the
+     * reduction holds counters for every group, as does the result, so memory grows with the number of groups: the
+     * product of the lengths of the kept dimensions. Keeping every dimension of a section costs more than reading it
+     * whole. The output holds an average and a count per group, or a row of group keys and an average in a workbook.
+     *
+     * @param dtype (optional) Element type of binary output. Defaults to float64.
+     */
+    public CostEstimate estimateGroupBy(NetcdfFile ncFile, String varName, String sectionSpec,
+            Collection<Integer> keepDimensions, OutputFormat format, @Nullable BinaryDtype dtype) {
+
+        Variable v = findVariable(ncFile, varName);
+        int[] sectionShape = netcdReaderService.readSectionShape(ncFile, varName, sectionSpec);
+        int[] kept = keepDimensions.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        int[] shape = new int[kept.length];
+        for (int k = 0; k < kept.length; k++) {
+            if (kept[k] < 0 || kept[k] >= sectionShape.length) {
+                throw new IndexOutOfBoundsException(String.format("Dimension index %d is outside of the %d " +
+                        "dimensions of %s", kept[k], sectionShape.length, varName));
+            }
+            shape[k] = sectionShape[kept[k]];
+        }
+        long groups = Arrays.stream(shape).asLongStream().reduce(1L, (a, b) -> a * b);
+        long readBytes = Arrays.stream(sectionShape).asLongStream().reduce(1L, (a, b) -> a * b) *
+                v.getElementSize();
+
+        int counterBytes = Double.BYTES + Long.BYTES +
+                (reduceProperties.getSummation() == Summation.KAHAN ? Double.BYTES : 0);
+        long accumulators = Math.max(1, reduceProperties.getParallelism());
+        long memoryBytes = Math.min(readBytes, readProperties.getChunkSizeBytes()) +
+                groups * (counterBytes * accumulators + GROUP_RESULT_BYTES);
+
+        long outputBytes;
+        if (format == OutputFormat.BINARY) {
+            outputBytes = BinaryArrayWriter.contentLength(shape, dtype != null ? dtype : BinaryDtype.FLOAT64,
+                    BinaryFormat.NPY);
+        } else {
+            long valuesPerGroup = format == OutputFormat.XLSX ? kept.length + 1 : 2;
+            outputBytes = (long) (groups * valuesPerGroup * Double.BYTES * format.getOutputMultiplier());
+        }
+
+        return CostEstimate.builder().variable(varName).sectionSpec(sectionSpec).format(format).level(1)
+                .shape(shape).elementCount(groups).elementSize(Double.BYTES).readBytes(readBytes)
+                .outputBytes(outputBytes).memoryBytes(memoryBytes)
+                .estimatedMillis(estimateMillis(readBytes, outputBytes))
+                .streamed(readBytes > readProperties.getChunkSizeBytes()).decision(AdmissionDecision.ADMIT).build();
+    }
+
+    private long estimateMillis(long readBytes, long outputBytes) {
+        return 1000L * readBytes / Math.max(1L, admissionProperties.getReadBytesPerSecond()) +
+                1000L * outputBytes / Math.max(1L, admissionProperties.getOutputBytesPerSecond());
+    }
+
+    private static Variable findVariable(NetcdfFile ncFile, String varName) {
+        Variable v = ncFile.findVariable(varName);
+        if (v == null) {
+            throw new IllegalArgumentException("Unable fo find variable " + varName);
+        }
+        return v;
+    }
+
+    /**
+     * Number of elements of one plane of the variable read to block-average the section of a level.
+     */
+    private static long levelPlaneElements(Variable v, String sectionSpec, int level) {
+        int rank = v.getRank();
+        try {
+            List<Range> ranges = SectionSpecUtils.parse(sectionSpec, Pyramid.levelShape(v.getShape(), level));
+            Range rows = ranges.get(rank - 2);
+            Range cols = ranges.get(rank - 1);
+            return (long) (rows.last() - rows.first() + 1) * level * (cols.last() - cols.first() + 1) * level;
+        } catch (InvalidRangeException e) {
+            throw new RuntimeException("Invalid section-spec for level " + level + " of variable " + v.getFullName(),
+                    e);
+        }
+    }
+}
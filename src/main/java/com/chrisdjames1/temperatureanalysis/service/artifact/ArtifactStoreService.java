@@ -0,0 +1,217 @@
+package com.chrisdjames1.temperatureanalysis.service.artifact;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmArtifactProperties;
+import com.chrisdjames1.temperatureanalysis.exception.ArtifactNotFoundException;
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ucar.nc2.NetcdfFile;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores generated files under a key that hashes the version of the dataset, the function and its arguments, so a
+ * repeated request is served from disk instead of being generated again. Each file is written under a name of its
+ * own and then moved into place, so concurrent requests never write to the same file. Files are deleted once they
+ * have not been requested for {@link CdmArtifactProperties#getTtlMinutes()}, or when the store grows beyond
+ * {@link CdmArtifactProperties#getMaxBytes()}, least recently used first. A file requested within the last
+ * {@link CdmArtifactProperties#getPinSeconds()} is never deleted, as it may be about to be downloaded.
+ */
+@Slf4j
+@Service
+public class ArtifactStoreService {
+
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final Pattern ARTIFACT_FILE = Pattern.compile("^([0-9a-f]{64})\\.\\w+$");
+
+    private final CdmArtifactProperties properties;
+    private final Map<String, Artifact> artifacts = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private Path directory;
+
+    public ArtifactStoreService(CdmArtifactProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void postConstruct() throws IOException {
+        directory = Paths.get(properties.getDirectory()).toAbsolutePath();
+        Files.createDirectories(directory);
+        // Pick up the files stored before a restart and clear out any that were left half written
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher matcher = ARTIFACT_FILE.matcher(name);
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (matcher.matches()) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    Instant modified = attributes.lastModifiedTime().toInstant();
+                    artifacts.put(matcher.group(1), new Artifact(matcher.group(1), file, attributes.size(), modified,
+                            modified));
+                }
+            }
+        }
+        evict(null);
+        log.info("Artifact store at {} holds {} files", directory, artifacts.size());
+    }
+
+    /**
+     * Returns the stored artifact for the function and arguments on the current version of the dataset, generating
+     * it with {@code writer} first if there is none.
+     *
+     * @param args      Arguments that affect the content. Null values are left out.
+     * @param extension Extension of the stored file, e.g. "xlsx".
+     */
+    public Artifact getOrCreate(NetcdfFile ncFile, String function, Map<String, String> args, String extension,
+            ArtifactWriter writer) {
+
+        String key = key(ncFile, function, args);
+        Artifact artifact = artifacts.get(key);
+        if (artifact != null && pin(artifact)) {
+            hits.increment();
+            log.debug("Serving {} from the artifact store", artifact.getFileName());
+            return artifact;
+        }
+        misses.increment();
+
+        Path file = directory.resolve(key + "." + extension);
+        Path partial = directory.resolve(key + "." + UUID.randomUUID() + PARTIAL_SUFFIX);
+        try {
+            writer.write(partial);
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Instant now = Instant.now();
+            artifact = new Artifact(key, file, Files.size(file), now, now);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store " + file, e);
+        } finally {
+            deleteQuietly(partial);
+        }
+        artifacts.put(key, artifact);
+        evict(key);
+        return artifact;
+    }
+
+    /**
+     * @throws ArtifactNotFoundException If there is no such artifact, or it has been evicted.
+     */
+    public Artifact get(String key) {
+        Artifact artifact = artifacts.get(key);
+        if (artifact == null || !pin(artifact)) {
+            throw new ArtifactNotFoundException(key);
+        }
+        return artifact;
+    }
+
+    /**
+     * Deletes the expired artifacts every minute, so that they do not stay on disk when nothing new is stored.
+     */
+    @Scheduled(fixedDelay = 60_000L, initialDelay = 60_000L)
+    public void evictExpired() {
+        evict(null);
+    }
+
+    public CacheStats stats() {
+        long totalBytes = artifacts.values().stream().mapToLong(Artifact::getSizeBytes).sum();
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), artifacts.size(), totalBytes,
+                properties.getMaxBytes());
+    }
+
+    /**
+     * Hashes the identity of the dataset file, together with its last modified time and length, the function and
+     * the arguments in key order.
+     */
+    static String key(NetcdfFile ncFile, String function, Map<String, String> args) {
+        File datasetFile = new File(ncFile.getLocation());
+        StringBuilder identity = new StringBuilder().append(ncFile.getLocation()).append('\0')
+                .append(datasetFile.lastModified()).append('\0').append(datasetFile.length()).append('\0')
+                .append(function);
+        new TreeMap<>(args).forEach((name, value) -> {
+            if (value != null) {
+                identity.append('\0').append(name).append('=').append(value);
+            }
+        });
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    identity.toString().getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the expired artifacts, then the least recently used until the store fits in its budget. The artifact
+     * with {@code keepKey} and those that are pinned are never evicted, so a file larger than the budget can still
+     * be downloaded once.
+     */
+    private synchronized void evict(@Nullable String keepKey) {
+        Instant now = Instant.now();
+        Instant expiry = now.minus(Duration.ofMinutes(properties.getTtlMinutes()));
+        Instant pinnedSince = now.minus(Duration.ofSeconds(properties.getPinSeconds()));
+        List<Artifact> candidates = new ArrayList<>(artifacts.values());
+        candidates.sort(Comparator.comparing(Artifact::getLastAccessedAt));
+        long totalBytes = candidates.stream().mapToLong(Artifact::getSizeBytes).sum();
+        for (Artifact artifact : candidates) {
+            if (artifact.getKey().equals(keepKey) || artifact.getLastAccessedAt().isAfter(pinnedSince)) {
+                continue;
+            }
+            if (artifact.getLastAccessedAt().isBefore(expiry) || totalBytes > properties.getMaxBytes()) {
+                artifacts.remove(artifact.getKey(), artifact);
+                deleteQuietly(artifact.getPath());
+                totalBytes -= artifact.getSizeBytes();
+                evictions.increment();
+                log.debug("Evicted {} from the artifact store", artifact.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Marks the artifact as just requested, which pins it, unless it has already been evicted. Holds the same lock as
+     * {@link #evict} so that an artifact cannot be deleted between the check and the touch.
+     */
+    private synchronized boolean pin(Artifact artifact) {
+        if (artifacts.get(artifact.getKey()) != artifact || !Files.exists(artifact.getPath())) {
+            return false;
+        }
+        artifact.touch();
+        return true;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+}
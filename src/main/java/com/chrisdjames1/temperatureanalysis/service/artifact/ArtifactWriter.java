@@ -0,0 +1,16 @@
+package com.chrisdjames1.temperatureanalysis.service.artifact;
+
+import java.nio.file.Path;
+
+/**
+ * Generates the content of an artifact for the {@link ArtifactStoreService}.
+ */
+@FunctionalInterface
+public interface ArtifactWriter {
+
+    /**
+     * @param file The file to write. It is only moved into the store once this returns.
+     */
+    void write(Path file);
+
+}
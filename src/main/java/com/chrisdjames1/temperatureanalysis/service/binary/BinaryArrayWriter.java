@@ -0,0 +1,213 @@
+package com.chrisdjames1.temperatureanalysis.service.binary;
+
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
+import lombok.Builder;
+import lombok.NonNull;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a section as little-endian floats, either raw or as a NumPy .npy file, straight from the primitive backing
+ * storage of each chunk. Chunks must arrive in the row-major order of the section. Values are copied through one
+ * fixed size buffer, so the memory used does not grow with the size of the section.
+ */
+public class BinaryArrayWriter {
+
+    private static final byte[] NPY_MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+
+    // The .npy header, including the magic string and length, is padded to a multiple of this
+    private static final int NPY_HEADER_ALIGNMENT = 64;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final int[] shape;
+    private final BinaryDtype dtype;
+    private final BinaryFormat format;
+    private final long size;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean headerWritten;
+    private long written;
+
+    /**
+     * @param outputStream Destination of the bytes. It is not closed by {@link #finish()}.
+     * @param shape        Shape of the whole section.
+     */
+    @Builder
+    public BinaryArrayWriter(@NonNull OutputStream outputStream, @NonNull int[] shape, @NonNull BinaryDtype dtype,
+            @NonNull BinaryFormat format) {
+        this.channel = Channels.newChannel(outputStream);
+        this.shape = shape.clone();
+        this.dtype = dtype;
+        this.format = format;
+        this.size = sizeOf(shape);
+    }
+
+    /**
+     * Writes every element of the next chunk of the section.
+     */
+    public void write(Array data) throws IOException {
+        writeHeaderOnce();
+        DataType dataType = data.getDataType();
+        Object storage = data.get1DJavaArray(dataType);
+        int length = (int) data.getSize();
+        if (written + length > size) {
+            throw new IllegalStateException(String.format("Chunk of %d elements overflows the section of %d " +
+                    "elements after %d were written", length, size, written));
+        }
+        int perBuffer = BUFFER_BYTES / dtype.getByteSize();
+        for (int from = 0; from < length; from += perBuffer) {
+            int count = Math.min(perBuffer, length - from);
+            buffer.clear();
+            if (dtype == BinaryDtype.FLOAT32) {
+                putFloats(storage, dataType, from, count);
+            } else {
+                putDoubles(storage, dataType, from, count);
+            }
+            buffer.limit(count * dtype.getByteSize());
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        written += length;
+    }
+
+    /**
+     * Checks that the whole section has been written. An empty section still gets its .npy header.
+     */
+    public void finish() throws IOException {
+        writeHeaderOnce();
+        if (written != size) {
+            throw new IllegalStateException(String.format("Only %d of the %d elements in the section were written",
+                    written, size));
+        }
+    }
+
+    /**
+     * Number of bytes that {@link #finish()} will have written for a section of {@code shape}.
+     */
+    public static long contentLength(int[] shape, BinaryDtype dtype, BinaryFormat format) {
+        long headerLength = format == BinaryFormat.NPY ? npyHeader(shape, dtype).length : 0;
+        return headerLength + sizeOf(shape) * dtype.getByteSize();
+    }
+
+    /**
+     * Formats a shape as comma separated sizes, e.g. "2074,180", for use in a response header.
+     */
+    public static String formatShape(int[] shape) {
+        return Arrays.stream(shape).mapToObj(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private void writeHeaderOnce() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        headerWritten = true;
+        if (format == BinaryFormat.NPY) {
+            ByteBuffer header = ByteBuffer.wrap(npyHeader(shape, dtype));
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+
+    private static byte[] npyHeader(int[] shape, BinaryDtype dtype) {
+        String shapeTuple = shape.length == 1 ? "(" + shape[0] + ",)" :
+                Arrays.stream(shape).mapToObj(String::valueOf).collect(Collectors.joining(", ", "(", ")"));
+        String dict = String.format("{'descr': '%s', 'fortran_order': False, 'shape': %s, }", dtype.getNpyDescr(),
+                shapeTuple);
+        // Magic string and version, 2 byte header length, the dictionary and a terminating newline
+        int unpadded = NPY_MAGIC.length + 2 + dict.length() + 1;
+        int padding = (NPY_HEADER_ALIGNMENT - unpadded % NPY_HEADER_ALIGNMENT) % NPY_HEADER_ALIGNMENT;
+        byte[] dictBytes = (dict + " ".repeat(padding) + "\n").getBytes(StandardCharsets.US_ASCII);
+        if (dictBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Shape has too many dimensions for a version 1.0 .npy header");
+        }
+        ByteBuffer header = ByteBuffer.allocate(NPY_MAGIC.length + 2 + dictBytes.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.put(NPY_MAGIC).putShort((short) dictBytes.length).put(dictBytes);
+        return header.array();
+    }
+
+    private static long sizeOf(int[] shape) {
+        long size = 1;
+        for (int length : shape) {
+            size *= length;
+        }
+        return size;
+    }
+
+    private void putFloats(Object storage, DataType dataType, int from, int count) {
+        final int to = from + count;
+        switch (dataType) {
+            case FLOAT:
+                buffer.asFloatBuffer().put((float[]) storage, from, count);
+                return;
+            case DOUBLE:
+                double[] doubles = (double[]) storage;
+                for (int i = from; i < to; i++) {
+                    buffer.putFloat((float) doubles[i]);
+                }
+                return;
+            default:
+                for (int i = from; i < to; i++) {
+                    buffer.putFloat((float) integralValue(storage, dataType, i));
+                }
+        }
+    }
+
+    private void putDoubles(Object storage, DataType dataType, int from, int count) {
+        final int to = from + count;
+        switch (dataType) {
+            case DOUBLE:
+                buffer.asDoubleBuffer().put((double[]) storage, from, count);
+                return;
+            case FLOAT:
+                float[] floats = (float[]) storage;
+                for (int i = from; i < to; i++) {
+                    buffer.putDouble(floats[i]);
+                }
+                return;
+            default:
+                for (int i = from; i < to; i++) {
+                    buffer.putDouble(integralValue(storage, dataType, i));
+                }
+        }
+    }
+
+    private static double integralValue(Object storage, DataType dataType, int i) {
+        switch (dataType) {
+            case LONG:
+                return ((long[]) storage)[i];
+            case ULONG:
+                long value = ((long[]) storage)[i];
+                return (double) (value >>> 1) * 2.0 + (value & 1L);
+            case INT:
+                return ((int[]) storage)[i];
+            case UINT:
+                return ((int[]) storage)[i] & 0xFFFFFFFFL;
+            case SHORT:
+                return ((short[]) storage)[i];
+            case USHORT:
+                return ((short[]) storage)[i] & 0xFFFF;
+            case BYTE:
+                return ((byte[]) storage)[i];
+            case UBYTE:
+                return ((byte[]) storage)[i] & 0xFF;
+            default:
+                throw new UnsupportedOperationException("Data type not yet implemented: " + dataType);
+        }
+    }
+}
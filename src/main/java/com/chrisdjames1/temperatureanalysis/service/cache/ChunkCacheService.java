@@ -0,0 +1,241 @@
+package com.chrisdjames1.temperatureanalysis.service.cache;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmCacheProperties;
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import com.chrisdjames1.temperatureanalysis.util.WeightedLruCache;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the decompressed chunks of chunked (netCDF-4/HDF5) variables within a byte budget, shared by every handle
+ * on the dataset. Sections of a chunked variable are assembled from whole chunks, so each chunk is decompressed once
+ * for as long as it stays cached, however many requests or sub-sections overlap it. Like the
+ * {@link SectionCacheService}, the whole cache is dropped as soon as a change to the dataset is seen.
+ */
+@Slf4j
+@Service
+public class ChunkCacheService {
+
+    /**
+     * Attribute the netCDF library adds to chunked variables, holding the length of a chunk along each dimension.
+     */
+    private static final String CHUNK_SIZES_ATTRIBUTE = "_ChunkSizes";
+
+    private final WeightedLruCache<ChunkKey, Array> cache;
+    private final boolean enabled;
+    private volatile DatasetVersion lastSeenVersion;
+
+    public ChunkCacheService(CdmCacheProperties cacheProperties) {
+        this.enabled = cacheProperties.getChunkMaxBytes() > 0;
+        this.cache = new WeightedLruCache<>(cacheProperties.getChunkMaxBytes(), Array::getSizeBytes);
+    }
+
+    /**
+     * Returns the length of a chunk of the variable along each dimension, or null if the variable is not chunked.
+     */
+    @Nullable
+    public static int[] chunkShapeOf(Variable v) {
+        Attribute attribute = v.findAttribute(CHUNK_SIZES_ATTRIBUTE);
+        int rank = v.getRank();
+        if (rank == 0 || attribute == null || attribute.getLength() < rank) {
+            return null;
+        }
+        int[] chunkShape = new int[rank];
+        for (int d = 0; d < rank; d++) {
+            Number length = attribute.getNumericValue(d);
+            if (length == null || length.intValue() <= 0) {
+                return null;
+            }
+            chunkShape[d] = length.intValue();
+        }
+        return chunkShape;
+    }
+
+    /**
+     * Whether reads of the variable go through the cache, which is the case for chunked numeric variables.
+     */
+    public boolean canServe(Variable v) {
+        return enabled && v.getDataType().isNumeric() && chunkShapeOf(v) != null;
+    }
+
+    /**
+     * Reads the section, assembled from the cached chunks that it touches. Chunks that are not cached yet are read
+     * whole and cached. The returned {@link Array} belongs to the caller.
+     */
+    public Array read(NetcdfFile ncFile, Variable v, List<Range> ranges) throws IOException, InvalidRangeException {
+        int[] chunkShape = chunkShapeOf(v);
+        if (chunkShape == null) {
+            throw new IllegalArgumentException("Variable " + v.getFullName() + " is not chunked");
+        }
+        return read(ncFile, v, ranges, chunkShape);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    Array read(NetcdfFile ncFile, Variable v, List<Range> ranges, int[] chunkShape)
+            throws IOException, InvalidRangeException {
+
+        int rank = ranges.size();
+        int[] varShape = v.getShape();
+        DatasetVersion version = currentVersion(ncFile);
+        Array result = Array.factory(v.getDataType(), SectionSpecUtils.shapeOf(ranges));
+        Object storage = result.getStorage();
+        int[] resultStrides = stridesOf(result.getShape());
+
+        // Along each dimension, the chunks the range touches and the run of result indexes that falls in each one
+        List<List<int[]>> runs = new ArrayList<>(rank);
+        for (int d = 0; d < rank; d++) {
+            runs.add(chunkRuns(ranges.get(d), chunkShape[d]));
+            if (runs.get(d).isEmpty()) {
+                return result;
+            }
+        }
+
+        int[] chunkCounter = new int[rank];
+        int[] origin = new int[rank];
+        int[] shape = new int[rank];
+        while (true) {
+            for (int d = 0; d < rank; d++) {
+                origin[d] = runs.get(d).get(chunkCounter[d])[0] * chunkShape[d];
+                shape[d] = Math.min(chunkShape[d], varShape[d] - origin[d]);
+            }
+            Array chunk = readChunk(version, v, origin, shape);
+            copyFromChunk(chunk.get1DJavaArray(chunk.getDataType()), shape, origin, ranges, chunkCounter, runs,
+                    storage, resultStrides);
+
+            int d = rank - 1;
+            while (d >= 0 && ++chunkCounter[d] == runs.get(d).size()) {
+                chunkCounter[d] = 0;
+                d--;
+            }
+            if (d < 0) {
+                return result;
+            }
+        }
+    }
+
+    private Array readChunk(DatasetVersion version, Variable v, int[] origin, int[] shape)
+            throws IOException, InvalidRangeException {
+
+        ChunkKey key = new ChunkKey(version, v.getFullName(), origin.clone());
+        Array chunk = cache.get(key);
+        if (chunk == null) {
+            chunk = v.read(origin, shape);
+            cache.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Copies the elements of the section that lie in one chunk into the result, a run along the last dimension at a
+     * time.
+     */
+    private static void copyFromChunk(Object chunkStorage, int[] chunkShape, int[] chunkOrigin, List<Range> ranges,
+            int[] chunkCounter, List<List<int[]>> runs, Object storage, int[] resultStrides)
+            throws InvalidRangeException {
+
+        int rank = ranges.size();
+        int[] chunkStrides = stridesOf(chunkShape);
+        int[] from = new int[rank];
+        int[] to = new int[rank];
+        for (int d = 0; d < rank; d++) {
+            int[] run = runs.get(d).get(chunkCounter[d]);
+            from[d] = run[1];
+            to[d] = run[2];
+        }
+        Range last = ranges.get(rank - 1);
+        int runLength = to[rank - 1] - from[rank - 1];
+        int[] counter = from.clone();
+        while (true) {
+            int resultPosition = 0;
+            int chunkPosition = 0;
+            for (int d = 0; d < rank; d++) {
+                resultPosition += counter[d] * resultStrides[d];
+                chunkPosition += (ranges.get(d).element(counter[d]) - chunkOrigin[d]) * chunkStrides[d];
+            }
+            if (last.stride() == 1) {
+                System.arraycopy(chunkStorage, chunkPosition, storage, resultPosition, runLength);
+            } else {
+                for (int i = 0; i < runLength; i++) {
+                    System.arraycopy(chunkStorage, chunkPosition + i * last.stride(), storage, resultPosition + i, 1);
+                }
+            }
+
+            int d = rank - 2;
+            while (d >= 0 && ++counter[d] == to[d]) {
+                counter[d] = from[d];
+                d--;
+            }
+            if (d < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Groups the indexes of the range by the chunk their elements fall in, as {chunk, first index, end index}.
+     */
+    private static List<int[]> chunkRuns(Range range, int chunkLength) throws InvalidRangeException {
+        List<int[]> runs = new ArrayList<>();
+        int[] current = null;
+        for (int i = 0; i < range.length(); i++) {
+            int chunk = range.element(i) / chunkLength;
+            if (current == null || current[0] != chunk) {
+                current = new int[]{chunk, i, i + 1};
+                runs.add(current);
+            } else {
+                current[2] = i + 1;
+            }
+        }
+        return runs;
+    }
+
+    private static int[] stridesOf(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int d = shape.length - 1; d >= 0; d--) {
+            strides[d] = stride;
+            stride *= shape[d];
+        }
+        return strides;
+    }
+
+    private DatasetVersion currentVersion(NetcdfFile ncFile) {
+        DatasetVersion version = DatasetVersion.of(ncFile);
+        DatasetVersion previous = lastSeenVersion;
+        if (previous != null && previous.isSupersededBy(version)) {
+            log.info("Dataset {} has changed. Invalidating the chunk cache.", ncFile.getLocation());
+            cache.invalidateAll();
+        }
+        lastSeenVersion = version;
+        return version;
+    }
+
+    @EqualsAndHashCode
+    private static class ChunkKey {
+        private final DatasetVersion dataset;
+        private final String variable;
+        private final int[] origin;
+
+        private ChunkKey(DatasetVersion dataset, String variable, int[] origin) {
+            this.dataset = dataset;
+            this.variable = variable;
+            this.origin = origin;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.chrisdjames1.temperatureanalysis.service.cache;
+
+import lombok.EqualsAndHashCode;
+import ucar.nc2.NetcdfFile;
+
+import java.io.File;
+
+/**
+ * Identifies a version of a dataset by its location together with the last modified time and length of the file,
+ * so that cached data from a changed file is never served.
+ */
+@EqualsAndHashCode
+class DatasetVersion {
+
+    private final String location;
+    private final long lastModified;
+    private final long length;
+
+    private DatasetVersion(String location, long lastModified, long length) {
+        this.location = location;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    static DatasetVersion of(NetcdfFile ncFile) {
+        String location = ncFile.getLocation();
+        File file = new File(location);
+        return new DatasetVersion(location, file.lastModified(), file.length());
+    }
+
+    /**
+     * Whether {@code other} is a different version of the same dataset.
+     */
+    boolean isSupersededBy(DatasetVersion other) {
+        return location.equals(other.location) && !equals(other);
+    }
+}
@@ -0,0 +1,83 @@
+package com.chrisdjames1.temperatureanalysis.service.cache;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmCacheProperties;
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import com.chrisdjames1.temperatureanalysis.util.WeightedLruCache;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.nc2.NetcdfFile;
+
+import java.util.function.Supplier;
+
+/**
+ * Caches decoded sections by dataset, variable and normalized section-spec, within a byte budget. The dataset is
+ * identified by its location together with the last modified time and length of the file, so a changed file never
+ * serves stale data, and the whole cache is dropped as soon as a change is seen.
+ */
+@Slf4j
+@Service
+public class SectionCacheService {
+
+    private final WeightedLruCache<SectionKey, Array> cache;
+    private final boolean enabled;
+    private volatile DatasetVersion lastSeenVersion;
+
+    public SectionCacheService(CdmCacheProperties cacheProperties) {
+        this.enabled = cacheProperties.getSectionMaxBytes() > 0;
+        this.cache = new WeightedLruCache<>(cacheProperties.getSectionMaxBytes(), Array::getSizeBytes);
+    }
+
+    /**
+     * Returns the cached section, or reads it with {@code reader} and caches it. The returned {@link Array} is shared
+     * between callers, so it must not be modified.
+     *
+     * @param normalizedSectionSpec A section-spec in a canonical form, so that equivalent specs share an entry.
+     */
+    public Array get(NetcdfFile ncFile, String varName, String normalizedSectionSpec, Supplier<Array> reader) {
+        if (!enabled) {
+            return reader.get();
+        }
+        DatasetVersion version = currentVersion(ncFile);
+        SectionKey key = new SectionKey(version, varName, normalizedSectionSpec);
+        Array data = cache.get(key);
+        if (data == null) {
+            data = reader.get();
+            cache.put(key, data);
+        }
+        return data;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private DatasetVersion currentVersion(NetcdfFile ncFile) {
+        DatasetVersion version = DatasetVersion.of(ncFile);
+        DatasetVersion previous = lastSeenVersion;
+        if (previous != null && previous.isSupersededBy(version)) {
+            log.info("Dataset {} has changed. Invalidating the section cache.", ncFile.getLocation());
+            cache.invalidateAll();
+        }
+        lastSeenVersion = version;
+        return version;
+    }
+
+    @EqualsAndHashCode
+    private static class SectionKey {
+        private final DatasetVersion dataset;
+        private final String variable;
+        private final String sectionSpec;
+
+        private SectionKey(DatasetVersion dataset, String variable, String sectionSpec) {
+            this.dataset = dataset;
+            this.variable = variable;
+            this.sectionSpec = sectionSpec;
+        }
+    }
+}
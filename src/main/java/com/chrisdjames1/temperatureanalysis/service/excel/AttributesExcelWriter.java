@@ -5,10 +5,10 @@ import lombok.Builder;
 import lombok.NonNull;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
@@ -19,9 +19,9 @@ public class AttributesExcelWriter extends ExcelWriter {
     private final List<CdmAttribute> attributes;
 
     @Builder
-    public AttributesExcelWriter(@NonNull XSSFWorkbook workbook, @NonNull Sheet sheet,
-            @NonNull List<CdmAttribute> attributes, int rowCount, @Nullable XSSFFont headerFont,
-            @Nullable XSSFFont dataFont, @Nullable CellStyle attrHeaderStyle, @Nullable CellStyle attrStyle,
+    public AttributesExcelWriter(@NonNull Workbook workbook, @NonNull Sheet sheet,
+            @NonNull List<CdmAttribute> attributes, int rowCount, @Nullable Font headerFont,
+            @Nullable Font dataFont, @Nullable CellStyle attrHeaderStyle, @Nullable CellStyle attrStyle,
             @Nullable CellStyle headerStyle) {
         super(workbook, sheet, rowCount, headerFont, dataFont, attrHeaderStyle, attrStyle, headerStyle);
         this.attributes = attributes;
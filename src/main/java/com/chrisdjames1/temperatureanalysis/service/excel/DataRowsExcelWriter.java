@@ -0,0 +1,60 @@
+package com.chrisdjames1.temperatureanalysis.service.excel;
+
+import lombok.Builder;
+import lombok.NonNull;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * Creates the data rows of a table one at a time, in order, labelling each one in the first column. Rows are only
+ * created when first requested so a streaming workbook can flush them as soon as the next row begins.
+ */
+public class DataRowsExcelWriter extends ExcelWriter {
+
+    private final int firstRow;
+    private final int rowLabelStart;
+    private Row currentRow;
+    private int currentRowOffset = -1;
+
+    @Builder
+    public DataRowsExcelWriter(@NonNull Integer rowCount, @NonNull ExcelWriter excelWriter, int rowLabelStart) {
+        super(rowCount, excelWriter);
+        this.firstRow = rowCount;
+        this.rowLabelStart = rowLabelStart;
+    }
+
+    /**
+     * Returns the row at {@code rowOffset} from the first data row, creating it if it is the next row in the table.
+     */
+    public Row getRow(int rowOffset) {
+        if (rowOffset == currentRowOffset) {
+            return currentRow;
+        }
+        if (rowOffset < currentRowOffset) {
+            throw new IllegalStateException(String.format("Data row %d requested after row %d. Rows must be written " +
+                    "in order.", rowOffset, currentRowOffset));
+        }
+        currentRow = sheet.createRow(firstRow + rowOffset);
+        currentRowOffset = rowOffset;
+        rowCount = firstRow + rowOffset + 1;
+        Cell rowCategoryCell = currentRow.createCell(0);
+        rowCategoryCell.setCellValue(rowLabelStart + rowOffset);
+        rowCategoryCell.setCellStyle(headerStyle);
+        return currentRow;
+    }
+
+    /**
+     * Creates any remaining rows up to {@code rowTotal} so that every row is labelled.
+     */
+    public int write(int rowTotal) {
+        for (int rowOffset = currentRowOffset + 1; rowOffset < rowTotal; rowOffset++) {
+            getRow(rowOffset);
+        }
+        return write();
+    }
+
+    @Override
+    public int write() {
+        return rowCount;
+    }
+}
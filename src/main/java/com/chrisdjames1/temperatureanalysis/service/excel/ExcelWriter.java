@@ -4,24 +4,24 @@ import lombok.Getter;
 import lombok.NonNull;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.lang.Nullable;
 
 public abstract class ExcelWriter {
     @NonNull
     @Getter
-    protected XSSFWorkbook workbook;
+    protected Workbook workbook;
     @NonNull
     @Getter
     protected final Sheet sheet;
     protected int rowCount;
     @Getter
-    protected XSSFFont headerFont;
+    protected Font headerFont;
     @Getter
-    protected XSSFFont dataFont;
+    protected Font dataFont;
     @Getter
     protected CellStyle attrHeaderStyle;
     @Getter
@@ -34,8 +34,8 @@ public abstract class ExcelWriter {
                 excelWriter.attrHeaderStyle, excelWriter.attrStyle, excelWriter.headerStyle);
     }
 
-    protected ExcelWriter(@NonNull XSSFWorkbook workbook, @NonNull Sheet sheet, @NonNull Integer rowCount,
-            @Nullable XSSFFont headerFont, @Nullable XSSFFont dataFont, @Nullable CellStyle attrHeaderStyle,
+    protected ExcelWriter(@NonNull Workbook workbook, @NonNull Sheet sheet, @NonNull Integer rowCount,
+            @Nullable Font headerFont, @Nullable Font dataFont, @Nullable CellStyle attrHeaderStyle,
             @Nullable CellStyle attrStyle, @Nullable CellStyle headerStyle) {
         this.workbook = workbook;
         this.sheet = sheet;
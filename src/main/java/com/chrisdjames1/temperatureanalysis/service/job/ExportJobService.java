@@ -0,0 +1,186 @@
+package com.chrisdjames1.temperatureanalysis.service.job;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmJobProperties;
+import com.chrisdjames1.temperatureanalysis.exception.JobNotFoundException;
+import com.chrisdjames1.temperatureanalysis.exception.JobRejectedException;
+import com.chrisdjames1.temperatureanalysis.model.ExportJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs exports on a fixed pool of worker threads, off the request threads. At most
+ * {@link CdmJobProperties#getQueueCapacity()} jobs wait for a worker and any more are rejected. Progress is published
+ * to server-sent event subscribers as it moves on by at least a percent.
+ */
+@Slf4j
+@Service
+public class ExportJobService {
+
+    private final CdmJobProperties jobProperties;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    public ExportJobService(CdmJobProperties jobProperties) {
+        this.jobProperties = jobProperties;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(jobProperties.getWorkers(), jobProperties.getWorkers(), 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()), runnable -> {
+                    Thread thread = new Thread(runnable, "export-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues an export and returns straight away.
+     *
+     * @param type What is being exported, for display.
+     * @throws JobRejectedException If the queue is full.
+     */
+    public ExportJob submit(String type, ExportTask task) {
+        purgeExpiredJobs();
+        String id = UUID.randomUUID().toString().replace("-", "");
+        ExportJob job = new ExportJob(id, type);
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw new JobRejectedException(String.format("The export queue is full with %d jobs waiting. Try again " +
+                    "later.", executor.getQueue().size()));
+        }
+        log.debug("Queued {} export job {}", type, id);
+        return job;
+    }
+
+    public ExportJob getJob(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            throw new JobNotFoundException(id);
+        }
+        return job;
+    }
+
+    /**
+     * Subscribes to "progress" events carrying the job, sent as it moves on and once more when it finishes. The
+     * current state of the job is sent straight away.
+     */
+    public SseEmitter subscribe(String id) {
+        ExportJob job = getJob(id);
+        SseEmitter emitter = new SseEmitter(0L);
+        List<SseEmitter> jobEmitters = emitters.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>());
+        jobEmitters.add(emitter);
+        emitter.onCompletion(() -> jobEmitters.remove(emitter));
+        emitter.onTimeout(() -> jobEmitters.remove(emitter));
+        send(emitter, job, jobEmitters);
+        // The job may have finished before the emitter was registered, in which case nothing else will complete it
+        // or remove the entry computeIfAbsent put back
+        if (job.getStatus().isFinished()) {
+            emitters.remove(id, jobEmitters);
+            if (jobEmitters.remove(emitter)) {
+                emitter.complete();
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Forgets the jobs that finished more than {@link CdmJobProperties#getRetentionMinutes()} ago. Runs every minute
+     * as well as on each submission, so that jobs do not linger when nothing new is submitted.
+     */
+    @Scheduled(fixedDelay = 60_000L, initialDelay = 60_000L)
+    public void purgeExpiredJobs() {
+        Instant expiry = Instant.now().minus(Duration.ofMinutes(jobProperties.getRetentionMinutes()));
+        // The results stay in the artifact store, which evicts them on its own terms
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt().isBefore(expiry));
+    }
+
+    /**
+     * Whether any subscriber to the job is still registered.
+     */
+    boolean hasSubscribers(String id) {
+        return emitters.containsKey(id);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportJob job, ExportTask task) {
+        job.markRunning();
+        publish(job);
+        ProgressListener listener = fraction -> {
+            int percent = (int) (job.getProgress() * 100);
+            job.updateProgress(fraction);
+            if ((int) (job.getProgress() * 100) > percent) {
+                publish(job);
+            }
+        };
+        try {
+            job.markSucceeded(task.run(listener).getKey());
+            log.debug("Export job {} succeeded", job.getId());
+        } catch (RuntimeException e) {
+            log.error("Export job {} failed", job.getId(), e);
+            job.markFailed(e.getMessage());
+        } catch (Error e) {
+            // Such as running out of memory. The job still has to finish, or it and its subscribers wait forever
+            log.error("Export job {} failed", job.getId(), e);
+            job.markFailed(e.toString());
+            throw e;
+        } finally {
+            finish(job);
+        }
+    }
+
+    /**
+     * Publishes the final state of the job and completes its subscribers.
+     */
+    private void finish(ExportJob job) {
+        publish(job);
+        List<SseEmitter> jobEmitters = emitters.remove(job.getId());
+        if (jobEmitters != null) {
+            for (SseEmitter emitter : jobEmitters) {
+                if (jobEmitters.remove(emitter)) {
+                    emitter.complete();
+                }
+            }
+        }
+    }
+
+    private void publish(ExportJob job) {
+        List<SseEmitter> jobEmitters = emitters.get(job.getId());
+        if (jobEmitters != null) {
+            jobEmitters.forEach(emitter -> send(emitter, job, jobEmitters));
+        }
+    }
+
+    private static void send(SseEmitter emitter, ExportJob job, List<SseEmitter> jobEmitters) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(job));
+        } catch (IOException | IllegalStateException e) {
+            // The subscriber has gone away
+            if (jobEmitters.remove(emitter)) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.chrisdjames1.temperatureanalysis.service.job;
+
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+
+/**
+ * An export run by the {@link ExportJobService}.
+ */
+@FunctionalInterface
+public interface ExportTask {
+
+    /**
+     * @param listener Receives the progress of the export.
+     * @return The stored result of the export.
+     */
+    Artifact run(ProgressListener listener);
+
+}
@@ -0,0 +1,23 @@
+package com.chrisdjames1.temperatureanalysis.service.job;
+
+/**
+ * Receives the progress of a long running task. May be called from several threads at once.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = fraction -> {
+    };
+
+    /**
+     * @param fraction How much of the task is done, from 0 to 1.
+     */
+    void onProgress(double fraction);
+
+    /**
+     * Maps this listener's 0 to 1 range onto the part of an outer task between {@code from} and {@code to}.
+     */
+    default ProgressListener scaled(double from, double to) {
+        return fraction -> onProgress(from + fraction * (to - from));
+    }
+}
@@ -0,0 +1,224 @@
+package com.chrisdjames1.temperatureanalysis.service.json;
+
+import lombok.Builder;
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Writes a section as nested JSON arrays, one bracket level per dimension, straight from the primitive backing
+ * storage of each chunk. Chunks must arrive in the row-major order of the section, so the section never has to be
+ * held in memory or as text. NaN and infinite values are written as null.
+ */
+public class JsonArrayWriter {
+
+    public static final int MAX_PRECISION = 15;
+
+    private static final long[] POW10 = new long[MAX_PRECISION + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private final Writer writer;
+    private final int[] shape;
+    private final Integer precision;
+    private final long size;
+    private final int[] counter;
+    private final StringBuilder scratch = new StringBuilder(32);
+    private long written;
+
+    /**
+     * @param writer    Destination of the JSON text. It is flushed, but not closed, by {@link #finish()}.
+     * @param shape     Shape of the whole section.
+     * @param precision (optional) Maximum number of decimal places to write floating point values with. Trailing
+     *                  zeros are dropped. When null, floating point values are written with the fewest digits that
+     *                  uniquely identify them.
+     */
+    @Builder
+    public JsonArrayWriter(@NonNull Writer writer, @NonNull int[] shape, @Nullable Integer precision) {
+        if (precision != null && (precision < 0 || precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException(String.format("Precision must be between 0 and %d", MAX_PRECISION));
+        }
+        this.writer = writer;
+        this.shape = shape.clone();
+        this.precision = precision;
+        long sectionSize = 1;
+        for (int length : shape) {
+            sectionSize *= length;
+        }
+        this.size = sectionSize;
+        this.counter = new int[shape.length];
+    }
+
+    /**
+     * Writes every element of the next chunk of the section.
+     */
+    public void write(Array data) throws IOException {
+        DataType dataType = data.getDataType();
+        Object storage = data.get1DJavaArray(dataType);
+        int length = (int) data.getSize();
+        if (written + length > size) {
+            throw new IllegalStateException(String.format("Chunk of %d elements overflows the section of %d " +
+                    "elements after %d were written", length, size, written));
+        }
+        boolean unsigned = dataType.isUnsigned();
+        for (int i = 0; i < length; i++) {
+            beforeElement();
+            switch (dataType) {
+                case DOUBLE:
+                    writeDouble(((double[]) storage)[i]);
+                    break;
+                case FLOAT:
+                    writeFloat(((float[]) storage)[i]);
+                    break;
+                case LONG:
+                case ULONG:
+                    long longValue = ((long[]) storage)[i];
+                    writer.write(unsigned ? Long.toUnsignedString(longValue) : Long.toString(longValue));
+                    break;
+                case INT:
+                case UINT:
+                    int intValue = ((int[]) storage)[i];
+                    writer.write(Long.toString(unsigned ? intValue & 0xFFFFFFFFL : intValue));
+                    break;
+                case SHORT:
+                case USHORT:
+                    short shortValue = ((short[]) storage)[i];
+                    writer.write(Integer.toString(unsigned ? shortValue & 0xFFFF : shortValue));
+                    break;
+                case BYTE:
+                case UBYTE:
+                    byte byteValue = ((byte[]) storage)[i];
+                    writer.write(Integer.toString(unsigned ? byteValue & 0xFF : byteValue));
+                    break;
+                case CHAR:
+                    writeString(String.valueOf(((char[]) storage)[i]));
+                    break;
+                case STRING:
+                    writeString((String) ((Object[]) storage)[i]);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Data type not yet implemented: " + dataType);
+            }
+            afterElement();
+        }
+    }
+
+    /**
+     * Closes the outer arrays and flushes the writer once the whole section has been written.
+     */
+    public void finish() throws IOException {
+        if (written != size) {
+            throw new IllegalStateException(String.format("Only %d of the %d elements in the section were written",
+                    written, size));
+        }
+        for (int d = 0; d < shape.length; d++) {
+            writer.write(']');
+        }
+        writer.flush();
+    }
+
+    private void beforeElement() throws IOException {
+        int opened = shape.length;
+        if (written > 0) {
+            // The dimensions whose index just wrapped back to 0 close their array and open the next one
+            opened = 0;
+            for (int d = shape.length - 1; d >= 0 && counter[d] == 0; d--) {
+                opened++;
+            }
+            for (int d = 0; d < opened; d++) {
+                writer.write(']');
+            }
+            writer.write(',');
+        }
+        for (int d = 0; d < opened; d++) {
+            writer.write('[');
+        }
+    }
+
+    private void afterElement() {
+        written++;
+        for (int d = shape.length - 1; d >= 0 && ++counter[d] == shape[d]; d--) {
+            counter[d] = 0;
+        }
+    }
+
+    private void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writer.write("null");
+        } else if (precision == null) {
+            writer.write(Double.toString(value));
+        } else {
+            writeFixed(value);
+        }
+    }
+
+    private void writeFloat(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writer.write("null");
+        } else if (precision == null) {
+            writer.write(Float.toString(value));
+        } else {
+            writeFixed(value);
+        }
+    }
+
+    private void writeFixed(double value) throws IOException {
+        long pow = POW10[precision];
+        double scaledValue = value * pow;
+        if (Math.abs(scaledValue) >= 1e15) {
+            // Too many digits to round exactly with a long
+            writer.write(BigDecimal.valueOf(value).setScale(precision, RoundingMode.HALF_UP).stripTrailingZeros()
+                    .toPlainString());
+            return;
+        }
+        // Rounds half away from zero, as HALF_UP does above, rather than half up as Math.round does for negatives
+        long scaled = Math.round(Math.abs(scaledValue));
+        scratch.setLength(0);
+        if (scaled != 0 && scaledValue < 0) {
+            scratch.append('-');
+        }
+        scratch.append(scaled / pow);
+        long fraction = scaled % pow;
+        if (fraction != 0) {
+            int digits = precision;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            scratch.append('.');
+            String fractionDigits = Long.toString(fraction);
+            for (int i = fractionDigits.length(); i < digits; i++) {
+                scratch.append('0');
+            }
+            scratch.append(fractionDigits);
+        }
+        writer.append(scratch);
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,264 @@
+package com.chrisdjames1.temperatureanalysis.service.metrics;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmMetricsProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.CancellationStats;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import com.chrisdjames1.temperatureanalysis.model.value.AppFunction;
+import com.chrisdjames1.temperatureanalysis.model.value.CancellationReason;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Records the work done for each request in the {@link MeterRegistry}, which Actuator publishes at
+ * {@code /actuator/metrics} and {@code /actuator/prometheus}. Meters are tagged with the variable and with the
+ * endpoint of the {@link RequestScope} open on the current thread, or {@value #NO_ENDPOINT} outside of a request, e.g.
+ * while a store is being built at startup.
+ * <ul>
+ *     <li>{@code cdm.requests} - Time from opening to closing each request scope.</li>
+ *     <li>{@code cdm.requests.allocated} - Bytes allocated by the threads of each request, where the JVM can
+ *     measure it.</li>
+ *     <li>{@code cdm.phase} - Time spent reading, reducing and serializing, tagged by phase. Work done on several
+ *     threads at once is summed, so the phases of a parallel reduction can add up to more than the request took.</li>
+ *     <li>{@code cdm.read.elements} and {@code cdm.read.bytes} - Data read, tagged by where it was read from. Reads
+ *     served by the section cache or shared with an identical read in flight are not counted.</li>
+ *     <li>{@code cdm.excel.cells} and {@code cdm.excel.workbook.size} - Data cells and bytes of each workbook.</li>
+ *     <li>{@code cdm.function.errors} - Failed function calls, tagged by function and exception.</li>
+ *     <li>{@code cdm.cancellations} - Requests cancelled, tagged by {@link CancellationReason}.</li>
+ *     <li>{@code cdm.coalescing.led}, {@code cdm.coalescing.joined} and {@code cdm.coalescing.in.flight} - Calls
+ *     that did the work, calls that shared the work of an identical call, and calls in flight, tagged by the group of
+ *     coalesced calls.</li>
+ * </ul>
+ * Requests slower than {@link CdmMetricsProperties#getSlowQueryThresholdMillis()} are logged to the
+ * {@value #SLOW_QUERY_LOGGER} logger as key=value pairs. The outermost scope of an HTTP request is left in the
+ * {@link RequestScope#REQUEST_ATTRIBUTE} request attribute once it closes, for the Server-Timing header.
+ */
+@Slf4j
+@Service
+public class AnalysisMetrics {
+
+    public static final String NO_ENDPOINT = "none";
+    public static final String SLOW_QUERY_LOGGER = "ncfa.slow-query";
+
+    private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger(SLOW_QUERY_LOGGER);
+
+    private final MeterRegistry registry;
+    private final CdmMetricsProperties metricsProperties;
+    private final ThreadLocal<RequestScope> current = new ThreadLocal<>();
+    private final LongAdder[] cancellations = new LongAdder[CancellationReason.values().length];
+    // Null if the JVM cannot measure the allocation of a thread
+    @Nullable
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public AnalysisMetrics(MeterRegistry registry, CdmMetricsProperties metricsProperties) {
+        this.registry = registry;
+        this.metricsProperties = metricsProperties;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threadMXBean = bean instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported() ?
+                (com.sun.management.ThreadMXBean) bean : null;
+        for (int i = 0; i < cancellations.length; i++) {
+            cancellations[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Opens the scope of a request on the current thread. It must be closed on the same thread, once the request is
+     * complete.
+     */
+    public RequestScope open(String endpoint, String variable) {
+        return open(endpoint, variable, null, 0, 0);
+    }
+
+    /**
+     * As {@link #open(String, String)}, for a request for a section of {@code elementCount} elements, which the
+     * slow-query log reports, that is cancelled once it has run for {@code timeoutMillis}. 0 means no deadline.
+     */
+    public RequestScope open(String endpoint, String variable, @Nullable String sectionSpec, long elementCount,
+            long timeoutMillis) {
+        RequestScope scope = new RequestScope(this, endpoint, variable, sectionSpec, elementCount,
+                TimeUnit.MILLISECONDS.toNanos(timeoutMillis), current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * The scope open on the current thread, to hand to the worker threads of the request.
+     */
+    @Nullable
+    public RequestScope current() {
+        return current.get();
+    }
+
+    /**
+     * Attaches a scope taken from {@link #current()} on another thread to the current thread until the returned
+     * attachment is closed. Attaching a null scope tags meters with {@value #NO_ENDPOINT} until then.
+     */
+    public RequestScope attach(@Nullable RequestScope scope) {
+        RequestScope attachment = new RequestScope(this, scope != null ? scope.root() : null, current.get());
+        current.set(attachment);
+        return attachment;
+    }
+
+    /**
+     * Called from the loops of the read, reduce and export paths to give up on a request that has been cancelled.
+     * Does nothing outside of a request.
+     *
+     * @throws RequestCancelledException If the request open on the current thread has been cancelled.
+     */
+    public void checkCancelled() {
+        RequestScope scope = current.get();
+        CancellationReason reason = scope != null ? scope.getCancellation() : null;
+        if (reason == CancellationReason.DEADLINE) {
+            throw new RequestCancelledException(String.format("Cancelled after running for longer than the " +
+                    "deadline of %d ms. Try a smaller section, or an export job.", scope.getTimeoutMillis()));
+        } else if (reason == CancellationReason.INTERRUPTED) {
+            throw new RequestCancelledException("Cancelled because the request was interrupted");
+        }
+    }
+
+    /**
+     * Whether the request open on the current thread has been cancelled.
+     */
+    public boolean isCancelled() {
+        RequestScope scope = current.get();
+        return scope != null && scope.getCancellation() != null;
+    }
+
+    public CancellationStats cancellationStats() {
+        return new CancellationStats(cancellations[CancellationReason.DEADLINE.ordinal()].sum(),
+                cancellations[CancellationReason.INTERRUPTED.ordinal()].sum());
+    }
+
+    /**
+     * Publishes the counters of a group of coalesced calls, read from {@code source} whenever the meters are
+     * published. Like any function-tracking meter they only hold {@code source} weakly, so it should be a field of a
+     * bean rather than a temporary.
+     */
+    public <T> void registerCoalescing(T source, Function<T, CoalescingStats> stats) {
+        String group = stats.apply(source).getName();
+        FunctionCounter.builder("cdm.coalescing.led", source, s -> stats.apply(s).getLed()).tag("group", group)
+                .register(registry);
+        FunctionCounter.builder("cdm.coalescing.joined", source, s -> stats.apply(s).getJoined()).tag("group", group)
+                .register(registry);
+        Gauge.builder("cdm.coalescing.in.flight", source, s -> stats.apply(s).getInFlight()).tag("group", group)
+                .register(registry);
+    }
+
+    public void recordRead(String variable, String source, long elements, long bytes, long nanos) {
+        String endpoint = endpoint();
+        Counter.builder("cdm.read.elements").tag("endpoint", endpoint).tag("variable", variable)
+                .tag("source", source).register(registry).increment(elements);
+        Counter.builder("cdm.read.bytes").baseUnit("bytes").tag("endpoint", endpoint).tag("variable", variable)
+                .tag("source", source).register(registry).increment(bytes);
+        recordPhase(Phase.READ, variable, nanos);
+    }
+
+    /**
+     * Records time spent in a phase of the request open on the current thread.
+     */
+    public void recordPhase(Phase phase, String variable, long nanos) {
+        RequestScope scope = current.get();
+        if (scope != null) {
+            scope.addPhaseNanos(phase, nanos);
+        }
+        Timer.builder("cdm.phase").tag("phase", phase.getValue()).tag("endpoint", endpoint())
+                .tag("variable", variable).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCellsWritten(String variable, long cells) {
+        Counter.builder("cdm.excel.cells").tag("endpoint", endpoint()).tag("variable", variable)
+                .register(registry).increment(cells);
+    }
+
+    public void recordWorkbook(String variable, long bytes) {
+        DistributionSummary.builder("cdm.excel.workbook.size").baseUnit("bytes").tag("endpoint", endpoint())
+                .tag("variable", variable).register(registry).record(bytes);
+    }
+
+    public void recordFunctionError(AppFunction function, Throwable e) {
+        Counter.builder("cdm.function.errors").tag("function", function.getFunctionArgValue())
+                .tag("exception", e.getClass().getSimpleName()).register(registry).increment();
+    }
+
+    void close(RequestScope scope) {
+        if (current.get() != scope) {
+            throw new IllegalStateException("Request scopes must be closed in the reverse order they were opened, " +
+                    "on the thread that opened them");
+        }
+        if (scope.previous() != null) {
+            current.set(scope.previous());
+        } else {
+            current.remove();
+        }
+        scope.addThreadAllocation();
+        if (scope.isAttachment()) {
+            return;
+        }
+        scope.complete();
+        Timer.builder("cdm.requests").tag("endpoint", scope.getEndpoint()).tag("variable", scope.getVariable())
+                .register(registry).record(scope.getDurationNanos(), TimeUnit.NANOSECONDS);
+        if (scope.getAllocatedBytes() >= 0) {
+            DistributionSummary.builder("cdm.requests.allocated").baseUnit("bytes")
+                    .tag("endpoint", scope.getEndpoint()).tag("variable", scope.getVariable()).register(registry)
+                    .record(scope.getAllocatedBytes());
+        }
+        long threshold = metricsProperties.getSlowQueryThresholdMillis();
+        if (threshold > 0 && scope.getDurationNanos() > TimeUnit.MILLISECONDS.toNanos(threshold)) {
+            logSlowQuery(scope);
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (scope.previous() == null && attributes != null) {
+            attributes.setAttribute(RequestScope.REQUEST_ATTRIBUTE, scope, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    void recordCancellation(RequestScope scope, CancellationReason reason) {
+        log.info("Cancelling {} of variable '{}' with section-spec '{}': {}", scope.getEndpoint(),
+                scope.getVariable(), scope.getSectionSpec(), reason.getValue());
+        cancellations[reason.ordinal()].increment();
+        Counter.builder("cdm.cancellations").tag("endpoint", scope.getEndpoint()).tag("variable", scope.getVariable())
+                .tag("reason", reason.getValue()).register(registry).increment();
+    }
+
+    /**
+     * Bytes the thread has allocated since it started, or -1 if the JVM cannot measure it.
+     */
+    long allocatedBytes(long threadId) {
+        return threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(threadId) : -1;
+    }
+
+    private static void logSlowQuery(RequestScope scope) {
+        StringBuilder phases = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            phases.append(' ').append(phase.getValue()).append("Ms=")
+                    .append(RequestScope.millis(scope.getPhaseNanos(phase)));
+        }
+        SLOW_QUERY_LOG.warn("endpoint={} variable={} sectionSpec=\"{}\" elements={} durationMs={}{} allocatedBytes={}",
+                scope.getEndpoint(), scope.getVariable(), scope.getSectionSpec(), scope.getElementCount(),
+                RequestScope.millis(scope.getDurationNanos()), phases, scope.getAllocatedBytes());
+    }
+
+    private String endpoint() {
+        RequestScope scope = current.get();
+        return scope != null ? scope.getEndpoint() : NO_ENDPOINT;
+    }
+}
@@ -0,0 +1,210 @@
+package com.chrisdjames1.temperatureanalysis.service.metrics;
+
+import com.chrisdjames1.temperatureanalysis.model.value.CancellationReason;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The request a thread is working on, so that meters recorded deep in the services can be tagged with its endpoint
+ * and variable. Opened by {@link AnalysisMetrics#open} and closed once the request is complete, which records its
+ * duration. The part of a request that runs on a worker thread attaches the scope there with
+ * {@link AnalysisMetrics#attach}, and closing the attachment only detaches it again.
+ * <br>
+ * The scope opened for the request also adds up the time spent in each {@link Phase} and the bytes allocated by every
+ * thread it was attached to, for the Server-Timing header and the slow-query log. It also decides when the request is
+ * cancelled, once it runs past its deadline or the thread that opened it is interrupted.
+ */
+public class RequestScope implements AutoCloseable {
+
+    /**
+     * Name of the request attribute that holds the last scope of an HTTP request to complete.
+     */
+    public static final String REQUEST_ATTRIBUTE = RequestScope.class.getName();
+
+    private final AnalysisMetrics metrics;
+    @Getter
+    private final String endpoint;
+    @Getter
+    private final String variable;
+    @Getter
+    @Nullable
+    private final String sectionSpec;
+    @Getter
+    private final long elementCount;
+    @Getter
+    private final long startNanos;
+    // The scope opened for the request, which is this scope unless it is an attachment, or null for an attachment
+    // of no request
+    @Nullable
+    private final RequestScope root;
+    // Restored to the thread on close
+    @Nullable
+    private final RequestScope previous;
+    // Thread that opened or attached the scope, and what it had allocated by then
+    private final long threadId;
+    private final long startAllocatedBytes;
+
+    // Only used by a root scope
+    private final LongAdder[] phaseNanos;
+    private final LongAdder allocatedBytes;
+    private volatile long durationNanos = -1;
+    private final Thread owner;
+    // 0 for no deadline
+    private final long timeoutNanos;
+    private final AtomicReference<CancellationReason> cancellation;
+
+    RequestScope(AnalysisMetrics metrics, String endpoint, String variable, @Nullable String sectionSpec,
+            long elementCount, long timeoutNanos, @Nullable RequestScope previous) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.variable = variable;
+        this.sectionSpec = sectionSpec;
+        this.elementCount = elementCount;
+        this.startNanos = System.nanoTime();
+        this.root = this;
+        this.previous = previous;
+        this.threadId = Thread.currentThread().getId();
+        this.startAllocatedBytes = metrics.allocatedBytes(threadId);
+        this.phaseNanos = new LongAdder[Phase.values().length];
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+        this.allocatedBytes = new LongAdder();
+        this.owner = Thread.currentThread();
+        this.timeoutNanos = timeoutNanos;
+        this.cancellation = new AtomicReference<>();
+    }
+
+    RequestScope(AnalysisMetrics metrics, @Nullable RequestScope root, @Nullable RequestScope previous) {
+        this.metrics = metrics;
+        this.endpoint = root != null ? root.endpoint : AnalysisMetrics.NO_ENDPOINT;
+        this.variable = root != null ? root.variable : "";
+        this.sectionSpec = root != null ? root.sectionSpec : null;
+        this.elementCount = root != null ? root.elementCount : 0;
+        this.startNanos = root != null ? root.startNanos : System.nanoTime();
+        this.root = root;
+        this.previous = previous;
+        this.threadId = Thread.currentThread().getId();
+        this.startAllocatedBytes = metrics.allocatedBytes(threadId);
+        this.phaseNanos = null;
+        this.allocatedBytes = null;
+        this.owner = null;
+        this.timeoutNanos = 0;
+        this.cancellation = null;
+    }
+
+    /**
+     * Time spent in the phase so far, summed across the threads of the request.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return root != null ? root.phaseNanos[phase.ordinal()].sum() : 0;
+    }
+
+    /**
+     * Bytes allocated by the threads of the request, counted as each one closes its scope or attachment, or -1 if
+     * the JVM cannot measure the allocation of a thread.
+     */
+    public long getAllocatedBytes() {
+        return root != null && startAllocatedBytes >= 0 ? root.allocatedBytes.sum() : -1;
+    }
+
+    /**
+     * Time from opening to closing the request, or -1 if it is still open.
+     */
+    public long getDurationNanos() {
+        return root != null ? root.durationNanos : -1;
+    }
+
+    /**
+     * The timings as the value of a Server-Timing header, e.g. {@code open;dur=0.1, read;dur=52.7, ...,
+     * total;dur=61.3}, in milliseconds.
+     */
+    public String toServerTiming() {
+        StringBuilder serverTiming = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            serverTiming.append(phase.getValue()).append(";dur=").append(millis(getPhaseNanos(phase))).append(", ");
+        }
+        return serverTiming.append("total;dur=").append(millis(getDurationNanos())).toString();
+    }
+
+    /**
+     * Why the request has been cancelled, or null if it has not been. The first call to find the request past its
+     * deadline, or its thread interrupted, cancels it for good.
+     */
+    @Nullable
+    public CancellationReason getCancellation() {
+        if (root == null) {
+            return null;
+        }
+        if (root != this) {
+            return root.getCancellation();
+        }
+        CancellationReason reason = cancellation.get();
+        if (reason != null) {
+            return reason;
+        }
+        if (owner.isInterrupted()) {
+            reason = CancellationReason.INTERRUPTED;
+        } else if (timeoutNanos > 0 && System.nanoTime() - startNanos > timeoutNanos) {
+            reason = CancellationReason.DEADLINE;
+        } else {
+            return null;
+        }
+        if (cancellation.compareAndSet(null, reason)) {
+            metrics.recordCancellation(this, reason);
+        }
+        return cancellation.get();
+    }
+
+    public long getTimeoutMillis() {
+        return root != null ? root.timeoutNanos / 1_000_000 : 0;
+    }
+
+    @Nullable
+    RequestScope root() {
+        return root;
+    }
+
+    @Nullable
+    RequestScope previous() {
+        return previous;
+    }
+
+    boolean isAttachment() {
+        return root != this;
+    }
+
+    void addPhaseNanos(Phase phase, long nanos) {
+        if (root != null) {
+            root.phaseNanos[phase.ordinal()].add(nanos);
+        }
+    }
+
+    /**
+     * Adds what the thread has allocated since it opened or attached the scope to the request.
+     */
+    void addThreadAllocation() {
+        long allocated = metrics.allocatedBytes(threadId);
+        if (root != null && startAllocatedBytes >= 0 && allocated >= 0) {
+            root.allocatedBytes.add(allocated - startAllocatedBytes);
+        }
+    }
+
+    void complete() {
+        durationNanos = System.nanoTime() - startNanos;
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    @Override
+    public void close() {
+        metrics.close(this);
+    }
+}
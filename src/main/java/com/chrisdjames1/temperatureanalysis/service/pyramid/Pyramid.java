@@ -0,0 +1,355 @@
+package com.chrisdjames1.temperatureanalysis.service.pyramid;
+
+import com.chrisdjames1.temperatureanalysis.service.sidecar.MappedSegments;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFile;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFiles;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.Getter;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Block-averaged copies of a variable at coarser resolutions over its last two dimensions, one 2D grid per index of
+ * the leading dimensions (a "step", e.g. a time step). At level {@code f} each value is the mean of the valid values
+ * in an {@code f x f} block of the data, or NaN if the block has none. Blocks at the far edges are cut short when
+ * the dimensions are not a multiple of {@code f}.
+ * <p>
+ * The levels live in a memory-mapped sidecar file. After a fixed size header, each level holds every step in turn as
+ * {@code ceil(rows / f) * ceil(cols / f)} little-endian floats.
+ */
+public class Pyramid implements SidecarFile {
+
+    private static final byte[] MAGIC = "NCFAPYR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 64;
+    // Magic, last modified, length, rank and level count come before the shape and factors in the header
+    private static final int MAX_HEADER_INTS =
+            (HEADER_BYTES - MAGIC.length - 2 * Long.BYTES - 2 * Integer.BYTES) / Integer.BYTES;
+
+    @Getter
+    private final long datasetLastModified;
+    @Getter
+    private final long datasetLength;
+    private final int[] shape;
+    private final Level[] levels;
+
+    private Pyramid(long datasetLastModified, long datasetLength, int[] shape, Level[] levels) {
+        this.datasetLastModified = datasetLastModified;
+        this.datasetLength = datasetLength;
+        this.shape = shape;
+        this.levels = levels;
+    }
+
+    public int[] getFactors() {
+        return Arrays.stream(levels).mapToInt(level -> level.factor).toArray();
+    }
+
+    public boolean hasLevel(int factor) {
+        return findLevel(factor) != null;
+    }
+
+    /**
+     * Reads a section of a level.
+     *
+     * @param ranges One range per dimension, with the last two over the blocks of the level, as in
+     *               {@link #levelShape(int[], int)}.
+     */
+    public Array read(int factor, List<Range> ranges) {
+        Level level = findLevel(factor);
+        if (level == null) {
+            throw new IllegalArgumentException("No pyramid level " + factor);
+        }
+        int leading = shape.length - 2;
+        Range rowRange = ranges.get(leading);
+        Range colRange = ranges.get(leading + 1);
+        int[] resultShape = SectionSpecUtils.shapeOf(ranges);
+        float[] values = new float[checkedSize(resultShape)];
+        int n = 0;
+
+        int[] counter = new int[leading];
+        while (true) {
+            long step = 0;
+            for (int d = 0; d < leading; d++) {
+                Range range = ranges.get(d);
+                step = step * shape[d] + range.first() + (long) counter[d] * range.stride();
+            }
+            MappedByteBuffer segment = level.steps.segment(step);
+            int base = level.steps.position(step);
+            for (int y = rowRange.first(); y <= rowRange.last(); y += rowRange.stride()) {
+                for (int x = colRange.first(); x <= colRange.last(); x += colRange.stride()) {
+                    values[n++] = segment.getFloat(base + (y * level.cols + x) * Float.BYTES);
+                }
+            }
+            if (!increment(counter, ranges)) {
+                return Array.factory(DataType.FLOAT, resultShape, values);
+            }
+        }
+    }
+
+    /**
+     * Computes a section of a level straight from the data, reading only the blocks it covers one step at a time.
+     * Gives the same values as {@link #read} from a pyramid built for {@code v}.
+     */
+    public static Array downsample(Variable v, int factor, List<Range> ranges)
+            throws IOException, InvalidRangeException {
+
+        int[] shape = v.getShape();
+        int leading = shape.length - 2;
+        Range rowRange = ranges.get(leading);
+        Range colRange = ranges.get(leading + 1);
+        int firstRow = rowRange.first() * factor;
+        int firstCol = colRange.first() * factor;
+        int planeRows = Math.min((rowRange.last() + 1) * factor, shape[leading]) - firstRow;
+        int planeCols = Math.min((colRange.last() + 1) * factor, shape[leading + 1]) - firstCol;
+        int blockCols = ceilDiv(planeCols, factor);
+        float[] blocks = new float[ceilDiv(planeRows, factor) * blockCols];
+
+        int[] resultShape = SectionSpecUtils.shapeOf(ranges);
+        float[] values = new float[checkedSize(resultShape)];
+        int n = 0;
+
+        int[] origin = new int[shape.length];
+        origin[leading] = firstRow;
+        origin[leading + 1] = firstCol;
+        int[] planeShape = new int[shape.length];
+        Arrays.fill(planeShape, 1);
+        planeShape[leading] = planeRows;
+        planeShape[leading + 1] = planeCols;
+        int[] counter = new int[leading];
+        while (true) {
+            for (int d = 0; d < leading; d++) {
+                origin[d] = ranges.get(d).first() + counter[d] * ranges.get(d).stride();
+            }
+            double[] plane = (double[]) v.read(origin, planeShape).get1DJavaArray(DataType.DOUBLE);
+            blockAverage(plane, planeRows, planeCols, factor, blocks);
+            for (int y = 0; y < rowRange.length(); y++) {
+                for (int x = 0; x < colRange.length(); x++) {
+                    values[n++] = blocks[y * rowRange.stride() * blockCols + x * colRange.stride()];
+                }
+            }
+            if (!increment(counter, ranges)) {
+                return Array.factory(DataType.FLOAT, resultShape, values);
+            }
+        }
+    }
+
+    /**
+     * Returns the shape of a level of a variable with the given shape.
+     */
+    public static int[] levelShape(int[] shape, int factor) {
+        int[] levelShape = shape.clone();
+        levelShape[shape.length - 2] = ceilDiv(shape[shape.length - 2], factor);
+        levelShape[shape.length - 1] = ceilDiv(shape[shape.length - 1], factor);
+        return levelShape;
+    }
+
+    /**
+     * Averages the valid values of each {@code factor x factor} block of a row-major plane into {@code blocks}.
+     */
+    static void blockAverage(double[] plane, int rows, int cols, int factor, float[] blocks) {
+        int blockCols = ceilDiv(cols, factor);
+        double[] sums = new double[blocks.length];
+        int[] counts = new int[blocks.length];
+        for (int y = 0; y < rows; y++) {
+            int blockRow = (y / factor) * blockCols;
+            for (int x = 0; x < cols; x++) {
+                double value = plane[y * cols + x];
+                if (!Double.isNaN(value)) {
+                    sums[blockRow + x / factor] += value;
+                    counts[blockRow + x / factor]++;
+                }
+            }
+        }
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = counts[b] == 0 ? Float.NaN : (float) (sums[b] / counts[b]);
+        }
+    }
+
+    /**
+     * Builds the levels for {@code v} into {@code file}, reading one step at a time.
+     */
+    public static void write(Variable v, long datasetLastModified, long datasetLength, List<Integer> factors,
+            Path file) throws IOException, InvalidRangeException {
+
+        int[] shape = v.getShape();
+        checkShape(shape, factors.size());
+        int rank = shape.length;
+        int rows = shape[rank - 2];
+        int cols = shape[rank - 1];
+        long steps = steps(shape);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putLong(datasetLastModified).putLong(datasetLength).putInt(rank).putInt(factors.size());
+            for (int length : shape) {
+                header.putInt(length);
+            }
+            for (int factor : factors) {
+                header.putInt(factor);
+            }
+            header.position(0);
+            SidecarFiles.writeFully(channel, header, 0L);
+
+            long[] levelOffsets = new long[factors.size()];
+            float[][] blocks = new float[factors.size()][];
+            ByteBuffer[] buffers = new ByteBuffer[factors.size()];
+            long offset = HEADER_BYTES;
+            for (int l = 0; l < factors.size(); l++) {
+                int stepBytes = (int) stepBytes(shape, factors.get(l));
+                levelOffsets[l] = offset;
+                blocks[l] = new float[stepBytes / Float.BYTES];
+                buffers[l] = ByteBuffer.allocate(stepBytes).order(ByteOrder.LITTLE_ENDIAN);
+                offset += steps * stepBytes;
+            }
+
+            int[] origin = new int[rank];
+            int[] planeShape = new int[rank];
+            Arrays.fill(planeShape, 1);
+            planeShape[rank - 2] = rows;
+            planeShape[rank - 1] = cols;
+            for (long step = 0; step < steps; step++) {
+                long remainder = step;
+                for (int d = rank - 3; d >= 0; d--) {
+                    origin[d] = (int) (remainder % shape[d]);
+                    remainder /= shape[d];
+                }
+                double[] plane = (double[]) v.read(origin, planeShape).get1DJavaArray(DataType.DOUBLE);
+                for (int l = 0; l < factors.size(); l++) {
+                    blockAverage(plane, rows, cols, factors.get(l), blocks[l]);
+                    buffers[l].clear();
+                    buffers[l].asFloatBuffer().put(blocks[l]);
+                    SidecarFiles.writeFully(channel, buffers[l], levelOffsets[l] + step * buffers[l].capacity());
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the levels in {@code file} into memory.
+     */
+    public static Pyramid open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = SidecarFiles.readHeader(channel, file, MAGIC, HEADER_BYTES, "pyramid");
+            long datasetLastModified = header.getLong();
+            long datasetLength = header.getLong();
+            int rank = header.getInt();
+            int levelCount = header.getInt();
+            if (rank < 2 || levelCount < 0 || rank + levelCount > MAX_HEADER_INTS) {
+                throw new IOException("Corrupt pyramid file: " + file);
+            }
+            int[] shape = new int[rank];
+            for (int d = 0; d < rank; d++) {
+                shape[d] = header.getInt();
+            }
+            long steps = steps(shape);
+            Level[] levels = new Level[levelCount];
+            long offset = HEADER_BYTES;
+            for (int l = 0; l < levelCount; l++) {
+                int factor = header.getInt();
+                if (factor < 2) {
+                    throw new IOException("Corrupt pyramid file: " + file);
+                }
+                levels[l] = new Level(factor, levelShape(shape, factor)[rank - 1], stepBytes(shape, factor));
+                offset += steps * levels[l].stepBytes;
+            }
+            if (channel.size() != offset) {
+                throw new IOException("Incomplete pyramid file: " + file);
+            }
+
+            offset = HEADER_BYTES;
+            for (Level level : levels) {
+                level.map(channel, offset, steps);
+                offset += steps * level.stepBytes;
+            }
+            return new Pyramid(datasetLastModified, datasetLength, shape, levels);
+        }
+    }
+
+    private Level findLevel(int factor) {
+        for (Level level : levels) {
+            if (level.factor == factor) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private static boolean increment(int[] counter, List<Range> ranges) {
+        int d = counter.length - 1;
+        while (d >= 0 && ++counter[d] == ranges.get(d).length()) {
+            counter[d] = 0;
+            d--;
+        }
+        return d >= 0;
+    }
+
+    private static int checkedSize(int[] shape) {
+        long size = 1;
+        for (int length : shape) {
+            size *= length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Section is too large to read from a pyramid level at once");
+        }
+        return (int) size;
+    }
+
+    private static void checkShape(int[] shape, int levelCount) {
+        if (shape.length < 2 || shape.length + levelCount > MAX_HEADER_INTS) {
+            throw new IllegalArgumentException(String.format("Pyramids need at least 2 dimensions and at most %d " +
+                    "dimensions and levels together", MAX_HEADER_INTS));
+        }
+        if ((long) shape[shape.length - 2] * shape[shape.length - 1] > Integer.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException("The last two dimensions are too large for a pyramid");
+        }
+    }
+
+    private static long stepBytes(int[] shape, int factor) {
+        int[] levelShape = levelShape(shape, factor);
+        return (long) levelShape[shape.length - 2] * levelShape[shape.length - 1] * Float.BYTES;
+    }
+
+    private static long steps(int[] shape) {
+        long steps = 1;
+        for (int d = 0; d < shape.length - 2; d++) {
+            steps *= shape[d];
+        }
+        return steps;
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static class Level {
+        private final int factor;
+        private final int cols;
+        private final long stepBytes;
+        private MappedSegments steps;
+
+        private Level(int factor, int cols, long stepBytes) {
+            this.factor = factor;
+            this.cols = cols;
+            this.stepBytes = stepBytes;
+        }
+
+        private void map(FileChannel channel, long offset, long stepCount) throws IOException {
+            steps = MappedSegments.map(channel, offset, stepCount, stepBytes);
+        }
+    }
+}
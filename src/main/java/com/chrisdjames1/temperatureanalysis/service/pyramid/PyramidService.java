@@ -0,0 +1,147 @@
+package com.chrisdjames1.temperatureanalysis.service.pyramid;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmPyramidProperties;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarLoader;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Serves coarse, block-averaged levels of variables over their last two dimensions, e.g. 5° x 5° means of a 1° grid
+ * for drawing a thumbnail. A {@link Pyramid} of every configured level is kept for each variable, loaded or built by
+ * a {@link SidecarLoader}. A pyramid built with other levels is built again. Until a pyramid is ready, levels are
+ * block-averaged from the data on each read, giving the same values.
+ */
+@Slf4j
+@Service
+public class PyramidService {
+
+    private final CdmDatasetProperties datasetProperties;
+    private final CdmPyramidProperties pyramidProperties;
+    @Nullable
+    private SidecarLoader<Pyramid> loader;
+
+    public PyramidService(CdmDatasetProperties datasetProperties, CdmPyramidProperties pyramidProperties) {
+        this.datasetProperties = datasetProperties;
+        this.pyramidProperties = pyramidProperties;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        for (int level : pyramidProperties.getLevels()) {
+            if (level < 2) {
+                throw new IllegalStateException("Pyramid levels must be 2 or more, not " + level);
+            }
+        }
+        if (!pyramidProperties.isEnabled() || pyramidProperties.getLevels().isEmpty()) {
+            return;
+        }
+        List<Integer> levels = pyramidProperties.getLevels().stream().distinct().sorted()
+                .collect(Collectors.toList());
+        int[] factors = levels.stream().mapToInt(Integer::intValue).toArray();
+        SidecarLoader<Pyramid> pyramidLoader = SidecarLoader.<Pyramid>builder().description("pyramid")
+                .extension(".pyr").datasetPath(datasetProperties.getPath())
+                .directory(pyramidProperties.getDirectory()).opener(Pyramid::open)
+                .writer((v, datasetLastModified, datasetLength, file) -> Pyramid.write(v, datasetLastModified,
+                        datasetLength, levels, file))
+                .current(pyramid -> Arrays.equals(pyramid.getFactors(), factors)).build();
+        loader = pyramidLoader;
+        if (!pyramidProperties.getVariables().isEmpty()) {
+            pyramidProperties.getVariables().forEach(pyramidLoader::load);
+            return;
+        }
+        pyramidLoader.execute(() -> {
+            try (NetcdfFile ncFile = NetcdfFiles.open(datasetProperties.getPath())) {
+                ncFile.getVariables().stream().filter(PyramidService::isEligible).map(Variable::getFullName)
+                        .forEach(pyramidLoader::load);
+            } catch (IOException e) {
+                log.error("Could not list the variables to build pyramids for", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the shape of a section of a level without reading any data.
+     *
+     * @param sectionSpec Ranges over the leading dimensions of the variable followed by ranges over the blocks of
+     *                    the level, e.g. ":,:,:" for every step of the whole coarse grid.
+     * @param level       Number of grid cells along each side of a block. One of
+     *                    {@link CdmPyramidProperties#getLevels()}.
+     */
+    public int[] readLevelShape(NetcdfFile ncFile, String varName, String sectionSpec, int level) {
+        return SectionSpecUtils.shapeOf(readLevelRanges(findVariable(ncFile, varName), sectionSpec, level));
+    }
+
+    /**
+     * Reads a section of a level as floats, from the pyramid of the variable if it is up to date and otherwise by
+     * block-averaging the data.
+     *
+     * @see #readLevelShape
+     */
+    public Array read(NetcdfFile ncFile, String varName, String sectionSpec, int level) {
+        Variable v = findVariable(ncFile, varName);
+        List<Range> ranges = readLevelRanges(v, sectionSpec, level);
+        Pyramid pyramid = loader != null ? loader.get(ncFile, varName) : null;
+        if (pyramid != null && pyramid.hasLevel(level)) {
+            log.debug("Reading level {} of variable '{}' from its pyramid", level, varName);
+            return pyramid.read(level, ranges);
+        }
+        log.debug("Block-averaging level {} of variable '{}' from the data", level, varName);
+        try {
+            return Pyramid.downsample(v, level, ranges);
+        } catch (IOException | InvalidRangeException e) {
+            throw new RuntimeException("Error reading variable " + varName, e);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+
+    private List<Range> readLevelRanges(Variable v, String sectionSpec, int level) {
+        if (!pyramidProperties.getLevels().contains(level)) {
+            throw new IllegalArgumentException(String.format("Illegal level %d. Must be 1 or one of %s", level,
+                    pyramidProperties.getLevels()));
+        }
+        if (!isEligible(v)) {
+            throw new IllegalArgumentException("Levels are only available for numeric variables with at least two " +
+                    "dimensions");
+        }
+        try {
+            return SectionSpecUtils.parse(sectionSpec, Pyramid.levelShape(v.getShape(), level));
+        } catch (InvalidRangeException e) {
+            throw new RuntimeException("Invalid section-spec for level " + level + " of variable " + v.getFullName(),
+                    e);
+        }
+    }
+
+    private static boolean isEligible(Variable v) {
+        return v.getDataType().isNumeric() && v.getRank() >= 2;
+    }
+
+    private static Variable findVariable(NetcdfFile ncFile, String varName) {
+        Variable v = ncFile.findVariable(varName);
+        if (v == null) {
+            throw new IllegalArgumentException("Unable fo find variable " + varName);
+        }
+        return v;
+    }
+}
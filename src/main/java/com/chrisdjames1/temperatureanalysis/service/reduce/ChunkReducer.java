@@ -0,0 +1,19 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import ucar.ma2.Array;
+
+/**
+ * Adds one chunk of a section into a set of {@link TotalCounters}.
+ */
+@FunctionalInterface
+public interface ChunkReducer {
+
+    /**
+     * @param data     The chunk data.
+     * @param offset   Position of the chunk within the full section.
+     * @param counters The counters to add the chunk to.
+     */
+    void reduce(Array data, int[] offset, TotalCounters counters);
+
+}
@@ -0,0 +1,115 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.model.GroupByResult;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import com.chrisdjames1.temperatureanalysis.service.NetcdReaderService;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.sat.SummedAreaTableService;
+import com.chrisdjames1.temperatureanalysis.util.ReductionKernels;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Averages a section grouped by any subset of its dimensions. The kept dimensions become the group keys and every
+ * other dimension is reduced. For example, keeping latitude and time of a time x latitude x longitude section gives
+ * zonal means per time step, and keeping latitude and longitude gives a map averaged over the time range.
+ */
+@Slf4j
+@Service
+public class GroupByService {
+
+    private final NetcdReaderService netcdReaderService;
+    private final SharedScanService sharedScanService;
+    private final SummedAreaTableService summedAreaTableService;
+    private final AnalysisMetrics analysisMetrics;
+
+    public GroupByService(NetcdReaderService netcdReaderService, SharedScanService sharedScanService,
+            SummedAreaTableService summedAreaTableService, AnalysisMetrics analysisMetrics) {
+        this.netcdReaderService = netcdReaderService;
+        this.sharedScanService = sharedScanService;
+        this.summedAreaTableService = summedAreaTableService;
+        this.analysisMetrics = analysisMetrics;
+    }
+
+    /**
+     * @param keepDimensions Indexes of the dimensions to group by. The result always lists them in the order of the
+     *                       variable's dimensions. An empty collection averages the whole section.
+     */
+    public GroupByResult groupBy(NetcdfFile ncFile, String varName, String sectionSpec,
+            Collection<Integer> keepDimensions) {
+        return groupBy(ncFile, varName, sectionSpec, keepDimensions, ProgressListener.NONE);
+    }
+
+    /**
+     * As {@link #groupBy(NetcdfFile, String, String, Collection)}, reporting the progress of the reduction.
+     */
+    public GroupByResult groupBy(NetcdfFile ncFile, String varName, String sectionSpec,
+            Collection<Integer> keepDimensions, ProgressListener listener) {
+
+        log.debug("Attempting to average variable '{}' with section-spec '{}' grouped by dimensions {}", varName,
+                sectionSpec, keepDimensions);
+        Variable v = Objects.requireNonNull(ncFile.findVariable(varName), "Unable fo find variable " + varName);
+        List<Range> ranges = netcdReaderService.readSectionRanges(ncFile, varName, sectionSpec);
+        int rank = ranges.size();
+        int[] kept = keepDimensions.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        for (int dim : kept) {
+            if (dim < 0 || dim >= rank) {
+                throw new IndexOutOfBoundsException(String.format("Dimension index %d is outside of the %d " +
+                        "dimensions of %s", dim, rank, varName));
+            }
+        }
+
+        // Row-major strides over the kept dimensions. Reduced dimensions keep a stride of 0.
+        int[] shape = new int[kept.length];
+        int[] bucketStrides = new int[rank];
+        long size = 1;
+        for (int k = kept.length - 1; k >= 0; k--) {
+            shape[k] = ranges.get(kept[k]).length();
+            bucketStrides[kept[k]] = (int) size;
+            size *= shape[k];
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many groups to average: " + size);
+            }
+        }
+
+        // Rectangular boxes over the last two dimensions can come from a summed-area table without reading the data
+        long start = System.nanoTime();
+        TotalCounters counters = summedAreaTableService.totalGroupedBy(ncFile, varName, ranges, bucketStrides,
+                (int) size);
+        if (counters != null) {
+            analysisMetrics.recordPhase(Phase.REDUCE, varName, System.nanoTime() - start);
+        } else {
+            counters = sharedScanService.reduce(ncFile, varName, sectionSpec, (int) size,
+                    (data, offset, chunkCounters) -> ReductionKernels.totalGroupedBy(data, offset, bucketStrides,
+                            chunkCounters), listener);
+        }
+        listener.onProgress(1.0);
+
+        double[] averages = new double[counters.size()];
+        for (int bucket = 0; bucket < averages.length; bucket++) {
+            averages[bucket] = counters.average(bucket);
+        }
+        List<String> dimensions = new ArrayList<>();
+        List<List<Integer>> coordinates = new ArrayList<>();
+        for (int dim : kept) {
+            dimensions.add(v.getDimension(dim).getShortName());
+            List<Integer> indexes = new ArrayList<>();
+            for (Integer index : ranges.get(dim)) {
+                indexes.add(index);
+            }
+            coordinates.add(indexes);
+        }
+        return GroupByResult.builder().variable(varName).sectionSpec(sectionSpec).dimensions(dimensions)
+                .coordinates(coordinates).shape(shape).averages(averages).counts(counters.getCounts()).build();
+    }
+}
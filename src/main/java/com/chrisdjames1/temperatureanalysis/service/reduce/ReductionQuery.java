@@ -0,0 +1,103 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.Getter;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One reduction of a section of a variable taking part in a shared scan. The scan reads a box covering the sections
+ * of several queries, and each query reduces the part of every chunk that lies in its own section.
+ */
+@Getter
+class ReductionQuery {
+
+    private final List<Range> ranges;
+    private final int size;
+    private final ChunkReducer reducer;
+    private final ProgressListener listener;
+    private final long elementCount;
+    // Completed with null if the batch is abandoned before its scan
+    private final CompletableFuture<TotalCounters> result = new CompletableFuture<>();
+
+    ReductionQuery(List<Range> ranges, int size, ChunkReducer reducer, ProgressListener listener) {
+        this.ranges = ranges;
+        this.size = size;
+        this.reducer = reducer;
+        this.listener = listener;
+        this.elementCount = Arrays.stream(SectionSpecUtils.shapeOf(ranges)).asLongStream()
+                .reduce(1L, (a, b) -> a * b);
+    }
+
+    /**
+     * Reduces the part of a chunk of the scanned box that lies in the section of this query.
+     *
+     * @param chunkRanges The variable indexes covered by the chunk, each with a stride of 1.
+     * @return The number of elements reduced, which is 0 if the chunk misses the section.
+     */
+    long reduce(Array data, List<Range> chunkRanges, TotalCounters counters) throws InvalidRangeException {
+        int rank = ranges.size();
+        int[] origin = new int[rank];
+        int[] shape = new int[rank];
+        int[] stride = new int[rank];
+        int[] offset = new int[rank];
+        boolean whole = true;
+        for (int d = 0; d < rank; d++) {
+            Range range = ranges.get(d);
+            Range chunkRange = chunkRanges.get(d);
+            int low = Math.max(range.first(), chunkRange.first());
+            int high = Math.min(range.last(), chunkRange.last());
+            // First index of the section at or after the start of the overlap
+            int first = range.first() + (low - range.first() + range.stride() - 1) / range.stride() * range.stride();
+            if (first > high) {
+                return 0L;
+            }
+            origin[d] = first - chunkRange.first();
+            shape[d] = (high - first) / range.stride() + 1;
+            stride[d] = range.stride();
+            offset[d] = (first - range.first()) / range.stride();
+            whole &= origin[d] == 0 && stride[d] == 1 && shape[d] == chunkRange.length();
+        }
+        Array piece = whole ? data : data.section(origin, shape, stride);
+        reducer.reduce(piece, offset, counters);
+        return piece.getSize();
+    }
+
+    /**
+     * Whether the box covering this query and the others reads no more than they would read on their own.
+     */
+    static boolean worthSharing(List<ReductionQuery> queries) {
+        List<Range> box = boundingBox(queries);
+        long boxElements = Arrays.stream(SectionSpecUtils.shapeOf(box)).asLongStream().reduce(1L, (a, b) -> a * b);
+        return boxElements <= queries.stream().mapToLong(ReductionQuery::getElementCount).sum();
+    }
+
+    /**
+     * The smallest box, with a stride of 1 along each dimension, that covers the sections of all of the queries.
+     */
+    static List<Range> boundingBox(List<ReductionQuery> queries) {
+        int rank = queries.get(0).getRanges().size();
+        Range[] box = new Range[rank];
+        for (int d = 0; d < rank; d++) {
+            int first = Integer.MAX_VALUE;
+            int last = Integer.MIN_VALUE;
+            for (ReductionQuery query : queries) {
+                first = Math.min(first, query.getRanges().get(d).first());
+                last = Math.max(last, query.getRanges().get(d).last());
+            }
+            try {
+                box[d] = new Range(first, last);
+            } catch (InvalidRangeException e) {
+                throw new IllegalStateException("Empty box over dimension " + d, e);
+            }
+        }
+        return Arrays.asList(box);
+    }
+}
@@ -0,0 +1,287 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmReduceProperties;
+import com.chrisdjames1.temperatureanalysis.model.SubSection;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import com.chrisdjames1.temperatureanalysis.service.NetcdFileService;
+import com.chrisdjames1.temperatureanalysis.service.NetcdReaderService;
+import com.chrisdjames1.temperatureanalysis.service.PooledNetcdfFile;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.metrics.RequestScope;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link ChunkReducer} over every chunk of a section. With {@link CdmReduceProperties#getParallelism()} above 1
+ * the chunks are split into one run of consecutive chunks per worker and reduced on a {@link ForkJoinPool}. Each run
+ * reduces into its own {@link TotalCounters}, so a reduction holds no more than one set of counters per worker, and
+ * the runs are merged once at the end, in order. The split points only depend on the number of chunks and the
+ * parallelism, so the results are reproducible from one run to the next. Each run reads through a free handle from
+ * the {@link NetcdFileService} pool when there is one, so reads run in parallel too. {@link #reduceShared} feeds
+ * several reductions from one pass over the data. The time spent in the reducer, summed over the chunks, is recorded
+ * as the reduce phase of the request.
+ */
+@Slf4j
+@Service
+public class ReductionService {
+
+    private final NetcdReaderService netcdReaderService;
+    private final NetcdFileService netcdFileService;
+    private final CdmReduceProperties reduceProperties;
+    private final AnalysisMetrics analysisMetrics;
+    private final ForkJoinPool forkJoinPool;
+
+    public ReductionService(NetcdReaderService netcdReaderService, NetcdFileService netcdFileService,
+            CdmReduceProperties reduceProperties, AnalysisMetrics analysisMetrics) {
+        this.netcdReaderService = netcdReaderService;
+        this.netcdFileService = netcdFileService;
+        this.reduceProperties = reduceProperties;
+        this.analysisMetrics = analysisMetrics;
+        this.forkJoinPool = reduceProperties.getParallelism() > 1 ?
+                new ForkJoinPool(reduceProperties.getParallelism()) : null;
+    }
+
+    /**
+     * Reduces the section into {@code size} buckets.
+     */
+    public TotalCounters reduce(NetcdfFile ncFile, String varName, String sectionSpec, int size,
+            ChunkReducer reducer) {
+        return reduce(ncFile, varName, sectionSpec, size, reducer, ProgressListener.NONE);
+    }
+
+    /**
+     * Reduces the section into {@code size} buckets, reporting the fraction of elements reduced after each chunk.
+     */
+    public TotalCounters reduce(NetcdfFile ncFile, String varName, String sectionSpec, int size,
+            ChunkReducer reducer, ProgressListener listener) {
+
+        ChunkProgress progress = new ChunkProgress(netcdReaderService.readSectionShape(ncFile, varName, sectionSpec),
+                listener);
+        LongAdder reduceNanos = new LongAdder();
+        try {
+            if (forkJoinPool == null) {
+                TotalCounters counters = new TotalCounters(size, reduceProperties.getSummation());
+                netcdReaderService.readVariableInChunks(ncFile, varName, sectionSpec, chunk -> {
+                    long start = System.nanoTime();
+                    reducer.reduce(chunk.getData(), chunk.getOffset(), counters);
+                    reduceNanos.add(System.nanoTime() - start);
+                    progress.add(chunk.getData().getSize());
+                });
+                return counters;
+            }
+            List<SubSection> subSections = netcdReaderService.planSubSections(ncFile, varName, sectionSpec);
+            log.debug("Reducing {} chunks of variable '{}' with parallelism {}", subSections.size(), varName,
+                    forkJoinPool.getParallelism());
+            return reduceInParallel(ncFile, varName, subSections,
+                    () -> new TotalCounters[]{new TotalCounters(size, reduceProperties.getSummation())},
+                    (data, subSection, counters) -> {
+                        long start = System.nanoTime();
+                        reducer.reduce(data, subSection.getOffset(), counters[0]);
+                        reduceNanos.add(System.nanoTime() - start);
+                        progress.add(data.getSize());
+                    }, true)[0];
+        } finally {
+            analysisMetrics.recordPhase(Phase.REDUCE, varName, reduceNanos.sum());
+        }
+    }
+
+    /**
+     * Reduces several sections of a variable in one pass over the smallest box covering all of them. Each chunk of
+     * the box is read once and every query reduces the part of it that lies in its own section. The scan serves
+     * other requests besides the one running it, so it is not cancelled with that request.
+     *
+     * @return The counters of each query, in the order of {@code queries}.
+     */
+    TotalCounters[] reduceShared(NetcdfFile ncFile, String varName, List<ReductionQuery> queries) {
+        String boxSpec = SectionSpecUtils.format(ReductionQuery.boundingBox(queries));
+        List<SubSection> subSections = netcdReaderService.planSubSections(ncFile, varName, boxSpec);
+        ChunkProgress[] progress = new ChunkProgress[queries.size()];
+        for (int q = 0; q < progress.length; q++) {
+            progress[q] = new ChunkProgress(SectionSpecUtils.shapeOf(queries.get(q).getRanges()),
+                    queries.get(q).getListener());
+        }
+        Supplier<TotalCounters[]> newCounters = () -> queries.stream()
+                .map(query -> new TotalCounters(query.getSize(), reduceProperties.getSummation()))
+                .toArray(TotalCounters[]::new);
+        LongAdder reduceNanos = new LongAdder();
+        ChunkFeeder feeder = (data, subSection, counters) -> {
+            long start = System.nanoTime();
+            for (int q = 0; q < counters.length; q++) {
+                try {
+                    long reduced = queries.get(q).reduce(data, subSection.getSection().getRanges(), counters[q]);
+                    if (reduced > 0) {
+                        progress[q].add(reduced);
+                    }
+                } catch (InvalidRangeException e) {
+                    throw new IllegalStateException("Chunk does not lie within the scanned box " + boxSpec, e);
+                }
+            }
+            reduceNanos.add(System.nanoTime() - start);
+        };
+        log.debug("Reducing {} sections of variable '{}' in one pass over '{}'", queries.size(), varName, boxSpec);
+        try {
+            if (forkJoinPool == null) {
+                TotalCounters[] counters = newCounters.get();
+                for (SubSection subSection : subSections) {
+                    feeder.feed(netcdReaderService.readSubSection(ncFile, varName, subSection), subSection,
+                            counters);
+                }
+                return counters;
+            }
+            return reduceInParallel(ncFile, varName, subSections, newCounters, feeder, false);
+        } finally {
+            analysisMetrics.recordPhase(Phase.REDUCE, varName, reduceNanos.sum());
+        }
+    }
+
+    /**
+     * Reduces one run of consecutive chunks per worker and merges the runs in order.
+     *
+     * @param cancellable Whether to give up on the chunks not yet read once the request is cancelled.
+     */
+    private TotalCounters[] reduceInParallel(NetcdfFile ncFile, String varName, List<SubSection> subSections,
+            Supplier<TotalCounters[]> newCounters, ChunkFeeder feeder, boolean cancellable) {
+
+        int runs = Math.max(1, Math.min(forkJoinPool.getParallelism(), subSections.size()));
+        RequestScope scope = analysisMetrics.current();
+        List<ReduceTask> tasks = new ArrayList<>(runs);
+        for (int r = 0; r < runs; r++) {
+            int from = r * subSections.size() / runs;
+            int to = (r + 1) * subSections.size() / runs;
+            tasks.add(new ReduceTask(ncFile, varName, subSections.subList(from, to), newCounters, feeder, scope,
+                    cancellable));
+        }
+        tasks.forEach(forkJoinPool::execute);
+        TotalCounters[] counters = null;
+        for (ReduceTask task : tasks) {
+            TotalCounters[] runCounters;
+            try {
+                runCounters = task.join();
+            } catch (RuntimeException | Error e) {
+                // Wait for the other runs, which fail fast if the request was cancelled, so that nothing reads through
+                // the caller's handle once the reduction has returned
+                tasks.forEach(ForkJoinTask::quietlyJoin);
+                throw e;
+            }
+            if (counters == null) {
+                counters = runCounters;
+            } else {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i].merge(runCounters[i]);
+                }
+            }
+        }
+        return counters;
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reduces one chunk that has been read into a set of counters.
+     */
+    @FunctionalInterface
+    private interface ChunkFeeder {
+        void feed(Array data, SubSection subSection, TotalCounters[] counters);
+    }
+
+    /**
+     * Reduces a run of consecutive chunks, one after the other, into a single set of counters.
+     */
+    private class ReduceTask extends RecursiveTask<TotalCounters[]> {
+
+        private final NetcdfFile ncFile;
+        private final String varName;
+        private final List<SubSection> subSections;
+        private final Supplier<TotalCounters[]> newCounters;
+        private final ChunkFeeder feeder;
+        // The request the reduction is for, attached to the worker thread while it reads and reduces a chunk
+        @Nullable
+        private final RequestScope scope;
+        // Whether to give up on the chunks not yet read once the request is cancelled
+        private final boolean cancellable;
+
+        ReduceTask(NetcdfFile ncFile, String varName, List<SubSection> subSections,
+                Supplier<TotalCounters[]> newCounters, ChunkFeeder feeder, @Nullable RequestScope scope,
+                boolean cancellable) {
+            this.ncFile = ncFile;
+            this.varName = varName;
+            this.subSections = subSections;
+            this.newCounters = newCounters;
+            this.feeder = feeder;
+            this.scope = scope;
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        protected TotalCounters[] compute() {
+            TotalCounters[] counters = newCounters.get();
+            try (RequestScope ignored = analysisMetrics.attach(scope)) {
+                for (SubSection subSection : subSections) {
+                    if (cancellable) {
+                        analysisMetrics.checkCancelled();
+                    }
+                    feeder.feed(read(subSection), subSection, counters);
+                }
+            }
+            return counters;
+        }
+
+        private Array read(SubSection subSection) {
+            try (PooledNetcdfFile handle = netcdFileService.tryBorrow()) {
+                if (handle != null && handle.getNcFile().getLocation().equals(ncFile.getLocation())) {
+                    return netcdReaderService.readSubSection(handle.getNcFile(), varName, subSection);
+                }
+            }
+            // NetcdfFile reads are not thread-safe, so reads through the caller's handle are serialised on it while
+            // the reductions themselves still run in parallel
+            synchronized (ncFile) {
+                return netcdReaderService.readSubSection(ncFile, varName, subSection);
+            }
+        }
+    }
+
+    /**
+     * Counts the elements reduced so far, across all of the tasks of a reduction.
+     */
+    private static class ChunkProgress {
+
+        private final long total;
+        private final ProgressListener listener;
+        private final AtomicLong done = new AtomicLong();
+
+        ChunkProgress(int[] sectionShape, ProgressListener listener) {
+            long sectionSize = 1;
+            for (int length : sectionShape) {
+                sectionSize *= length;
+            }
+            this.total = sectionSize;
+            this.listener = listener;
+        }
+
+        void add(long elements) {
+            listener.onProgress((double) done.addAndGet(elements) / total);
+        }
+    }
+}
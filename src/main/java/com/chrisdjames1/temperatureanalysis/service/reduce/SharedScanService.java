@@ -0,0 +1,188 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmReduceProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.service.NetcdReaderService;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.util.FutureUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets reductions of the same variable share one pass over the data. The first reduction to arrive opens a batch and
+ * waits for {@link CdmReduceProperties#getSharedScanWindowMillis()}. Reductions that arrive in the meantime attach to
+ * the batch, as long as the box covering all of their sections holds no more elements than the sections themselves,
+ * so a shared scan never reads more than the reductions would have read on their own. The first reduction then scans
+ * the box once through {@link ReductionService#reduceShared} and hands each of the others its own counters. A reduction
+ * waiting on the scan of another stops waiting once its own request is cancelled, and runs on its own if the scan
+ * fails or is abandoned.
+ */
+@Slf4j
+@Service
+public class SharedScanService {
+
+    private final ReductionService reductionService;
+    private final NetcdReaderService netcdReaderService;
+    private final CdmReduceProperties reduceProperties;
+    private final AnalysisMetrics analysisMetrics;
+    // Guarded by itself. A batch is open to new queries for as long as it is in the map.
+    private final Map<String, List<ReductionQuery>> openBatches = new HashMap<>();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder attached = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public SharedScanService(ReductionService reductionService, NetcdReaderService netcdReaderService,
+            CdmReduceProperties reduceProperties, AnalysisMetrics analysisMetrics) {
+        this.reductionService = reductionService;
+        this.netcdReaderService = netcdReaderService;
+        this.reduceProperties = reduceProperties;
+        this.analysisMetrics = analysisMetrics;
+        analysisMetrics.registerCoalescing(this, SharedScanService::stats);
+    }
+
+    /**
+     * Reduces the section into {@code size} buckets, as {@link ReductionService#reduce}, sharing the scan with any
+     * other reduction of the variable that arrives within the batching window.
+     */
+    public TotalCounters reduce(NetcdfFile ncFile, String varName, String sectionSpec, int size,
+            ChunkReducer reducer, ProgressListener listener) {
+
+        long window = reduceProperties.getSharedScanWindowMillis();
+        if (window <= 0) {
+            return reductionService.reduce(ncFile, varName, sectionSpec, size, reducer, listener);
+        }
+        List<Range> ranges = netcdReaderService.readSectionRanges(ncFile, varName, sectionSpec);
+        ReductionQuery query = new ReductionQuery(ranges, size, reducer, listener);
+        String key = ncFile.getLocation() + "|" + varName;
+
+        List<ReductionQuery> batch;
+        List<ReductionQuery> joined = null;
+        synchronized (openBatches) {
+            List<ReductionQuery> open = openBatches.get(key);
+            if (open != null && attach(open, query)) {
+                batch = null;
+                joined = open;
+            } else {
+                batch = new ArrayList<>();
+                batch.add(query);
+                openBatches.put(key, batch);
+            }
+        }
+        if (batch == null) {
+            attached.increment();
+            TotalCounters counters;
+            try {
+                counters = FutureUtils.await(query.getResult(), analysisMetrics::checkCancelled);
+            } catch (RequestCancelledException e) {
+                detach(key, joined, query);
+                throw e;
+            } catch (CompletionException e) {
+                log.debug("Reducing variable '{}' alone after the shared scan failed", varName, e.getCause());
+                counters = null;
+            }
+            if (counters == null) {
+                // The reduction that opened the batch gave up before scanning, or its scan failed, so go it alone
+                return reductionService.reduce(ncFile, varName, sectionSpec, size, reducer, listener);
+            }
+            return counters;
+        }
+
+        try {
+            Thread.sleep(window);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(key, batch);
+            throw new RequestCancelledException("Cancelled while waiting to share a scan of variable " + varName);
+        }
+        synchronized (openBatches) {
+            openBatches.remove(key, batch);
+        }
+        return scan(ncFile, varName, sectionSpec, batch);
+    }
+
+    public CoalescingStats stats() {
+        return new CoalescingStats("shared-scans", scans.sum(), attached.sum(), inFlight.get());
+    }
+
+    private static boolean attach(List<ReductionQuery> batch, ReductionQuery query) {
+        List<ReductionQuery> candidate = new ArrayList<>(batch);
+        candidate.add(query);
+        if (!ReductionQuery.worthSharing(candidate)) {
+            return false;
+        }
+        batch.add(query);
+        return true;
+    }
+
+    /**
+     * Closes the batch without scanning, leaving the queries that attached to it to run on their own.
+     */
+    private void abandon(String key, List<ReductionQuery> batch) {
+        synchronized (openBatches) {
+            openBatches.remove(key, batch);
+        }
+        for (int q = 1; q < batch.size(); q++) {
+            batch.get(q).getResult().complete(null);
+        }
+    }
+
+    /**
+     * Takes a query whose request was cancelled out of the batch while the batch is still open, unless the box
+     * covering the rest would then read more than they need. A closed batch is left alone, since its scan matches the
+     * queries to their counters by position. A query left in the batch is completed for nobody.
+     */
+    private void detach(String key, List<ReductionQuery> batch, ReductionQuery query) {
+        synchronized (openBatches) {
+            if (openBatches.get(key) != batch) {
+                return;
+            }
+            List<ReductionQuery> candidate = new ArrayList<>(batch);
+            candidate.remove(query);
+            if (ReductionQuery.worthSharing(candidate)) {
+                batch.remove(query);
+            }
+        }
+    }
+
+    /**
+     * Runs a closed batch, whose first query belongs to the calling thread.
+     */
+    private TotalCounters scan(NetcdfFile ncFile, String varName, String sectionSpec, List<ReductionQuery> batch) {
+        ReductionQuery leader = batch.get(0);
+        scans.increment();
+        inFlight.incrementAndGet();
+        try {
+            if (batch.size() == 1) {
+                // Nothing to share, so take the usual path, which can serve small sections from the cache
+                return reductionService.reduce(ncFile, varName, sectionSpec, leader.getSize(), leader.getReducer(),
+                        leader.getListener());
+            }
+            log.debug("Sharing one scan of variable '{}' between {} reductions", varName, batch.size());
+            TotalCounters[] counters = reductionService.reduceShared(ncFile, varName, batch);
+            for (int q = 1; q < batch.size(); q++) {
+                batch.get(q).getResult().complete(counters[q]);
+            }
+            return counters[0];
+        } catch (RuntimeException | Error e) {
+            for (int q = 1; q < batch.size(); q++) {
+                batch.get(q).getResult().completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
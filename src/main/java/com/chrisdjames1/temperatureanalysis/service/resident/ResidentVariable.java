@@ -0,0 +1,212 @@
+package com.chrisdjames1.temperatureanalysis.service.resident;
+
+import com.chrisdjames1.temperatureanalysis.model.value.ResidentMode;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The decoded data of a float or double variable, held row-major outside the Java heap in direct or memory-mapped
+ * buffers. Sections are read by index arithmetic over the buffers, without going through the netCDF library.
+ */
+public class ResidentVariable {
+
+    // A single buffer is limited to 2GB, so the data is held in segments of whole elements
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    @Getter
+    private final long datasetLastModified;
+    @Getter
+    private final long datasetLength;
+    private final int[] shape;
+    private final DataType dataType;
+    private final ByteBuffer[] segments;
+    private final int elementsPerSegment;
+
+    private ResidentVariable(long datasetLastModified, long datasetLength, int[] shape, DataType dataType,
+            ByteBuffer[] segments, int elementsPerSegment) {
+        this.datasetLastModified = datasetLastModified;
+        this.datasetLength = datasetLength;
+        this.shape = shape;
+        this.dataType = dataType;
+        this.segments = segments;
+        this.elementsPerSegment = elementsPerSegment;
+    }
+
+    /**
+     * Number of bytes held outside the heap.
+     */
+    public long getSizeBytes() {
+        return elementCount(shape) * dataType.getSize();
+    }
+
+    /**
+     * Reads the section, copying each run along the last dimension straight out of the buffers.
+     */
+    public Array read(List<Range> ranges) {
+        int rank = shape.length;
+        int[] resultShape = SectionSpecUtils.shapeOf(ranges);
+        long count = elementCount(resultShape);
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Section is too large to read from a resident variable at once");
+        }
+        Object values = dataType == DataType.FLOAT ? new float[(int) count] : new double[(int) count];
+        if (count == 0) {
+            return Array.factory(dataType, resultShape, values);
+        }
+
+        long[] strides = new long[rank];
+        long stride = 1;
+        for (int d = rank - 1; d >= 0; d--) {
+            strides[d] = stride;
+            stride *= shape[d];
+        }
+        Range last = ranges.get(rank - 1);
+        int runLength = last.length();
+        int[] counter = new int[rank - 1];
+        for (int offset = 0; offset < count; offset += runLength) {
+            long element = (long) last.first() * strides[rank - 1];
+            for (int d = 0; d < rank - 1; d++) {
+                Range range = ranges.get(d);
+                element += (range.first() + (long) counter[d] * range.stride()) * strides[d];
+            }
+            copyRun(element, last.stride(), values, offset, runLength);
+            for (int d = rank - 2; d >= 0 && ++counter[d] == ranges.get(d).length(); d--) {
+                counter[d] = 0;
+            }
+        }
+        return Array.factory(dataType, resultShape, values);
+    }
+
+    /**
+     * Decodes the whole of {@code v} into buffers outside the heap, a bounded chunk of its first dimension at a time.
+     *
+     * @param file       Scratch file to map for {@link ResidentMode#MAPPED}. Ignored for {@link ResidentMode#DIRECT}.
+     * @param chunkBytes Upper bound on the data decoded per chunk, though at least one index of the first dimension
+     *                   is always decoded.
+     */
+    public static ResidentVariable load(Variable v, long datasetLastModified, long datasetLength, ResidentMode mode,
+            @Nullable Path file, long chunkBytes) throws IOException, InvalidRangeException {
+
+        int[] shape = v.getShape();
+        DataType dataType = v.getDataType();
+        if (shape.length == 0) {
+            throw new IllegalArgumentException("Resident variables need at least one dimension");
+        }
+        if (dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
+            throw new IllegalArgumentException("Resident variables must be float or double");
+        }
+        int elementSize = dataType.getSize();
+        long elements = elementCount(shape);
+        int elementsPerSegment = SEGMENT_BYTES / elementSize;
+        ByteBuffer[] segments = mode == ResidentMode.MAPPED ?
+                mapSegments(file, elements * elementSize, elementsPerSegment * elementSize) :
+                allocateSegments(elements * elementSize, elementsPerSegment * elementSize);
+
+        long elementsPerIndex = elementCount(shape) / Math.max(1, shape[0]);
+        int indexesPerChunk = (int) Math.max(1L, Math.min(shape[0],
+                chunkBytes / Math.max(1L, elementsPerIndex * elementSize)));
+        int[] origin = new int[shape.length];
+        int[] chunkShape = shape.clone();
+        long element = 0;
+        for (int index = 0; index < shape[0]; index += indexesPerChunk) {
+            origin[0] = index;
+            chunkShape[0] = Math.min(indexesPerChunk, shape[0] - index);
+            Object chunk = v.read(origin, chunkShape).get1DJavaArray(dataType);
+            int length = (int) elementCount(chunkShape);
+            put(segments, elementsPerSegment, dataType, element, chunk, length);
+            element += length;
+        }
+        return new ResidentVariable(datasetLastModified, datasetLength, shape, dataType, segments,
+                elementsPerSegment);
+    }
+
+    private void copyRun(long element, int stride, Object values, int offset, int length) {
+        int segmentIndex = (int) (element / elementsPerSegment);
+        int position = (int) (element % elementsPerSegment);
+        if (stride == 1 && position + length <= elementsPerSegment) {
+            // The common case, a contiguous run within one segment, is a single bulk copy
+            ByteBuffer segment = segments[segmentIndex].duplicate().order(ByteOrder.nativeOrder());
+            segment.position(position * dataType.getSize());
+            if (dataType == DataType.FLOAT) {
+                segment.asFloatBuffer().get((float[]) values, offset, length);
+            } else {
+                segment.asDoubleBuffer().get((double[]) values, offset, length);
+            }
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            long e = element + (long) i * stride;
+            ByteBuffer segment = segments[(int) (e / elementsPerSegment)];
+            int bytePosition = (int) (e % elementsPerSegment) * dataType.getSize();
+            if (dataType == DataType.FLOAT) {
+                ((float[]) values)[offset + i] = segment.getFloat(bytePosition);
+            } else {
+                ((double[]) values)[offset + i] = segment.getDouble(bytePosition);
+            }
+        }
+    }
+
+    private static void put(ByteBuffer[] segments, int elementsPerSegment, DataType dataType, long element,
+            Object values, int length) {
+        int offset = 0;
+        while (offset < length) {
+            int segmentIndex = (int) ((element + offset) / elementsPerSegment);
+            int position = (int) ((element + offset) % elementsPerSegment);
+            int n = Math.min(length - offset, elementsPerSegment - position);
+            ByteBuffer segment = segments[segmentIndex].duplicate().order(ByteOrder.nativeOrder());
+            segment.position(position * dataType.getSize());
+            if (dataType == DataType.FLOAT) {
+                segment.asFloatBuffer().put((float[]) values, offset, n);
+            } else {
+                segment.asDoubleBuffer().put((double[]) values, offset, n);
+            }
+            offset += n;
+        }
+    }
+
+    private static ByteBuffer[] allocateSegments(long totalBytes, int segmentBytes) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(totalBytes, segmentBytes)];
+        for (int s = 0; s < segments.length; s++) {
+            int size = (int) Math.min(segmentBytes, totalBytes - (long) s * segmentBytes);
+            segments[s] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        return segments;
+    }
+
+    private static ByteBuffer[] mapSegments(Path file, long totalBytes, int segmentBytes) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(totalBytes, segmentBytes)];
+        // The mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s * segmentBytes;
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                        Math.min(segmentBytes, totalBytes - start)).order(ByteOrder.nativeOrder());
+            }
+        }
+        return segments;
+    }
+
+    private static int segmentCount(long totalBytes, int segmentBytes) {
+        return (int) Math.max(1L, (totalBytes + segmentBytes - 1) / segmentBytes);
+    }
+
+    private static long elementCount(int[] shape) {
+        return Arrays.stream(shape).asLongStream().reduce(1L, (a, b) -> a * b);
+    }
+}
@@ -0,0 +1,169 @@
+package com.chrisdjames1.temperatureanalysis.service.resident;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmResidentProperties;
+import com.chrisdjames1.temperatureanalysis.model.value.ResidentMode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps each of the {@link CdmResidentProperties#getVariables()} decoded outside the heap as a
+ * {@link ResidentVariable}, and serves every read of those variables from it. The variables are decoded in the
+ * background at startup, and again if the dataset changes, from a separate handle on the dataset. Until a variable
+ * is resident, callers read the variable itself.
+ */
+@Slf4j
+@Service
+public class ResidentVariableService {
+
+    private static final String SCRATCH_EXTENSION = ".res";
+
+    private final CdmDatasetProperties datasetProperties;
+    private final CdmResidentProperties residentProperties;
+    private final CdmReadProperties readProperties;
+    private final Map<String, ResidentVariable> residents = new ConcurrentHashMap<>();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    public ResidentVariableService(CdmDatasetProperties datasetProperties, CdmResidentProperties residentProperties,
+            CdmReadProperties readProperties) {
+        this.datasetProperties = datasetProperties;
+        this.residentProperties = residentProperties;
+        this.readProperties = readProperties;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        if (residentProperties.getVariables().isEmpty()) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resident-variable-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        residentProperties.getVariables().forEach(this::scheduleLoad);
+    }
+
+    /**
+     * Whether the variable is currently resident.
+     */
+    public boolean isResident(String varName) {
+        return residents.containsKey(varName);
+    }
+
+    /**
+     * Reads the section from the resident copy of the variable.
+     *
+     * @return The section, or null if the variable is not resident or its resident copy is out of date.
+     */
+    @Nullable
+    public Array read(NetcdfFile ncFile, String varName, List<Range> ranges) {
+        ResidentVariable resident = residents.get(varName);
+        if (resident == null) {
+            return null;
+        }
+        File datasetFile = new File(ncFile.getLocation());
+        if (resident.getDatasetLastModified() != datasetFile.lastModified() ||
+                resident.getDatasetLength() != datasetFile.length()) {
+            log.info("Dataset has changed since variable '{}' was made resident. Reloading it.", varName);
+            residents.remove(varName, resident);
+            scheduleLoad(varName);
+            return null;
+        }
+        log.debug("Reading variable '{}' from its resident copy", varName);
+        return resident.read(ranges);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void scheduleLoad(String varName) {
+        if (executor != null && loading.add(varName)) {
+            executor.submit(() -> {
+                try {
+                    residents.put(varName, load(varName));
+                } catch (Exception | OutOfMemoryError e) {
+                    log.error("Could not make variable '{}' resident", varName, e);
+                } finally {
+                    loading.remove(varName);
+                }
+            });
+        }
+    }
+
+    private ResidentVariable load(String varName) throws IOException, InvalidRangeException {
+        File datasetFile = new File(datasetProperties.getPath());
+        long lastModified = datasetFile.lastModified();
+        long length = datasetFile.length();
+        Path scratch = residentProperties.getMode() == ResidentMode.MAPPED ? scratchPath(datasetFile, varName) : null;
+
+        log.info("Making variable '{}' resident in {} mode", varName, residentProperties.getMode());
+        long start = System.currentTimeMillis();
+        // A handle of its own, so loading never shares a file pointer with request threads
+        try (NetcdfFile ncFile = NetcdfFiles.open(datasetFile.getPath())) {
+            Variable v = ncFile.findVariable(varName);
+            if (v == null) {
+                throw new IllegalArgumentException("Unable fo find variable " + varName);
+            }
+            ResidentVariable resident = ResidentVariable.load(v, lastModified, length, residentProperties.getMode(),
+                    scratch, readProperties.getChunkSizeBytes());
+            log.info("Made variable '{}' resident ({} bytes) in {} ms", varName, resident.getSizeBytes(),
+                    System.currentTimeMillis() - start);
+            return resident;
+        } finally {
+            if (scratch != null) {
+                releaseScratch(scratch);
+            }
+        }
+    }
+
+    /**
+     * A new file for each load, so reloading never truncates a file that an older copy still has mapped.
+     */
+    private Path scratchPath(File datasetFile, String varName) throws IOException {
+        Path directory = StringUtils.isNotEmpty(residentProperties.getDirectory()) ?
+                Paths.get(residentProperties.getDirectory()) : Paths.get(System.getProperty("java.io.tmpdir"));
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, datasetFile.getName() + "." + varName + ".", SCRATCH_EXTENSION);
+    }
+
+    /**
+     * The mapping keeps the data of an unlinked file, so the scratch file is removed as soon as it is mapped and
+     * its space is reclaimed once the mapping is collected. Where open files cannot be deleted it goes on exit.
+     */
+    private static void releaseScratch(Path scratch) {
+        try {
+            Files.deleteIfExists(scratch);
+        } catch (IOException e) {
+            scratch.toFile().deleteOnExit();
+        }
+    }
+}
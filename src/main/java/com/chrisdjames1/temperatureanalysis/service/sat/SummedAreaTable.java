@@ -0,0 +1,257 @@
+package com.chrisdjames1.temperatureanalysis.service.sat;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.MappedSegments;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFile;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFiles;
+import lombok.Getter;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * NaN-aware prefix sums over the last two dimensions of a variable, one 2D table per index of the leading dimensions
+ * (a "step", e.g. a time step). The total and valid value count of any rectangular box within a step then cost four
+ * lookups each, whatever the size of the box.
+ * <p>
+ * The tables live in a memory-mapped sidecar file. After a fixed size header, each step holds
+ * {@code (rows + 1) * (cols + 1)} little-endian double sums followed by as many int counts, where entry
+ * {@code (y, x)} covers every value above and to the left of it.
+ */
+public class SummedAreaTable implements SidecarFile {
+
+    private static final byte[] MAGIC = "NCFASAT1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 64;
+    // Magic, last modified, length and rank come before the shape in the header
+    private static final int MAX_RANK = (HEADER_BYTES - MAGIC.length - 2 * Long.BYTES - Integer.BYTES) / Integer.BYTES;
+
+    @Getter
+    private final long datasetLastModified;
+    @Getter
+    private final long datasetLength;
+    private final int[] shape;
+    private final int rows;
+    private final int cols;
+    private final int entries;
+    private final MappedSegments steps;
+
+    private SummedAreaTable(long datasetLastModified, long datasetLength, int[] shape, MappedSegments steps) {
+        this.datasetLastModified = datasetLastModified;
+        this.datasetLength = datasetLength;
+        this.shape = shape;
+        this.rows = shape[shape.length - 2];
+        this.cols = shape[shape.length - 1];
+        this.entries = (rows + 1) * (cols + 1);
+        this.steps = steps;
+    }
+
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Whether the tables give the same totals as a scan of the section for fewer lookups than the scan would read.
+     * The box dimensions must not be strided, and a kept box dimension needs one box per index.
+     */
+    public boolean canServe(List<Range> ranges, int[] bucketStrides) {
+        int rank = shape.length;
+        if (ranges.size() != rank) {
+            return false;
+        }
+        Range rowRange = ranges.get(rank - 2);
+        Range colRange = ranges.get(rank - 1);
+        if (rowRange.stride() != 1 || colRange.stride() != 1) {
+            return false;
+        }
+        long boxesPerStep = (long) (bucketStrides[rank - 2] != 0 ? rowRange.length() : 1) *
+                (bucketStrides[rank - 1] != 0 ? colRange.length() : 1);
+        return 4 * boxesPerStep < (long) rowRange.length() * colRange.length();
+    }
+
+    /**
+     * Totals the section into buckets in the same way as
+     * {@link com.chrisdjames1.temperatureanalysis.util.ReductionKernels#totalGroupedBy}, with each index of the
+     * leading dimensions and each index of the section at offset 0.
+     */
+    public void totalGroupedBy(List<Range> ranges, int[] bucketStrides, TotalCounters counters) {
+        int leading = shape.length - 2;
+        Range rowRange = ranges.get(leading);
+        Range colRange = ranges.get(leading + 1);
+        int rowStride = bucketStrides[leading];
+        int colStride = bucketStrides[leading + 1];
+        int rowBoxes = rowStride != 0 ? rowRange.length() : 1;
+        int colBoxes = colStride != 0 ? colRange.length() : 1;
+
+        int[] counter = new int[leading];
+        while (true) {
+            long step = 0;
+            int bucket = 0;
+            for (int d = 0; d < leading; d++) {
+                Range range = ranges.get(d);
+                step = step * shape[d] + range.first() + (long) counter[d] * range.stride();
+                bucket += counter[d] * bucketStrides[d];
+            }
+            for (int rowBox = 0; rowBox < rowBoxes; rowBox++) {
+                int y0 = rowStride != 0 ? rowRange.first() + rowBox : rowRange.first();
+                int y1 = rowStride != 0 ? y0 : rowRange.last();
+                for (int colBox = 0; colBox < colBoxes; colBox++) {
+                    int x0 = colStride != 0 ? colRange.first() + colBox : colRange.first();
+                    int x1 = colStride != 0 ? x0 : colRange.last();
+                    addBox(step, y0, y1, x0, x1, counters, bucket + rowBox * rowStride + colBox * colStride);
+                }
+            }
+            int d = leading - 1;
+            while (d >= 0 && ++counter[d] == ranges.get(d).length()) {
+                counter[d] = 0;
+                d--;
+            }
+            if (d < 0) {
+                return;
+            }
+        }
+    }
+
+    private void addBox(long step, int y0, int y1, int x0, int x1, TotalCounters counters, int bucket) {
+        MappedByteBuffer segment = steps.segment(step);
+        int base = steps.position(step);
+        int bottomRight = (y1 + 1) * (cols + 1) + x1 + 1;
+        int bottomLeft = (y1 + 1) * (cols + 1) + x0;
+        int topRight = y0 * (cols + 1) + x1 + 1;
+        int topLeft = y0 * (cols + 1) + x0;
+        double total = segment.getDouble(base + bottomRight * Double.BYTES) -
+                segment.getDouble(base + bottomLeft * Double.BYTES) -
+                segment.getDouble(base + topRight * Double.BYTES) +
+                segment.getDouble(base + topLeft * Double.BYTES);
+        int countBase = base + entries * Double.BYTES;
+        long count = (long) segment.getInt(countBase + bottomRight * Integer.BYTES) -
+                segment.getInt(countBase + bottomLeft * Integer.BYTES) -
+                segment.getInt(countBase + topRight * Integer.BYTES) +
+                segment.getInt(countBase + topLeft * Integer.BYTES);
+        counters.add(bucket, total, count);
+    }
+
+    /**
+     * Builds the tables for {@code v} into {@code file}, reading one step at a time.
+     */
+    public static void write(Variable v, long datasetLastModified, long datasetLength, Path file)
+            throws IOException, InvalidRangeException {
+
+        int[] shape = v.getShape();
+        checkShape(shape);
+        int rank = shape.length;
+        int rows = shape[rank - 2];
+        int cols = shape[rank - 1];
+        int entries = (rows + 1) * (cols + 1);
+        long steps = steps(shape);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putLong(datasetLastModified).putLong(datasetLength).putInt(rank);
+            for (int length : shape) {
+                header.putInt(length);
+            }
+            header.position(0);
+            SidecarFiles.writeFully(channel, header, 0L);
+
+            ByteBuffer block = ByteBuffer.allocate((int) stepBytes(shape)).order(ByteOrder.LITTLE_ENDIAN);
+            double[] sums = new double[entries];
+            int[] counts = new int[entries];
+            int[] origin = new int[rank];
+            int[] planeShape = new int[rank];
+            Arrays.fill(planeShape, 1);
+            planeShape[rank - 2] = rows;
+            planeShape[rank - 1] = cols;
+            for (long step = 0; step < steps; step++) {
+                long remainder = step;
+                for (int d = rank - 3; d >= 0; d--) {
+                    origin[d] = (int) (remainder % shape[d]);
+                    remainder /= shape[d];
+                }
+                Array plane = v.read(origin, planeShape);
+                for (int y = 0; y < rows; y++) {
+                    double rowSum = 0;
+                    int rowCount = 0;
+                    for (int x = 0; x < cols; x++) {
+                        double value = plane.getDouble(y * cols + x);
+                        if (!Double.isNaN(value)) {
+                            rowSum += value;
+                            rowCount++;
+                        }
+                        int entry = (y + 1) * (cols + 1) + x + 1;
+                        sums[entry] = sums[entry - cols - 1] + rowSum;
+                        counts[entry] = counts[entry - cols - 1] + rowCount;
+                    }
+                }
+                block.clear();
+                block.asDoubleBuffer().put(sums);
+                block.position(entries * Double.BYTES);
+                block.asIntBuffer().put(counts);
+                block.position(0);
+                SidecarFiles.writeFully(channel, block, HEADER_BYTES + step * block.capacity());
+            }
+        }
+    }
+
+    /**
+     * Maps the tables in {@code file} into memory.
+     */
+    public static SummedAreaTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = SidecarFiles.readHeader(channel, file, MAGIC, HEADER_BYTES, "summed-area table");
+            long datasetLastModified = header.getLong();
+            long datasetLength = header.getLong();
+            int rank = header.getInt();
+            if (rank < 2 || rank > MAX_RANK) {
+                throw new IOException("Corrupt summed-area table file: " + file);
+            }
+            int[] shape = new int[rank];
+            for (int d = 0; d < rank; d++) {
+                shape[d] = header.getInt();
+            }
+            long stepBytes = stepBytes(shape);
+            long steps = steps(shape);
+            if (channel.size() != HEADER_BYTES + steps * stepBytes) {
+                throw new IOException("Incomplete summed-area table file: " + file);
+            }
+            return new SummedAreaTable(datasetLastModified, datasetLength, shape,
+                    MappedSegments.map(channel, HEADER_BYTES, steps, stepBytes));
+        }
+    }
+
+    private static void checkShape(int[] shape) {
+        if (shape.length < 2 || shape.length > MAX_RANK) {
+            throw new IllegalArgumentException(String.format("Summed-area tables need between 2 and %d dimensions",
+                    MAX_RANK));
+        }
+        if (stepBytes(shape) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The last two dimensions are too large for a summed-area table");
+        }
+    }
+
+    private static long stepBytes(int[] shape) {
+        long entries = (long) (shape[shape.length - 2] + 1) * (shape[shape.length - 1] + 1);
+        return entries * (Double.BYTES + Integer.BYTES);
+    }
+
+    private static long steps(int[] shape) {
+        long steps = 1;
+        for (int d = 0; d < shape.length - 2; d++) {
+            steps *= shape[d];
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chrisdjames1.temperatureanalysis.service.sat;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReduceProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmSummedAreaProperties;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
+/**
+ * Keeps a {@link SummedAreaTable} for each of the {@link CdmSummedAreaProperties#getVariables()}, loaded or built
+ * by a {@link SidecarLoader}. Until a table is ready, and whenever it cannot serve a query, callers fall back to
+ * scanning the data.
+ */
+@Slf4j
+@Service
+public class SummedAreaTableService {
+
+    private final CdmDatasetProperties datasetProperties;
+    private final CdmSummedAreaProperties summedAreaProperties;
+    private final CdmReduceProperties reduceProperties;
+    @Nullable
+    private SidecarLoader<SummedAreaTable> loader;
+
+    public SummedAreaTableService(CdmDatasetProperties datasetProperties,
+            CdmSummedAreaProperties summedAreaProperties, CdmReduceProperties reduceProperties) {
+        this.datasetProperties = datasetProperties;
+        this.summedAreaProperties = summedAreaProperties;
+        this.reduceProperties = reduceProperties;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        if (summedAreaProperties.getVariables().isEmpty()) {
+            return;
+        }
+        loader = SidecarLoader.<SummedAreaTable>builder().description("summed-area table").extension(".sat")
+                .datasetPath(datasetProperties.getPath()).directory(summedAreaProperties.getDirectory())
+                .opener(SummedAreaTable::open).writer(SummedAreaTable::write).build();
+        summedAreaProperties.getVariables().forEach(loader::load);
+    }
+
+    /**
+     * Totals the section into {@code size} buckets from the summed-area table of the variable, in the same way as
+     * {@link com.chrisdjames1.temperatureanalysis.util.ReductionKernels#totalGroupedBy} would from the data.
+     *
+     * @return The totals, or null if there is no up to date table for the variable or it cannot serve this query.
+     */
+    @Nullable
+    public TotalCounters totalGroupedBy(NetcdfFile ncFile, String varName, List<Range> ranges, int[] bucketStrides,
+            int size) {
+
+        SummedAreaTable table = loader != null ? loader.get(ncFile, varName) : null;
+        if (table == null || !table.canServe(ranges, bucketStrides)) {
+            return null;
+        }
+        log.debug("Totalling variable '{}' from its summed-area table", varName);
+        TotalCounters counters = new TotalCounters(size, reduceProperties.getSummation());
+        table.totalGroupedBy(ranges, bucketStrides, counters);
+        return counters;
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.chrisdjames1.temperatureanalysis.service.sidecar;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A run of equal sized, little-endian units of a file (steps, cells...) mapped into memory. A single mapping is
+ * limited to 2GB, so whole units are mapped in as many segments as it takes.
+ */
+public class MappedSegments {
+
+    private final long unitBytes;
+    private final int unitsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    private MappedSegments(long unitBytes, int unitsPerSegment, MappedByteBuffer[] segments) {
+        this.unitBytes = unitBytes;
+        this.unitsPerSegment = unitsPerSegment;
+        this.segments = segments;
+    }
+
+    /**
+     * Maps {@code units} units of {@code unitBytes} each, starting at {@code offset} in the file.
+     */
+    public static MappedSegments map(FileChannel channel, long offset, long units, long unitBytes)
+            throws IOException {
+        int unitsPerSegment = (int) Math.max(1, Math.min(units, Integer.MAX_VALUE / unitBytes));
+        int segmentCount = (int) ((units + unitsPerSegment - 1) / unitsPerSegment);
+        MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            long firstUnit = (long) s * unitsPerSegment;
+            long segmentUnits = Math.min(unitsPerSegment, units - firstUnit);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset + firstUnit * unitBytes,
+                    segmentUnits * unitBytes);
+            segments[s].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new MappedSegments(unitBytes, unitsPerSegment, segments);
+    }
+
+    /**
+     * The segment holding the unit.
+     */
+    public MappedByteBuffer segment(long unit) {
+        return segments[(int) (unit / unitsPerSegment)];
+    }
+
+    /**
+     * Where the unit starts within its {@link #segment}.
+     */
+    public int position(long unit) {
+        return (int) ((unit % unitsPerSegment) * unitBytes);
+    }
+}
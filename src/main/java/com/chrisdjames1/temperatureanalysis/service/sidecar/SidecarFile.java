@@ -0,0 +1,12 @@
+package com.chrisdjames1.temperatureanalysis.service.sidecar;
+
+/**
+ * A file derived from one variable of the dataset and kept beside it. It records the version of the dataset it was
+ * built from, so that it is only used while the dataset is unchanged.
+ */
+public interface SidecarFile {
+
+    long getDatasetLastModified();
+
+    long getDatasetLength();
+}
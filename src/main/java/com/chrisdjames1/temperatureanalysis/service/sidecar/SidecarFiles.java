@@ -0,0 +1,50 @@
+package com.chrisdjames1.temperatureanalysis.service.sidecar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads and writes the parts that sidecar file formats have in common: a fixed size, little-endian header that starts
+ * with the magic of the format.
+ */
+public class SidecarFiles {
+
+    /**
+     * Reads the header from the start of the file.
+     *
+     * @param description What the file holds, e.g. "pyramid", for the exception message.
+     * @return The header, positioned just after the magic.
+     * @throws IOException If the file is shorter than the header or does not start with {@code magic}.
+     */
+    public static ByteBuffer readHeader(FileChannel channel, Path file, byte[] magic, int headerBytes,
+            String description) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        byte[] fileMagic = new byte[magic.length];
+        if (header.remaining() < headerBytes || !Arrays.equals(magic, readBytes(header, fileMagic))) {
+            throw new IOException("Not a " + description + " file: " + file);
+        }
+        return header;
+    }
+
+    /**
+     * Writes the whole of what remains of {@code buffer} at {@code position} in the file.
+     */
+    public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,186 @@
+package com.chrisdjames1.temperatureanalysis.service.sidecar;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.lang.Nullable;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Keeps one {@link SidecarFile} per variable. Each is loaded from its file beside the dataset, or built on a
+ * background thread from a separate handle on the dataset when the file is missing, unreadable or was built from a
+ * different version of the dataset. A build writes to a partial file that is only renamed into place once it is
+ * complete, so a sidecar file is never seen half written. A sidecar that goes out of date while it is in use is
+ * dropped and built again.
+ */
+@Slf4j
+public class SidecarLoader<T extends SidecarFile> {
+
+    private final String description;
+    private final String extension;
+    private final String datasetPath;
+    @Nullable
+    private final String directory;
+    private final Opener<T> opener;
+    private final Writer writer;
+    private final Predicate<T> current;
+    private final boolean resumable;
+    private final Map<String, T> sidecars = new ConcurrentHashMap<>();
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    /**
+     * @param description What the sidecar holds, e.g. "pyramid", for the thread name and log messages.
+     * @param extension   Of the sidecar file names, e.g. ".pyr".
+     * @param directory   (optional) Where the sidecar files are kept. Defaults to the directory of the dataset.
+     * @param current     (optional) Whether a sidecar of the current version of the dataset was also built with the
+     *                    current settings. Defaults to always.
+     * @param resumable   Whether {@code writer} carries on from a partial file left by an interrupted build.
+     */
+    @Builder
+    public SidecarLoader(@NonNull String description, @NonNull String extension, @NonNull String datasetPath,
+            @Nullable String directory, @NonNull Opener<T> opener, @NonNull Writer writer,
+            @Nullable Predicate<T> current, boolean resumable) {
+        this.description = description;
+        this.extension = extension;
+        this.datasetPath = datasetPath;
+        this.directory = directory;
+        this.opener = opener;
+        this.writer = writer;
+        this.current = current != null ? current : sidecar -> true;
+        this.resumable = resumable;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, description.replace(' ', '-') + "-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads or builds the sidecar of the variable in the background, unless that is already under way.
+     */
+    public void load(String varName) {
+        if (building.add(varName)) {
+            executor.submit(() -> {
+                try {
+                    sidecars.put(varName, loadOrBuild(varName));
+                } catch (Exception e) {
+                    log.error("Could not load or build the {} for '{}'", description, varName, e);
+                } finally {
+                    building.remove(varName);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a task on the background thread, after the loads and builds already scheduled.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Returns the sidecar of the variable if it was built from the dataset as it is now.
+     *
+     * @return The sidecar, or null if it is not ready or is out of date, in which case it is built again.
+     */
+    @Nullable
+    public T get(NetcdfFile ncFile, String varName) {
+        T sidecar = sidecars.get(varName);
+        if (sidecar == null) {
+            return null;
+        }
+        File datasetFile = new File(ncFile.getLocation());
+        if (sidecar.getDatasetLastModified() != datasetFile.lastModified() ||
+                sidecar.getDatasetLength() != datasetFile.length()) {
+            log.info("Dataset has changed since the {} for '{}' was built. Rebuilding it.", description, varName);
+            sidecars.remove(varName, sidecar);
+            load(varName);
+            return null;
+        }
+        return sidecar;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private T loadOrBuild(String varName) throws IOException, InvalidRangeException {
+        File datasetFile = new File(datasetPath);
+        long lastModified = datasetFile.lastModified();
+        long length = datasetFile.length();
+        Path sidecarPath = sidecarPath(datasetFile, varName);
+
+        if (Files.exists(sidecarPath)) {
+            try {
+                T sidecar = opener.open(sidecarPath);
+                if (sidecar.getDatasetLastModified() == lastModified && sidecar.getDatasetLength() == length &&
+                        current.test(sidecar)) {
+                    log.info("Loaded the {} for '{}' from {}", description, varName, sidecarPath);
+                    return sidecar;
+                }
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable {} {}", description, sidecarPath, e);
+            }
+        }
+
+        Path partial = sidecarPath.resolveSibling(sidecarPath.getFileName() + ".partial");
+        log.info("Building the {} for '{}' into {}{}", description, varName, sidecarPath,
+                resumable && Files.exists(partial) ? ", carrying on from the partial file if it is still current" :
+                        "");
+        long start = System.currentTimeMillis();
+        // A handle of its own, so the build never shares a file pointer with request threads
+        try (NetcdfFile ncFile = NetcdfFiles.open(datasetFile.getPath())) {
+            Variable v = ncFile.findVariable(varName);
+            if (v == null) {
+                throw new IllegalArgumentException("Unable fo find variable " + varName);
+            }
+            writer.write(v, lastModified, length, partial);
+        }
+        Files.move(partial, sidecarPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Built the {} for '{}' in {} ms", description, varName, System.currentTimeMillis() - start);
+        return opener.open(sidecarPath);
+    }
+
+    private Path sidecarPath(File datasetFile, String varName) throws IOException {
+        Path sidecarDirectory = StringUtils.isNotEmpty(directory) ? Paths.get(directory) :
+                datasetFile.getAbsoluteFile().toPath().getParent();
+        Files.createDirectories(sidecarDirectory);
+        return sidecarDirectory.resolve(datasetFile.getName() + "." + varName + extension);
+    }
+
+    /**
+     * Maps a complete sidecar file into memory.
+     */
+    @FunctionalInterface
+    public interface Opener<T> {
+        T open(Path file) throws IOException;
+    }
+
+    /**
+     * Builds the sidecar of {@code v} into {@code file}, recording the version of the dataset it was built from.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(Variable v, long datasetLastModified, long datasetLength, Path file)
+                throws IOException, InvalidRangeException;
+    }
+}
@@ -0,0 +1,279 @@
+package com.chrisdjames1.temperatureanalysis.service.transpose;
+
+import com.chrisdjames1.temperatureanalysis.service.sidecar.MappedSegments;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFile;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarFiles;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import lombok.Getter;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A copy of a float or double variable transposed so that the whole series of each cell of its last two dimensions
+ * is contiguous. A time series of one cell, which is scattered across the whole variable in its own layout, is then
+ * a single sequential read.
+ * <p>
+ * The store lives in a memory-mapped sidecar file. After a fixed size header, each cell in row-major order holds one
+ * little-endian value per index of the leading dimensions (a "step", e.g. a time step). The header records how many
+ * steps have been built, so a build that was interrupted carries on where it stopped.
+ */
+public class TransposedStore implements SidecarFile {
+
+    private static final byte[] MAGIC = "NCFATMS1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 64;
+    private static final int STEPS_BUILT_POSITION = MAGIC.length + 2 * Long.BYTES;
+    // Magic, last modified, length, steps built, element size and rank come before the shape in the header
+    private static final int MAX_RANK =
+            (HEADER_BYTES - MAGIC.length - 3 * Long.BYTES - 2 * Integer.BYTES) / Integer.BYTES;
+
+    @Getter
+    private final long datasetLastModified;
+    @Getter
+    private final long datasetLength;
+    private final int[] shape;
+    private final DataType dataType;
+    private final int cols;
+    private final MappedSegments cells;
+
+    private TransposedStore(long datasetLastModified, long datasetLength, int[] shape, DataType dataType,
+            MappedSegments cells) {
+        this.datasetLastModified = datasetLastModified;
+        this.datasetLength = datasetLength;
+        this.shape = shape;
+        this.dataType = dataType;
+        this.cols = shape[shape.length - 1];
+        this.cells = cells;
+    }
+
+    /**
+     * Whether the section covers at most {@code maxCells} cells of the last two dimensions.
+     */
+    public boolean canServe(List<Range> ranges, int maxCells) {
+        int rank = shape.length;
+        return ranges.size() == rank &&
+                (long) ranges.get(rank - 2).length() * ranges.get(rank - 1).length() <= maxCells;
+    }
+
+    /**
+     * Reads the section, in the layout of the variable, with one sequential pass over the series of each cell.
+     */
+    public Array read(List<Range> ranges) {
+        int leading = shape.length - 2;
+        Range rowRange = ranges.get(leading);
+        Range colRange = ranges.get(leading + 1);
+        int[] resultShape = SectionSpecUtils.shapeOf(ranges);
+        long[] steps = stepIndexes(ranges);
+        int cellCount = rowRange.length() * colRange.length();
+        if ((long) steps.length * cellCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Section is too large to read from a transposed store at once");
+        }
+        int elementSize = dataType.getSize();
+        float[] floats = dataType == DataType.FLOAT ? new float[steps.length * cellCount] : null;
+        double[] doubles = dataType == DataType.DOUBLE ? new double[steps.length * cellCount] : null;
+
+        int cellIndex = 0;
+        for (int y = rowRange.first(); y <= rowRange.last(); y += rowRange.stride()) {
+            for (int x = colRange.first(); x <= colRange.last(); x += colRange.stride()) {
+                long cell = (long) y * cols + x;
+                MappedByteBuffer segment = cells.segment(cell);
+                int base = cells.position(cell);
+                for (int s = 0; s < steps.length; s++) {
+                    int position = base + (int) steps[s] * elementSize;
+                    if (floats != null) {
+                        floats[s * cellCount + cellIndex] = segment.getFloat(position);
+                    } else {
+                        doubles[s * cellCount + cellIndex] = segment.getDouble(position);
+                    }
+                }
+                cellIndex++;
+            }
+        }
+        return Array.factory(dataType, resultShape, floats != null ? floats : doubles);
+    }
+
+    /**
+     * Builds, or carries on building, the store for {@code v} into {@code file}. The variable is scanned a bounded
+     * chunk of steps at a time, and the series of every cell is extended after each chunk.
+     *
+     * @param chunkBytes Upper bound on the data read per chunk, though at least one step is always read.
+     */
+    public static void build(Variable v, long datasetLastModified, long datasetLength, Path file, long chunkBytes)
+            throws IOException, InvalidRangeException {
+
+        int[] shape = v.getShape();
+        DataType dataType = v.getDataType();
+        checkShape(shape, dataType);
+        int rank = shape.length;
+        int elementSize = dataType.getSize();
+        int cells = shape[rank - 2] * shape[rank - 1];
+        long steps = steps(shape);
+        long cellBytes = steps * elementSize;
+        long fileSize = HEADER_BYTES + cells * cellBytes;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putLong(datasetLastModified).putLong(datasetLength).putLong(0L).putInt(elementSize)
+                    .putInt(rank);
+            for (int length : shape) {
+                header.putInt(length);
+            }
+            header.position(0);
+            long stepsBuilt = channel.size() == fileSize ? readStepsBuilt(channel, header) : -1L;
+            if (stepsBuilt < 0) {
+                channel.truncate(0L);
+                SidecarFiles.writeFully(channel, header, 0L);
+                // Extend the file to its full size so each cell can be written at its own position
+                SidecarFiles.writeFully(channel, ByteBuffer.allocate(1), fileSize - 1);
+                stepsBuilt = 0L;
+            }
+
+            // Chunks are whole steps within the innermost leading dimension, so each chunk is one rectangular read
+            int innermost = rank - 3;
+            long stepsPerChunk = Math.max(1L, chunkBytes / ((long) cells * elementSize));
+            int[] origin = new int[rank];
+            int[] chunkShape = new int[rank];
+            Arrays.fill(chunkShape, 1);
+            chunkShape[rank - 2] = shape[rank - 2];
+            chunkShape[rank - 1] = shape[rank - 1];
+            ByteBuffer series = ByteBuffer.allocate((int) Math.min(stepsPerChunk, innermost >= 0 ?
+                    shape[innermost] : 1) * elementSize).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer stepsBuiltBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (stepsBuilt < steps) {
+                long remainder = stepsBuilt;
+                for (int d = innermost; d >= 0; d--) {
+                    origin[d] = (int) (remainder % shape[d]);
+                    remainder /= shape[d];
+                }
+                int n = innermost >= 0 ? (int) Math.min(stepsPerChunk, shape[innermost] - origin[innermost]) : 1;
+                if (innermost >= 0) {
+                    chunkShape[innermost] = n;
+                }
+                Object chunk = v.read(origin, chunkShape).get1DJavaArray(dataType);
+                for (int cell = 0; cell < cells; cell++) {
+                    series.clear();
+                    for (int t = 0; t < n; t++) {
+                        if (dataType == DataType.FLOAT) {
+                            series.putFloat(((float[]) chunk)[t * cells + cell]);
+                        } else {
+                            series.putDouble(((double[]) chunk)[t * cells + cell]);
+                        }
+                    }
+                    series.flip();
+                    SidecarFiles.writeFully(channel, series,
+                            HEADER_BYTES + cell * cellBytes + stepsBuilt * elementSize);
+                }
+                stepsBuilt += n;
+                // Only record the progress once the data it covers is on disk
+                channel.force(false);
+                stepsBuiltBuffer.clear();
+                stepsBuiltBuffer.putLong(stepsBuilt).flip();
+                SidecarFiles.writeFully(channel, stepsBuiltBuffer, STEPS_BUILT_POSITION);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps the completed store in {@code file} into memory.
+     */
+    public static TransposedStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = SidecarFiles.readHeader(channel, file, MAGIC, HEADER_BYTES, "transposed store");
+            long datasetLastModified = header.getLong();
+            long datasetLength = header.getLong();
+            long stepsBuilt = header.getLong();
+            int elementSize = header.getInt();
+            int rank = header.getInt();
+            if (rank < 2 || rank > MAX_RANK || (elementSize != Float.BYTES && elementSize != Double.BYTES)) {
+                throw new IOException("Corrupt transposed store file: " + file);
+            }
+            int[] shape = new int[rank];
+            for (int d = 0; d < rank; d++) {
+                shape[d] = header.getInt();
+            }
+            long cells = (long) shape[rank - 2] * shape[rank - 1];
+            long cellBytes = steps(shape) * elementSize;
+            if (stepsBuilt != steps(shape) || channel.size() != HEADER_BYTES + cells * cellBytes) {
+                throw new IOException("Incomplete transposed store file: " + file);
+            }
+            DataType dataType = elementSize == Float.BYTES ? DataType.FLOAT : DataType.DOUBLE;
+            return new TransposedStore(datasetLastModified, datasetLength, shape, dataType,
+                    MappedSegments.map(channel, HEADER_BYTES, cells, cellBytes));
+        }
+    }
+
+    /**
+     * Returns the steps built so far if the file was started from the same version of the same variable as
+     * {@code header}, or -1 if it has to be started again.
+     */
+    private static long readStepsBuilt(FileChannel channel, ByteBuffer header) throws IOException {
+        ByteBuffer existing = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (existing.hasRemaining() && channel.read(existing, existing.position()) >= 0) {
+            // Keep reading until the header is complete
+        }
+        long stepsBuilt = existing.getLong(STEPS_BUILT_POSITION);
+        existing.putLong(STEPS_BUILT_POSITION, 0L);
+        existing.position(0);
+        return existing.equals(header) ? stepsBuilt : -1L;
+    }
+
+    private long[] stepIndexes(List<Range> ranges) {
+        int leading = shape.length - 2;
+        int count = 1;
+        for (int d = 0; d < leading; d++) {
+            count *= ranges.get(d).length();
+        }
+        long[] steps = new long[count];
+        int[] counter = new int[leading];
+        for (int s = 0; s < count; s++) {
+            long step = 0;
+            for (int d = 0; d < leading; d++) {
+                Range range = ranges.get(d);
+                step = step * shape[d] + range.first() + (long) counter[d] * range.stride();
+            }
+            steps[s] = step;
+            for (int d = leading - 1; d >= 0 && ++counter[d] == ranges.get(d).length(); d--) {
+                counter[d] = 0;
+            }
+        }
+        return steps;
+    }
+
+    private static void checkShape(int[] shape, DataType dataType) {
+        if (shape.length < 2 || shape.length > MAX_RANK) {
+            throw new IllegalArgumentException(String.format("Transposed stores need between 2 and %d dimensions",
+                    MAX_RANK));
+        }
+        if (dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
+            throw new IllegalArgumentException("Transposed stores only hold float or double variables");
+        }
+        if (steps(shape) * dataType.getSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The leading dimensions are too large for a transposed store");
+        }
+    }
+
+    private static long steps(int[] shape) {
+        long steps = 1;
+        for (int d = 0; d < shape.length - 2; d++) {
+            steps *= shape[d];
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chrisdjames1.temperatureanalysis.service.transpose;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmTransposedProperties;
+import com.chrisdjames1.temperatureanalysis.service.sidecar.SidecarLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ucar.ma2.Array;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
+/**
+ * Keeps a {@link TransposedStore} for each of the {@link CdmTransposedProperties#getVariables()}, and serves reads of
+ * up to {@link CdmTransposedProperties#getMaxCells()} cells from it. The stores are loaded or built by a
+ * {@link SidecarLoader}, and a build that was interrupted carries on from its partial file. Until a store is ready,
+ * callers read the variable itself.
+ */
+@Slf4j
+@Service
+public class TransposedStoreService {
+
+    private final CdmDatasetProperties datasetProperties;
+    private final CdmTransposedProperties transposedProperties;
+    private final CdmReadProperties readProperties;
+    @Nullable
+    private SidecarLoader<TransposedStore> loader;
+
+    public TransposedStoreService(CdmDatasetProperties datasetProperties,
+            CdmTransposedProperties transposedProperties, CdmReadProperties readProperties) {
+        this.datasetProperties = datasetProperties;
+        this.transposedProperties = transposedProperties;
+        this.readProperties = readProperties;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        if (transposedProperties.getVariables().isEmpty()) {
+            return;
+        }
+        loader = SidecarLoader.<TransposedStore>builder().description("transposed store").extension(".tms")
+                .datasetPath(datasetProperties.getPath()).directory(transposedProperties.getDirectory())
+                .opener(TransposedStore::open)
+                .writer((v, datasetLastModified, datasetLength, file) -> TransposedStore.build(v,
+                        datasetLastModified, datasetLength, file, readProperties.getChunkSizeBytes()))
+                .resumable(true).build();
+        transposedProperties.getVariables().forEach(loader::load);
+    }
+
+    /**
+     * Reads the section from the transposed store of the variable.
+     *
+     * @return The section, or null if there is no up to date store for the variable or the section covers too many
+     * cells.
+     */
+    @Nullable
+    public Array read(NetcdfFile ncFile, String varName, List<Range> ranges) {
+        TransposedStore store = loader != null ? loader.get(ncFile, varName) : null;
+        if (store == null || !store.canServe(ranges, transposedProperties.getMaxCells())) {
+            return null;
+        }
+        log.debug("Reading variable '{}' from its transposed store", varName);
+        return store.read(ranges);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+}
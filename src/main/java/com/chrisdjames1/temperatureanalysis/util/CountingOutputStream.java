@@ -0,0 +1,33 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import lombok.Getter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written through to the underlying stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    @Getter
+    private long count;
+
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream would otherwise write one byte at a time
+        out.write(b, off, len);
+        count += len;
+    }
+}
@@ -0,0 +1,40 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class FutureUtils {
+
+    /**
+     * How often a thread waiting on a future checks whether it should stop waiting.
+     */
+    static final long POLL_MILLIS = 50L;
+
+    /**
+     * Waits for the future as {@link CompletableFuture#join()} does, but calls {@code cancellationCheck} every
+     * {@value #POLL_MILLIS} ms so that the wait ends once the request of the waiting thread is cancelled.
+     *
+     * @param cancellationCheck Throws to stop waiting, e.g. {@code AnalysisMetrics::checkCancelled}.
+     * @throws CompletionException       If the future completed exceptionally, with what it threw as the cause.
+     * @throws RequestCancelledException If the thread is interrupted while it waits. The interrupt is kept.
+     */
+    public static <V> V await(CompletableFuture<V> future, Runnable cancellationCheck) {
+        while (true) {
+            try {
+                return future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancellationCheck.run();
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RequestCancelledException("Cancelled because the request was interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounter;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Totalling kernels specialised per {@link DataType}. The kernels loop over the primitive backing storage of an
+ * {@link Array} (see {@link Array#get1DJavaArray(DataType)}), so no element is ever boxed. Floating point NaN values
+ * are skipped and unsigned integral types are widened before being added.
+ */
+public class ReductionKernels {
+
+    // Runs no longer than this are summed in a plain loop by pairwise summation
+    private static final int PAIRWISE_BLOCK = 128;
+
+    /**
+     * Adds every element of {@code data} to {@code totalCounter}.
+     */
+    public static void total(Array data, TotalCounter totalCounter) {
+        TotalCounters counters = new TotalCounters(1, Summation.NAIVE);
+        total(data, counters);
+        totalCounter.add(counters.total(0), counters.getCounts()[0]);
+    }
+
+    /**
+     * Adds every element of {@code data} to the first bucket of {@code counters}.
+     */
+    public static void total(Array data, TotalCounters counters) {
+        DataType dataType = data.getDataType();
+        accumulate(data.get1DJavaArray(dataType), dataType, 0, (int) data.getSize(), 0, 0, counters);
+    }
+
+    /**
+     * Totals the elements of {@code data} into one bucket per index of dimension {@code dim}. The element at index
+     * {@code i} of that dimension goes into bucket {@code offset + i}.
+     */
+    public static void totalAlongDimension(Array data, int dim, int offset, TotalCounters counters) {
+        int rank = data.getRank();
+        int[] offsets = new int[rank];
+        offsets[dim] = offset;
+        int[] bucketStrides = new int[rank];
+        bucketStrides[dim] = 1;
+        totalGroupedBy(data, offsets, bucketStrides, counters);
+    }
+
+    /**
+     * Totals the elements of {@code data} into buckets chosen by stride arithmetic. The element at index
+     * {@code i[d]} of each dimension {@code d} of the chunk goes into bucket
+     * {@code sum((offset[d] + i[d]) * bucketStrides[d])}, so a dimension with a stride of 0 is reduced and the others
+     * are kept as group keys.
+     */
+    public static void totalGroupedBy(Array data, int[] offset, int[] bucketStrides, TotalCounters counters) {
+        int[] shape = data.getShape();
+        int rank = shape.length;
+        DataType dataType = data.getDataType();
+        Object storage = data.get1DJavaArray(dataType);
+        if (rank == 0) {
+            accumulate(storage, dataType, 0, 1, 0, 0, counters);
+            return;
+        }
+
+        // The innermost dimensions form runs that are totalled in one loop. Reduced dimensions collapse into a
+        // single bucket, and kept dimensions whose buckets are contiguous map consecutive elements to consecutive
+        // buckets.
+        int runStart = rank - 1;
+        int runLength = shape[runStart];
+        int runStride = bucketStrides[runStart];
+        while (runStart > 0 && bucketStrides[runStart - 1] == runStride * runLength) {
+            runStart--;
+            runLength *= shape[runStart];
+        }
+
+        int bucket = 0;
+        for (int d = 0; d < rank; d++) {
+            bucket += offset[d] * bucketStrides[d];
+        }
+        int runs = (int) (data.getSize() / runLength);
+        int[] counter = new int[runStart];
+        for (int run = 0; run < runs; run++) {
+            accumulate(storage, dataType, run * runLength, runLength, bucket, runStride, counters);
+            for (int d = runStart - 1; d >= 0; d--) {
+                if (++counter[d] < shape[d]) {
+                    bucket += bucketStrides[d];
+                    break;
+                }
+                bucket -= bucketStrides[d] * (shape[d] - 1);
+                counter[d] = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code length} elements of {@code storage}, starting at {@code from}, into the buckets of
+     * {@code counters}. The first element goes into {@code bucket} and each subsequent element moves
+     * {@code bucketStride} buckets along, so a stride of 0 totals the whole run into one bucket.
+     */
+    public static void accumulate(Object storage, DataType dataType, int from, int length, int bucket,
+            int bucketStride, TotalCounters counters) {
+
+        switch (dataType) {
+            case DOUBLE:
+                accumulateDoubles((double[]) storage, from, length, bucket, bucketStride, counters);
+                break;
+            case FLOAT:
+                accumulateFloats((float[]) storage, from, length, bucket, bucketStride, counters);
+                break;
+            case LONG:
+            case ULONG:
+                accumulateLongs((long[]) storage, dataType.isUnsigned(), from, length, bucket, bucketStride,
+                        counters);
+                break;
+            case INT:
+            case UINT:
+                accumulateInts((int[]) storage, dataType.isUnsigned(), from, length, bucket, bucketStride, counters);
+                break;
+            case SHORT:
+            case USHORT:
+                accumulateShorts((short[]) storage, dataType.isUnsigned(), from, length, bucket, bucketStride,
+                        counters);
+                break;
+            case BYTE:
+            case UBYTE:
+                accumulateBytes((byte[]) storage, dataType.isUnsigned(), from, length, bucket, bucketStride,
+                        counters);
+                break;
+            default:
+                throw new IllegalStateException("Cannot average data type: " + dataType);
+        }
+    }
+
+    private static void accumulateDoubles(double[] values, int from, int length, int bucket, int bucketStride,
+            TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride != 0) {
+            for (int i = from; i < to; i++, bucket += bucketStride) {
+                double value = values[i];
+                if (!Double.isNaN(value)) {
+                    counters.add(bucket, value, 1L);
+                }
+            }
+            return;
+        }
+        switch (counters.getSummation()) {
+            case PAIRWISE:
+                counters.add(bucket, pairwiseDoubles(values, from, to, bucket, counters.getCounts()), 0L);
+                return;
+            case KAHAN:
+                double sum = 0;
+                double compensation = 0;
+                long kahanCount = 0L;
+                for (int i = from; i < to; i++) {
+                    double value = values[i];
+                    if (!Double.isNaN(value)) {
+                        double t = sum + value;
+                        compensation += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+                        sum = t;
+                        kahanCount++;
+                    }
+                }
+                counters.add(bucket, sum, compensation, kahanCount);
+                return;
+            default:
+                double total = 0;
+                long count = 0L;
+                for (int i = from; i < to; i++) {
+                    double value = values[i];
+                    if (!Double.isNaN(value)) {
+                        total += value;
+                        count++;
+                    }
+                }
+                counters.add(bucket, total, count);
+        }
+    }
+
+    private static double pairwiseDoubles(double[] values, int from, int to, int bucket, long[] counts) {
+        if (to - from <= PAIRWISE_BLOCK) {
+            double total = 0;
+            long count = 0L;
+            for (int i = from; i < to; i++) {
+                double value = values[i];
+                if (!Double.isNaN(value)) {
+                    total += value;
+                    count++;
+                }
+            }
+            counts[bucket] += count;
+            return total;
+        }
+        int mid = (from + to) >>> 1;
+        return pairwiseDoubles(values, from, mid, bucket, counts) + pairwiseDoubles(values, mid, to, bucket, counts);
+    }
+
+    private static void accumulateFloats(float[] values, int from, int length, int bucket, int bucketStride,
+            TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride != 0) {
+            for (int i = from; i < to; i++, bucket += bucketStride) {
+                float value = values[i];
+                if (!Float.isNaN(value)) {
+                    counters.add(bucket, value, 1L);
+                }
+            }
+            return;
+        }
+        switch (counters.getSummation()) {
+            case PAIRWISE:
+                counters.add(bucket, pairwiseFloats(values, from, to, bucket, counters.getCounts()), 0L);
+                return;
+            case KAHAN:
+                double sum = 0;
+                double compensation = 0;
+                long kahanCount = 0L;
+                for (int i = from; i < to; i++) {
+                    float value = values[i];
+                    if (!Float.isNaN(value)) {
+                        double t = sum + value;
+                        compensation += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+                        sum = t;
+                        kahanCount++;
+                    }
+                }
+                counters.add(bucket, sum, compensation, kahanCount);
+                return;
+            default:
+                double total = 0;
+                long count = 0L;
+                for (int i = from; i < to; i++) {
+                    float value = values[i];
+                    if (!Float.isNaN(value)) {
+                        total += value;
+                        count++;
+                    }
+                }
+                counters.add(bucket, total, count);
+        }
+    }
+
+    private static double pairwiseFloats(float[] values, int from, int to, int bucket, long[] counts) {
+        if (to - from <= PAIRWISE_BLOCK) {
+            double total = 0;
+            long count = 0L;
+            for (int i = from; i < to; i++) {
+                float value = values[i];
+                if (!Float.isNaN(value)) {
+                    total += value;
+                    count++;
+                }
+            }
+            counts[bucket] += count;
+            return total;
+        }
+        int mid = (from + to) >>> 1;
+        return pairwiseFloats(values, from, mid, bucket, counts) + pairwiseFloats(values, mid, to, bucket, counts);
+    }
+
+    private static void accumulateLongs(long[] values, boolean unsigned, int from, int length, int bucket,
+            int bucketStride, TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride == 0) {
+            double total = 0;
+            for (int i = from; i < to; i++) {
+                total += unsigned ? unsignedLongToDouble(values[i]) : values[i];
+            }
+            counters.add(bucket, total, length);
+            return;
+        }
+        for (int i = from; i < to; i++, bucket += bucketStride) {
+            counters.add(bucket, unsigned ? unsignedLongToDouble(values[i]) : values[i], 1L);
+        }
+    }
+
+    private static void accumulateInts(int[] values, boolean unsigned, int from, int length, int bucket,
+            int bucketStride, TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride == 0) {
+            // A long cannot overflow here: a run is at most Integer.MAX_VALUE elements of 32 bits each
+            long total = 0L;
+            for (int i = from; i < to; i++) {
+                total += unsigned ? values[i] & 0xFFFFFFFFL : values[i];
+            }
+            counters.add(bucket, total, length);
+            return;
+        }
+        for (int i = from; i < to; i++, bucket += bucketStride) {
+            counters.add(bucket, unsigned ? values[i] & 0xFFFFFFFFL : values[i], 1L);
+        }
+    }
+
+    private static void accumulateShorts(short[] values, boolean unsigned, int from, int length, int bucket,
+            int bucketStride, TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride == 0) {
+            long total = 0L;
+            for (int i = from; i < to; i++) {
+                total += unsigned ? values[i] & 0xFFFF : values[i];
+            }
+            counters.add(bucket, total, length);
+            return;
+        }
+        for (int i = from; i < to; i++, bucket += bucketStride) {
+            counters.add(bucket, unsigned ? values[i] & 0xFFFF : values[i], 1L);
+        }
+    }
+
+    private static void accumulateBytes(byte[] values, boolean unsigned, int from, int length, int bucket,
+            int bucketStride, TotalCounters counters) {
+        final int to = from + length;
+        if (bucketStride == 0) {
+            long total = 0L;
+            for (int i = from; i < to; i++) {
+                total += unsigned ? values[i] & 0xFF : values[i];
+            }
+            counters.add(bucket, total, length);
+            return;
+        }
+        for (int i = from; i < to; i++, bucket += bucketStride) {
+            counters.add(bucket, unsigned ? values[i] & 0xFF : values[i], 1L);
+        }
+    }
+
+    private static double unsignedLongToDouble(long value) {
+        double dbl = (double) (value >>> 1) * 2.0;
+        return dbl + (value & 1L);
+    }
+}
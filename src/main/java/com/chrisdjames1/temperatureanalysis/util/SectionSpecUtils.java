@@ -0,0 +1,178 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.SubSection;
+import org.springframework.lang.Nullable;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SectionSpecUtils {
+
+    /**
+     * Parses a Fortran 90-style section-spec, e.g. ":,1:2,0:10:2", into one {@link Range} per dimension of a variable
+     * with the given shape. Each range is "start", "start:end" or "start:end:stride", and ":" selects the whole
+     * dimension.
+     */
+    public static List<Range> parse(String sectionSpec, int[] shape) throws InvalidRangeException {
+        String[] specs = sectionSpec.trim().isEmpty() ? new String[0] : sectionSpec.split(",");
+        if (specs.length != shape.length) {
+            throw new InvalidRangeException(String.format("Section-spec '%s' has %d ranges but the variable has %d " +
+                    "dimensions", sectionSpec, specs.length, shape.length));
+        }
+        List<Range> ranges = new ArrayList<>(shape.length);
+        for (int i = 0; i < specs.length; i++) {
+            ranges.add(parseRange(specs[i].trim(), shape[i]));
+        }
+        return ranges;
+    }
+
+    private static Range parseRange(String spec, int length) throws InvalidRangeException {
+        if (spec.equals(":")) {
+            return new Range(0, length - 1, 1);
+        }
+        String[] parts = spec.split(":", -1);
+        if (parts.length > 3) {
+            throw new InvalidRangeException("Illegal range: " + spec);
+        }
+        try {
+            int first = parts[0].isEmpty() ? 0 : Integer.parseInt(parts[0].trim());
+            int last = parts.length == 1 ? first : parts[1].isEmpty() ? length - 1 : Integer.parseInt(parts[1].trim());
+            int stride = parts.length == 3 && !parts[2].isEmpty() ? Integer.parseInt(parts[2].trim()) : 1;
+            if (first < 0 || last >= length) {
+                throw new InvalidRangeException(String.format("Range %s is outside of the dimension length %d", spec,
+                        length));
+            }
+            return new Range(first, last, stride);
+        } catch (NumberFormatException e) {
+            throw new InvalidRangeException("Illegal range: " + spec);
+        }
+    }
+
+    /**
+     * Formats ranges as a canonical section-spec, with every range written as "first:last:stride". Equivalent specs,
+     * e.g. "0:10,5:5" and "0:10:1,5", format to the same string.
+     */
+    public static String format(List<Range> ranges) {
+        StringBuilder sectionSpec = new StringBuilder();
+        for (Range range : ranges) {
+            if (sectionSpec.length() > 0) {
+                sectionSpec.append(',');
+            }
+            sectionSpec.append(range.first()).append(':').append(range.last()).append(':').append(range.stride());
+        }
+        return sectionSpec.toString();
+    }
+
+    /**
+     * Returns the number of elements selected by each of the ranges.
+     */
+    public static int[] shapeOf(List<Range> ranges) {
+        int[] shape = new int[ranges.size()];
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = ranges.get(i).length();
+        }
+        return shape;
+    }
+
+    /**
+     * Splits the ranges into sub-sections of at most {@code maxChunkBytes} each. The split happens along the outermost
+     * dimension whose inner slices fit within the limit, with any dimensions outside of that read one index at a
+     * time, so the sub-sections are returned in the row-major order of the full section. A single element larger
+     * than the limit still gets a sub-section of its own.
+     */
+    public static List<SubSection> split(List<Range> ranges, int elementSize, long maxChunkBytes)
+            throws InvalidRangeException {
+        return split(ranges, elementSize, maxChunkBytes, null);
+    }
+
+    /**
+     * As {@link #split(List, int, long)}, but for a chunked variable. Blocks along the split dimension are cut back to
+     * end on a chunk boundary where they would otherwise end part way into a chunk, so neighbouring sub-sections share
+     * as few chunks as possible.
+     *
+     * @param chunkShape (optional) Length of a chunk of the variable along each dimension.
+     */
+    public static List<SubSection> split(List<Range> ranges, int elementSize, long maxChunkBytes,
+            @Nullable int[] chunkShape) throws InvalidRangeException {
+
+        int rank = ranges.size();
+        int[] shape = shapeOf(ranges);
+        List<SubSection> subSections = new ArrayList<>();
+        if (rank == 0) {
+            subSections.add(new SubSection(new Section(ranges), new int[0]));
+            return subSections;
+        }
+
+        // Find the outermost dimension whose inner slices fit within the limit
+        int splitDim = rank - 1;
+        long innerBytes = Math.max(elementSize, 1);
+        long[] sliceBytes = new long[rank];
+        for (int d = rank - 1; d >= 0; d--) {
+            sliceBytes[d] = innerBytes;
+            innerBytes *= shape[d];
+        }
+        for (int d = 0; d < rank; d++) {
+            if (sliceBytes[d] <= maxChunkBytes) {
+                splitDim = d;
+                break;
+            }
+        }
+        int slicesPerChunk = (int) Math.max(1, Math.min(shape[splitDim], maxChunkBytes / sliceBytes[splitDim]));
+
+        // Walk the outer dimensions one index at a time and the split dimension in blocks
+        int[] counter = new int[rank];
+        while (true) {
+            int start = 0;
+            while (start < shape[splitDim]) {
+                int count = blockLength(ranges.get(splitDim), start, slicesPerChunk,
+                        chunkShape != null ? chunkShape[splitDim] : 0);
+                List<Range> subRanges = new ArrayList<>(rank);
+                int[] offset = new int[rank];
+                for (int d = 0; d < rank; d++) {
+                    Range range = ranges.get(d);
+                    if (d < splitDim) {
+                        int element = range.element(counter[d]);
+                        subRanges.add(new Range(element, element, 1));
+                        offset[d] = counter[d];
+                    } else if (d == splitDim) {
+                        subRanges.add(new Range(range.element(start), range.element(start + count - 1),
+                                range.stride()));
+                        offset[d] = start;
+                    } else {
+                        subRanges.add(range);
+                    }
+                }
+                subSections.add(new SubSection(new Section(subRanges), offset));
+                start += count;
+            }
+            int d = splitDim - 1;
+            while (d >= 0 && ++counter[d] == shape[d]) {
+                counter[d] = 0;
+                d--;
+            }
+            if (d < 0) {
+                return subSections;
+            }
+        }
+    }
+
+    /**
+     * Number of indexes of the range from {@code start} to put in one block of at most {@code maxLength}. Given a
+     * chunk length, a block that stops short of the end of the range is cut back to the last chunk boundary within
+     * it, if there is one.
+     */
+    private static int blockLength(Range range, int start, int maxLength, int chunkLength)
+            throws InvalidRangeException {
+        int length = Math.min(maxLength, range.length() - start);
+        if (chunkLength <= 0 || start + length == range.length()) {
+            return length;
+        }
+        // First element of the chunk holding the element just past the block
+        int boundary = range.element(start + length) / chunkLength * chunkLength;
+        int aligned = (boundary - range.first() + range.stride() - 1) / range.stride() - start;
+        return aligned > 0 ? aligned : length;
+    }
+}
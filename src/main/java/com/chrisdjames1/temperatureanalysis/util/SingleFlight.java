@@ -0,0 +1,79 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key, so that only the first caller (the leader) does the work and every
+ * caller that arrives while it is in flight shares its result or its exception. Nothing is kept once the leader
+ * finishes, so a later call does the work again. A caller waiting on the leader checks every so often whether it
+ * should stop waiting, so that it can still be cancelled while the leader has no deadline of its own.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder led = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final Runnable cancellationCheck;
+
+    public SingleFlight(String name) {
+        this(name, () -> { });
+    }
+
+    /**
+     * @param cancellationCheck Called while a caller waits on the leader, to stop the wait by throwing, as for
+     *                          {@link FutureUtils#await}.
+     */
+    public SingleFlight(String name, Runnable cancellationCheck) {
+        this.name = name;
+        this.cancellationCheck = cancellationCheck;
+    }
+
+    /**
+     * Returns the result of the call in flight for {@code key}, or calls {@code supplier} if there is none.
+     */
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            joined.increment();
+            return await(existing);
+        }
+        led.increment();
+        try {
+            V value = supplier.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public CoalescingStats stats() {
+        return new CoalescingStats(name, led.sum(), joined.sum(), inFlight.size());
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return FutureUtils.await(future, cancellationCheck);
+        } catch (CompletionException e) {
+            // Rethrow what the leader threw, rather than the wrapper
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
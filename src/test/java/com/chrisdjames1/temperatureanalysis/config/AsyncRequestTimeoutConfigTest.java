@@ -0,0 +1,65 @@
+package com.chrisdjames1.temperatureanalysis.config;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs a streamed response for longer than the 30 s the container allows asynchronous requests by default.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = AsyncRequestTimeoutConfigTest.TestApplication.class,
+        properties = {"cdm.cancellation.request-timeout-millis=60000", "spring.devtools.restart.enabled=false"})
+public class AsyncRequestTimeoutConfigTest {
+
+    private static final long STREAM_MILLIS = 31_000L;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testStreamWithinTheDeadlineIsNotCutOffByTheContainer() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/slow", String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("done", response.getBody());
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @Import({CdmCancellationProperties.class, AsyncRequestTimeoutConfig.class, SlowController.class})
+    static class TestApplication {
+    }
+
+    @RestController
+    static class SlowController {
+
+        @GetMapping("/slow")
+        public StreamingResponseBody slow() {
+            return outputStream -> {
+                try {
+                    Thread.sleep(STREAM_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                outputStream.write("done".getBytes(StandardCharsets.UTF_8));
+            };
+        }
+    }
+}
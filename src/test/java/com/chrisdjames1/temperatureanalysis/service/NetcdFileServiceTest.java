@@ -0,0 +1,67 @@
+package com.chrisdjames1.temperatureanalysis.service;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.exception.DatasetBusyException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class NetcdFileServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private NetcdFileService netcdFileService;
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("lat", 2);
+        builder.addVariable("t", DataType.DOUBLE, "lat");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{2}, new double[]{1.0, 2.0}));
+        }
+        CdmDatasetProperties properties = new CdmDatasetProperties();
+        properties.setPath(dataset.getPath());
+        properties.setPoolSize(1);
+        properties.setBorrowTimeoutMillis(10L);
+        netcdFileService = new NetcdFileService(properties);
+        netcdFileService.postConstruct();
+    }
+
+    @After
+    public void tearDown() {
+        netcdFileService.preDestroy();
+    }
+
+    @Test
+    public void testExhaustedPoolIsReportedAsUnavailableWithARetryAfter() {
+        try (PooledNetcdfFile handle = netcdFileService.borrow()) {
+            assertNotNull(handle.getNcFile());
+            netcdFileService.borrow();
+            fail("Borrowed a second handle from a pool of one");
+        } catch (DatasetBusyException e) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+            assertEquals("1", e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        }
+        assertEquals(1L, netcdFileService.stats().getTimeouts());
+        // The handle went back to the pool
+        netcdFileService.borrow().close();
+    }
+}
@@ -0,0 +1,137 @@
+package com.chrisdjames1.temperatureanalysis.service;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmCacheProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmExcelProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmMetricsProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmResidentProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmTransposedProperties;
+import com.chrisdjames1.temperatureanalysis.service.cache.ChunkCacheService;
+import com.chrisdjames1.temperatureanalysis.service.cache.SectionCacheService;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.service.metrics.AnalysisMetrics;
+import com.chrisdjames1.temperatureanalysis.service.resident.ResidentVariableService;
+import com.chrisdjames1.temperatureanalysis.service.transpose.TransposedStoreService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReadVariableToExcelServiceTest {
+
+    private static final int TIMES = 3;
+    private static final int LATITUDES = 4;
+    private static final int LONGITUDES = 5;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dataset;
+    private float[] values;
+    private ReadVariableToExcelService readVariableToExcelService;
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        dataset = temporaryFolder.newFile("dataset.nc");
+        values = new float[TIMES * LATITUDES * LONGITUDES];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.5f - 7;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", TIMES);
+        builder.addDimension("latitude", LATITUDES);
+        builder.addDimension("longitude", LONGITUDES);
+        builder.addVariable("temperature", DataType.FLOAT, "time latitude longitude")
+                .addAttribute(new Attribute("units", "degree C"));
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("temperature", Array.factory(DataType.FLOAT, new int[]{TIMES, LATITUDES, LONGITUDES},
+                    values));
+        }
+
+        CdmReadProperties readProperties = new CdmReadProperties();
+        // One row of the map per chunk, so the workbook is assembled from several reads
+        readProperties.setChunkSizeBytes(LONGITUDES * Float.BYTES);
+        CdmCacheProperties cacheProperties = new CdmCacheProperties();
+        CdmDatasetProperties datasetProperties = new CdmDatasetProperties();
+        datasetProperties.setPath(dataset.getPath());
+        AnalysisMetrics analysisMetrics = new AnalysisMetrics(new SimpleMeterRegistry(), new CdmMetricsProperties());
+        NetcdReaderService netcdReaderService = new NetcdReaderService(readProperties,
+                new SectionCacheService(cacheProperties),
+                new TransposedStoreService(datasetProperties, new CdmTransposedProperties(), readProperties),
+                new ResidentVariableService(datasetProperties, new CdmResidentProperties(), readProperties),
+                new ChunkCacheService(cacheProperties), analysisMetrics);
+        CdmExcelProperties excelProperties = new CdmExcelProperties();
+        // Smaller than the sheet, so rows are flushed to disk while it is streamed
+        excelProperties.setRowAccessWindowSize(2);
+        readVariableToExcelService = new ReadVariableToExcelService(netcdReaderService, excelProperties,
+                analysisMetrics);
+    }
+
+    @Test
+    public void testStreamedWorkbookHoldsTheSectionAndMatchesTheStoredOne() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Path file = temporaryFolder.getRoot().toPath().resolve("stored.xlsx");
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            readVariableToExcelService.readVariable2dToExcel(ncFile, "temperature", "1,0:3,0:4", null, outputStream,
+                    ProgressListener.NONE);
+            readVariableToExcelService.readVariable2dToExcel(ncFile, "temperature", "1,0:3,0:4", null, file);
+        }
+
+        List<String> streamed = cellsOf(outputStream.toByteArray());
+        assertEquals(cellsOf(Files.readAllBytes(file)), streamed);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("temperature");
+            // The data rows are the last on the sheet, labelled with the latitude and holding a cell per longitude
+            int firstDataRow = sheet.getLastRowNum() - LATITUDES + 1;
+            for (int lat = 0; lat < LATITUDES; lat++) {
+                Row row = sheet.getRow(firstDataRow + lat);
+                assertEquals(lat, row.getCell(0).getNumericCellValue(), 0.0);
+                double[] expected = new double[LONGITUDES];
+                double[] actual = new double[LONGITUDES];
+                for (int lon = 0; lon < LONGITUDES; lon++) {
+                    expected[lon] = values[(LATITUDES + lat) * LONGITUDES + lon];
+                    actual[lon] = row.getCell(lon + 1).getNumericCellValue();
+                }
+                assertArrayEquals(expected, actual, 1e-6);
+            }
+        }
+    }
+
+    /**
+     * The text of every cell of the first sheet, row by row.
+     */
+    private static List<String> cellsOf(byte[] workbookBytes) throws IOException {
+        List<String> cells = new ArrayList<>();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(workbookBytes))) {
+            for (Row row : workbook.getSheetAt(0)) {
+                row.forEach(cell -> cells.add(row.getRowNum() + ":" + cell.getColumnIndex() + "=" + cell));
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chrisdjames1.temperatureanalysis.service.admission;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmAdmissionProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestTooLargeException;
+import com.chrisdjames1.temperatureanalysis.exception.TooManyRequestsException;
+import com.chrisdjames1.temperatureanalysis.model.CostEstimate;
+import com.chrisdjames1.temperatureanalysis.model.value.AdmissionDecision;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionServiceTest {
+
+    private AdmissionService admissionService;
+
+    @Before
+    public void setUp() {
+        CdmAdmissionProperties admissionProperties = new CdmAdmissionProperties();
+        admissionProperties.setMemoryBudgetBytes(100);
+        admissionProperties.setMaxRequestMemoryBytes(80);
+        admissionProperties.setMaxResponseBytes(1000);
+        admissionProperties.setQueueTimeoutMillis(50);
+        admissionService = new AdmissionService(admissionProperties);
+    }
+
+    @Test
+    public void testRequestsQueueUntilTheBudgetIsReleased() {
+        AdmissionPermit first = admissionService.admit(estimate(60, 10));
+        assertEquals(AdmissionDecision.ADMIT, admissionService.decide(estimate(40, 10)));
+        assertEquals(AdmissionDecision.QUEUE, admissionService.decide(estimate(50, 10)));
+        try {
+            admissionService.admit(estimate(50, 10));
+        } catch (TooManyRequestsException e) {
+            first.close();
+            // Closing twice must not release the share twice
+            first.close();
+            admissionService.admit(estimate(50, 10));
+            assertEquals(AdmissionDecision.QUEUE, admissionService.decide(estimate(60, 10)));
+            return;
+        }
+        throw new AssertionError("Expected the second request to time out");
+    }
+
+    @Test
+    public void testWithoutAQueueTimeoutARequestWaitsUntilTheBudgetIsReleased() throws InterruptedException {
+        AdmissionPermit first = admissionService.admit(estimate(60, 10));
+        AdmissionPermit[] second = new AdmissionPermit[1];
+        Thread waiter = new Thread(() -> second[0] = admissionService.admit(estimate(50, 10), 0));
+        waiter.start();
+        // Well past the queue timeout of the other requests
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        first.close();
+        waiter.join(5000);
+        assertNotNull(second[0]);
+        assertEquals(AdmissionDecision.QUEUE, admissionService.decide(estimate(60, 10)));
+    }
+
+    @Test
+    public void testTooLargeRequestsAreRejected() {
+        assertEquals(AdmissionDecision.REJECT, admissionService.decide(estimate(81, 10)));
+        assertEquals(AdmissionDecision.REJECT, admissionService.decide(estimate(10, 1001)));
+    }
+
+    @Test(expected = RequestTooLargeException.class)
+    public void testAdmitRefusesTooLargeRequests() {
+        admissionService.admit(estimate(10, 1001));
+    }
+
+    private static CostEstimate estimate(long memoryBytes, long outputBytes) {
+        return CostEstimate.builder().variable("t").memoryBytes(memoryBytes).outputBytes(outputBytes).build();
+    }
+}
@@ -0,0 +1,164 @@
+package com.chrisdjames1.temperatureanalysis.service.artifact;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmArtifactProperties;
+import com.chrisdjames1.temperatureanalysis.exception.ArtifactNotFoundException;
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactStoreServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dataset;
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        dataset = temporaryFolder.newFile("dataset.nc");
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("lat", 2);
+        builder.addVariable("t", DataType.DOUBLE, "lat");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{2}, new double[]{1.0, 2.0}));
+        }
+    }
+
+    @Test
+    public void testKeyIgnoresArgumentOrderAndNullValues() throws IOException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Map<String, String> args = new HashMap<>();
+            args.put("variable", "t");
+            args.put("sectionSpec", "0:1");
+            String key = ArtifactStoreService.key(ncFile, "read/variable/xlsx", args);
+            args.put("averageOnIndex", null);
+            assertEquals(key, ArtifactStoreService.key(ncFile, "read/variable/xlsx", args));
+            args.put("sectionSpec", "0:0");
+            assertNotEquals(key, ArtifactStoreService.key(ncFile, "read/variable/xlsx", args));
+            assertNotEquals(key, ArtifactStoreService.key(ncFile, "average/variable/xlsx", Map.of("variable", "t",
+                    "sectionSpec", "0:1")));
+        }
+    }
+
+    @Test
+    public void testRepeatRequestIsServedFromTheStore() throws IOException {
+        ArtifactStoreService store = createStore(1024L);
+        AtomicInteger writes = new AtomicInteger();
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Artifact first = store.getOrCreate(ncFile, "fn", Map.of("a", "1"), "bin", file -> {
+                writes.incrementAndGet();
+                write(file, 10);
+            });
+            Artifact second = store.getOrCreate(ncFile, "fn", Map.of("a", "1"), "bin", file -> {
+                writes.incrementAndGet();
+                write(file, 10);
+            });
+            assertEquals(1, writes.get());
+            assertEquals(first.getKey(), second.getKey());
+            assertEquals(10L, Files.size(second.getPath()));
+            assertEquals(1L, store.stats().getHits());
+            assertEquals(1L, store.stats().getMisses());
+        }
+    }
+
+    @Test(expected = ArtifactNotFoundException.class)
+    public void testLeastRecentlyUsedIsEvictedBeyondBudget() throws IOException, InterruptedException {
+        ArtifactStoreService store = createStore(25L);
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Artifact a = store.getOrCreate(ncFile, "fn", Map.of("a", "1"), "bin", file -> write(file, 10));
+            Thread.sleep(5L);
+            Artifact b = store.getOrCreate(ncFile, "fn", Map.of("a", "2"), "bin", file -> write(file, 10));
+            Thread.sleep(5L);
+            // Using a makes b the least recently used
+            store.get(a.getKey());
+            Thread.sleep(5L);
+            store.getOrCreate(ncFile, "fn", Map.of("a", "3"), "bin", file -> write(file, 10));
+
+            assertTrue(Files.exists(a.getPath()));
+            assertFalse(Files.exists(b.getPath()));
+            assertEquals(1L, store.stats().getEvictions());
+            store.get(b.getKey());
+        }
+    }
+
+    @Test
+    public void testRecentlyRequestedArtifactIsNotEvicted() throws IOException, InterruptedException {
+        CdmArtifactProperties properties = createProperties(15L);
+        properties.setPinSeconds(60L);
+        ArtifactStoreService store = createStore(properties);
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Artifact a = store.getOrCreate(ncFile, "fn", Map.of("a", "1"), "bin", file -> write(file, 10));
+            Thread.sleep(5L);
+            // a has been handed out but not downloaded yet, so it stays even though the store is over budget
+            Artifact b = store.getOrCreate(ncFile, "fn", Map.of("a", "2"), "bin", file -> write(file, 10));
+
+            assertTrue(Files.exists(a.getPath()));
+            assertTrue(Files.exists(b.getPath()));
+            assertEquals(0L, store.stats().getEvictions());
+            assertEquals(a.getPath(), store.get(a.getKey()).getPath());
+        }
+    }
+
+    @Test
+    public void testExpiredArtifactIsEvictedWithoutNewOnesBeingStored() throws IOException, InterruptedException {
+        CdmArtifactProperties properties = createProperties(1024L);
+        properties.setTtlMinutes(0L);
+        ArtifactStoreService store = createStore(properties);
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Artifact a = store.getOrCreate(ncFile, "fn", Map.of("a", "1"), "bin", file -> write(file, 10));
+            Thread.sleep(5L);
+            store.evictExpired();
+
+            assertFalse(Files.exists(a.getPath()));
+            assertEquals(1L, store.stats().getEvictions());
+        }
+    }
+
+    private ArtifactStoreService createStore(long maxBytes) throws IOException {
+        return createStore(createProperties(maxBytes));
+    }
+
+    private CdmArtifactProperties createProperties(long maxBytes) throws IOException {
+        CdmArtifactProperties properties = new CdmArtifactProperties();
+        properties.setDirectory(temporaryFolder.newFolder("artifacts").getPath());
+        properties.setMaxBytes(maxBytes);
+        properties.setPinSeconds(0L);
+        return properties;
+    }
+
+    private ArtifactStoreService createStore(CdmArtifactProperties properties) throws IOException {
+        ArtifactStoreService store = new ArtifactStoreService(properties);
+        store.postConstruct();
+        return store;
+    }
+
+    private static void write(Path file, int size) {
+        try {
+            Files.write(file, new byte[size]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
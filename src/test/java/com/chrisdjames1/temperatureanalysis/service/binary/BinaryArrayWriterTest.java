@@ -0,0 +1,57 @@
+package com.chrisdjames1.temperatureanalysis.service.binary;
+
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryDtype;
+import com.chrisdjames1.temperatureanalysis.model.value.BinaryFormat;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryArrayWriterTest {
+
+    @Test
+    public void testWritesNpy() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int[] shape = {2, 3};
+        BinaryArrayWriter binaryArrayWriter = BinaryArrayWriter.builder().outputStream(outputStream).shape(shape)
+                .dtype(BinaryDtype.FLOAT32).format(BinaryFormat.NPY).build();
+        binaryArrayWriter.write(Array.factory(DataType.FLOAT, new int[]{1, 3}, new float[]{1f, Float.NaN, 3f}));
+        binaryArrayWriter.write(Array.factory(DataType.FLOAT, new int[]{1, 3}, new float[]{4f, 5f, 6f}));
+        binaryArrayWriter.finish();
+
+        byte[] bytes = outputStream.toByteArray();
+        assertEquals(BinaryArrayWriter.contentLength(shape, BinaryDtype.FLOAT32, BinaryFormat.NPY), bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((byte) 0x93, buffer.get(0));
+        int headerLength = 10 + buffer.getShort(8);
+        assertEquals(0, headerLength % 64);
+        String header = new String(bytes, 10, headerLength - 10, StandardCharsets.US_ASCII);
+        assertTrue(header.startsWith("{'descr': '<f4', 'fortran_order': False, 'shape': (2, 3), }"));
+        assertTrue(header.endsWith("\n"));
+        assertEquals(1f, buffer.getFloat(headerLength), 0f);
+        assertTrue(Float.isNaN(buffer.getFloat(headerLength + 4)));
+        assertEquals(6f, buffer.getFloat(headerLength + 20), 0f);
+    }
+
+    @Test
+    public void testWritesRawFloat64FromIntegrals() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryArrayWriter binaryArrayWriter = BinaryArrayWriter.builder().outputStream(outputStream)
+                .shape(new int[]{2}).dtype(BinaryDtype.FLOAT64).format(BinaryFormat.RAW).build();
+        binaryArrayWriter.write(Array.factory(DataType.USHORT, new int[]{2}, new short[]{(short) 65535, -2}));
+        binaryArrayWriter.finish();
+
+        ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(16, buffer.remaining());
+        assertEquals(65535.0, buffer.getDouble(0), 0.0);
+        assertEquals(65534.0, buffer.getDouble(8), 0.0);
+    }
+}
@@ -0,0 +1,71 @@
+package com.chrisdjames1.temperatureanalysis.service.cache;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmCacheProperties;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChunkCacheServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSectionsAssembledFromChunksMatchTheVariable() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        int[] values = new int[5 * 7 * 6];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 5);
+        builder.addDimension("lat", 7);
+        builder.addDimension("lon", 6);
+        builder.addVariable("t", DataType.INT, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.INT, new int[]{5, 7, 6}, values));
+        }
+
+        CdmCacheProperties cacheProperties = new CdmCacheProperties();
+        cacheProperties.setChunkMaxBytes(1024 * 1024);
+        ChunkCacheService chunkCacheService = new ChunkCacheService(cacheProperties);
+        // A netCDF-3 file is not chunked, so impose a layout whose edge chunks are partial
+        int[] chunkShape = {2, 3, 4};
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            assertSameSection(chunkCacheService, ncFile, v, chunkShape, ":,:,:");
+            // 3 x 3 x 2 chunks cover the whole variable
+            assertEquals(18, chunkCacheService.stats().getMisses());
+
+            assertSameSection(chunkCacheService, ncFile, v, chunkShape, "1:4,2:6:2,1:5");
+            assertSameSection(chunkCacheService, ncFile, v, chunkShape, "3,5,0:5:3");
+            assertEquals(18, chunkCacheService.stats().getMisses());
+        }
+    }
+
+    private static void assertSameSection(ChunkCacheService chunkCacheService, NetcdfFile ncFile, Variable v,
+            int[] chunkShape, String sectionSpec) throws IOException, InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+        Array expected = v.read(new Section(ranges));
+        Array actual = chunkCacheService.read(ncFile, v, ranges, chunkShape);
+        assertArrayEquals(expected.getShape(), actual.getShape());
+        assertArrayEquals((int[]) expected.get1DJavaArray(DataType.INT), (int[]) actual.get1DJavaArray(DataType.INT));
+    }
+}
@@ -0,0 +1,177 @@
+package com.chrisdjames1.temperatureanalysis.service.job;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmJobProperties;
+import com.chrisdjames1.temperatureanalysis.exception.JobNotFoundException;
+import com.chrisdjames1.temperatureanalysis.exception.JobRejectedException;
+import com.chrisdjames1.temperatureanalysis.model.Artifact;
+import com.chrisdjames1.temperatureanalysis.model.ExportJob;
+import com.chrisdjames1.temperatureanalysis.model.value.JobStatus;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExportJobServiceTest {
+
+    private ExportJobService exportJobService;
+
+    @After
+    public void tearDown() {
+        if (exportJobService != null) {
+            exportJobService.preDestroy();
+        }
+    }
+
+    @Test
+    public void testJobRunsThroughItsLifecycle() throws InterruptedException {
+        exportJobService = createService(1, 1, 60L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExportJob job = exportJobService.submit("read/variable/xlsx", listener -> {
+            listener.onProgress(0.5);
+            started.countDown();
+            await(release);
+            return artifact("abc");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(JobStatus.RUNNING, exportJobService.getJob(job.getId()).getStatus());
+        assertEquals(0.5, job.getProgress(), 0.0);
+        assertNotNull(job.getStartedAt());
+
+        release.countDown();
+        awaitFinished(job);
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals("abc", job.getArtifactKey());
+        assertEquals(1.0, job.getProgress(), 0.0);
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    public void testFailedJobKeepsTheError() throws InterruptedException {
+        exportJobService = createService(1, 1, 60L);
+        ExportJob job = exportJobService.submit("read/variable/xlsx", listener -> {
+            throw new IllegalArgumentException("Bad section");
+        });
+        awaitFinished(job);
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("Bad section", job.getError());
+    }
+
+    @Test
+    public void testJobFailedByAnErrorFinishesAndCompletesItsSubscribers() throws InterruptedException {
+        exportJobService = createService(1, 1, 60L);
+        CountDownLatch release = new CountDownLatch(1);
+        ExportJob job = exportJobService.submit("read/variable/xlsx", listener -> {
+            await(release);
+            throw new OutOfMemoryError("Java heap space");
+        });
+        exportJobService.subscribe(job.getId());
+        assertTrue(exportJobService.hasSubscribers(job.getId()));
+
+        release.countDown();
+        awaitFinished(job);
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("java.lang.OutOfMemoryError: Java heap space", job.getError());
+        // The subscribers are completed just after the job is marked failed
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (exportJobService.hasSubscribers(job.getId())) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Subscribers of job " + job.getId() + " were not completed");
+            }
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test
+    public void testSubmissionBeyondTheQueueIsRejected() throws InterruptedException {
+        exportJobService = createService(1, 1, 60L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExportTask blocking = listener -> {
+            started.countDown();
+            await(release);
+            return artifact("abc");
+        };
+        exportJobService.submit("read/variable/xlsx", blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ExportJob queued = exportJobService.submit("read/variable/xlsx", blocking);
+        assertEquals(JobStatus.QUEUED, queued.getStatus());
+        try {
+            exportJobService.submit("read/variable/xlsx", blocking);
+            fail("Submitted beyond a full queue");
+        } catch (JobRejectedException e) {
+            // Expected
+        } finally {
+            release.countDown();
+        }
+        awaitFinished(queued);
+    }
+
+    @Test
+    public void testSubscribingToAFinishedJobCompletesStraightAway() throws InterruptedException, IOException {
+        exportJobService = createService(1, 1, 60L);
+        ExportJob job = exportJobService.submit("read/variable/xlsx", listener -> artifact("abc"));
+        awaitFinished(job);
+
+        SseEmitter emitter = exportJobService.subscribe(job.getId());
+        assertFalse(exportJobService.hasSubscribers(job.getId()));
+        try {
+            emitter.send("more");
+            fail("Sent to a completed emitter");
+        } catch (IllegalStateException e) {
+            // Expected, the emitter was completed after the current state was sent
+        }
+    }
+
+    @Test(expected = JobNotFoundException.class)
+    public void testFinishedJobIsForgottenAfterItsRetention() throws InterruptedException {
+        exportJobService = createService(1, 1, 0L);
+        ExportJob job = exportJobService.submit("read/variable/xlsx", listener -> artifact("abc"));
+        awaitFinished(job);
+        Thread.sleep(5L);
+        exportJobService.purgeExpiredJobs();
+        exportJobService.getJob(job.getId());
+    }
+
+    private static ExportJobService createService(int workers, int queueCapacity, long retentionMinutes) {
+        CdmJobProperties properties = new CdmJobProperties();
+        properties.setWorkers(workers);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setRetentionMinutes(retentionMinutes);
+        return new ExportJobService(properties);
+    }
+
+    private static Artifact artifact(String key) {
+        Instant now = Instant.now();
+        return new Artifact(key, Paths.get(key + ".xlsx"), 1L, now, now);
+    }
+
+    private static void awaitFinished(ExportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!job.getStatus().isFinished()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Job " + job.getId() + " did not finish");
+            }
+            Thread.sleep(5L);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.chrisdjames1.temperatureanalysis.service.json;
+
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonArrayWriterTest {
+
+    @Test
+    public void testWritesNestedArraysAcrossChunks() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[]{3, 1, 2}).build();
+        jsonArrayWriter.write(Array.factory(DataType.FLOAT, new int[]{1, 1, 2}, new float[]{1.5f, Float.NaN}));
+        jsonArrayWriter.write(Array.factory(DataType.FLOAT, new int[]{2, 1, 2}, new float[]{3f, 4f, -5f, 6.25f}));
+        jsonArrayWriter.finish();
+        assertEquals("[[[1.5,null]],[[3.0,4.0]],[[-5.0,6.25]]]", writer.toString());
+    }
+
+    @Test
+    public void testWritesWithPrecision() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[]{6}).precision(2)
+                .build();
+        jsonArrayWriter.write(Array.factory(DataType.DOUBLE, new int[]{6},
+                new double[]{1.23456, -0.004, 2.5, -1.05, 1e20, Double.POSITIVE_INFINITY}));
+        jsonArrayWriter.finish();
+        assertEquals("[1.23,0,2.5,-1.05,100000000000000000000,null]", writer.toString());
+    }
+
+    @Test
+    public void testRoundsHalfAwayFromZeroWhateverTheMagnitude() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[]{6}).precision(0)
+                .build();
+        // The last two are too large to round with a long, so they take the BigDecimal path
+        jsonArrayWriter.write(Array.factory(DataType.DOUBLE, new int[]{6},
+                new double[]{-2.5, 2.5, -0.5, -0.4, -2500000000000000.5, 2500000000000000.5}));
+        jsonArrayWriter.finish();
+        assertEquals("[-3,3,-1,0,-2500000000000001,2500000000000001]", writer.toString());
+
+        writer = new StringWriter();
+        jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[]{2}).precision(1).build();
+        jsonArrayWriter.write(Array.factory(DataType.FLOAT, new int[]{2}, new float[]{-1.25f, 1.25f}));
+        jsonArrayWriter.finish();
+        assertEquals("[-1.3,1.3]", writer.toString());
+    }
+
+    @Test
+    public void testWritesIntegralsAndScalars() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[]{2}).build();
+        jsonArrayWriter.write(Array.factory(DataType.UBYTE, new int[]{2}, new byte[]{(byte) 200, 7}));
+        jsonArrayWriter.finish();
+        assertEquals("[200,7]", writer.toString());
+
+        writer = new StringWriter();
+        jsonArrayWriter = JsonArrayWriter.builder().writer(writer).shape(new int[0]).build();
+        jsonArrayWriter.write(Array.factory(DataType.INT, new int[0], new int[]{-3}));
+        jsonArrayWriter.finish();
+        assertEquals("-3", writer.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFinishBeforeSectionIsComplete() throws IOException {
+        JsonArrayWriter jsonArrayWriter = JsonArrayWriter.builder().writer(new StringWriter()).shape(new int[]{2})
+                .build();
+        jsonArrayWriter.write(Array.factory(DataType.DOUBLE, new int[]{1}, new double[]{1}));
+        jsonArrayWriter.finish();
+    }
+}
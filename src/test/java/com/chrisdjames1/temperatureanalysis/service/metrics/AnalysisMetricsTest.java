@@ -0,0 +1,129 @@
+package com.chrisdjames1.temperatureanalysis.service.metrics;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmMetricsProperties;
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.value.CancellationReason;
+import com.chrisdjames1.temperatureanalysis.model.value.Phase;
+import com.chrisdjames1.temperatureanalysis.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnalysisMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private AnalysisMetrics analysisMetrics;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        analysisMetrics = new AnalysisMetrics(registry, new CdmMetricsProperties());
+    }
+
+    @Test
+    public void testMetersAreTaggedWithTheEndpointOfTheScopeOnTheThread() {
+        analysisMetrics.recordRead("temperature", "file", 10, 40, 1000);
+        try (RequestScope scope = analysisMetrics.open("read/variable/binary", "temperature")) {
+            // A worker thread only sees the request once the scope is attached to it
+            CompletableFuture.runAsync(() -> {
+                analysisMetrics.recordRead("temperature", "file", 1, 4, 1000);
+                try (RequestScope attachment = analysisMetrics.attach(scope)) {
+                    analysisMetrics.recordRead("temperature", "file", 100, 400, 1000);
+                }
+                assertNull(analysisMetrics.current());
+            }).join();
+            analysisMetrics.recordPhase(Phase.SERIALIZE, "temperature", 1000);
+        }
+        assertNull(analysisMetrics.current());
+
+        assertEquals(11, registry.get("cdm.read.elements").tag("endpoint", AnalysisMetrics.NO_ENDPOINT).counter()
+                .count(), 0);
+        assertEquals(100, registry.get("cdm.read.elements").tag("endpoint", "read/variable/binary").counter()
+                .count(), 0);
+        assertEquals(400, registry.get("cdm.read.bytes").tag("endpoint", "read/variable/binary").counter()
+                .count(), 0);
+        assertEquals(1, registry.get("cdm.phase").tag("phase", "serialize").tag("endpoint", "read/variable/binary")
+                .timer().count());
+        // Closing the attachment must not record the request a second time
+        assertEquals(1, registry.get("cdm.requests").tag("endpoint", "read/variable/binary").timer().count());
+    }
+
+    @Test
+    public void testCoalescingCountersArePublished() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("section-reads");
+        analysisMetrics.registerCoalescing(singleFlight, SingleFlight::stats);
+        singleFlight.execute("key", () -> 1);
+        singleFlight.execute("key", () -> 2);
+
+        assertEquals(2, registry.get("cdm.coalescing.led").tag("group", "section-reads").functionCounter().count(),
+                0);
+        assertEquals(0, registry.get("cdm.coalescing.joined").tag("group", "section-reads").functionCounter()
+                .count(), 0);
+        assertEquals(0, registry.get("cdm.coalescing.in.flight").tag("group", "section-reads").gauge().value(), 0);
+    }
+
+    @Test
+    public void testClosingANestedScopeRestoresTheOuterOne() {
+        try (RequestScope outer = analysisMetrics.open("average/variable/xlsx", "temperature")) {
+            try (RequestScope inner = analysisMetrics.open("average/variable/group-by", "temperature")) {
+                assertEquals("average/variable/group-by", analysisMetrics.current().getEndpoint());
+            }
+            assertEquals(outer, analysisMetrics.current());
+        }
+        assertEquals(1, registry.get("cdm.requests").tag("endpoint", "average/variable/group-by").timer().count());
+        assertEquals(1, registry.get("cdm.requests").tag("endpoint", "average/variable/xlsx").timer().count());
+    }
+
+    @Test
+    public void testPhasesAreSummedAcrossTheThreadsOfARequest() {
+        RequestScope scope = analysisMetrics.open("average/variable/group-by", "temperature", "0:11,:,:", 777600,
+                0);
+        try (scope) {
+            analysisMetrics.recordPhase(Phase.OPEN, "temperature", 1_000_000);
+            CompletableFuture.runAsync(() -> {
+                try (RequestScope attachment = analysisMetrics.attach(scope)) {
+                    analysisMetrics.recordPhase(Phase.READ, "temperature", 2_000_000);
+                }
+            }).join();
+            analysisMetrics.recordPhase(Phase.READ, "temperature", 3_000_000);
+            analysisMetrics.recordPhase(Phase.REDUCE, "temperature", 4_000_000);
+        }
+
+        assertEquals(1_000_000, scope.getPhaseNanos(Phase.OPEN));
+        assertEquals(5_000_000, scope.getPhaseNanos(Phase.READ));
+        assertEquals(4_000_000, scope.getPhaseNanos(Phase.REDUCE));
+        assertTrue(scope.getDurationNanos() >= 0);
+        assertTrue(scope.toServerTiming().startsWith("open;dur=1.0, read;dur=5.0, reduce;dur=4.0, " +
+                "serialize;dur=0.0, total;dur="));
+    }
+
+    @Test
+    public void testARequestPastItsDeadlineIsCancelledOnEveryThread() throws InterruptedException {
+        try (RequestScope scope = analysisMetrics.open("read/variable/binary", "temperature", "0:11,:,:", 777600,
+                1)) {
+            analysisMetrics.checkCancelled();
+            Thread.sleep(10);
+            assertTrue(analysisMetrics.isCancelled());
+            CompletableFuture.runAsync(() -> {
+                try (RequestScope attachment = analysisMetrics.attach(scope)) {
+                    assertEquals(CancellationReason.DEADLINE, attachment.getCancellation());
+                    analysisMetrics.checkCancelled();
+                }
+            }).handle((result, e) -> {
+                assertTrue(e.getCause() instanceof RequestCancelledException);
+                return null;
+            }).join();
+        }
+        assertFalse(analysisMetrics.isCancelled());
+        // Cancellation is counted once however many threads notice it
+        assertEquals(1, analysisMetrics.cancellationStats().getDeadline());
+        assertEquals(1, registry.get("cdm.cancellations").tag("reason", "deadline").counter().count(), 0);
+    }
+}
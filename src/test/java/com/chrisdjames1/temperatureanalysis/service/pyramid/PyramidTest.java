@@ -0,0 +1,96 @@
+package com.chrisdjames1.temperatureanalysis.service.pyramid;
+
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PyramidTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBlockAverageSkipsNaNAndCutsEdgeBlocksShort() {
+        double[] plane = {
+                1, 2, 3,
+                3, Double.NaN, 5,
+                Double.NaN, Double.NaN, 7};
+        float[] blocks = new float[4];
+        Pyramid.blockAverage(plane, 3, 3, 2, blocks);
+        assertArrayEquals(new float[]{2f, 4f, Float.NaN, 7f}, blocks, 1e-6f);
+    }
+
+    @Test
+    public void testLevelsMatchDownsampledData() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        float[] values = new float[3 * 7 * 11];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 5 == 0 ? Float.NaN : i * 0.25f;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 3);
+        builder.addDimension("lat", 7);
+        builder.addDimension("lon", 11);
+        builder.addVariable("t", DataType.FLOAT, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.FLOAT, new int[]{3, 7, 11}, values));
+        }
+
+        Path sidecar = temporaryFolder.getRoot().toPath().resolve("dataset.nc.t.pyr");
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            Pyramid.write(v, dataset.lastModified(), dataset.length(), List.of(2, 5), sidecar);
+            Pyramid pyramid = Pyramid.open(sidecar);
+
+            assertArrayEquals(new int[]{2, 5}, pyramid.getFactors());
+            assertArrayEquals(new int[]{3, 2, 3}, Pyramid.levelShape(v.getShape(), 5));
+            assertSameLevel(pyramid, v, 2, ":,:,:");
+            assertSameLevel(pyramid, v, 2, "1:2,1:3:2,2:5");
+            assertSameLevel(pyramid, v, 5, "0:2:2,:,1:2");
+
+            // The first 5 x 5 block of the first step, worked out by hand
+            double total = 0;
+            int count = 0;
+            for (int y = 0; y < 5; y++) {
+                for (int x = 0; x < 5; x++) {
+                    float value = values[y * 11 + x];
+                    if (!Float.isNaN(value)) {
+                        total += value;
+                        count++;
+                    }
+                }
+            }
+            Array block = pyramid.read(5, SectionSpecUtils.parse("0,0,0", new int[]{3, 2, 3}));
+            assertEquals(total / count, block.getFloat(0), 1e-4);
+        }
+    }
+
+    private static void assertSameLevel(Pyramid pyramid, Variable v, int factor, String sectionSpec)
+            throws IOException, InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse(sectionSpec, Pyramid.levelShape(v.getShape(), factor));
+        Array stored = pyramid.read(factor, ranges);
+        Array computed = Pyramid.downsample(v, factor, ranges);
+        assertArrayEquals(SectionSpecUtils.shapeOf(ranges), stored.getShape());
+        assertTrue(stored.getSize() > 0);
+        assertArrayEquals((float[]) computed.get1DJavaArray(DataType.FLOAT),
+                (float[]) stored.get1DJavaArray(DataType.FLOAT), 0f);
+    }
+}
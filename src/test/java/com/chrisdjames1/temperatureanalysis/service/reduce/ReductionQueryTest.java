@@ -0,0 +1,97 @@
+package com.chrisdjames1.temperatureanalysis.service.reduce;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import com.chrisdjames1.temperatureanalysis.service.job.ProgressListener;
+import com.chrisdjames1.temperatureanalysis.util.ReductionKernels;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReductionQueryTest {
+
+    private static final int[] VAR_SHAPE = {6, 8};
+
+    @Test
+    public void testEachQueryReducesOnlyItsOwnSectionOfTheScannedChunks() throws InvalidRangeException {
+        // Group the strided query by its first dimension and reduce the other query to a single total
+        ReductionQuery strided = query("0:5:2,1:6", 3, new int[]{1, 0});
+        ReductionQuery block = query("2:5,0:7", 1, new int[]{0, 0});
+        List<ReductionQuery> queries = List.of(strided, block);
+        List<Range> box = ReductionQuery.boundingBox(queries);
+        assertEquals("0:5,0:7", SectionSpecUtils.format(box));
+
+        TotalCounters stridedCounters = new TotalCounters(3, Summation.NAIVE);
+        TotalCounters blockCounters = new TotalCounters(1, Summation.NAIVE);
+        long stridedElements = 0;
+        long blockElements = 0;
+        // Chunks that cut across both sections at odd places
+        for (String chunkSpec : new String[]{"0:2,0:4", "0:2,5:7", "3:5,0:2", "3:5,3:7"}) {
+            List<Range> chunkRanges = SectionSpecUtils.parse(chunkSpec, VAR_SHAPE);
+            Array chunk = valuesOf(chunkRanges);
+            stridedElements += strided.reduce(chunk, chunkRanges, stridedCounters);
+            blockElements += block.reduce(chunk, chunkRanges, blockCounters);
+        }
+
+        assertEquals(strided.getElementCount(), stridedElements);
+        assertEquals(block.getElementCount(), blockElements);
+        for (int bucket = 0; bucket < 3; bucket++) {
+            int row = bucket * 2;
+            assertEquals(sum(row, row, 1, 6), stridedCounters.total(bucket), 1e-9);
+        }
+        assertEquals(sum(2, 5, 0, 7), blockCounters.total(0), 1e-9);
+    }
+
+    @Test
+    public void testQueriesAreOnlySharedWhenTheBoxReadsNoMoreThanTheQueries() throws InvalidRangeException {
+        ReductionQuery top = query("0:2,0:7", 1, new int[]{0, 0});
+        ReductionQuery bottom = query("3:5,0:7", 1, new int[]{0, 0});
+        ReductionQuery corner = query("5:5,7:7", 1, new int[]{0, 0});
+        ReductionQuery opposite = query("0:0,0:0", 1, new int[]{0, 0});
+
+        assertTrue(ReductionQuery.worthSharing(List.of(top, bottom)));
+        assertTrue(ReductionQuery.worthSharing(List.of(top, bottom, corner)));
+        assertFalse(ReductionQuery.worthSharing(List.of(corner, opposite)));
+    }
+
+    private static ReductionQuery query(String sectionSpec, int size, int[] bucketStrides)
+            throws InvalidRangeException {
+        return new ReductionQuery(SectionSpecUtils.parse(sectionSpec, VAR_SHAPE), size,
+                (data, offset, counters) -> ReductionKernels.totalGroupedBy(data, offset, bucketStrides, counters),
+                ProgressListener.NONE);
+    }
+
+    private static Array valuesOf(List<Range> ranges) {
+        Array array = Array.factory(DataType.DOUBLE, SectionSpecUtils.shapeOf(ranges));
+        int i = 0;
+        for (int row : ranges.get(0)) {
+            for (int column : ranges.get(1)) {
+                array.setDouble(i++, value(row, column));
+            }
+        }
+        return array;
+    }
+
+    private static double sum(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        double sum = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                sum += value(row, column);
+            }
+        }
+        return sum;
+    }
+
+    private static double value(int row, int column) {
+        return row * VAR_SHAPE[1] + column;
+    }
+}
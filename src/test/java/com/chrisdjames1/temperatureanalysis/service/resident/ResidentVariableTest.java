@@ -0,0 +1,69 @@
+package com.chrisdjames1.temperatureanalysis.service.resident;
+
+import com.chrisdjames1.temperatureanalysis.model.value.ResidentMode;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ResidentVariableTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadsMatchTheVariable() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        double[] values = new double[7 * 4 * 5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 13 == 0 ? Double.NaN : i * 0.25;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 7);
+        builder.addDimension("lat", 4);
+        builder.addDimension("lon", 5);
+        builder.addVariable("t", DataType.DOUBLE, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{7, 4, 5}, values));
+        }
+
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            for (ResidentMode mode : ResidentMode.values()) {
+                // Two steps per chunk, so loading takes several reads of the variable
+                ResidentVariable resident = ResidentVariable.load(v, dataset.lastModified(), dataset.length(), mode,
+                        temporaryFolder.newFile().toPath(), 2L * 4 * 5 * Double.BYTES);
+                assertEquals(values.length * Double.BYTES, resident.getSizeBytes());
+                assertSameSection(resident, v, ":,:,:");
+                assertSameSection(resident, v, "1:6:2,1:2,0:4:2");
+                assertSameSection(resident, v, "3,2,4");
+            }
+        }
+    }
+
+    private static void assertSameSection(ResidentVariable resident, Variable v, String sectionSpec)
+            throws IOException, InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+        Array expected = v.read(new Section(ranges));
+        Array actual = resident.read(ranges);
+        assertArrayEquals(expected.getShape(), actual.getShape());
+        assertArrayEquals((double[]) expected.get1DJavaArray(DataType.DOUBLE),
+                (double[]) actual.get1DJavaArray(DataType.DOUBLE), 0d);
+    }
+}
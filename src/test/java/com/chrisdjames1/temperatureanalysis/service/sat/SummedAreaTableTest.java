@@ -0,0 +1,98 @@
+package com.chrisdjames1.temperatureanalysis.service.sat;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import com.chrisdjames1.temperatureanalysis.util.ReductionKernels;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SummedAreaTableTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBoxTotalsMatchAScan() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        float[] values = new float[3 * 4 * 5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 7 == 0 ? Float.NaN : i * 0.5f;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 3);
+        builder.addDimension("lat", 4);
+        builder.addDimension("lon", 5);
+        builder.addVariable("t", DataType.FLOAT, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.FLOAT, new int[]{3, 4, 5}, values));
+        }
+
+        Path sidecar = temporaryFolder.getRoot().toPath().resolve("dataset.nc.t.sat");
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            SummedAreaTable.write(v, dataset.lastModified(), dataset.length(), sidecar);
+            SummedAreaTable table = SummedAreaTable.open(sidecar);
+
+            // Average over a lat/lon box for each time step
+            assertSameTotals(table, v, "0:2,1:3,1:4", new int[]{1, 0, 0}, 3);
+            // Average over a lat/lon box for a time range, per latitude
+            assertSameTotals(table, v, "1:2,0:3,2:4", new int[]{0, 1, 0}, 4);
+            // The whole variable
+            assertSameTotals(table, v, ":,:,:", new int[]{0, 0, 0}, 1);
+        }
+    }
+
+    @Test
+    public void testCannotServeStridedOrFineGrainedQueries() throws InvalidRangeException, IOException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("lat", 4);
+        builder.addDimension("lon", 5);
+        builder.addVariable("t", DataType.DOUBLE, "lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{4, 5}, new double[20]));
+        }
+        Path sidecar = temporaryFolder.getRoot().toPath().resolve("dataset.nc.t.sat");
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            SummedAreaTable.write(ncFile.findVariable("t"), 0L, 0L, sidecar);
+        }
+        SummedAreaTable table = SummedAreaTable.open(sidecar);
+        int[] shape = {4, 5};
+        assertTrue(table.canServe(SectionSpecUtils.parse(":,:", shape), new int[]{0, 0}));
+        assertFalse(table.canServe(SectionSpecUtils.parse("0:3:2,:", shape), new int[]{0, 0}));
+        assertFalse(table.canServe(SectionSpecUtils.parse(":,:", shape), new int[]{5, 1}));
+    }
+
+    private static void assertSameTotals(SummedAreaTable table, Variable v, String sectionSpec, int[] bucketStrides,
+            int size) throws IOException, InvalidRangeException {
+
+        List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+        TotalCounters expected = new TotalCounters(size, Summation.NAIVE);
+        ReductionKernels.totalGroupedBy(v.read(new Section(ranges)), new int[ranges.size()], bucketStrides, expected);
+        TotalCounters actual = new TotalCounters(size, Summation.NAIVE);
+        table.totalGroupedBy(ranges, bucketStrides, actual);
+
+        assertArrayEquals(expected.getTotals(), actual.getTotals(), 1e-9);
+        assertArrayEquals(expected.getCounts(), actual.getCounts());
+    }
+}
@@ -0,0 +1,137 @@
+package com.chrisdjames1.temperatureanalysis.service.sidecar;
+
+import lombok.Getter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SidecarLoaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dataset;
+    private File directory;
+    private final AtomicInteger builds = new AtomicInteger();
+    private final List<SidecarLoader<Version>> loaders = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        dataset = temporaryFolder.newFile("dataset.nc");
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("x", 2);
+        builder.addVariable("t", DataType.DOUBLE, "x");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{2}, new double[]{1, 2}));
+        }
+        directory = temporaryFolder.newFolder("sidecars");
+    }
+
+    @After
+    public void tearDown() {
+        loaders.forEach(SidecarLoader::shutdown);
+    }
+
+    @Test
+    public void testSidecarIsBuiltOnceAndThenLoadedFromItsFile() throws IOException, InterruptedException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            assertNotNull(await(newLoader(null), ncFile));
+            assertNotNull(await(newLoader(null), ncFile));
+        }
+        assertEquals(1, builds.get());
+        assertTrue(new File(directory, "dataset.nc.t.ver").exists());
+        assertFalse(new File(directory, "dataset.nc.t.ver.partial").exists());
+    }
+
+    @Test
+    public void testSidecarBuiltWithOtherSettingsIsBuiltAgain() throws IOException, InterruptedException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            assertNotNull(await(newLoader(null), ncFile));
+            assertNotNull(await(newLoader(version -> false), ncFile));
+        }
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testSidecarOfAnEarlierVersionOfTheDatasetIsNotServed() throws IOException, InterruptedException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            SidecarLoader<Version> loader = newLoader(null);
+            assertNotNull(await(loader, ncFile));
+            assertTrue(dataset.setLastModified(dataset.lastModified() - 60_000L));
+            assertNull(loader.get(ncFile, "t"));
+            // Built again for the dataset as it is now
+            assertNotNull(await(loader, ncFile));
+        }
+        assertEquals(2, builds.get());
+    }
+
+    private SidecarLoader<Version> newLoader(Predicate<Version> current) {
+        SidecarLoader<Version> loader = SidecarLoader.<Version>builder().description("version").extension(".ver")
+                .datasetPath(dataset.getPath()).directory(directory.getPath()).opener(Version::open)
+                .writer((v, datasetLastModified, datasetLength, file) -> {
+                    builds.incrementAndGet();
+                    Files.write(file, (datasetLastModified + "," + datasetLength).getBytes(StandardCharsets.UTF_8));
+                })
+                .current(current).build();
+        loaders.add(loader);
+        loader.load("t");
+        return loader;
+    }
+
+    private static Version await(SidecarLoader<Version> loader, NetcdfFile ncFile) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        Version version;
+        while ((version = loader.get(ncFile, "t")) == null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The sidecar was not loaded");
+            }
+            Thread.sleep(10L);
+        }
+        return version;
+    }
+
+    /**
+     * A sidecar that only records the version of the dataset it was built from.
+     */
+    @Getter
+    private static class Version implements SidecarFile {
+
+        private final long datasetLastModified;
+        private final long datasetLength;
+
+        private Version(long datasetLastModified, long datasetLength) {
+            this.datasetLastModified = datasetLastModified;
+            this.datasetLength = datasetLength;
+        }
+
+        static Version open(Path file) throws IOException {
+            String[] fields = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split(",");
+            return new Version(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.chrisdjames1.temperatureanalysis.service.transpose;
+
+import com.chrisdjames1.temperatureanalysis.config.CdmDatasetProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmReadProperties;
+import com.chrisdjames1.temperatureanalysis.config.CdmTransposedProperties;
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransposedStoreServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dataset;
+    private TransposedStoreService transposedStoreService;
+
+    @Before
+    public void setUp() throws IOException, InvalidRangeException {
+        dataset = temporaryFolder.newFile("dataset.nc");
+        double[] values = new double[7 * 3 * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 5 == 0 ? Double.NaN : i * 0.25 - 3;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 7);
+        builder.addDimension("lat", 3);
+        builder.addDimension("lon", 4);
+        builder.addVariable("t", DataType.DOUBLE, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.DOUBLE, new int[]{7, 3, 4}, values));
+        }
+
+        CdmDatasetProperties datasetProperties = new CdmDatasetProperties();
+        datasetProperties.setPath(dataset.getPath());
+        CdmTransposedProperties transposedProperties = new CdmTransposedProperties();
+        transposedProperties.setVariables(List.of("t"));
+        transposedProperties.setMaxCells(2);
+        transposedProperties.setDirectory(temporaryFolder.newFolder("transposed").getPath());
+        CdmReadProperties readProperties = new CdmReadProperties();
+        // Three steps per chunk, so the build takes several passes over the variable
+        readProperties.setChunkSizeBytes(3L * 3 * 4 * Double.BYTES);
+        transposedStoreService = new TransposedStoreService(datasetProperties, transposedProperties, readProperties);
+        transposedStoreService.postConstruct();
+    }
+
+    @After
+    public void tearDown() {
+        transposedStoreService.preDestroy();
+    }
+
+    @Test
+    public void testTimeSeriesReadsMatchThePlainReadOfTheSameSection() throws IOException, InvalidRangeException,
+            InterruptedException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            awaitStore(ncFile, v);
+
+            for (String sectionSpec : new String[]{":,0,0", "0:6,2,3", "1:5:2,1,1:2", "3,0:1,2"}) {
+                List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+                Array expected = v.read(new Section(ranges));
+                Array actual = transposedStoreService.read(ncFile, "t", ranges);
+                assertNotNull(sectionSpec, actual);
+                assertArrayEquals(sectionSpec, expected.getShape(), actual.getShape());
+                assertArrayEquals(sectionSpec, (double[]) expected.get1DJavaArray(DataType.DOUBLE),
+                        (double[]) actual.get1DJavaArray(DataType.DOUBLE), 0.0);
+            }
+            // More cells than the store serves, so the caller reads the variable itself
+            assertNull(transposedStoreService.read(ncFile, "t", SectionSpecUtils.parse(":,0:1,0:1", v.getShape())));
+        }
+    }
+
+    @Test
+    public void testStoreOfAnEarlierVersionOfTheDatasetIsNotServed() throws IOException, InvalidRangeException,
+            InterruptedException {
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            awaitStore(ncFile, v);
+            assertTrue(dataset.setLastModified(dataset.lastModified() - 60_000L));
+            assertNull(transposedStoreService.read(ncFile, "t", SectionSpecUtils.parse(":,0,0", v.getShape())));
+        }
+    }
+
+    /**
+     * Waits for the background build of the store, which is ready once it serves a read.
+     */
+    private void awaitStore(NetcdfFile ncFile, Variable v) throws InvalidRangeException, InterruptedException {
+        List<Range> ranges = SectionSpecUtils.parse(":,0,0", v.getShape());
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (transposedStoreService.read(ncFile, "t", ranges) == null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The transposed store was not built");
+            }
+            Thread.sleep(10L);
+        }
+    }
+}
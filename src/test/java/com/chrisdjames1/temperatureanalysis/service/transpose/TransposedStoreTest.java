@@ -0,0 +1,78 @@
+package com.chrisdjames1.temperatureanalysis.service.transpose;
+
+import com.chrisdjames1.temperatureanalysis.util.SectionSpecUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransposedStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadsMatchTheVariable() throws IOException, InvalidRangeException {
+        File dataset = temporaryFolder.newFile("dataset.nc");
+        float[] values = new float[9 * 4 * 5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 11 == 0 ? Float.NaN : i * 0.5f;
+        }
+        NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(dataset.getPath());
+        builder.addDimension("time", 9);
+        builder.addDimension("lat", 4);
+        builder.addDimension("lon", 5);
+        builder.addVariable("t", DataType.FLOAT, "time lat lon");
+        try (NetcdfFormatWriter writer = builder.build()) {
+            writer.write("t", Array.factory(DataType.FLOAT, new int[]{9, 4, 5}, values));
+        }
+
+        Path file = temporaryFolder.getRoot().toPath().resolve("dataset.nc.t.tms");
+        try (NetcdfFile ncFile = NetcdfFiles.open(dataset.getPath())) {
+            Variable v = ncFile.findVariable("t");
+            // Two steps per chunk, so the build takes several passes over the variable
+            TransposedStore.build(v, dataset.lastModified(), dataset.length(), file, 2L * 4 * 5 * Float.BYTES);
+            long size = Files.size(file);
+            // Building again over a complete store carries on from where it stopped, which is the end
+            TransposedStore.build(v, dataset.lastModified(), dataset.length(), file, 2L * 4 * 5 * Float.BYTES);
+            assertEquals(size, Files.size(file));
+
+            TransposedStore store = TransposedStore.open(file);
+            assertSameSection(store, v, "0:8,2,3");
+            assertSameSection(store, v, "1:7:3,1:2,0:4:2");
+            assertSameSection(store, v, "4,0,0");
+
+            assertTrue(store.canServe(SectionSpecUtils.parse(":,1:2,1:2", v.getShape()), 4));
+            assertFalse(store.canServe(SectionSpecUtils.parse(":,1:2,1:3", v.getShape()), 4));
+        }
+    }
+
+    private static void assertSameSection(TransposedStore store, Variable v, String sectionSpec)
+            throws IOException, InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse(sectionSpec, v.getShape());
+        Array expected = v.read(new Section(ranges));
+        Array actual = store.read(ranges);
+        assertArrayEquals(expected.getShape(), actual.getShape());
+        assertArrayEquals((float[]) expected.get1DJavaArray(DataType.FLOAT),
+                (float[]) actual.get1DJavaArray(DataType.FLOAT), 0f);
+    }
+}
@@ -0,0 +1,79 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FutureUtilsTest {
+
+    @Test
+    public void testReturnsTheResultOnceComplete() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        AtomicInteger checks = new AtomicInteger();
+        new Thread(() -> {
+            sleep(3 * FutureUtils.POLL_MILLIS);
+            future.complete("done");
+        }).start();
+        assertEquals("done", FutureUtils.await(future, checks::incrementAndGet));
+        assertTrue(checks.get() > 0);
+    }
+
+    @Test
+    public void testFailureIsWrappedAsJoinWouldWrapIt() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        IllegalStateException failure = new IllegalStateException("boom");
+        future.completeExceptionally(failure);
+        try {
+            FutureUtils.await(future, () -> { });
+            fail("Returned from a failed future");
+        } catch (CompletionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test(expected = RequestCancelledException.class)
+    public void testCancellationCheckEndsTheWait() {
+        long deadline = System.currentTimeMillis() + 2 * FutureUtils.POLL_MILLIS;
+        FutureUtils.await(new CompletableFuture<>(), () -> {
+            if (System.currentTimeMillis() > deadline) {
+                throw new RequestCancelledException("Past the deadline");
+            }
+        });
+    }
+
+    @Test
+    public void testInterruptEndsTheWaitAndIsKept() throws InterruptedException {
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicReference<Boolean> interrupted = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                FutureUtils.await(new CompletableFuture<>(), () -> { });
+            } catch (RuntimeException e) {
+                thrown.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        waiter.interrupt();
+        waiter.join(5000);
+        assertTrue(thrown.get() instanceof RequestCancelledException);
+        assertTrue(interrupted.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.TotalCounter;
+import com.chrisdjames1.temperatureanalysis.model.TotalCounters;
+import com.chrisdjames1.temperatureanalysis.model.value.Summation;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReductionKernelsTest {
+
+    @Test
+    public void testTotalFloatsSkipsNaN() {
+        Array data = Array.factory(DataType.FLOAT, new int[]{2, 2}, new float[]{1f, Float.NaN, 2f, 3f});
+        TotalCounter totalCounter = new TotalCounter();
+        ReductionKernels.total(data, totalCounter);
+        assertEquals(6.0, totalCounter.getTotal(), 0.0);
+        assertEquals(3, totalCounter.getCount());
+        assertEquals(2.0, totalCounter.average(), 0.0);
+    }
+
+    @Test
+    public void testTotalIntegrals() {
+        TotalCounter totalCounter = new TotalCounter();
+        ReductionKernels.total(Array.factory(DataType.INT, new int[]{3}, new int[]{1, -2, 7}), totalCounter);
+        ReductionKernels.total(Array.factory(DataType.SHORT, new int[]{2}, new short[]{4, 5}), totalCounter);
+        ReductionKernels.total(Array.factory(DataType.UBYTE, new int[]{1}, new byte[]{(byte) 200}), totalCounter);
+        assertEquals(215.0, totalCounter.getTotal(), 0.0);
+        assertEquals(6, totalCounter.getCount());
+    }
+
+    @Test
+    public void testTotalAlongOuterDimension() {
+        Array data = Array.factory(DataType.DOUBLE, new int[]{2, 3}, new double[]{1, 2, 3, 4, Double.NaN, 6});
+        TotalCounters counters = new TotalCounters(3, Summation.NAIVE);
+        ReductionKernels.totalAlongDimension(data, 0, 1, counters);
+        assertArrayEquals(new double[]{0, 6, 10}, counters.getTotals(), 0.0);
+        assertArrayEquals(new long[]{0, 3, 2}, counters.getCounts());
+    }
+
+    @Test
+    public void testTotalAlongInnerDimension() {
+        Array data = Array.factory(DataType.FLOAT, new int[]{2, 3}, new float[]{1, 2, 3, 4, Float.NaN, 6});
+        TotalCounters counters = new TotalCounters(3, Summation.KAHAN);
+        ReductionKernels.totalAlongDimension(data, 1, 0, counters);
+        assertEquals(5.0, counters.total(0), 0.0);
+        assertEquals(2.0, counters.total(1), 0.0);
+        assertEquals(9.0, counters.total(2), 0.0);
+        assertArrayEquals(new long[]{2, 1, 2}, counters.getCounts());
+    }
+
+    @Test
+    public void testTotalGroupedByOuterAndInnerDimensions() {
+        // 2 x 2 x 3 chunk at offset {1, 0, 0} of a 3 x 2 x 3 section, keeping dimensions 0 and 2
+        double[] values = new double[]{1, 2, 3, 4, 5, 6, 7, 8, Double.NaN, 10, 11, 12};
+        Array data = Array.factory(DataType.DOUBLE, new int[]{2, 2, 3}, values);
+        TotalCounters counters = new TotalCounters(9, Summation.NAIVE);
+        ReductionKernels.totalGroupedBy(data, new int[]{1, 0, 0}, new int[]{3, 0, 1}, counters);
+        assertArrayEquals(new double[]{0, 0, 0, 5, 7, 9, 17, 19, 12}, counters.getTotals(), 0.0);
+        assertArrayEquals(new long[]{0, 0, 0, 2, 2, 2, 2, 2, 1}, counters.getCounts());
+    }
+
+    @Test
+    public void testCompensatedSummationsAreMoreAccurate() {
+        // 1e8 followed by a million 0.01 values. Naive summation drops most of the small values.
+        double[] values = new double[1_000_001];
+        values[0] = 1e8;
+        Arrays.fill(values, 1, values.length, 0.01);
+        Array data = Array.factory(DataType.DOUBLE, new int[]{values.length}, values);
+        double expected = 1e8 + 10_000;
+
+        TotalCounters naive = new TotalCounters(1, Summation.NAIVE);
+        ReductionKernels.total(data, naive);
+        TotalCounters kahan = new TotalCounters(1, Summation.KAHAN);
+        ReductionKernels.total(data, kahan);
+        TotalCounters pairwise = new TotalCounters(1, Summation.PAIRWISE);
+        ReductionKernels.total(data, pairwise);
+
+        assertEquals(expected, kahan.total(0), 1e-7);
+        assertEquals(expected, pairwise.total(0), 1e-6);
+        assertTrue(Math.abs(naive.total(0) - expected) > Math.abs(pairwise.total(0) - expected));
+        assertEquals(values.length, pairwise.getCounts()[0]);
+    }
+
+    @Test
+    public void testMergeCounters() {
+        TotalCounters left = new TotalCounters(2, Summation.KAHAN);
+        left.add(0, 1.5, 1);
+        TotalCounters right = new TotalCounters(2, Summation.KAHAN);
+        right.add(0, 2.5, 1);
+        right.add(1, 4.0, 2);
+        left.merge(right);
+        assertEquals(2.0, left.average(0), 0.0);
+        assertEquals(2.0, left.average(1), 0.0);
+    }
+}
@@ -0,0 +1,94 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.SubSection;
+import org.junit.Test;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SectionSpecUtilsTest {
+
+    @Test
+    public void testParseRanges() throws InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse(":,1:2,3,0:8:2", new int[]{5, 4, 6, 9});
+        assertEquals(4, ranges.size());
+        assertEquals(0, ranges.get(0).first());
+        assertEquals(4, ranges.get(0).last());
+        assertEquals(1, ranges.get(1).first());
+        assertEquals(2, ranges.get(1).last());
+        assertEquals(3, ranges.get(2).first());
+        assertEquals(1, ranges.get(2).length());
+        assertEquals(2, ranges.get(3).stride());
+        assertEquals(5, ranges.get(3).length());
+        assertArrayEquals(new int[]{5, 2, 1, 5}, SectionSpecUtils.shapeOf(ranges));
+    }
+
+    @Test
+    public void testFormatIsCanonical() throws InvalidRangeException {
+        int[] shape = {11, 6};
+        assertEquals("0:10:1,5:5:1", SectionSpecUtils.format(SectionSpecUtils.parse("0:10,5:5", shape)));
+        assertEquals("0:10:1,5:5:1", SectionSpecUtils.format(SectionSpecUtils.parse("0:10:1,5", shape)));
+        assertEquals("0:10:1,5:5:1", SectionSpecUtils.format(SectionSpecUtils.parse(":,5", shape)));
+    }
+
+    @Test(expected = InvalidRangeException.class)
+    public void testParseRangeOutOfBounds() throws InvalidRangeException {
+        SectionSpecUtils.parse("0:5", new int[]{5});
+    }
+
+    @Test(expected = InvalidRangeException.class)
+    public void testParseWrongRank() throws InvalidRangeException {
+        SectionSpecUtils.parse("0:1,0:1", new int[]{5});
+    }
+
+    @Test
+    public void testSplitAlongOutermostDimension() throws InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse("0:9,0:3,0:4", new int[]{10, 4, 5});
+        // Each slice of the first dimension is 4 * 5 * 4 = 80 bytes, so 3 slices fit in 250 bytes
+        List<SubSection> subSections = SectionSpecUtils.split(ranges, 4, 250);
+        assertEquals(4, subSections.size());
+        assertArrayEquals(new int[]{3, 4, 5}, subSections.get(0).getSection().getShape());
+        assertArrayEquals(new int[]{9, 0, 0}, subSections.get(3).getOffset());
+        assertArrayEquals(new int[]{1, 4, 5}, subSections.get(3).getSection().getShape());
+    }
+
+    @Test
+    public void testSplitDescendsWhenSliceTooLarge() throws InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse("2:3,0:3,0:4:2", new int[]{10, 4, 5});
+        // Each slice of the first dimension is 4 * 3 * 4 = 48 bytes, so split the second dimension instead
+        List<SubSection> subSections = SectionSpecUtils.split(ranges, 4, 30);
+        assertEquals(4, subSections.size());
+        assertArrayEquals(new int[]{1, 2, 3}, subSections.get(0).getSection().getShape());
+        assertArrayEquals(new int[]{1, 2, 0}, subSections.get(3).getOffset());
+        assertEquals(3, subSections.get(3).getSection().getRange(0).first());
+        assertEquals(2, subSections.get(3).getSection().getRange(1).first());
+    }
+
+    @Test
+    public void testSplitAlignsToChunkBoundaries() throws InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse("1:9,0:3", new int[]{10, 4});
+        // 3 slices of 16 bytes fit in 50 bytes, but blocks are cut back to end where a chunk of 2 ends
+        List<SubSection> subSections = SectionSpecUtils.split(ranges, 4, 50, new int[]{2, 4});
+        assertEquals(4, subSections.size());
+        assertEquals(1, subSections.get(0).getSection().getRange(0).first());
+        assertEquals(3, subSections.get(0).getSection().getRange(0).last());
+        assertEquals(4, subSections.get(1).getSection().getRange(0).first());
+        assertEquals(5, subSections.get(1).getSection().getRange(0).last());
+        assertArrayEquals(new int[]{5, 0}, subSections.get(2).getOffset());
+        assertEquals(7, subSections.get(2).getSection().getRange(0).last());
+        assertEquals(8, subSections.get(3).getSection().getRange(0).first());
+        assertEquals(9, subSections.get(3).getSection().getRange(0).last());
+    }
+
+    @Test
+    public void testSplitSingleChunk() throws InvalidRangeException {
+        List<Range> ranges = SectionSpecUtils.parse("0:9,0:3", new int[]{10, 4});
+        List<SubSection> subSections = SectionSpecUtils.split(ranges, 8, 1024);
+        assertEquals(1, subSections.size());
+        assertArrayEquals(new int[]{10, 4}, subSections.get(0).getSection().getShape());
+    }
+}
@@ -0,0 +1,131 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.exception.RequestCancelledException;
+import com.chrisdjames1.temperatureanalysis.model.CoalescingStats;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneResult() throws Exception {
+        SingleFlight<String, Object> singleFlight = new SingleFlight<>("test");
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return new Object();
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            Object[] joinedResult = new Object[1];
+            Thread joiner = new Thread(() -> joinedResult[0] = singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return new Object();
+            }));
+            joiner.start();
+            // Only let the leader finish once the second call has joined it
+            while (singleFlight.stats().getJoined() == 0 && joiner.isAlive()) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            joiner.join(5000);
+
+            assertSame(leader.get(5, TimeUnit.SECONDS), joinedResult[0]);
+            assertEquals(1, calls.get());
+            CoalescingStats stats = singleFlight.stats();
+            assertEquals(1, stats.getLed());
+            assertEquals(1, stats.getJoined());
+            assertEquals(0, stats.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitingCallerStopsWhenCancelledWhileTheLeaderCarriesOn() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        SingleFlight<String, Object> singleFlight = new SingleFlight<>("test", () -> {
+            if (cancelled.get()) {
+                throw new RequestCancelledException("Cancelled");
+            }
+        });
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                leaderStarted.countDown();
+                await(release);
+                return new Object();
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            Throwable[] joinedFailure = new Throwable[1];
+            Thread joiner = new Thread(() -> {
+                try {
+                    singleFlight.execute("key", Object::new);
+                } catch (RuntimeException e) {
+                    joinedFailure[0] = e;
+                }
+            });
+            joiner.start();
+            while (singleFlight.stats().getJoined() == 0 && joiner.isAlive()) {
+                Thread.sleep(1);
+            }
+            cancelled.set(true);
+            joiner.join(5000);
+            assertFalse(joiner.isAlive());
+            assertTrue(joinedFailure[0] instanceof RequestCancelledException);
+
+            // The leader is not affected by the caller that gave up on it
+            release.countDown();
+            assertNotNull(leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLeaderExceptionIsRethrown() {
+        new SingleFlight<String, Object>("test").execute("key", () -> {
+            throw new IllegalStateException("boom");
+        });
+    }
+
+    @Test
+    public void testLaterCallsRunAgain() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test");
+        AtomicInteger calls = new AtomicInteger();
+        singleFlight.execute("key", calls::incrementAndGet);
+        assertEquals(Integer.valueOf(2), singleFlight.execute("key", calls::incrementAndGet));
+        assertEquals(2, singleFlight.stats().getLed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.chrisdjames1.temperatureanalysis.util;
+
+import com.chrisdjames1.temperatureanalysis.model.CacheStats;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WeightedLruCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByWeight() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        // Touch "a" so that "b" is the least recently used
+        assertEquals("aaaa", cache.get("a"));
+        cache.put("c", "cccc");
+
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("cccc", cache.get("c"));
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getEntries());
+        assertEquals(8, stats.getWeightBytes());
+    }
+
+    @Test
+    public void testDoesNotCacheValuesHeavierThanTheLimit() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(3, String::length);
+        cache.put("a", "aaaa");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.stats().getWeightBytes());
+    }
+
+    @Test
+    public void testReplacingAValueUpdatesTheWeight() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+        assertEquals(2, cache.stats().getWeightBytes());
+        cache.invalidateAll();
+        assertEquals(0, cache.stats().getEntries());
+    }
+}